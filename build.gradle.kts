@@ -98,6 +98,16 @@ jmh {
     timeUnit = "s"
 }
 
+tasks.register<JavaExec>("profileGrammar") {
+    description = "Profiles parser prediction decisions on a corpus: -Pcorpus=<dir> [-PprofileLimit=<n>]"
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("com.github._1c_syntax.bsl.parser.GrammarProfiler")
+    args(
+        project.findProperty("corpus") ?: "src/test/resources",
+        project.findProperty("profileLimit") ?: "30"
+    )
+}
+
 tasks.generateGrammarSource {
     arguments = listOf(
         "-visitor",
@@ -107,6 +117,9 @@ tasks.generateGrammarSource {
         "utf8"
     )
     outputDirectory = file("src/main/gen/com/github/_1c_syntax/bsl/parser")
+    // фрагменты лексеров только импортируются в BSLLexer и BSLKeywordLexer
+    exclude("BSLLexerFragments.g4")
+    inputs.file("src/main/antlr/BSLLexerFragments.g4")
 }
 
 tasks.generateGrammarSource {
@@ -25,6 +25,7 @@ import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.TokenStream;
 import org.apache.commons.io.IOUtils;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -32,14 +33,18 @@ import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.util.ClassUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
 
 @BenchmarkMode(Mode.SampleTime)
 @Warmup(iterations = 2) // число итераций для прогрева нашей функции
@@ -47,6 +52,8 @@ import java.nio.charset.StandardCharsets;
 @State(Scope.Thread)
 public class JMXBSLParserTest {
 
+  private static final String PACKAGE_NAME = "com.github._1c_syntax.bsl.parser.";
+
   @Param({
     "BSLLexer"
     // , "BSLLexerOld"
@@ -61,6 +68,9 @@ public class JMXBSLParserTest {
   public String parserRootASTMethodName;
 
   private String content;
+  private Lexer lexer;
+  private Function<TokenStream, Parser> parserFactory;
+  private MethodHandle parserRootASTMethod;
 
   public JMXBSLParserTest() {
     final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
@@ -72,24 +82,38 @@ public class JMXBSLParserTest {
     }
   }
 
-  @Benchmark
-  public void parserTest()
-    throws InvocationTargetException, InstantiationException, IllegalAccessException, NoSuchMethodException {
-    var parserClass = (Class<Parser>) ClassUtils.loadClass(
-      "com.github._1c_syntax.bsl.parser." + parserClassName);
-    var parserRootASTMethod = parserClass.getMethod(parserRootASTMethodName);
-    var lexerClass = (Class<Lexer>) ClassUtils.loadClass(
-      "com.github._1c_syntax.bsl.parser." + lexerClassName);
-    var lexer = (Lexer) lexerClass.getConstructor(CharStream.class)
-      .newInstance(CharStreams.fromString(""));
+  /**
+   * Разрешает классы лексера и парсера до замеров, чтобы в замер попадала только работа лексера и парсера
+   */
+  @Setup
+  public void setup() throws Throwable {
+    var lookup = MethodHandles.publicLookup();
+
+    var lexerClass = ClassUtils.loadClass(PACKAGE_NAME + lexerClassName);
+    var lexerConstructor = lookup.findConstructor(lexerClass, MethodType.methodType(void.class, CharStream.class));
+    lexer = (Lexer) lexerConstructor.invoke(CharStreams.fromString(""));
+
+    var parserClass = ClassUtils.loadClass(PACKAGE_NAME + parserClassName);
+    var parserConstructor = lookup.findConstructor(parserClass, MethodType.methodType(void.class, TokenStream.class));
+    parserFactory = (TokenStream tokenStream) -> {
+      try {
+        return (Parser) parserConstructor.invoke(tokenStream);
+      } catch (Throwable e) {
+        throw new IllegalStateException(e);
+      }
+    };
+    parserRootASTMethod = lookup.unreflect(parserClass.getMethod(parserRootASTMethodName));
+  }
 
-    var tokenizer = new Tokenizer<>(content, lexer, parserClass) {
+  @Benchmark
+  public void parserTest() {
+    var tokenizer = new Tokenizer<BSLParserRuleContext, Parser>(content, lexer, parserFactory) {
 
       @Override
       protected BSLParserRuleContext rootAST() {
         try {
           return (BSLParserRuleContext) parserRootASTMethod.invoke(parser);
-        } catch (IllegalAccessException | InvocationTargetException e) {
+        } catch (Throwable e) {
           throw new RuntimeException("Error: ", e);
         }
       }
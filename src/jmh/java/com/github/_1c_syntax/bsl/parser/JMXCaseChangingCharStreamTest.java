@@ -0,0 +1,117 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CodePointCharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.UnicodeCharStream;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Сравнение перевода в верхний регистр по таблице в {@link CaseChangingCharStream}
+ * с прежним вызовом {@link Character#toUpperCase(int)} на каждое обращение к {@code LA}
+ */
+@BenchmarkMode(Mode.SampleTime)
+@Warmup(iterations = 2) // число итераций для прогрева нашей функции
+@Measurement(iterations = 2, batchSize = 2)
+@State(Scope.Thread)
+public class JMXCaseChangingCharStreamTest {
+
+  @Param({"table", "toUpperCase"})
+  public String folding;
+
+  private CodePointCharStream source;
+  private BSLLexer lexer;
+
+  @Setup
+  public void setup() throws IOException {
+    final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    try (InputStream inputStream = classLoader.getResourceAsStream("Module.bsl")) {
+      assert inputStream != null;
+      source = CharStreams.fromString(IOUtils.toString(inputStream, StandardCharsets.UTF_8));
+    }
+    lexer = new BSLLexer(CharStreams.fromString(""), true);
+    lexer.removeErrorListeners();
+  }
+
+  @Benchmark
+  public int lookAhead() {
+    var stream = caseChangingStream();
+    var sum = 0;
+    for (var i = 0; i < stream.size(); i++) {
+      stream.seek(i);
+      sum += stream.LA(1);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int lexerTest() {
+    lexer.setInputStream(caseChangingStream());
+    var tokenStream = new CommonTokenStream(lexer);
+    tokenStream.fill();
+    return tokenStream.size();
+  }
+
+  private UnicodeCharStream caseChangingStream() {
+    source.seek(0);
+    if ("table".equals(folding)) {
+      return new CaseChangingCharStream(source);
+    }
+    return new UpperCaseCharStream(source);
+  }
+
+  /**
+   * Прежняя реализация {@link CaseChangingCharStream#LA(int)}
+   */
+  private static final class UpperCaseCharStream extends CaseChangingCharStream {
+    private final UnicodeCharStream stream;
+
+    private UpperCaseCharStream(UnicodeCharStream stream) {
+      super(stream);
+      this.stream = stream;
+    }
+
+    @Override
+    public int LA(int i) {
+      int c = stream.LA(i);
+      if (c <= 0) {
+        return c;
+      }
+      return Character.toUpperCase(c);
+    }
+  }
+}
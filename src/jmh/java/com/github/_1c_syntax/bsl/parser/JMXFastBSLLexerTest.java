@@ -0,0 +1,85 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CodePointCharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Сравнение {@link FastBSLLexer} с {@link BSLLexer} на полном проходе по токенам модуля
+ */
+@BenchmarkMode(Mode.SampleTime)
+@Warmup(iterations = 2) // число итераций для прогрева нашей функции
+@Measurement(iterations = 2, batchSize = 2)
+@State(Scope.Thread)
+public class JMXFastBSLLexerTest {
+
+  @Param({"BSLLexer", "FastBSLLexer"})
+  public String lexerClassName;
+
+  private CodePointCharStream source;
+
+  @Setup
+  public void setup() throws IOException {
+    final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    try (InputStream inputStream = classLoader.getResourceAsStream("Module.bsl")) {
+      assert inputStream != null;
+      source = CharStreams.fromString(IOUtils.toString(inputStream, StandardCharsets.UTF_8));
+    }
+  }
+
+  @Benchmark
+  public int lexerTest() {
+    source.seek(0);
+    var lexer = tokenSource();
+    var count = 0;
+    while (lexer.nextToken().getType() != Token.EOF) {
+      count++;
+    }
+    return count;
+  }
+
+  private TokenSource tokenSource() {
+    if ("FastBSLLexer".equals(lexerClassName)) {
+      return new FastBSLLexer(source);
+    }
+    var lexer = new BSLLexer(source, true);
+    lexer.removeErrorListeners();
+    return lexer;
+  }
+}
@@ -0,0 +1,485 @@
+/**
+ * This file is a part of BSL Parser.
+ *
+ * Copyright © 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+/**
+ * Лексер BSL, распознающий ключевые слова по таблице.
+ *
+ * Повторяет BSLLexer с теми же типами токенов, режимами и каналами, но вместо отдельного правила
+ * на каждое ключевое слово и литерал основного режима и режима ASYNC_MODE сопоставляет общий
+ * идентификатор и определяет его тип по таблице BSLKeywords. После точки (DOT_MODE)
+ * ключевые слова, как и в BSLLexer, не распознаются.
+ */
+lexer grammar BSLKeywordLexer;
+
+options {
+    tokenVocab = BSLLexer;
+}
+
+import BSLLexerFragments;
+
+channels {
+    // для хранения удаленного блока
+    PREPROC_DELETE_CHANNEL
+}
+
+@members {
+public BSLKeywordLexer(CharStream input, boolean crAwareCostructor) {
+  super(input);
+  _interp = new CRAwareLexerATNSimulator(this, _ATN);
+  validateInputStream(_ATN, input);
+}
+
+private void classifyIdentifier() {
+  var type = BSLKeywords.keywordType(_input, getCharIndex() - _tokenStartCharIndex);
+  if (type == Token.INVALID_TYPE
+    || type == AWAIT_KEYWORD && _mode != ASYNC_MODE
+    || type == ASYNC_KEYWORD && _mode == ASYNC_MODE) {
+    setType(IDENTIFIER);
+    return;
+  }
+  setType(type);
+  if (type == ASYNC_KEYWORD) {
+    pushMode(ASYNC_MODE);
+  } else if (_mode == ASYNC_MODE && (type == ENDPROCEDURE_KEYWORD || type == ENDFUNCTION_KEYWORD)) {
+    popMode();
+  }
+}
+}
+
+// commons
+LINE_COMMENT: '//' ~[\r\n]* -> channel(HIDDEN);
+WHITE_SPACE: [ \t\f\r\n]+ -> channel(HIDDEN);
+
+// separators
+DOT: '.' -> pushMode(DOT_MODE);
+LBRACK: '[';
+RBRACK: ']';
+LPAREN: '(';
+RPAREN: ')';
+COLON: ':';
+SEMICOLON: ';';
+COMMA: ',';
+ASSIGN: '=';
+PLUS: '+';
+MINUS: '-';
+LESS_OR_EQUAL: '<=';
+NOT_EQUAL: '<>';
+LESS: '<';
+GREATER_OR_EQUAL: '>=';
+GREATER: '>';
+MUL: '*';
+QUOTIENT: '/';
+MODULO: '%';
+QUESTION: '?';
+AMPERSAND: '&' -> pushMode(ANNOTATION_MODE);
+PREPROC_DELETE
+    : '#' [ \t]*
+    (
+          RU_U RU_D RU_A RU_L RU_E RU_N RU_I RU_E
+        | D E L E T E
+    )
+    -> pushMode(PREPROC_DELETE_MODE), channel(PREPROC_DELETE_CHANNEL)
+    ;
+PREPROC_INSERT
+    : '#' [ \t]*
+    (
+          RU_V RU_S RU_T RU_A RU_V RU_K RU_A
+        | I N S E R T
+    )
+    -> channel(HIDDEN)
+    ;
+PREPROC_ENDINSERT
+    : '#' [ \t]*
+    (
+          RU_K RU_O RU_N RU_E RU_C RU_V RU_S RU_T RU_A RU_V RU_K RU_I
+        | E N D I N S E R T
+    )
+    -> channel(HIDDEN)
+    ;
+HASH: '#' -> pushMode(PREPROCESSOR_MODE);
+
+BAR: '|';
+TILDA: '~' -> pushMode(LABEL_MODE);
+
+// literals
+DECIMAL: DIGIT+;
+DATETIME: SQUOTE(~['\n\r])*SQUOTE?; // TODO: Честная регулярка
+
+FLOAT : DIGIT+ '.' DIGIT*;
+STRING: '"' (~[\r\n"] | '""')* '"';
+STRINGSTART: '"' (~["\n\r]| '""')*;
+STRINGTAIL: BAR (~["\n\r] | '""')* '"';
+STRINGPART: BAR (~[\r\n"] | '""')*;
+
+// ключевые слова и литералы Истина, Ложь, Неопределено, NULL определяются по таблице
+IDENTIFIER : LETTER ( LETTER | DIGIT )* { classifyIdentifier(); };
+
+UNKNOWN: . -> channel(HIDDEN);
+
+mode PREPROCESSOR_MODE;
+
+PREPROC_EXCLAMATION_MARK: '!';
+PREPROC_LPAREN: '(';
+PREPROC_RPAREN: ')';
+
+PREPROC_STRING: '"' (~["\n\r])* '"';
+
+PREPROC_USE_KEYWORD
+    :
+    (RU_I RU_S RU_P RU_O RU_L RU_SOFT_SIGN RU_Z RU_O RU_V RU_A RU_T RU_SOFT_SIGN
+    | U S E) -> pushMode(USE_MODE);
+
+PREPROC_REGION
+    :
+    ( RU_O RU_B RU_L RU_A RU_S RU_T RU_SOFT_SIGN
+    | R E G I O N ) -> pushMode(REGION_MODE)
+    ;
+PREPROC_END_REGION
+    :
+    ( RU_K RU_O RU_N RU_E RU_C RU_O RU_B RU_L RU_A RU_S RU_T RU_I
+    | E N D R E G I O N )
+    ;
+
+PREPROC_NOT_KEYWORD
+    :
+      RU_N RU_E
+    | N O T
+    ;
+PREPROC_OR_KEYWORD
+    :
+      RU_I RU_L RU_I
+    | O R
+    ;
+PREPROC_AND_KEYWORD
+    :
+      RU_I
+    | A N D
+    ;
+
+PREPROC_IF_KEYWORD
+    :
+      RU_E RU_S RU_L RU_I
+    | I F
+    ;
+PREPROC_THEN_KEYWORD
+    :
+      RU_T RU_O RU_G RU_D RU_A
+    | T H E N
+    ;
+PREPROC_ELSIF_KEYWORD
+    :
+      RU_I RU_N RU_A RU_CH RU_E RU_E RU_S RU_L RU_I
+    | E L S I F
+    ;
+PREPROC_ENDIF_KEYWORD
+    :
+      RU_K RU_O RU_N RU_E RU_C RU_E RU_S RU_L RU_I
+    | E N D I F
+    ;
+PREPROC_ELSE_KEYWORD
+    :
+      RU_I RU_N RU_A RU_CH RU_E
+    | E L S E
+    ;
+
+PREPROC_MOBILEAPPCLIENT_SYMBOL
+    :
+      RU_M RU_O RU_B RU_I RU_L RU_SOFT_SIGN RU_N RU_O RU_E
+      RU_P RU_R RU_I RU_L RU_O RU_ZH RU_E RU_N RU_I RU_E
+      RU_K RU_L RU_I RU_E RU_N RU_T
+    | M O B I L E
+      A P P
+      C L I E N T
+    ;
+PREPROC_MOBILEAPPSERVER_SYMBOL
+    :
+      RU_M RU_O RU_B RU_I RU_L RU_SOFT_SIGN RU_N RU_O RU_E
+      RU_P RU_R RU_I RU_L RU_O RU_ZH RU_E RU_N RU_I RU_E
+      RU_S RU_E RU_R RU_V RU_E RU_R
+    | M O B I L E
+      A P P
+      S E R V E R
+    ;
+PREPROC_MOBILECLIENT_SYMBOL
+    :
+      RU_M RU_O RU_B RU_I RU_L RU_SOFT_SIGN RU_N RU_Y RU_J
+      RU_K RU_L RU_I RU_E RU_N RU_T
+    | M O B I L E
+      C L I E N T
+    ;
+PREPROC_THICKCLIENTORDINARYAPPLICATION_SYMBOL
+    :
+      RU_T RU_O RU_L RU_S RU_T RU_Y RU_J
+      RU_K RU_L RU_I RU_E RU_N RU_T
+      RU_O RU_B RU_Y RU_CH RU_N RU_O RU_E
+      RU_P RU_R RU_I RU_L RU_O RU_ZH RU_E RU_N RU_I RU_E
+    | T H I C K
+      C L I E N T
+      O R D I N A R Y
+      A P P L I C A T I O N
+    ;
+PREPROC_THICKCLIENTMANAGEDAPPLICATION_SYMBOL
+    :
+      RU_T RU_O RU_L RU_S RU_T RU_Y RU_J
+      RU_K RU_L RU_I RU_E RU_N RU_T
+      RU_U RU_P RU_R RU_A RU_V RU_L RU_YA RU_E RU_M RU_O RU_E
+      RU_P RU_R RU_I RU_L RU_O RU_ZH RU_E RU_N RU_I RU_E
+    | T H I C K
+      C L I E N T
+      M A N A G E D
+      A P P L I C A T I O N
+    ;
+PREPROC_EXTERNALCONNECTION_SYMBOL
+    :
+      RU_V RU_N RU_E RU_SH RU_N RU_E RU_E
+      RU_S RU_O RU_E RU_D RU_I RU_N RU_E RU_N RU_I RU_E
+    | E X T E R N A L
+      C O N N E C T I O N
+    ;
+PREPROC_THINCLIENT_SYMBOL
+    :
+      RU_T RU_O RU_N RU_K RU_I RU_J
+      RU_K RU_L RU_I RU_E RU_N RU_T
+    | T H I N
+      C L I E N T
+    ;
+PREPROC_WEBCLIENT_SYMBOL
+    :
+      RU_V RU_E RU_B
+      RU_K RU_L RU_I RU_E RU_N RU_T
+    | W E B
+      C L I E N T
+    ;
+PREPROC_ATCLIENT_SYMBOL
+    :
+      RU_N RU_A RU_K RU_L RU_I RU_E RU_N RU_T RU_E
+    | A T C L I E N T
+    ;
+PREPROC_CLIENT_SYMBOL
+    :
+      RU_K RU_L RU_I RU_E RU_N RU_T
+    | C L I E N T
+    ;
+PREPROC_ATSERVER_SYMBOL
+    :
+      RU_N RU_A RU_S RU_E RU_R RU_V RU_E RU_R RU_E
+    | A T S E R V E R
+    ;
+PREPROC_SERVER_SYMBOL
+    :
+      RU_S RU_E RU_R RU_V RU_E RU_R
+    | S E R V E R
+    ;
+PREPROC_MOBILE_STANDALONE_SERVER
+    :
+      RU_M RU_O RU_B RU_I RU_L RU_SOFT_SIGN RU_N RU_Y RU_J
+      RU_A RU_V RU_T RU_O RU_N RU_O RU_M RU_N RU_Y RU_J
+      RU_S RU_E RU_R RU_V RU_E RU_R
+    | M O B I L E S T A N D A L O N E S E R V E R
+    ;
+
+PREPROC_LINUX   : L I N U X;
+PREPROC_WINDOWS : W I N D O W S;
+PREPROC_MACOS   : M A C O S;
+
+PREPROC_IDENTIFIER : LETTER ( LETTER | DIGIT )*;
+
+PREPROC_WHITE_SPACE: [ \t\f]+ -> channel(HIDDEN), type(WHITE_SPACE);
+PREPROC_LINE_COMMENT: '//' ~[\r\n]* -> channel(HIDDEN), type(LINE_COMMENT);
+PREPROC_NEWLINE: '\r'?'\n' -> popMode, channel(HIDDEN);
+
+PREPROC_ANY: ~[\r\n];
+
+mode ANNOTATION_MODE;
+
+ANNOTATION_ATSERVERNOCONTEXT_SYMBOL
+    : (
+      RU_N RU_A RU_S RU_E RU_R RU_V RU_E RU_R RU_E
+      RU_B RU_E RU_Z RU_K RU_O RU_N RU_T RU_E RU_K RU_S RU_T RU_A
+    | A T S E R V E R
+      N O C O N T E X T
+    ) -> popMode
+    ;
+
+ANNOTATION_ATCLIENTATSERVERNOCONTEXT_SYMBOL
+    : (
+      RU_N RU_A RU_K RU_L RU_I RU_E RU_N RU_T RU_E
+      RU_N RU_A RU_S RU_E RU_R RU_V RU_E RU_R RU_E
+      RU_B RU_E RU_Z RU_K RU_O RU_N RU_T RU_E RU_K RU_S RU_T RU_A
+    | A T C L I E N T
+      A T S E R V E R
+      N O C O N T E X T
+    ) -> popMode
+    ;
+
+ANNOTATION_ATCLIENTATSERVER_SYMBOL
+    : (
+      RU_N RU_A RU_K RU_L RU_I RU_E RU_N RU_T RU_E
+      RU_N RU_A RU_S RU_E RU_R RU_V RU_E RU_R RU_E
+    | A T C L I E N T
+      A T S E R V E R
+    ) -> popMode
+    ;
+
+ANNOTATION_ATCLIENT_SYMBOL
+    : (
+      RU_N RU_A RU_K RU_L RU_I RU_E RU_N RU_T RU_E
+    | A T C L I E N T
+    ) -> popMode
+    ;
+
+ANNOTATION_ATSERVER_SYMBOL
+    : ( RU_N RU_A RU_S RU_E RU_R RU_V RU_E RU_R RU_E
+    | A T S E R V E R
+    ) -> popMode
+    ;
+
+ANNOTATION_BEFORE_SYMBOL
+    : ( RU_P RU_E RU_R RU_E RU_D
+    | B E F O R E
+    ) -> popMode
+    ;
+
+ANNOTATION_AFTER_SYMBOL
+    : ( RU_P RU_O RU_S RU_L RU_E
+    | A F T E R
+    ) -> popMode
+    ;
+
+ANNOTATION_AROUND_SYMBOL
+    : ( RU_V RU_M RU_E RU_S RU_T RU_O
+    | A R O U N D
+    ) -> popMode
+    ;
+
+ANNOTATION_CHANGEANDVALIDATE_SYMBOL
+    : (  RU_I RU_Z RU_M RU_E RU_N RU_E RU_N RU_I RU_E RU_I RU_K RU_O RU_N RU_T RU_R RU_O RU_L RU_SOFT_SIGN
+    | C H A N G E A N D V A L I D A T E
+    ) -> popMode
+    ;
+
+ANNOTATION_CUSTOM_SYMBOL
+    : (
+    LETTER ( LETTER | DIGIT )*
+    ) -> popMode
+    ;
+
+ANNOTATION_WHITE_SPACE
+    : [ \n\r\t\f]+
+    -> channel(HIDDEN),
+       type(WHITE_SPACE)
+    ;
+
+ANNOTATION_UNKNOWN
+    : .
+    -> channel(HIDDEN)
+    ;
+
+mode LABEL_MODE;
+LABEL_IDENTIFIER : LETTER ( LETTER | DIGIT )* -> type(IDENTIFIER), popMode;
+
+mode REGION_MODE;
+REGION_WHITE_SPACE
+    : [ \t\f]+
+    -> channel(HIDDEN),
+       type(WHITE_SPACE)
+    ;
+REGION_IDENTIFIER : LETTER ( LETTER | DIGIT )* -> type(PREPROC_IDENTIFIER), popMode;
+
+mode USE_MODE;
+USE_WHITE_SPACE
+    : [ \t\f]+
+    -> channel(HIDDEN),
+       type(WHITE_SPACE)
+    ;
+USE_STRING : '"' (~["\n\r])* '"' -> type(PREPROC_STRING), popMode;
+USE_IDENTIFIER : ( USE_LETTER | DIGIT )+ -> type(PREPROC_IDENTIFIER), popMode;
+
+mode DOT_MODE;
+DOT_WHITE_SPACE
+    : [ \t\f]+
+    -> channel(HIDDEN),
+       type(WHITE_SPACE)
+    ;
+DOT_IDENTIFIER : LETTER ( LETTER | DIGIT )* -> type(IDENTIFIER), popMode;
+
+mode PREPROC_DELETE_MODE;
+PREPROC_ENDDELETE
+    : '#' [ \t]*
+    (
+          RU_K RU_O RU_N RU_E RU_C RU_U RU_D RU_A RU_L RU_E RU_N RU_I RU_YA
+        | E N D D E L E T E
+    )
+    -> popMode, channel(PREPROC_DELETE_CHANNEL);
+PREPROC_DELETE_WHITE_SPACE: [ \t\f]+ -> channel(HIDDEN), type(WHITE_SPACE);
+PREPROC_DELETE_LINE_COMMENT: '//' ~[\r\n]* -> channel(HIDDEN), type(LINE_COMMENT);
+PREPROC_DELETE_NEWLINE: '\r'?'\n' -> channel(HIDDEN), type(PREPROC_NEWLINE);
+PREPROC_DELETE_ANY: . -> channel(PREPROC_DELETE_CHANNEL);
+
+mode ASYNC_MODE;
+Async_LINE_COMMENT: LINE_COMMENT -> type(LINE_COMMENT), channel(HIDDEN);
+Async_WHITE_SPACE: WHITE_SPACE -> type(WHITE_SPACE), channel(HIDDEN);
+
+// separators
+Async_DOT: DOT -> type(DOT), pushMode(DOT_MODE);
+Async_LBRACK: LBRACK -> type(LBRACK);
+Async_RBRACK: RBRACK -> type(RBRACK);
+Async_LPAREN: LPAREN -> type(LPAREN);
+Async_RPAREN: RPAREN -> type(RPAREN);
+Async_COLON: COLON -> type(COLON);
+Async_SEMICOLON: SEMICOLON -> type(SEMICOLON);
+Async_COMMA: COMMA -> type(COMMA);
+Async_ASSIGN: ASSIGN -> type(ASSIGN);
+Async_PLUS: PLUS -> type(PLUS);
+Async_MINUS: MINUS -> type(MINUS);
+Async_LESS_OR_EQUAL: LESS_OR_EQUAL -> type(LESS_OR_EQUAL);
+Async_NOT_EQUAL: NOT_EQUAL -> type(NOT_EQUAL);
+Async_LESS: LESS -> type(LESS);
+Async_GREATER_OR_EQUAL: GREATER_OR_EQUAL -> type(GREATER_OR_EQUAL);
+Async_GREATER: GREATER -> type(GREATER);
+Async_MUL: MUL -> type(MUL);
+Async_QUOTIENT: QUOTIENT -> type(QUOTIENT);
+Async_MODULO: MODULO -> type(MODULO);
+Async_QUESTION: QUESTION -> type(QUESTION);
+Async_AMPERSAND: AMPERSAND -> type(AMPERSAND), pushMode(ANNOTATION_MODE);
+Async_PREPROC_DELETE: PREPROC_DELETE ->
+    type(PREPROC_DELETE),
+    pushMode(PREPROC_DELETE_MODE),
+    channel(PREPROC_DELETE_CHANNEL);
+Async_PREPROC_INSERT: PREPROC_INSERT -> type(PREPROC_INSERT), channel(HIDDEN);
+Async_PREPROC_ENDINSERT: PREPROC_ENDINSERT -> type(PREPROC_ENDINSERT), channel(HIDDEN);
+
+Async_HASH: HASH -> type(HASH), pushMode(PREPROCESSOR_MODE);
+Async_BAR: BAR -> type(BAR);
+Async_TILDA: TILDA -> type(TILDA), pushMode(LABEL_MODE);
+
+// literals
+Async_DECIMAL: DECIMAL -> type(DECIMAL);
+Async_DATETIME: DATETIME -> type(DATETIME);
+Async_FLOAT: FLOAT -> type(FLOAT);
+Async_STRING: STRING -> type(STRING);
+Async_STRINGSTART: STRINGSTART -> type(STRINGSTART);
+Async_STRINGTAIL: STRINGTAIL -> type(STRINGTAIL);
+Async_STRINGPART: STRINGPART -> type(STRINGPART);
+
+// всегда в конце мода
+Async_IDENTIFIER: LETTER ( LETTER | DIGIT )* { classifyIdentifier(); };
+Async_UNKNOWN: UNKNOWN -> type(UNKNOWN);
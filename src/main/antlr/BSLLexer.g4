@@ -21,6 +21,8 @@
  */
 lexer grammar BSLLexer;
 
+import BSLLexerFragments;
+
 channels {
     // для хранения удаленного блока
     PREPROC_DELETE_CHANNEL
@@ -35,7 +37,6 @@ public BSLLexer(CharStream input, boolean crAwareCostructor) {
 }
 
 // commons
-fragment DIGIT: [0-9];
 LINE_COMMENT: '//' ~[\r\n]* -> channel(HIDDEN);
 WHITE_SPACE: [ \t\f\r\n]+ -> channel(HIDDEN);
 
@@ -87,67 +88,9 @@ PREPROC_ENDINSERT
     ;
 HASH: '#' -> pushMode(PREPROCESSOR_MODE);
 
-fragment SQUOTE: '\'';
 BAR: '|';
 TILDA: '~' -> pushMode(LABEL_MODE);
 
-fragment RU_A: 'А' | 'а';
-fragment RU_B: 'Б' | 'б';
-fragment RU_V: 'В' | 'в';
-fragment RU_G: 'Г' | 'г';
-fragment RU_D: 'Д' | 'д';
-fragment RU_YO: 'Ё' | 'ё';
-fragment RU_E: 'Е' | 'е';
-fragment RU_ZH: 'Ж' | 'ж';
-fragment RU_Z: 'З' | 'з';
-fragment RU_I: 'И' | 'и';
-fragment RU_J: 'Й' | 'й';
-fragment RU_K: 'К' | 'к';
-fragment RU_L: 'Л' | 'л';
-fragment RU_M: 'М' | 'м';
-fragment RU_N: 'Н' | 'н';
-fragment RU_O: 'О' | 'о';
-fragment RU_P: 'П' | 'п';
-fragment RU_R: 'Р' | 'р';
-fragment RU_S: 'С' | 'с';
-fragment RU_T: 'Т' | 'т';
-fragment RU_U: 'У' | 'у';
-fragment RU_F: 'Ф' | 'ф';
-fragment RU_H: 'Х' | 'х';
-fragment RU_C: 'Ц' | 'ц';
-fragment RU_CH: 'Ч' | 'ч';
-fragment RU_SH: 'Ш' | 'ш';
-fragment RU_SCH: 'Щ' | 'щ';
-fragment RU_SOLID_SIGN: 'Ъ' | 'ъ';
-fragment RU_Y: 'Ы' | 'ы';
-fragment RU_SOFT_SIGN: 'Ь' | 'ь';
-fragment RU_EH: 'Э' | 'э';
-fragment RU_YU: 'Ю' | 'ю';
-fragment RU_YA: 'Я' | 'я';
-fragment A: 'A' | 'a';
-fragment B: 'B' | 'b';
-fragment C: 'C' | 'c';
-fragment D: 'D' | 'd';
-fragment I: 'I' | 'i';
-fragment E: 'E' | 'e';
-fragment F: 'F' | 'f';
-fragment G: 'G' | 'g';
-fragment U: 'U' | 'u';
-fragment K: 'K' | 'k';
-fragment L: 'L' | 'l';
-fragment M: 'M' | 'm';
-fragment N: 'N' | 'n';
-fragment O: 'O' | 'o';
-fragment P: 'P' | 'p';
-fragment R: 'R' | 'r';
-fragment S: 'S' | 's';
-fragment T: 'T' | 't';
-fragment V: 'V' | 'v';
-fragment H: 'H' | 'h';
-fragment W: 'W' | 'w';
-fragment X: 'X' | 'x';
-fragment Y: 'Y' | 'y';
-
 // literals
 TRUE
     :
@@ -351,7 +294,6 @@ ASYNC_KEYWORD
     | A S Y N C) -> pushMode(ASYNC_MODE)
     ;
 
-fragment LETTER: [\p{Letter}] | '_';
 IDENTIFIER : LETTER ( LETTER | DIGIT )*;
 
 UNKNOWN: . -> channel(HIDDEN);
@@ -627,7 +569,6 @@ REGION_WHITE_SPACE
 REGION_IDENTIFIER : LETTER ( LETTER | DIGIT )* -> type(PREPROC_IDENTIFIER), popMode;
 
 mode USE_MODE;
-fragment USE_LETTER: [\p{Letter}] | '_' | '-';
 USE_WHITE_SPACE
     : [ \t\f]+
     -> channel(HIDDEN),
@@ -0,0 +1,89 @@
+/**
+ * This file is a part of BSL Parser.
+ *
+ * Copyright © 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+/**
+ * Фрагменты, общие для лексеров BSLLexer и BSLKeywordLexer.
+ *
+ * Грамматика содержит только фрагменты: они не получают типов токенов, поэтому импорт не меняет
+ * порядок правил и нумерацию токенов и режимов BSLLexer. Отдельно грамматика не генерируется.
+ */
+lexer grammar BSLLexerFragments;
+
+fragment DIGIT: [0-9];
+fragment SQUOTE: '\'';
+fragment RU_A: 'А' | 'а';
+fragment RU_B: 'Б' | 'б';
+fragment RU_V: 'В' | 'в';
+fragment RU_G: 'Г' | 'г';
+fragment RU_D: 'Д' | 'д';
+fragment RU_YO: 'Ё' | 'ё';
+fragment RU_E: 'Е' | 'е';
+fragment RU_ZH: 'Ж' | 'ж';
+fragment RU_Z: 'З' | 'з';
+fragment RU_I: 'И' | 'и';
+fragment RU_J: 'Й' | 'й';
+fragment RU_K: 'К' | 'к';
+fragment RU_L: 'Л' | 'л';
+fragment RU_M: 'М' | 'м';
+fragment RU_N: 'Н' | 'н';
+fragment RU_O: 'О' | 'о';
+fragment RU_P: 'П' | 'п';
+fragment RU_R: 'Р' | 'р';
+fragment RU_S: 'С' | 'с';
+fragment RU_T: 'Т' | 'т';
+fragment RU_U: 'У' | 'у';
+fragment RU_F: 'Ф' | 'ф';
+fragment RU_H: 'Х' | 'х';
+fragment RU_C: 'Ц' | 'ц';
+fragment RU_CH: 'Ч' | 'ч';
+fragment RU_SH: 'Ш' | 'ш';
+fragment RU_SCH: 'Щ' | 'щ';
+fragment RU_SOLID_SIGN: 'Ъ' | 'ъ';
+fragment RU_Y: 'Ы' | 'ы';
+fragment RU_SOFT_SIGN: 'Ь' | 'ь';
+fragment RU_EH: 'Э' | 'э';
+fragment RU_YU: 'Ю' | 'ю';
+fragment RU_YA: 'Я' | 'я';
+fragment A: 'A' | 'a';
+fragment B: 'B' | 'b';
+fragment C: 'C' | 'c';
+fragment D: 'D' | 'd';
+fragment I: 'I' | 'i';
+fragment E: 'E' | 'e';
+fragment F: 'F' | 'f';
+fragment G: 'G' | 'g';
+fragment U: 'U' | 'u';
+fragment K: 'K' | 'k';
+fragment L: 'L' | 'l';
+fragment M: 'M' | 'm';
+fragment N: 'N' | 'n';
+fragment O: 'O' | 'o';
+fragment P: 'P' | 'p';
+fragment R: 'R' | 'r';
+fragment S: 'S' | 's';
+fragment T: 'T' | 't';
+fragment V: 'V' | 'v';
+fragment H: 'H' | 'h';
+fragment W: 'W' | 'w';
+fragment X: 'X' | 'x';
+fragment Y: 'Y' | 'y';
+fragment LETTER: [\p{Letter}] | '_';
+fragment USE_LETTER: [\p{Letter}] | '_' | '-';
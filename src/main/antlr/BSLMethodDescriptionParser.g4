@@ -115,4 +115,12 @@ hyperlinkType:
 spitter: SPACE? DASH SPACE?;
 
 hyperlinkBlock: (startPart EOL)* startPart hyperlinkType SPACE? (EOL startPart)*;
-startPart: SPACE? COMMENT SPACE?;
\ No newline at end of file
+startPart: SPACE? COMMENT SPACE?;
+
+// разделы описания для разбора по отдельности, см. BSLMethodDescriptionTokenizer
+deprecateSection: deprecate EOF;
+descriptionBlockSection: descriptionBlock EOF;
+parametersSection: parameters EOF;
+callOptionsSection: callOptions EOF;
+returnsValuesSection: returnsValues EOF;
+examplesSection: examples EOF;
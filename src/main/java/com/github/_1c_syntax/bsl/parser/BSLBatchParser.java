@@ -0,0 +1,470 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.Token;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Пакетный разбор множества модулей BSL, например всех модулей конфигурации.
+ * <p>
+ * Файлы разбираются параллельно на переданном исполнителе (по умолчанию {@link ForkJoinPool#commonPool()}),
+ * начиная с самых больших, чтобы крупный модуль не оказался последним и не оставил остальные ядра без работы.
+ * Результаты передаются обработчику по мере готовности. Число одновременно разбираемых и еще не обработанных
+ * файлов ограничено, поэтому при медленном обработчике отправка новых файлов приостанавливается
+ * и потребление памяти остается ограниченным.
+ * <p>
+ * Лексеры и парсеры переиспользуются задачами одного вызова {@code parse} и не закрепляются за потоками
+ * исполнителя, поэтому после разбора в потоках общего пула не остается ссылок на последние разобранные файлы.
+ * <p>
+ * Перед лексическим анализом содержимое файла хэшируется, и файлы с одинаковым содержимым (без учета BOM),
+ * например скопированные модули форм или библиотеки подсистем в конфигурации и ее расширениях, получают
+ * общие токены и дерево разбора, которые нельзя изменять, а путь и признак повтора у каждого файла свои.
+ * Общий результат переиспользуется, пока он разбирается или обработчик удерживает результат хотя бы одного
+ * из таких файлов; результаты, уже отпущенные обработчиком, не удерживаются до конца вызова, чтобы потребление
+ * памяти оставалось ограниченным, и такое содержимое разбирается заново. Признак повтора от этого не зависит.
+ */
+public final class BSLBatchParser {
+
+  private static final String BSL_EXTENSION = ".bsl";
+
+  private final Executor executor;
+  private final int maxInFlight;
+  private final Predicate<Path> forceLL;
+
+  /**
+   * Создает пакетный парсер на общем пуле {@link ForkJoinPool#commonPool()}
+   */
+  public BSLBatchParser() {
+    this(ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism() * 2);
+  }
+
+  /**
+   * Создает пакетный парсер на переданном исполнителе
+   *
+   * @param executor    Исполнитель задач разбора, например {@link ForkJoinPool} или исполнитель виртуальных потоков
+   * @param maxInFlight Максимальное число файлов, разбираемых или ожидающих обработки одновременно
+   */
+  public BSLBatchParser(Executor executor, int maxInFlight) {
+    this(executor, maxInFlight, path -> false);
+  }
+
+  /**
+   * Создает пакетный парсер на переданном исполнителе с выбором файлов, разбираемых сразу в режиме LL
+   *
+   * @param executor    Исполнитель задач разбора
+   * @param maxInFlight Максимальное число файлов, разбираемых или ожидающих обработки одновременно
+   * @param forceLL     Отбор файлов, которые разбираются без попытки разбора в режиме SLL, например файлов
+   *                    с {@link FileResult#getPredictionFallback()} в предыдущем пакетном разборе
+   */
+  public BSLBatchParser(Executor executor, int maxInFlight, Predicate<Path> forceLL) {
+    requireNonNull(executor);
+    requireNonNull(forceLL);
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be positive");
+    }
+    this.executor = executor;
+    this.maxInFlight = maxInFlight;
+    this.forceLL = forceLL;
+  }
+
+  /**
+   * Разбирает все файлы *.bsl каталога и его подкаталогов
+   *
+   * @param directory Каталог с модулями
+   * @param consumer  Обработчик результатов. Вызывается из потоков исполнителя и должен быть потокобезопасным
+   * @throws IOException          при ошибке обхода каталога
+   * @throws InterruptedException при прерывании ожидающего потока
+   */
+  public void parse(Path directory, Consumer<FileResult> consumer) throws IOException, InterruptedException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      parse(files.filter(BSLBatchParser::isBSLFile), consumer);
+    }
+  }
+
+  /**
+   * Разбирает переданные файлы. Метод возвращает управление после обработки всех результатов.
+   * <p>
+   * Ошибки разбора файла передаются обработчику в {@link FileResult#getException()}. Исключения обработчика
+   * и отбора файлов для режима LL прекращают отправку новых файлов и после завершения уже отправленных
+   * выбрасываются из метода: первое исключение, остальные добавлены к нему как подавленные.
+   *
+   * @param files    Файлы модулей
+   * @param consumer Обработчик результатов. Вызывается из потоков исполнителя и должен быть потокобезопасным
+   * @throws InterruptedException при прерывании ожидающего потока
+   */
+  public void parse(Stream<Path> files, Consumer<FileResult> consumer) throws InterruptedException {
+    requireNonNull(consumer);
+
+    var batch = new Batch(consumer);
+    for (Path file : largestFirst(files)) {
+      if (!batch.failures.isEmpty()) {
+        break;
+      }
+      batch.semaphore.acquire();
+      try {
+        executor.execute(() -> batch.process(file));
+      } catch (RejectedExecutionException e) {
+        batch.semaphore.release();
+        throw e;
+      }
+    }
+
+    batch.await();
+  }
+
+  /**
+   * Возвращает модуль, уже зарегистрированный для содержимого, или регистрирует переданный.
+   * Запись, результат которой больше никем не удерживается, заменяется новой.
+   */
+  private static SharedModule share(Map<String, Reference<SharedModule>> modules,
+                                    String contentHash,
+                                    SharedModule candidate) {
+    while (true) {
+      var reference = modules.putIfAbsent(contentHash, new WeakReference<>(candidate));
+      if (reference == null) {
+        return candidate;
+      }
+      var existing = reference.get();
+      if (existing != null) {
+        return existing;
+      }
+      if (modules.replace(contentHash, reference, new WeakReference<>(candidate))) {
+        return candidate;
+      }
+    }
+  }
+
+  private static String contentHash(ByteBuffer content) {
+    var bytes = content.duplicate();
+    InputCharStreams.skipBOM(bytes);
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    digest.update(bytes);
+
+    var hash = digest.digest();
+    var builder = new StringBuilder(hash.length * 2);
+    for (byte value : hash) {
+      builder.append(Character.forDigit((value >> 4) & 0xF, 16));
+      builder.append(Character.forDigit(value & 0xF, 16));
+    }
+    return builder.toString();
+  }
+
+  private static List<Path> largestFirst(Stream<Path> files) {
+    return files
+      .map(FileSize::new)
+      .sorted(Comparator.comparingLong(FileSize::getSize).reversed())
+      .map(FileSize::getPath)
+      .collect(Collectors.toList());
+  }
+
+  private static boolean isBSLFile(Path path) {
+    return Files.isRegularFile(path)
+      && path.getFileName().toString().toLowerCase().endsWith(BSL_EXTENSION);
+  }
+
+  /**
+   * Состояние одного вызова {@code parse}: ограничение числа файлов в работе, общие результаты
+   * для одинакового содержимого, лексеры и парсеры задач и исключения задач
+   */
+  private final class Batch {
+    private final Consumer<FileResult> consumer;
+    private final Semaphore semaphore = new Semaphore(maxInFlight);
+    private final Map<String, Reference<SharedModule>> modules = new ConcurrentHashMap<>();
+    private final Set<String> contentHashes = ConcurrentHashMap.newKeySet();
+    private final TokenizerPool.Shared tokenizers = new TokenizerPool.Shared();
+    private final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+    private Batch(Consumer<FileResult> consumer) {
+      this.consumer = consumer;
+    }
+
+    /**
+     * Разбирает файл и передает результат обработчику. Разрешение семафора освобождается в любом случае:
+     * сразу при исключении задачи или после обработки результата
+     */
+    private void process(Path file) {
+      CompletableFuture<FileResult> result;
+      try {
+        result = parseFile(file);
+      } catch (Throwable e) {
+        failures.add(e);
+        semaphore.release();
+        return;
+      }
+
+      result.whenComplete((FileResult fileResult, Throwable error) -> {
+        try {
+          if (error == null) {
+            consumer.accept(fileResult);
+          } else {
+            failures.add(error);
+          }
+        } catch (Throwable e) {
+          failures.add(e);
+        } finally {
+          semaphore.release();
+        }
+      });
+    }
+
+    /**
+     * Разбирает файл или, если файл с таким же содержимым уже разобран или разбирается, дожидается
+     * общего результата без блокировки потока исполнителя
+     */
+    private CompletableFuture<FileResult> parseFile(Path file) {
+      ByteBuffer content;
+      String contentHash;
+      try {
+        content = InputCharStreams.read(file);
+        contentHash = contentHash(content);
+      } catch (IOException | RuntimeException e) {
+        return CompletableFuture.completedFuture(new FileResult(file, null, false, SharedModule.failed(e)));
+      }
+
+      // отбор вычисляется до регистрации модуля, чтобы его исключение не оставило модуль незавершенным
+      var ll = forceLL.test(file);
+      var candidate = new SharedModule();
+      var module = share(modules, contentHash, candidate);
+      if (module == candidate) {
+        module.parse(tokenizers, content, file.toString(), ll);
+      }
+      var duplicate = !contentHashes.add(contentHash);
+      return module.parsed.thenApply(parsed -> new FileResult(file, contentHash, duplicate, parsed));
+    }
+
+    /**
+     * Дожидается завершения всех отправленных задач и выбрасывает исключения задач, если они были
+     */
+    private void await() throws InterruptedException {
+      semaphore.acquire(maxInFlight);
+      semaphore.release(maxInFlight);
+
+      var failure = failures.poll();
+      if (failure == null) {
+        return;
+      }
+      for (var other : failures) {
+        if (other != failure) {
+          failure.addSuppressed(other);
+        }
+      }
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      throw new CompletionException(failure);
+    }
+  }
+
+  /**
+   * Результат разбора одного файла
+   */
+  public static final class FileResult {
+    /**
+     * Путь к файлу
+     */
+    private final Path path;
+    /**
+     * Хэш SHA-256 содержимого файла без BOM
+     */
+    @Nullable
+    private final String contentHash;
+    /**
+     * Признак файла, содержимое которого уже встречалось в этом вызове {@code parse}
+     */
+    private final boolean duplicate;
+    /**
+     * Результат разбора, общий для файлов с одинаковым содержимым
+     */
+    private final SharedModule module;
+
+    private FileResult(Path path, @Nullable String contentHash, boolean duplicate, SharedModule module) {
+      this.path = path;
+      this.contentHash = contentHash;
+      this.duplicate = duplicate;
+      this.module = module;
+    }
+
+    public Path getPath() {
+      return path;
+    }
+
+    /**
+     * Хэш содержимого файла, по которому файлы с одинаковым текстом получают общий результат разбора
+     *
+     * @return Хэш SHA-256 в шестнадцатеричном виде или {@code null}, если файл не удалось прочитать
+     */
+    @Nullable
+    public String getContentHash() {
+      return contentHash;
+    }
+
+    /**
+     * @return {@code true}, если в этом вызове {@code parse} уже встречался файл с таким же содержимым.
+     * Результат разбора такого файла общий с ранее встреченным, если тот еще удерживается
+     */
+    public boolean isDuplicate() {
+      return duplicate;
+    }
+
+    /**
+     * Токены файла. Список общий для файлов с одинаковым содержимым и не может быть изменен.
+     *
+     * @return Токены файла
+     */
+    public List<Token> getTokens() {
+      return module.tokens;
+    }
+
+    /**
+     * Дерево разбора файла. Дерево общее для файлов с одинаковым содержимым и не должно изменяться.
+     *
+     * @return Дерево разбора или {@code null} при ошибке
+     */
+    @Nullable
+    public BSLParser.FileContext getAst() {
+      return module.ast;
+    }
+
+    @Nullable
+    public PredictionFallback getPredictionFallback() {
+      return module.predictionFallback;
+    }
+
+    /**
+     * @return Исключение чтения или разбора файла или {@code null} при успешном разборе
+     */
+    @Nullable
+    public Throwable getException() {
+      return module.exception;
+    }
+
+    public boolean isSuccessful() {
+      return module.exception == null;
+    }
+  }
+
+  /**
+   * Результат разбора содержимого, общий для всех файлов с этим содержимым.
+   * Поля заполняются до завершения {@link #parsed} и после этого не изменяются.
+   */
+  private static final class SharedModule {
+    private final CompletableFuture<SharedModule> parsed = new CompletableFuture<>();
+    private List<Token> tokens = List.of();
+    @Nullable
+    private BSLParser.FileContext ast;
+    @Nullable
+    private PredictionFallback predictionFallback;
+    @Nullable
+    private Throwable exception;
+
+    private static SharedModule failed(Throwable exception) {
+      var module = new SharedModule();
+      module.exception = exception;
+      module.parsed.complete(module);
+      return module;
+    }
+
+    private void parse(TokenizerPool.Shared tokenizers, ByteBuffer content, String sourceName, boolean forceLL) {
+      try {
+        tokenizers.withBSLTokenizer(content, sourceName, (BSLTokenizer tokenizer) -> {
+          tokenizer.setForceLL(forceLL);
+          ast = tokenizer.getAst();
+          tokens = Collections.unmodifiableList(tokenizer.getTokens());
+          predictionFallback = tokenizer.getPredictionFallback();
+        });
+      } catch (Throwable e) {
+        // в том числе StackOverflowError на глубоко вложенном коде: ожидающие дубликаты должны получить результат
+        ast = null;
+        exception = e;
+      } finally {
+        parsed.complete(this);
+      }
+    }
+  }
+
+  /**
+   * Путь к файлу с его размером, вычисленным один раз для сортировки
+   */
+  private static final class FileSize {
+    private final Path path;
+    private final long size;
+
+    private FileSize(Path path) {
+      this.path = path;
+      this.size = sizeOf(path);
+    }
+
+    private Path getPath() {
+      return path;
+    }
+
+    private long getSize() {
+      return size;
+    }
+
+    private static long sizeOf(Path path) {
+      try {
+        return Files.size(path);
+      } catch (IOException e) {
+        return 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,375 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.Token;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Таблицы ключевых слов BSL для {@link BSLKeywordLexer} и {@link FastBSLLexer}.
+ * <p>
+ * Слова хранятся в верхнем регистре в открытой таблице с совершенным хэшированием: множитель хэш-функции
+ * подбирается при загрузке класса так, чтобы у всех слов таблицы были разные ячейки. Поэтому поиск идентификатора
+ * - один проход по его символам для вычисления хэша и одно сравнение со словом найденной ячейки.
+ * Регистр приводится только у латинских и русских букв, как во фрагментах {@code A: 'A' | 'a'} и
+ * {@code RU_A: 'А' | 'а'} грамматики {@code BSLLexer}.
+ */
+final class BSLKeywords {
+
+  /**
+   * Ключевые слова и литералы основного режима и режима {@code ASYNC_MODE}
+   */
+  private static final char[] UPPER_CASE = upperCaseTable();
+
+  static final BSLKeywords CODE = new BSLKeywords(codeKeywords());
+  /**
+   * Ключевые слова и символы режима {@code PREPROCESSOR_MODE}
+   */
+  static final BSLKeywords PREPROCESSOR = new BSLKeywords(preprocessorKeywords());
+  /**
+   * Символы аннотаций режима {@code ANNOTATION_MODE}
+   */
+  static final BSLKeywords ANNOTATION = new BSLKeywords(annotationKeywords());
+
+  private final int tableBits;
+  private final String[] words;
+  private final int[] types;
+  private final int maxLength;
+  private final int multiplier;
+
+  private BSLKeywords(Map<String, Integer> keywords) {
+    tableBits = Integer.SIZE - Integer.numberOfLeadingZeros(keywords.size() * 8);
+    var tableSize = 1 << tableBits;
+    words = new String[tableSize];
+    types = new int[tableSize];
+    multiplier = findMultiplier(keywords.keySet());
+
+    var length = 0;
+    for (Map.Entry<String, Integer> keyword : keywords.entrySet()) {
+      var word = keyword.getKey();
+      var slot = slot(hash(word), multiplier);
+      words[slot] = word;
+      types[slot] = keyword.getValue();
+      length = Math.max(length, word.length());
+    }
+    maxLength = length;
+  }
+
+  /**
+   * Определяет тип ключевого слова или литерала основного режима, только что прочитанного из потока символов
+   *
+   * @param input  Поток символов, позиция которого находится сразу за словом
+   * @param length Длина слова в символах
+   * @return Тип токена или {@link Token#INVALID_TYPE}, если слово не является ключевым
+   */
+  static int keywordType(IntStream input, int length) {
+    return CODE.typeOf(input, length);
+  }
+
+  /**
+   * Определяет тип слова, только что прочитанного из потока символов
+   *
+   * @param input  Поток символов, позиция которого находится сразу за словом
+   * @param length Длина слова в символах
+   * @return Тип токена или {@link Token#INVALID_TYPE}, если слова нет в таблице
+   */
+  int typeOf(IntStream input, int length) {
+    if (length > maxLength) {
+      return Token.INVALID_TYPE;
+    }
+    var hash = 0;
+    for (var i = -length; i < 0; i++) {
+      hash = hash * 31 + toUpperCase(input.LA(i));
+    }
+    var slot = slot(hash, multiplier);
+    var word = words[slot];
+    if (word == null || word.length() != length) {
+      return Token.INVALID_TYPE;
+    }
+    for (var i = 0; i < length; i++) {
+      if (word.charAt(i) != toUpperCase(input.LA(i - length))) {
+        return Token.INVALID_TYPE;
+      }
+    }
+    return types[slot];
+  }
+
+  /**
+   * Определяет тип слова в массиве кодовых точек
+   *
+   * @param text  Кодовые точки текста
+   * @param start Индекс первого символа слова
+   * @param end   Индекс, следующий за последним символом слова
+   * @return Тип токена или {@link Token#INVALID_TYPE}, если слова нет в таблице
+   */
+  int typeOf(int[] text, int start, int end) {
+    var length = end - start;
+    if (length > maxLength) {
+      return Token.INVALID_TYPE;
+    }
+    var hash = 0;
+    for (var i = start; i < end; i++) {
+      hash = hash * 31 + toUpperCase(text[i]);
+    }
+    var slot = slot(hash, multiplier);
+    var word = words[slot];
+    if (word == null || word.length() != length) {
+      return Token.INVALID_TYPE;
+    }
+    for (var i = 0; i < length; i++) {
+      if (word.charAt(i) != toUpperCase(text[start + i])) {
+        return Token.INVALID_TYPE;
+      }
+    }
+    return types[slot];
+  }
+
+  /**
+   * Приводит к верхнему регистру латинские и русские буквы, остальные символы не изменяются
+   *
+   * @param c Кодовая точка
+   * @return Кодовая точка в верхнем регистре
+   */
+  static int toUpperCase(int c) {
+    return c < UPPER_CASE.length ? UPPER_CASE[c] : c;
+  }
+
+
+  private static char[] upperCaseTable() {
+    var table = new char['ё' + 1];
+    for (var c = 0; c < table.length; c++) {
+      table[c] = (char) c;
+    }
+    for (var c = 'a'; c <= 'z'; c++) {
+      table[c] = (char) (c - ('a' - 'A'));
+    }
+    for (var c = 'а'; c <= 'я'; c++) {
+      table[c] = (char) (c - ('а' - 'А'));
+    }
+    table['ё'] = 'Ё';
+    return table;
+  }
+
+  private static int hash(String word) {
+    var hash = 0;
+    for (var i = 0; i < word.length(); i++) {
+      hash = hash * 31 + word.charAt(i);
+    }
+    return hash;
+  }
+
+  private int slot(int hash, int multiplier) {
+    return (hash * multiplier) >>> (Integer.SIZE - tableBits);
+  }
+
+  /**
+   * Подбирает нечетный множитель, при котором хэши всех слов попадают в разные ячейки
+   */
+  private int findMultiplier(Set<String> keywords) {
+    var used = new boolean[words.length];
+    for (var candidate = 0x9E3779B1; ; candidate += 2) {
+      Arrays.fill(used, false);
+      if (isPerfect(keywords, candidate, used)) {
+        return candidate;
+      }
+    }
+  }
+
+  private boolean isPerfect(Set<String> keywords, int candidate, boolean[] used) {
+    for (String word : keywords) {
+      var slot = slot(hash(word), candidate);
+      if (used[slot]) {
+        return false;
+      }
+      used[slot] = true;
+    }
+    return true;
+  }
+
+  private static Map<String, Integer> codeKeywords() {
+    var keywords = new HashMap<String, Integer>();
+    keywords.put("ИСТИНА", BSLLexer.TRUE);
+    keywords.put("TRUE", BSLLexer.TRUE);
+    keywords.put("ЛОЖЬ", BSLLexer.FALSE);
+    keywords.put("FALSE", BSLLexer.FALSE);
+    keywords.put("НЕОПРЕДЕЛЕНО", BSLLexer.UNDEFINED);
+    keywords.put("UNDEFINED", BSLLexer.UNDEFINED);
+    keywords.put("NULL", BSLLexer.NULL);
+    keywords.put("ПРОЦЕДУРА", BSLLexer.PROCEDURE_KEYWORD);
+    keywords.put("PROCEDURE", BSLLexer.PROCEDURE_KEYWORD);
+    keywords.put("ФУНКЦИЯ", BSLLexer.FUNCTION_KEYWORD);
+    keywords.put("FUNCTION", BSLLexer.FUNCTION_KEYWORD);
+    keywords.put("КОНЕЦПРОЦЕДУРЫ", BSLLexer.ENDPROCEDURE_KEYWORD);
+    keywords.put("ENDPROCEDURE", BSLLexer.ENDPROCEDURE_KEYWORD);
+    keywords.put("КОНЕЦФУНКЦИИ", BSLLexer.ENDFUNCTION_KEYWORD);
+    keywords.put("ENDFUNCTION", BSLLexer.ENDFUNCTION_KEYWORD);
+    keywords.put("ЭКСПОРТ", BSLLexer.EXPORT_KEYWORD);
+    keywords.put("EXPORT", BSLLexer.EXPORT_KEYWORD);
+    keywords.put("ЗНАЧ", BSLLexer.VAL_KEYWORD);
+    keywords.put("VAL", BSLLexer.VAL_KEYWORD);
+    keywords.put("КОНЕЦЕСЛИ", BSLLexer.ENDIF_KEYWORD);
+    keywords.put("ENDIF", BSLLexer.ENDIF_KEYWORD);
+    keywords.put("КОНЕЦЦИКЛА", BSLLexer.ENDDO_KEYWORD);
+    keywords.put("ENDDO", BSLLexer.ENDDO_KEYWORD);
+    keywords.put("ЕСЛИ", BSLLexer.IF_KEYWORD);
+    keywords.put("IF", BSLLexer.IF_KEYWORD);
+    keywords.put("ИНАЧЕЕСЛИ", BSLLexer.ELSIF_KEYWORD);
+    keywords.put("ELSIF", BSLLexer.ELSIF_KEYWORD);
+    keywords.put("ИНАЧЕ", BSLLexer.ELSE_KEYWORD);
+    keywords.put("ELSE", BSLLexer.ELSE_KEYWORD);
+    keywords.put("ТОГДА", BSLLexer.THEN_KEYWORD);
+    keywords.put("THEN", BSLLexer.THEN_KEYWORD);
+    keywords.put("ПОКА", BSLLexer.WHILE_KEYWORD);
+    keywords.put("WHILE", BSLLexer.WHILE_KEYWORD);
+    keywords.put("ЦИКЛ", BSLLexer.DO_KEYWORD);
+    keywords.put("DO", BSLLexer.DO_KEYWORD);
+    keywords.put("ДЛЯ", BSLLexer.FOR_KEYWORD);
+    keywords.put("FOR", BSLLexer.FOR_KEYWORD);
+    keywords.put("ПО", BSLLexer.TO_KEYWORD);
+    keywords.put("TO", BSLLexer.TO_KEYWORD);
+    keywords.put("КАЖДОГО", BSLLexer.EACH_KEYWORD);
+    keywords.put("EACH", BSLLexer.EACH_KEYWORD);
+    keywords.put("ИЗ", BSLLexer.IN_KEYWORD);
+    keywords.put("IN", BSLLexer.IN_KEYWORD);
+    keywords.put("ПОПЫТКА", BSLLexer.TRY_KEYWORD);
+    keywords.put("TRY", BSLLexer.TRY_KEYWORD);
+    keywords.put("ИСКЛЮЧЕНИЕ", BSLLexer.EXCEPT_KEYWORD);
+    keywords.put("EXCEPT", BSLLexer.EXCEPT_KEYWORD);
+    keywords.put("КОНЕЦПОПЫТКИ", BSLLexer.ENDTRY_KEYWORD);
+    keywords.put("ENDTRY", BSLLexer.ENDTRY_KEYWORD);
+    keywords.put("ВОЗВРАТ", BSLLexer.RETURN_KEYWORD);
+    keywords.put("RETURN", BSLLexer.RETURN_KEYWORD);
+    keywords.put("ПРОДОЛЖИТЬ", BSLLexer.CONTINUE_KEYWORD);
+    keywords.put("CONTINUE", BSLLexer.CONTINUE_KEYWORD);
+    keywords.put("ВЫЗВАТЬИСКЛЮЧЕНИЕ", BSLLexer.RAISE_KEYWORD);
+    keywords.put("RAISE", BSLLexer.RAISE_KEYWORD);
+    keywords.put("ПЕРЕМ", BSLLexer.VAR_KEYWORD);
+    keywords.put("VAR", BSLLexer.VAR_KEYWORD);
+    keywords.put("НЕ", BSLLexer.NOT_KEYWORD);
+    keywords.put("NOT", BSLLexer.NOT_KEYWORD);
+    keywords.put("ИЛИ", BSLLexer.OR_KEYWORD);
+    keywords.put("OR", BSLLexer.OR_KEYWORD);
+    keywords.put("И", BSLLexer.AND_KEYWORD);
+    keywords.put("AND", BSLLexer.AND_KEYWORD);
+    keywords.put("НОВЫЙ", BSLLexer.NEW_KEYWORD);
+    keywords.put("NEW", BSLLexer.NEW_KEYWORD);
+    keywords.put("ПЕРЕЙТИ", BSLLexer.GOTO_KEYWORD);
+    keywords.put("GOTO", BSLLexer.GOTO_KEYWORD);
+    keywords.put("ПРЕРВАТЬ", BSLLexer.BREAK_KEYWORD);
+    keywords.put("BREAK", BSLLexer.BREAK_KEYWORD);
+    keywords.put("ВЫПОЛНИТЬ", BSLLexer.EXECUTE_KEYWORD);
+    keywords.put("EXECUTE", BSLLexer.EXECUTE_KEYWORD);
+    keywords.put("ДОБАВИТЬОБРАБОТЧИК", BSLLexer.ADDHANDLER_KEYWORD);
+    keywords.put("ADDHANDLER", BSLLexer.ADDHANDLER_KEYWORD);
+    keywords.put("УДАЛИТЬОБРАБОТЧИК", BSLLexer.REMOVEHANDLER_KEYWORD);
+    keywords.put("REMOVEHANDLER", BSLLexer.REMOVEHANDLER_KEYWORD);
+    keywords.put("АСИНХ", BSLLexer.ASYNC_KEYWORD);
+    keywords.put("ASYNC", BSLLexer.ASYNC_KEYWORD);
+    keywords.put("ЖДАТЬ", BSLLexer.AWAIT_KEYWORD);
+    keywords.put("AWAIT", BSLLexer.AWAIT_KEYWORD);
+    return keywords;
+  }
+
+  private static Map<String, Integer> preprocessorKeywords() {
+    var keywords = new HashMap<String, Integer>();
+    keywords.put("ИСПОЛЬЗОВАТЬ", BSLLexer.PREPROC_USE_KEYWORD);
+    keywords.put("USE", BSLLexer.PREPROC_USE_KEYWORD);
+    keywords.put("ОБЛАСТЬ", BSLLexer.PREPROC_REGION);
+    keywords.put("REGION", BSLLexer.PREPROC_REGION);
+    keywords.put("КОНЕЦОБЛАСТИ", BSLLexer.PREPROC_END_REGION);
+    keywords.put("ENDREGION", BSLLexer.PREPROC_END_REGION);
+    keywords.put("НЕ", BSLLexer.PREPROC_NOT_KEYWORD);
+    keywords.put("NOT", BSLLexer.PREPROC_NOT_KEYWORD);
+    keywords.put("ИЛИ", BSLLexer.PREPROC_OR_KEYWORD);
+    keywords.put("OR", BSLLexer.PREPROC_OR_KEYWORD);
+    keywords.put("И", BSLLexer.PREPROC_AND_KEYWORD);
+    keywords.put("AND", BSLLexer.PREPROC_AND_KEYWORD);
+    keywords.put("ЕСЛИ", BSLLexer.PREPROC_IF_KEYWORD);
+    keywords.put("IF", BSLLexer.PREPROC_IF_KEYWORD);
+    keywords.put("ТОГДА", BSLLexer.PREPROC_THEN_KEYWORD);
+    keywords.put("THEN", BSLLexer.PREPROC_THEN_KEYWORD);
+    keywords.put("ИНАЧЕЕСЛИ", BSLLexer.PREPROC_ELSIF_KEYWORD);
+    keywords.put("ELSIF", BSLLexer.PREPROC_ELSIF_KEYWORD);
+    keywords.put("КОНЕЦЕСЛИ", BSLLexer.PREPROC_ENDIF_KEYWORD);
+    keywords.put("ENDIF", BSLLexer.PREPROC_ENDIF_KEYWORD);
+    keywords.put("ИНАЧЕ", BSLLexer.PREPROC_ELSE_KEYWORD);
+    keywords.put("ELSE", BSLLexer.PREPROC_ELSE_KEYWORD);
+    keywords.put("МОБИЛЬНОЕПРИЛОЖЕНИЕКЛИЕНТ", BSLLexer.PREPROC_MOBILEAPPCLIENT_SYMBOL);
+    keywords.put("MOBILEAPPCLIENT", BSLLexer.PREPROC_MOBILEAPPCLIENT_SYMBOL);
+    keywords.put("МОБИЛЬНОЕПРИЛОЖЕНИЕСЕРВЕР", BSLLexer.PREPROC_MOBILEAPPSERVER_SYMBOL);
+    keywords.put("MOBILEAPPSERVER", BSLLexer.PREPROC_MOBILEAPPSERVER_SYMBOL);
+    keywords.put("МОБИЛЬНЫЙКЛИЕНТ", BSLLexer.PREPROC_MOBILECLIENT_SYMBOL);
+    keywords.put("MOBILECLIENT", BSLLexer.PREPROC_MOBILECLIENT_SYMBOL);
+    keywords.put("ТОЛСТЫЙКЛИЕНТОБЫЧНОЕПРИЛОЖЕНИЕ", BSLLexer.PREPROC_THICKCLIENTORDINARYAPPLICATION_SYMBOL);
+    keywords.put("THICKCLIENTORDINARYAPPLICATION", BSLLexer.PREPROC_THICKCLIENTORDINARYAPPLICATION_SYMBOL);
+    keywords.put("ТОЛСТЫЙКЛИЕНТУПРАВЛЯЕМОЕПРИЛОЖЕНИЕ", BSLLexer.PREPROC_THICKCLIENTMANAGEDAPPLICATION_SYMBOL);
+    keywords.put("THICKCLIENTMANAGEDAPPLICATION", BSLLexer.PREPROC_THICKCLIENTMANAGEDAPPLICATION_SYMBOL);
+    keywords.put("ВНЕШНЕЕСОЕДИНЕНИЕ", BSLLexer.PREPROC_EXTERNALCONNECTION_SYMBOL);
+    keywords.put("EXTERNALCONNECTION", BSLLexer.PREPROC_EXTERNALCONNECTION_SYMBOL);
+    keywords.put("ТОНКИЙКЛИЕНТ", BSLLexer.PREPROC_THINCLIENT_SYMBOL);
+    keywords.put("THINCLIENT", BSLLexer.PREPROC_THINCLIENT_SYMBOL);
+    keywords.put("ВЕБКЛИЕНТ", BSLLexer.PREPROC_WEBCLIENT_SYMBOL);
+    keywords.put("WEBCLIENT", BSLLexer.PREPROC_WEBCLIENT_SYMBOL);
+    keywords.put("НАКЛИЕНТЕ", BSLLexer.PREPROC_ATCLIENT_SYMBOL);
+    keywords.put("ATCLIENT", BSLLexer.PREPROC_ATCLIENT_SYMBOL);
+    keywords.put("КЛИЕНТ", BSLLexer.PREPROC_CLIENT_SYMBOL);
+    keywords.put("CLIENT", BSLLexer.PREPROC_CLIENT_SYMBOL);
+    keywords.put("НАСЕРВЕРЕ", BSLLexer.PREPROC_ATSERVER_SYMBOL);
+    keywords.put("ATSERVER", BSLLexer.PREPROC_ATSERVER_SYMBOL);
+    keywords.put("СЕРВЕР", BSLLexer.PREPROC_SERVER_SYMBOL);
+    keywords.put("SERVER", BSLLexer.PREPROC_SERVER_SYMBOL);
+    keywords.put("МОБИЛЬНЫЙАВТОНОМНЫЙСЕРВЕР", BSLLexer.PREPROC_MOBILE_STANDALONE_SERVER);
+    keywords.put("MOBILESTANDALONESERVER", BSLLexer.PREPROC_MOBILE_STANDALONE_SERVER);
+    keywords.put("LINUX", BSLLexer.PREPROC_LINUX);
+    keywords.put("WINDOWS", BSLLexer.PREPROC_WINDOWS);
+    keywords.put("MACOS", BSLLexer.PREPROC_MACOS);
+    return keywords;
+  }
+
+  private static Map<String, Integer> annotationKeywords() {
+    var keywords = new HashMap<String, Integer>();
+    keywords.put("НАСЕРВЕРЕБЕЗКОНТЕКСТА", BSLLexer.ANNOTATION_ATSERVERNOCONTEXT_SYMBOL);
+    keywords.put("ATSERVERNOCONTEXT", BSLLexer.ANNOTATION_ATSERVERNOCONTEXT_SYMBOL);
+    keywords.put("НАКЛИЕНТЕНАСЕРВЕРЕБЕЗКОНТЕКСТА", BSLLexer.ANNOTATION_ATCLIENTATSERVERNOCONTEXT_SYMBOL);
+    keywords.put("ATCLIENTATSERVERNOCONTEXT", BSLLexer.ANNOTATION_ATCLIENTATSERVERNOCONTEXT_SYMBOL);
+    keywords.put("НАКЛИЕНТЕНАСЕРВЕРЕ", BSLLexer.ANNOTATION_ATCLIENTATSERVER_SYMBOL);
+    keywords.put("ATCLIENTATSERVER", BSLLexer.ANNOTATION_ATCLIENTATSERVER_SYMBOL);
+    keywords.put("НАКЛИЕНТЕ", BSLLexer.ANNOTATION_ATCLIENT_SYMBOL);
+    keywords.put("ATCLIENT", BSLLexer.ANNOTATION_ATCLIENT_SYMBOL);
+    keywords.put("НАСЕРВЕРЕ", BSLLexer.ANNOTATION_ATSERVER_SYMBOL);
+    keywords.put("ATSERVER", BSLLexer.ANNOTATION_ATSERVER_SYMBOL);
+    keywords.put("ПЕРЕД", BSLLexer.ANNOTATION_BEFORE_SYMBOL);
+    keywords.put("BEFORE", BSLLexer.ANNOTATION_BEFORE_SYMBOL);
+    keywords.put("ПОСЛЕ", BSLLexer.ANNOTATION_AFTER_SYMBOL);
+    keywords.put("AFTER", BSLLexer.ANNOTATION_AFTER_SYMBOL);
+    keywords.put("ВМЕСТО", BSLLexer.ANNOTATION_AROUND_SYMBOL);
+    keywords.put("AROUND", BSLLexer.ANNOTATION_AROUND_SYMBOL);
+    keywords.put("ИЗМЕНЕНИЕИКОНТРОЛЬ", BSLLexer.ANNOTATION_CHANGEANDVALIDATE_SYMBOL);
+    keywords.put("CHANGEANDVALIDATE", BSLLexer.ANNOTATION_CHANGEANDVALIDATE_SYMBOL);
+    return keywords;
+  }
+}
@@ -22,14 +22,62 @@
 package com.github._1c_syntax.bsl.parser;
 
 import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Token;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class BSLMethodDescriptionTokenizer extends Tokenizer<BSLMethodDescriptionParser.MethodDescriptionContext, BSLMethodDescriptionParser> {
   public BSLMethodDescriptionTokenizer(String content) {
-    super(content + "\n", new BSLMethodDescriptionLexer(CharStreams.fromString(""), true), BSLMethodDescriptionParser.class);
+    super(content + "\n", new BSLMethodDescriptionLexer(CharStreams.fromString(""), true), BSLMethodDescriptionParser::new);
+  }
+
+  /**
+   * Создает токенизатор описания, состоящего из токенов комментариев модуля.
+   * <p>
+   * Текст описания не собирается в строку: лексер читает его прямо из потока символов модуля,
+   * а токены описания имеют координаты модуля. Если токены не ссылаются на общий поток символов,
+   * описанием считаются тексты токенов, соединенные переводом строки.
+   *
+   * @param comments Токены комментариев описания
+   */
+  public BSLMethodDescriptionTokenizer(List<? extends Token> comments) {
+    this(comments, CommentCharStream.of(comments));
+  }
+
+  private BSLMethodDescriptionTokenizer(List<? extends Token> comments, @Nullable CommentCharStream content) {
+    super(
+      content == null ? stringInput(joinedText(comments)) : () -> content,
+      lexerSupplier(content),
+      BSLMethodDescriptionParser::new
+    );
   }
 
+  /**
+   * Описание разбирается по разделам, каждый раздел - своим правилом,
+   * см. {@link MethodDescriptionSections}.
+   */
   @Override
   protected BSLMethodDescriptionParser.MethodDescriptionContext rootAST() {
-    return parser.methodDescription();
+    return MethodDescriptionSections.parse(parser);
+  }
+
+  private static String joinedText(List<? extends Token> comments) {
+    return comments.stream()
+      .map(Token::getText)
+      .collect(Collectors.joining("\n", "", "\n"));
+  }
+
+  private static Supplier<Lexer> lexerSupplier(@Nullable CommentCharStream content) {
+    return () -> {
+      var lexer = new BSLMethodDescriptionLexer(CharStreams.fromString(""), true);
+      if (content != null) {
+        lexer.setTokenFactory(content.tokenFactory());
+      }
+      return lexer;
+    };
   }
 }
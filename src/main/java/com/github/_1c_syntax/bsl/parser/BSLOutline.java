@@ -0,0 +1,361 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import com.github._1c_syntax.utils.Lazy;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.atn.RuleTransition;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Структура модуля BSL: объявления методов без разбора их тел.
+ * <p>
+ * Для каждого метода разбирается только объявление ({@code procDeclaration} или {@code funcDeclaration})
+ * вместе с предшествующими аннотациями, директивами компиляции, инструкциями препроцессора
+ * и ключевым словом {@code Асинх}, так же как в полном дереве.
+ * Тело метода пропускается поиском ключевого слова {@code КонецПроцедуры} или {@code КонецФункции}
+ * и разбирается в {@code subCodeBlock} только при первом обращении к {@link SubOutline#getSubCodeBlock()}.
+ * <p>
+ * Инструкции препроцессора перед первым методом, как и в полном дереве, относятся к коду модуля,
+ * а не к объявлению метода.
+ * <p>
+ * Объявления и тела разбираются так же, как полное дерево в {@link Tokenizer}: сначала в режиме SLL
+ * с прерыванием на первой ошибке, затем при ошибке заново в режиме LL с восстановлением после ошибок.
+ * Правило разбирается внутри цепочки родительских контекстов {@code file}, {@code subs}, {@code sub}
+ * и {@code procedure} или {@code function} с теми же состояниями вызова, что и в полном дереве, поэтому
+ * полноконтекстное предсказание и восстановление после ошибок учитывают то же окружение.
+ */
+public final class BSLOutline {
+
+  private static final BitSet ANNOTATION_SYMBOLS = new BitSet();
+
+  static {
+    ANNOTATION_SYMBOLS.set(BSLLexer.ANNOTATION_ATSERVERNOCONTEXT_SYMBOL);
+    ANNOTATION_SYMBOLS.set(BSLLexer.ANNOTATION_ATCLIENTATSERVERNOCONTEXT_SYMBOL);
+    ANNOTATION_SYMBOLS.set(BSLLexer.ANNOTATION_ATCLIENTATSERVER_SYMBOL);
+    ANNOTATION_SYMBOLS.set(BSLLexer.ANNOTATION_ATCLIENT_SYMBOL);
+    ANNOTATION_SYMBOLS.set(BSLLexer.ANNOTATION_ATSERVER_SYMBOL);
+    ANNOTATION_SYMBOLS.set(BSLLexer.ANNOTATION_BEFORE_SYMBOL);
+    ANNOTATION_SYMBOLS.set(BSLLexer.ANNOTATION_AFTER_SYMBOL);
+    ANNOTATION_SYMBOLS.set(BSLLexer.ANNOTATION_AROUND_SYMBOL);
+    ANNOTATION_SYMBOLS.set(BSLLexer.ANNOTATION_CHANGEANDVALIDATE_SYMBOL);
+    ANNOTATION_SYMBOLS.set(BSLLexer.ANNOTATION_CUSTOM_SYMBOL);
+  }
+
+  private static final int SUBS_IN_FILE = invokingState(BSLParser.RULE_file, BSLParser.RULE_subs);
+  private static final int SUB_IN_SUBS = invokingState(BSLParser.RULE_subs, BSLParser.RULE_sub);
+  private static final int PROCEDURE_IN_SUB = invokingState(BSLParser.RULE_sub, BSLParser.RULE_procedure);
+  private static final int FUNCTION_IN_SUB = invokingState(BSLParser.RULE_sub, BSLParser.RULE_function);
+
+  private final CommonTokenStream tokenStream;
+  private final OutlineParser parser;
+  private final List<SubOutline> subs;
+
+  BSLOutline(CommonTokenStream tokenStream, OutlineParser parser) {
+    this.tokenStream = tokenStream;
+    this.parser = parser;
+    this.subs = Collections.unmodifiableList(computeSubs());
+  }
+
+  /**
+   * @return Методы модуля в порядке следования
+   */
+  public List<SubOutline> getSubs() {
+    return subs;
+  }
+
+  private List<SubOutline> computeSubs() {
+    List<Token> tokens = tokenStream.getTokens();
+    var defaultTokens = new ArrayList<Token>();
+    for (var token : tokens) {
+      if (token.getChannel() == Token.DEFAULT_CHANNEL && token.getType() != Token.EOF) {
+        defaultTokens.add(token);
+      }
+    }
+
+    var keywords = new ArrayList<Integer>();
+    for (var i = 0; i < defaultTokens.size(); i++) {
+      var type = defaultTokens.get(i).getType();
+      if (type == BSLLexer.PROCEDURE_KEYWORD || type == BSLLexer.FUNCTION_KEYWORD) {
+        keywords.add(i);
+      }
+    }
+
+    var result = new ArrayList<SubOutline>(keywords.size());
+    var nextStart = defaultTokens.size();
+    var starts = new int[keywords.size()];
+    for (var k = keywords.size() - 1; k >= 0; k--) {
+      starts[k] = declarationStart(defaultTokens, keywords.get(k), k > 0);
+    }
+    for (var k = 0; k < keywords.size(); k++) {
+      var keyword = keywords.get(k);
+      var limit = k + 1 < keywords.size() ? starts[k + 1] : nextStart;
+      result.add(parseSub(defaultTokens, starts[k], keyword, limit));
+    }
+    return result;
+  }
+
+  private SubOutline parseSub(List<Token> defaultTokens, int start, int keyword, int limit) {
+    var isFunction = defaultTokens.get(keyword).getType() == BSLLexer.FUNCTION_KEYWORD;
+
+    ParserRuleContext declaration = isFunction
+      ? parse(defaultTokens.get(start).getTokenIndex(), true, BSLParser.RULE_funcDeclaration, parser::funcDeclaration)
+      : parse(defaultTokens.get(start).getTokenIndex(), false, BSLParser.RULE_procDeclaration, parser::procDeclaration);
+
+    var endType = isFunction ? BSLLexer.ENDFUNCTION_KEYWORD : BSLLexer.ENDPROCEDURE_KEYWORD;
+    Token endToken = null;
+    var bodyStart = declaration.getStop() == null
+      ? defaultTokens.get(keyword).getTokenIndex() + 1
+      : declaration.getStop().getTokenIndex() + 1;
+    for (var i = keyword + 1; i < limit; i++) {
+      var token = defaultTokens.get(i);
+      if (token.getType() == endType && token.getTokenIndex() >= bodyStart) {
+        endToken = token;
+        break;
+      }
+    }
+
+    return new SubOutline(declaration, isFunction, bodyStart, endToken);
+  }
+
+  /**
+   * Ищет начало объявления метода, двигаясь от ключевого слова назад
+   * через {@code Асинх}, директивы компиляции, аннотации с параметрами и строки препроцессора
+   */
+  private static int declarationStart(List<Token> tokens, int keyword, boolean withPreprocessor) {
+    var start = keyword;
+    if (start > 0 && tokens.get(start - 1).getType() == BSLLexer.ASYNC_KEYWORD) {
+      start--;
+    }
+
+    while (start > 0) {
+      var previous = start - 1;
+      if (tokens.get(previous).getType() == BSLLexer.RPAREN) {
+        previous = matchingLeftParenthesis(tokens, previous) - 1;
+      }
+      if (previous > 0
+        && ANNOTATION_SYMBOLS.get(tokens.get(previous).getType())
+        && tokens.get(previous - 1).getType() == BSLLexer.AMPERSAND) {
+        start = previous - 1;
+        continue;
+      }
+
+      var lineStart = lineStart(tokens, start - 1);
+      if (withPreprocessor && tokens.get(lineStart).getType() == BSLLexer.HASH) {
+        start = lineStart;
+      } else {
+        break;
+      }
+    }
+    return start;
+  }
+
+  private static int lineStart(List<Token> tokens, int index) {
+    var line = tokens.get(index).getLine();
+    var start = index;
+    while (start > 0 && tokens.get(start - 1).getLine() == line) {
+      start--;
+    }
+    return start;
+  }
+
+  private static int matchingLeftParenthesis(List<Token> tokens, int rightParenthesis) {
+    var depth = 0;
+    for (var i = rightParenthesis; i >= 0; i--) {
+      var type = tokens.get(i).getType();
+      if (type == BSLLexer.RPAREN) {
+        depth++;
+      } else if (type == BSLLexer.LPAREN) {
+        depth--;
+        if (depth == 0) {
+          return i;
+        }
+      } else if (type == BSLLexer.SEMICOLON || type == BSLLexer.AMPERSAND) {
+        break;
+      }
+    }
+    return 0;
+  }
+
+  private synchronized BSLParser.SubCodeBlockContext parseSubCodeBlock(int bodyStart, boolean function) {
+    return parse(bodyStart, function, BSLParser.RULE_subCodeBlock, parser::subCodeBlock);
+  }
+
+  /**
+   * Разбирает правило метода с указанного токена в режиме SLL с переходом в режим LL при ошибке
+   *
+   * @param tokenIndex Индекс первого токена
+   * @param function   Признак функции
+   * @param ruleIndex  Индекс правила внутри {@code procedure} или {@code function}
+   * @param rule       Метод парсера, разбирающий правило
+   * @return Контекст правила без родителя
+   */
+  private <C extends ParserRuleContext> C parse(int tokenIndex, boolean function, int ruleIndex, Supplier<C> rule) {
+    var errorHandler = parser.getErrorHandler();
+    var interpreter = parser.getInterpreter();
+    try {
+      parser.setErrorHandler(new BailErrorStrategy());
+      interpreter.setPredictionMode(PredictionMode.SLL);
+      return parser.parseInSub(tokenIndex, function, ruleIndex, rule);
+    } catch (ParseCancellationException e) {
+      parser.setErrorHandler(errorHandler);
+      interpreter.setPredictionMode(PredictionMode.LL);
+      interpreter.enable_global_context_dfa = true;
+      return parser.parseInSub(tokenIndex, function, ruleIndex, rule);
+    } finally {
+      parser.setErrorHandler(errorHandler);
+    }
+  }
+
+  /**
+   * Возвращает состояние, из которого правило вызывает другое правило
+   */
+  private static int invokingState(int callerRule, int calleeRule) {
+    for (ATNState state : BSLParser._ATN.states) {
+      if (state == null || state.ruleIndex != callerRule) {
+        continue;
+      }
+      for (var i = 0; i < state.getNumberOfTransitions(); i++) {
+        var transition = state.transition(i);
+        if (transition instanceof RuleTransition && transition.target.ruleIndex == calleeRule) {
+          return state.stateNumber;
+        }
+      }
+    }
+    throw new IllegalStateException("Rule " + callerRule + " does not invoke rule " + calleeRule);
+  }
+
+  /**
+   * Парсер структуры, разбирающий правила методов внутри родительских контекстов полного дерева
+   */
+  static final class OutlineParser extends BSLParser {
+
+    OutlineParser(TokenStream input) {
+      super(input);
+    }
+
+    private <C extends ParserRuleContext> C parseInSub(int tokenIndex,
+                                                       boolean function,
+                                                       int ruleIndex,
+                                                       Supplier<C> rule) {
+      reset();
+      getInputStream().seek(tokenIndex);
+
+      var file = new FileContext(null, ATNState.INVALID_STATE_NUMBER);
+      var subs = new SubsContext(file, SUBS_IN_FILE);
+      var sub = new SubContext(subs, SUB_IN_SUBS);
+      ParserRuleContext enclosing = function
+        ? new FunctionContext(sub, FUNCTION_IN_SUB)
+        : new ProcedureContext(sub, PROCEDURE_IN_SUB);
+      _ctx = enclosing;
+      setState(invokingState(function ? RULE_function : RULE_procedure, ruleIndex));
+
+      var result = rule.get();
+      result.parent = null;
+      return result;
+    }
+  }
+
+  /**
+   * Объявление метода модуля с отложенным разбором тела
+   */
+  public final class SubOutline {
+    /**
+     * Контекст объявления: {@link BSLParser.ProcDeclarationContext} или {@link BSLParser.FuncDeclarationContext}
+     */
+    private final ParserRuleContext declaration;
+    private final boolean function;
+    private final int bodyStart;
+    @Nullable
+    private final Token endToken;
+    private final Lazy<BSLParser.SubCodeBlockContext> subCodeBlock = new Lazy<>(this::computeSubCodeBlock);
+
+    private SubOutline(ParserRuleContext declaration, boolean function, int bodyStart, @Nullable Token endToken) {
+      this.declaration = declaration;
+      this.function = function;
+      this.bodyStart = bodyStart;
+      this.endToken = endToken;
+    }
+
+    public ParserRuleContext getDeclaration() {
+      return declaration;
+    }
+
+    public boolean isFunction() {
+      return function;
+    }
+
+    public String getName() {
+      var subName = function
+        ? ((BSLParser.FuncDeclarationContext) declaration).subName()
+        : ((BSLParser.ProcDeclarationContext) declaration).subName();
+      return subName == null ? "" : subName.getText();
+    }
+
+    public boolean isExport() {
+      return function
+        ? ((BSLParser.FuncDeclarationContext) declaration).EXPORT_KEYWORD() != null
+        : ((BSLParser.ProcDeclarationContext) declaration).EXPORT_KEYWORD() != null;
+    }
+
+    /**
+     * @return Первый токен объявления
+     */
+    public Token getStart() {
+      return declaration.getStart();
+    }
+
+    /**
+     * @return Ключевое слово окончания метода. Отсутствует, если метод не закрыт.
+     */
+    @Nullable
+    public Token getEndToken() {
+      return endToken;
+    }
+
+    /**
+     * Возвращает тело метода, разбирая его при первом обращении. Потокобезопасен.
+     *
+     * @return Тело метода
+     */
+    public BSLParser.SubCodeBlockContext getSubCodeBlock() {
+      return subCodeBlock.getOrCompute();
+    }
+
+    private BSLParser.SubCodeBlockContext computeSubCodeBlock() {
+      return parseSubCodeBlock(bodyStart, function);
+    }
+  }
+}
@@ -21,16 +21,112 @@
  */
 package com.github._1c_syntax.bsl.parser;
 
+import com.github._1c_syntax.utils.Lazy;
+import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
 import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.Tuple2;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
 
 public class BSLTokenizer extends Tokenizer<BSLParser.FileContext, BSLParser> {
+
+  private static final int STATE_OTHER = 0;
+  private static final int STATE_DEFAULT = 1;
+  private static final int STATE_ASYNC = 2;
+
+  /**
+   * Индексы токенов, перед разбором которых лексер находился в режиме по умолчанию с пустым стеком режимов.
+   * С таких токенов можно безопасно возобновить разбор после правки.
+   */
+  private BitSet restartPoints = new BitSet();
+  /**
+   * Индексы токенов, перед разбором которых лексер находился в режиме асинхронного метода
+   * поверх режима по умолчанию. Используются для синхронизации внутри асинхронных методов.
+   */
+  private BitSet asyncPoints = new BitSet();
+  /**
+   * Токены, созданные парсером при восстановлении после ошибок. Они отсутствуют в потоке токенов,
+   * поэтому их позиции сдвигаются отдельно.
+   */
+  private List<Token> conjuredTokens = new ArrayList<>();
+  private Lazy<BSLOutline> outline = new Lazy<>(this::computeOutline);
+  /**
+   * Признак поддержки правок через {@link #applyEdit(int, int, String)}
+   */
+  private final boolean editable;
+
   public BSLTokenizer(String content) {
-    super(content, new BSLLexer(CharStreams.fromString(""), true), BSLParser.class);
+    this(content, false);
+  }
+
+  private BSLTokenizer(String content, boolean editable) {
+    super(content, new BSLLexer(CharStreams.fromString(""), true), BSLParser::new);
+    this.editable = editable;
   }
 
   public BSLTokenizer(String content, Lexer lexer) {
-    super(content, lexer, BSLParser.class);
+    super(content, lexer, BSLParser::new);
+    editable = false;
+  }
+
+  public BSLTokenizer(Path path) {
+    super(path, new BSLLexer(CharStreams.fromString(""), true), BSLParser::new);
+    editable = false;
+  }
+
+  public BSLTokenizer(ByteBuffer content) {
+    super(content, new BSLLexer(CharStreams.fromString(""), true), BSLParser::new);
+    editable = false;
+  }
+
+  BSLTokenizer(Supplier<CharStream> input, Supplier<? extends Lexer> lexerSupplier, Function<TokenStream, BSLParser> parserFactory) {
+    super(input, lexerSupplier, parserFactory);
+    editable = false;
+  }
+
+  /**
+   * Создает токенизатор, поддерживающий правки текста через {@link #applyEdit(int, int, String)}.
+   * <p>
+   * Такой токенизатор разбирает текст через поток символов с заменяемым содержимым и при лексическом анализе
+   * запоминает точки, с которых можно возобновить разбор. Токены, полученные до правки, после нее выделяют
+   * свой текст из нового содержимого. Обычным токенизаторам это не нужно, поэтому поддержка правок
+   * включается только этим методом.
+   *
+   * @param content Текст модуля
+   * @return Токенизатор с поддержкой правок
+   */
+  public static BSLTokenizer editable(String content) {
+    return new BSLTokenizer(content, true);
+  }
+
+  /**
+   * @return Признак поддержки правок через {@link #applyEdit(int, int, String)}
+   */
+  public boolean isEditable() {
+    return editable;
   }
 
   @Override
@@ -38,4 +134,469 @@ public class BSLTokenizer extends Tokenizer<BSLParser.FileContext, BSLParser> {
     return parser.file();
   }
 
+  /**
+   * Возвращает структуру модуля: объявления методов с отложенным разбором тел.
+   * Полное дерево при этом не строится.
+   *
+   * @return Структура модуля
+   */
+  public BSLOutline getOutline() {
+    return outline.getOrCompute();
+  }
+
+  /**
+   * Применяет правку текста модуля и обновляет токены и дерево.
+   * <p>
+   * Если правка целиком находится внутри тела одного метода, токены перестраиваются только от начала этого метода
+   * до первого токена после правки, с которого лексер гарантированно продолжает разбор так же, как до правки.
+   * Токены после этой точки сдвигаются на месте, заново разбирается только измененный метод, а поддеревья
+   * остальных методов переиспользуются. В остальных случаях (правка объявления метода или кода вне методов,
+   * синтаксические ошибки в измененном методе) модуль разбирается полностью.
+   * <p>
+   * Смещения задаются в индексах потока символов, как в {@link Token#getStartIndex()}.
+   * Дерево и токены, полученные до правки, после нее использовать нельзя. Метод не потокобезопасен.
+   * Правки поддерживает только токенизатор, созданный через {@link #editable(String)}.
+   *
+   * @param offset    Индекс первого заменяемого символа
+   * @param oldLength Количество заменяемых символов
+   * @param newText   Новый текст
+   * @return Результат правки с перечнем измененных методов
+   * @throws IllegalStateException если токенизатор создан без поддержки правок
+   */
+  public EditResult applyEdit(int offset, int oldLength, String newText) {
+    requireNonNull(newText);
+    if (!editable) {
+      throw new IllegalStateException("Tokenizer is not editable, use BSLTokenizer.editable");
+    }
+    var content = (EditableCharStream) getCharStream();
+    outline = new Lazy<>(this::computeOutline);
+
+    if (!isAstComputed()) {
+      content.replace(offset, oldLength, newText);
+      return fullReparse();
+    }
+
+    var file = getAst();
+    var sub = findEnclosingSub(file, offset, oldLength);
+    var newLength = content.replace(offset, oldLength, newText);
+    if (sub == null) {
+      return fullReparse();
+    }
+
+    var newSub = reparseSub(sub, offset, oldLength, newLength);
+    if (newSub == null) {
+      return fullReparse();
+    }
+
+    var subs = (BSLParser.SubsContext) sub.getParent();
+    var newSubs = new BSLParser.SubsContext(null, subs.invokingState);
+    copyChildren(subs, newSubs, sub, newSub);
+    var newFile = new BSLParser.FileContext(null, file.invokingState);
+    copyChildren(file, newFile, subs, newSubs);
+    replaceAst(newFile);
+
+    return new EditResult(true, List.of(newSub));
+  }
+
+  private BSLOutline computeOutline() {
+    // у структуры свой поток и парсер над теми же токенами, чтобы не мешать построению полного дерева
+    var outlineTokenStream = new CommonTokenStream(new ListTokenSource(getTokenStream().getTokens()));
+    outlineTokenStream.fill();
+    var outlineParser = new BSLOutline.OutlineParser(outlineTokenStream);
+    outlineParser.removeErrorListener(ConsoleErrorListener.INSTANCE);
+    getCachePolicy().register(outlineParser);
+    return new BSLOutline(outlineTokenStream, outlineParser);
+  }
+
+  @Override
+  CharStream wrapCharStream(CharStream content) {
+    return editable ? new EditableCharStream(content) : content;
+  }
+
+  @Override
+  TokenSource wrapTokenSource(Lexer lexer) {
+    if (!editable) {
+      return lexer;
+    }
+    restartPoints = new BitSet();
+    asyncPoints = new BitSet();
+    conjuredTokens = new ArrayList<>();
+    return new RestartPointRecorder(lexer, restartPoints, asyncPoints, conjuredTokens);
+  }
+
+  private EditResult fullReparse() {
+    resetState();
+    var subs = getAst().subs();
+    List<BSLParser.SubContext> changedSubs = subs == null ? Collections.emptyList() : List.copyOf(subs.sub());
+    return new EditResult(false, changedSubs);
+  }
+
+  @Nullable
+  private static BSLParser.SubContext findEnclosingSub(BSLParser.FileContext file, int offset, int oldLength) {
+    var subs = file.subs();
+    if (subs == null) {
+      return null;
+    }
+
+    var subList = subs.sub();
+    var low = 0;
+    var high = subList.size() - 1;
+    while (low <= high) {
+      var middle = (low + high) >>> 1;
+      var sub = subList.get(middle);
+      if (sub.getStart().getStartIndex() < offset) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+
+    if (high < 0) {
+      return null;
+    }
+    var sub = subList.get(high);
+    var stop = sub.getStop();
+    if (stop == null || offset + oldLength > stop.getStopIndex() + 1) {
+      return null;
+    }
+    return sub;
+  }
+
+  @Nullable
+  private BSLParser.SubContext reparseSub(BSLParser.SubContext sub, int offset, int oldLength, int newLength) {
+    var declaration = declarationOf(sub);
+    var startIndex = sub.getStart().getTokenIndex();
+    if (declaration == null || declaration.getStop() == null || !restartPoints.get(startIndex)) {
+      return null;
+    }
+
+    var tokenStream = getTokenStream();
+    var oldTokens = tokenStream.getTokens();
+    var oldStopIndex = sub.getStop().getTokenIndex();
+    var declarationStopIndex = declaration.getStop().getTokenIndex();
+    var delta = newLength - oldLength;
+    var editEnd = offset + newLength;
+
+    // лексический разбор от начала метода до точки синхронизации со старыми токенами
+    var firstToken = oldTokens.get(startIndex);
+    var lexer = prepareLexer(firstToken.getStartIndex(), firstToken.getLine(), firstToken.getCharPositionInLine());
+    var content = lexer.getInputStream();
+    var oldStopOffset = oldTokens.get(oldStopIndex).getStopIndex();
+    var newTokens = new ArrayList<Token>();
+    var newRestartPoints = new BitSet();
+    var newAsyncPoints = new BitSet();
+    var candidate = startIndex;
+    var syncIndex = -1;
+    var syncLine = 0;
+    var syncColumn = 0;
+    while (true) {
+      var position = content.index();
+      var oldPosition = position - delta;
+      if (position >= editEnd && oldPosition > oldStopOffset) {
+        // точка синхронизации за пределами метода
+        return null;
+      }
+
+      var state = lexerState(lexer);
+      if (state != STATE_OTHER && position >= editEnd) {
+        while (candidate <= oldStopIndex && oldTokens.get(candidate).getStartIndex() < oldPosition) {
+          candidate++;
+        }
+        if (candidate <= oldStopIndex
+          && oldTokens.get(candidate).getStartIndex() == oldPosition
+          && statePoints(state).get(candidate)) {
+          syncIndex = candidate;
+          syncLine = lexer.getLine();
+          syncColumn = lexer.getCharPositionInLine();
+          break;
+        }
+      }
+
+      var token = lexer.nextToken();
+      if (token.getType() == Token.EOF) {
+        return null;
+      }
+      if (state == STATE_DEFAULT) {
+        newRestartPoints.set(newTokens.size());
+      } else if (state == STATE_ASYNC) {
+        newAsyncPoints.set(newTokens.size());
+      }
+      newTokens.add(token);
+    }
+
+    // токены объявления не должны измениться, на них могут ссылаться соседние узлы дерева
+    var declarationSize = declarationStopIndex - startIndex + 1;
+    if (newTokens.size() < declarationSize || syncIndex <= declarationStopIndex) {
+      return null;
+    }
+    for (var i = 0; i < declarationSize; i++) {
+      if (!isSameToken(oldTokens.get(startIndex + i), newTokens.get(i))) {
+        return null;
+      }
+      newTokens.set(i, oldTokens.get(startIndex + i));
+    }
+
+    var follow = nextDefaultChannelToken(oldTokens, oldStopIndex);
+    shiftConjuredTokens(firstToken, oldTokens.get(syncIndex), syncLine, syncColumn);
+    shiftTail(oldTokens, syncIndex, newTokens.size() - (syncIndex - startIndex), delta, syncLine, syncColumn);
+
+    oldTokens.subList(startIndex, syncIndex).clear();
+    oldTokens.addAll(startIndex, newTokens);
+    for (var i = declarationSize; i < newTokens.size(); i++) {
+      ((CommonToken) newTokens.get(i)).setTokenIndex(startIndex + i);
+    }
+    var tokenDelta = newTokens.size() - (syncIndex - startIndex);
+    restartPoints = splice(restartPoints, startIndex, syncIndex, tokenDelta, newRestartPoints);
+    asyncPoints = splice(asyncPoints, startIndex, syncIndex, tokenDelta, newAsyncPoints);
+
+    var subParser = newParser();
+    tokenStream.seek(startIndex);
+    subParser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+    BSLParser.SubContext newSub;
+    try {
+      newSub = subParser.sub();
+    } catch (RuntimeException e) {
+      return null;
+    }
+
+    if (subParser.getNumberOfSyntaxErrors() > 0 || tokenStream.LT(1) != follow) {
+      return null;
+    }
+    newSub.invokingState = sub.invokingState;
+    return newSub;
+  }
+
+  @Nullable
+  private static ParserRuleContext declarationOf(BSLParser.SubContext sub) {
+    if (sub.procedure() != null) {
+      return sub.procedure().procDeclaration();
+    } else if (sub.function() != null) {
+      return sub.function().funcDeclaration();
+    }
+    return null;
+  }
+
+  private static Token nextDefaultChannelToken(List<Token> tokens, int index) {
+    for (var i = index + 1; i < tokens.size(); i++) {
+      var token = tokens.get(i);
+      if (token.getChannel() == Token.DEFAULT_CHANNEL || token.getType() == Token.EOF) {
+        return token;
+      }
+    }
+    return tokens.get(tokens.size() - 1);
+  }
+
+  private static void shiftTail(List<Token> tokens,
+                                int syncIndex,
+                                int tokenDelta,
+                                int delta,
+                                int syncLine,
+                                int syncColumn) {
+    var syncToken = tokens.get(syncIndex);
+    var oldSyncLine = syncToken.getLine();
+    var lineDelta = syncLine - oldSyncLine;
+    var columnDelta = syncColumn - syncToken.getCharPositionInLine();
+
+    for (var i = syncIndex; i < tokens.size(); i++) {
+      var token = (CommonToken) tokens.get(i);
+      if (token.getLine() == oldSyncLine) {
+        token.setCharPositionInLine(token.getCharPositionInLine() + columnDelta);
+      }
+      token.setLine(token.getLine() + lineDelta);
+      token.setStartIndex(token.getStartIndex() + delta);
+      token.setStopIndex(token.getStopIndex() + delta);
+      token.setTokenIndex(i + tokenDelta);
+    }
+  }
+
+  private void shiftConjuredTokens(Token subStart, Token oldSyncToken, int syncLine, int syncColumn) {
+    var oldSyncLine = oldSyncToken.getLine();
+    var oldSyncColumn = oldSyncToken.getCharPositionInLine();
+    var lineDelta = syncLine - oldSyncLine;
+    var columnDelta = syncColumn - oldSyncColumn;
+
+    var iterator = conjuredTokens.iterator();
+    while (iterator.hasNext()) {
+      var token = (CommonToken) iterator.next();
+      if (comparePositions(token, oldSyncLine, oldSyncColumn) >= 0) {
+        if (token.getLine() == oldSyncLine) {
+          token.setCharPositionInLine(token.getCharPositionInLine() + columnDelta);
+        }
+        token.setLine(token.getLine() + lineDelta);
+      } else if (comparePositions(token, subStart.getLine(), subStart.getCharPositionInLine()) >= 0) {
+        // токен принадлежал заменяемому методу
+        iterator.remove();
+      }
+    }
+  }
+
+  private static int comparePositions(Token token, int line, int charPositionInLine) {
+    var result = Integer.compare(token.getLine(), line);
+    return result == 0 ? Integer.compare(token.getCharPositionInLine(), charPositionInLine) : result;
+  }
+
+  private BitSet statePoints(int state) {
+    return state == STATE_ASYNC ? asyncPoints : restartPoints;
+  }
+
+  private static BitSet splice(BitSet points, int startIndex, int syncIndex, int tokenDelta, BitSet newPoints) {
+    var updated = points.get(0, startIndex);
+    for (var i = newPoints.nextSetBit(0); i >= 0; i = newPoints.nextSetBit(i + 1)) {
+      updated.set(startIndex + i);
+    }
+    for (var i = points.nextSetBit(syncIndex); i >= 0; i = points.nextSetBit(i + 1)) {
+      updated.set(i + tokenDelta);
+    }
+    return updated;
+  }
+
+  private static void copyChildren(ParserRuleContext from,
+                                   ParserRuleContext to,
+                                   ParseTree replaced,
+                                   ParserRuleContext replacement) {
+    to.start = from.start;
+    to.stop = from.stop;
+    to.exception = from.exception;
+    to.children = new ArrayList<>(from.children.size());
+    for (var child : from.children) {
+      var newChild = child == replaced ? replacement : child;
+      if (newChild instanceof ParserRuleContext) {
+        ((ParserRuleContext) newChild).setParent(to);
+      } else if (newChild instanceof TerminalNodeImpl) {
+        ((TerminalNodeImpl) newChild).setParent(to);
+      }
+      to.children.add(newChild);
+    }
+  }
+
+  private static boolean isSameToken(Token oldToken, Token newToken) {
+    return oldToken.getType() == newToken.getType()
+      && oldToken.getChannel() == newToken.getChannel()
+      && oldToken.getStartIndex() == newToken.getStartIndex()
+      && oldToken.getStopIndex() == newToken.getStopIndex();
+  }
+
+  private static int lexerState(Lexer lexer) {
+    var modeStack = lexer._modeStack;
+    if (lexer._mode == Lexer.DEFAULT_MODE && modeStack.isEmpty()) {
+      return STATE_DEFAULT;
+    } else if (lexer._mode == BSLLexer.ASYNC_MODE && modeStack.size() == 1 && modeStack.peek() == Lexer.DEFAULT_MODE) {
+      return STATE_ASYNC;
+    }
+    return STATE_OTHER;
+  }
+
+  /**
+   * Результат применения правки
+   */
+  public static final class EditResult {
+    /**
+     * Признак инкрементального обновления. Если ложь, модуль был разобран полностью.
+     */
+    private final boolean incremental;
+    /**
+     * Измененные методы. При полном разборе содержит все методы модуля.
+     */
+    private final List<BSLParser.SubContext> changedSubs;
+
+    private EditResult(boolean incremental, List<BSLParser.SubContext> changedSubs) {
+      this.incremental = incremental;
+      this.changedSubs = changedSubs;
+    }
+
+    public boolean isIncremental() {
+      return incremental;
+    }
+
+    public List<BSLParser.SubContext> getChangedSubs() {
+      return changedSubs;
+    }
+  }
+
+  /**
+   * Источник токенов, отмечающий токены, перед разбором которых лексер находится в режиме по умолчанию
+   * или в режиме асинхронного метода
+   */
+  private static final class RestartPointRecorder implements TokenSource {
+    private final Lexer lexer;
+    private final BitSet restartPoints;
+    private final BitSet asyncPoints;
+    private final List<Token> conjuredTokens;
+    private int index;
+
+    private RestartPointRecorder(Lexer lexer, BitSet restartPoints, BitSet asyncPoints, List<Token> conjuredTokens) {
+      this.lexer = lexer;
+      this.restartPoints = restartPoints;
+      this.asyncPoints = asyncPoints;
+      this.conjuredTokens = conjuredTokens;
+    }
+
+    @Override
+    public Token nextToken() {
+      var state = lexerState(lexer);
+      if (state == STATE_DEFAULT) {
+        restartPoints.set(index);
+      } else if (state == STATE_ASYNC) {
+        asyncPoints.set(index);
+      }
+      index++;
+      return lexer.nextToken();
+    }
+
+    @Override
+    public int getLine() {
+      return lexer.getLine();
+    }
+
+    @Override
+    public int getCharPositionInLine() {
+      return lexer.getCharPositionInLine();
+    }
+
+    @Override
+    public CharStream getInputStream() {
+      return lexer.getInputStream();
+    }
+
+    @Override
+    public String getSourceName() {
+      return lexer.getSourceName();
+    }
+
+    @Override
+    public void setTokenFactory(TokenFactory factory) {
+      lexer.setTokenFactory(factory);
+    }
+
+    /**
+     * Фабрика источника токенов используется только парсером для создания недостающих токенов
+     * при восстановлении после ошибок. Лексер создает токены своей фабрикой напрямую.
+     */
+    @Override
+    public TokenFactory getTokenFactory() {
+      var factory = lexer.getTokenFactory();
+      return new TokenFactory() {
+        @Override
+        public Token create(Tuple2<? extends TokenSource, CharStream> source,
+                            int type,
+                            String text,
+                            int channel,
+                            int start,
+                            int stop,
+                            int line,
+                            int charPositionInLine) {
+          var token = factory.create(source, type, text, channel, start, stop, line, charPositionInLine);
+          conjuredTokens.add(token);
+          return token;
+        }
+
+        @Override
+        public Token create(int type, String text) {
+          var token = factory.create(type, text);
+          conjuredTokens.add(token);
+          return token;
+        }
+      };
+    }
+  }
 }
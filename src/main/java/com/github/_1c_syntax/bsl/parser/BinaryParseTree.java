@@ -0,0 +1,997 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import com.github._1c_syntax.utils.Lazy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Tuple;
+import org.antlr.v4.runtime.misc.Tuple2;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ErrorNodeImpl;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Версионированный двоичный формат токенов и дерева разбора.
+ * <p>
+ * Позволяет передать результат разбора другому процессу без повторного разбора исходника. Формат состоит из:
+ * <ul>
+ *   <li>заголовка с версией формата, смещениями разделов и отпечатком грамматики;</li>
+ *   <li>таблицы токенов: поля токенов кодируются числами переменной длины (varint) как разности с предыдущим токеном,
+ *   таблица разбита на блоки по {@value #TOKEN_BLOCK_SIZE} токенов с индексом смещений блоков
+ *   для произвольного доступа;</li>
+ *   <li>дерева в прямом порядке обхода: узел правила хранит индекс правила, граничные токены, значения меток
+ *   правила и смещения потомков, поэтому к любому потомку можно перейти без чтения предшествующих;</li>
+ *   <li>токенов, созданных парсером при восстановлении после ошибок, вместе с их текстом;</li>
+ *   <li>необязательно, текста исходника.</li>
+ * </ul>
+ * Читатель работает поверх {@link ByteBuffer}, в том числе отображенного в память файла, и не материализует
+ * дерево: узлы {@link Node} и токены декодируются при обращении. Полное дерево контекстов можно восстановить
+ * в токенизатор методами {@code restore}, при этом лексер и парсер не запускаются.
+ * <p>
+ * Читатель неизменяем и потокобезопасен.
+ */
+public final class BinaryParseTree {
+
+  /**
+   * Версия формата. Увеличивается при любом изменении кодирования.
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * Количество токенов в блоке таблицы токенов
+   */
+  public static final int TOKEN_BLOCK_SIZE = 64;
+
+  private static final int MAGIC = 0x42534c54; // BSLT
+  private static final int HEADER_SIZE = 10 * Integer.BYTES;
+  private static final int FLAG_TEXT = 1;
+  private static final int NO_OFFSET = -1;
+  private static final int NO_TOKEN = -1;
+
+  /*
+   * Байт признаков узла: биты 0-1 - вид узла, бит 2 - ошибка распознавания,
+   * биты 3-4 - наличие первого и последнего токена, биты 5-6 - ширина смещений потомков
+   */
+  private static final int NODE_TYPE_MASK = 0b11;
+  private static final int RULE_NODE = 0;
+  private static final int TERMINAL_NODE = 1;
+  private static final int ERROR_NODE = 2;
+  private static final int EXCEPTION_FLAG = 1 << 2;
+  private static final int START_FLAG = 1 << 3;
+  private static final int STOP_FLAG = 1 << 4;
+  private static final int WIDTH_SHIFT = 5;
+  private static final int[] WIDTHS = {1, 2, 4};
+
+  private static final ClassValue<Field[]> LABELS = new ClassValue<>() {
+    @Override
+    protected Field[] computeValue(Class<?> contextClass) {
+      return labelFields(contextClass);
+    }
+  };
+
+  private final ByteBuffer buffer;
+  private final int tokenCount;
+  private final int tokenIndexOffset;
+  private final int tokenDataOffset;
+  private final int treeOffset;
+  private final String parserClassName;
+  private final byte[] grammarFingerprint;
+  private final List<TokenFields> conjuredTokens;
+  @Nullable
+  private final Lazy<CharStream> text;
+
+  private BinaryParseTree(ByteBuffer buffer) throws IOException {
+    if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a binary parse tree");
+    }
+    var version = buffer.getInt(Integer.BYTES);
+    if (version != VERSION) {
+      throw new IOException("Unsupported binary parse tree version: " + version);
+    }
+
+    this.buffer = buffer;
+    var flags = buffer.getInt(2 * Integer.BYTES);
+    tokenCount = buffer.getInt(3 * Integer.BYTES);
+    var grammarOffset = buffer.getInt(4 * Integer.BYTES);
+    tokenIndexOffset = buffer.getInt(5 * Integer.BYTES);
+    tokenDataOffset = buffer.getInt(6 * Integer.BYTES);
+    treeOffset = buffer.getInt(7 * Integer.BYTES);
+    var conjuredOffset = buffer.getInt(8 * Integer.BYTES);
+    var textOffset = buffer.getInt(9 * Integer.BYTES);
+
+    var cursor = new Cursor(grammarOffset);
+    parserClassName = new String(cursor.readBytes(), StandardCharsets.UTF_8);
+    grammarFingerprint = cursor.readBytes();
+
+    cursor = new Cursor(conjuredOffset);
+    var count = cursor.readVarint();
+    conjuredTokens = new ArrayList<>(count);
+    for (var i = 0; i < count; i++) {
+      var token = cursor.readToken(new TokenFields(), NO_TOKEN, 0);
+      token.text = new String(cursor.readBytes(), StandardCharsets.UTF_8);
+      conjuredTokens.add(token);
+    }
+
+    if ((flags & FLAG_TEXT) != 0) {
+      text = new Lazy<>(() -> CharStreams.fromString(
+        new String(new Cursor(textOffset).readBytes(), StandardCharsets.UTF_8)));
+    } else {
+      text = null;
+    }
+  }
+
+  /**
+   * Записывает токены и дерево токенизатора без текста исходника
+   *
+   * @param tokenizer Токенизатор
+   * @param output    Приемник
+   * @throws IOException при ошибке записи
+   */
+  public static void write(Tokenizer<?, ?> tokenizer, OutputStream output) throws IOException {
+    write(tokenizer, false, output);
+  }
+
+  /**
+   * Записывает токены и дерево токенизатора. Токены и дерево вычисляются, если еще не вычислены.
+   *
+   * @param tokenizer Токенизатор
+   * @param withText  Записать текст исходника, чтобы читатель мог получать текст токенов без исходника
+   * @param output    Приемник
+   * @throws IOException при ошибке записи
+   */
+  public static void write(Tokenizer<?, ?> tokenizer, boolean withText, OutputStream output) throws IOException {
+    var tokens = tokenizer.getTokens();
+    var tree = tokenizer.getAst();
+    output.write(encode(tokens, tree, withText ? tokenizer.getCharStream() : null));
+  }
+
+  /**
+   * Открывает дерево в буфере. Буфер не копируется и не должен изменяться, пока используется читатель.
+   *
+   * @param buffer Буфер от позиции до предела
+   * @return Читатель
+   * @throws IOException если буфер не содержит дерево поддерживаемой версии
+   */
+  public static BinaryParseTree read(ByteBuffer buffer) throws IOException {
+    return new BinaryParseTree(buffer.slice().order(ByteOrder.BIG_ENDIAN));
+  }
+
+  /**
+   * Открывает дерево в файле, отображая файл в память
+   *
+   * @param path Путь к файлу
+   * @return Читатель
+   * @throws IOException при ошибке чтения или если файл не содержит дерево поддерживаемой версии
+   */
+  public static BinaryParseTree read(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * @return Количество токенов источника, включая EOF
+   */
+  public int getTokenCount() {
+    return tokenCount;
+  }
+
+  /**
+   * @return Полное имя класса парсера, построившего дерево
+   */
+  public String getParserClassName() {
+    return parserClassName;
+  }
+
+  /**
+   * @return Признак наличия текста исходника
+   */
+  public boolean hasText() {
+    return text != null;
+  }
+
+  /**
+   * Возвращает токен по индексу. Индексы от {@link #getTokenCount()} и выше относятся к токенам,
+   * созданным парсером при восстановлении после ошибок. Текст токенов доступен при наличии текста исходника.
+   *
+   * @param index Индекс токена
+   * @return Новый экземпляр токена
+   */
+  public Token getToken(int index) {
+    return newToken(tokenFields(index), tokenSource(), index);
+  }
+
+  /**
+   * @return Корневой узел дерева
+   */
+  public Node getRoot() {
+    return new Node(null, treeOffset, 0);
+  }
+
+  /**
+   * Восстанавливает токены и дерево модуля в токенизатор без запуска лексера и парсера.
+   * Токенизатор должен быть создан из того же текста, из которого было построено дерево.
+   *
+   * @param tokenizer Токенизатор
+   * @throws IOException если данные повреждены или записаны для другой грамматики
+   */
+  public void restore(BSLTokenizer tokenizer) throws IOException {
+    restore(tokenizer, ParseTreeGrammar.BSL);
+  }
+
+  /**
+   * Восстанавливает токены и дерево запроса в токенизатор, см. {@link #restore(BSLTokenizer)}
+   *
+   * @param tokenizer Токенизатор
+   * @throws IOException если данные повреждены или записаны для другой грамматики
+   */
+  public void restore(SDBLTokenizer tokenizer) throws IOException {
+    restore(tokenizer, ParseTreeGrammar.SDBL);
+  }
+
+  <T extends BSLParserRuleContext> void restore(Tokenizer<T, ?> tokenizer, ParseTreeGrammar<T> grammar)
+    throws IOException {
+
+    if (!grammar.getParserClassName().equals(parserClassName) || !grammar.hasFingerprint(grammarFingerprint)) {
+      throw new IOException("Binary parse tree was written by another grammar: " + parserClassName);
+    }
+
+    try {
+      var charStream = tokenizer.getCharStream();
+      List<Token> tokens = new ArrayList<>(tokenCount);
+      Tuple2<TokenSource, CharStream> source = Tuple.create(new ListTokenSource(tokens), charStream);
+      var cursor = new Cursor(tokenDataOffset);
+      var fields = new TokenFields();
+      for (var i = 0; i < tokenCount; i++) {
+        if (i % TOKEN_BLOCK_SIZE == 0) {
+          fields = new TokenFields();
+        }
+        cursor.readToken(fields, fields.stop, fields.line);
+        if (fields.start > charStream.size() || fields.stop >= charStream.size()) {
+          throw new IOException("Token is out of source bounds");
+        }
+        tokens.add(newToken(fields, source, i));
+      }
+
+      List<Token> conjured = new ArrayList<>(conjuredTokens.size());
+      for (var i = 0; i < conjuredTokens.size(); i++) {
+        conjured.add(newToken(conjuredTokens.get(i), source, NO_TOKEN));
+      }
+
+      var tree = materialize(getRoot(), null, tokens, conjured, grammar);
+      var rootClass = grammar.getRootClass();
+      if (!rootClass.isInstance(tree)) {
+        throw new IOException("Unexpected root rule: " + tree.getClass().getName());
+      }
+      tokenizer.restore(tokens, rootClass.cast(tree));
+    } catch (RuntimeException e) {
+      throw new IOException("Corrupted binary parse tree", e);
+    }
+  }
+
+  /**
+   * Кодирует токены и дерево
+   *
+   * @param tokens Все токены источника, включая EOF
+   * @param tree   Дерево разбора над этими токенами
+   * @param text   Поток символов исходника, если текст нужно сохранить
+   * @return Закодированные данные
+   */
+  static byte[] encode(List<Token> tokens, ParserRuleContext tree, @Nullable CharStream text) {
+    var sink = new Sink(Math.max(1024, tokens.size() * 16));
+    sink.reserve(HEADER_SIZE);
+    sink.setInt(0, MAGIC);
+    sink.setInt(Integer.BYTES, VERSION);
+    sink.setInt(2 * Integer.BYTES, text == null ? 0 : FLAG_TEXT);
+    sink.setInt(3 * Integer.BYTES, tokens.size());
+
+    var grammar = ParseTreeGrammar.of(tree);
+    sink.setInt(4 * Integer.BYTES, sink.size());
+    sink.writeBytes(grammar.getParserClassName().getBytes(StandardCharsets.UTF_8));
+    sink.writeBytes(grammar.getFingerprint());
+
+    var indexes = new IdentityHashMap<Token, Integer>(tokens.size());
+    var blocks = (tokens.size() + TOKEN_BLOCK_SIZE - 1) / TOKEN_BLOCK_SIZE;
+    var tokenIndexOffset = sink.size();
+    sink.setInt(5 * Integer.BYTES, tokenIndexOffset);
+    sink.reserve(blocks * Integer.BYTES);
+    var tokenDataOffset = sink.size();
+    sink.setInt(6 * Integer.BYTES, tokenDataOffset);
+
+    var previous = new TokenFields();
+    for (var i = 0; i < tokens.size(); i++) {
+      if (i % TOKEN_BLOCK_SIZE == 0) {
+        sink.setInt(tokenIndexOffset + i / TOKEN_BLOCK_SIZE * Integer.BYTES, sink.size() - tokenDataOffset);
+        previous = new TokenFields();
+      }
+      var token = tokens.get(i);
+      indexes.put(token, i);
+      sink.writeToken(token, previous.stop, previous.line);
+      previous.stop = token.getStopIndex();
+      previous.line = token.getLine();
+    }
+
+    var conjured = new ArrayList<Token>();
+    sink.setInt(7 * Integer.BYTES, sink.size());
+    new Encoder(sink, indexes, conjured).encode(tree);
+
+    sink.setInt(8 * Integer.BYTES, sink.size());
+    sink.writeVarint(conjured.size());
+    for (Token token : conjured) {
+      sink.writeToken(token, NO_TOKEN, 0);
+      sink.writeBytes(Objects.requireNonNullElse(token.getText(), "").getBytes(StandardCharsets.UTF_8));
+    }
+
+    if (text == null) {
+      sink.setInt(9 * Integer.BYTES, NO_OFFSET);
+    } else {
+      sink.setInt(9 * Integer.BYTES, sink.size());
+      var content = text.size() == 0 ? "" : text.getText(Interval.of(0, text.size() - 1));
+      sink.writeBytes(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    return sink.toByteArray();
+  }
+
+  private TokenFields tokenFields(int index) {
+    if (index >= tokenCount) {
+      return conjuredTokens.get(index - tokenCount);
+    }
+    if (index < 0) {
+      throw new IndexOutOfBoundsException("Token index: " + index);
+    }
+
+    var block = index / TOKEN_BLOCK_SIZE;
+    var cursor = new Cursor(tokenDataOffset + buffer.getInt(tokenIndexOffset + block * Integer.BYTES));
+    var fields = new TokenFields();
+    for (var i = block * TOKEN_BLOCK_SIZE; i <= index; i++) {
+      cursor.readToken(fields, fields.stop, fields.line);
+    }
+    return fields;
+  }
+
+  private Tuple2<TokenSource, CharStream> tokenSource() {
+    return Tuple.<TokenSource, CharStream>create(null, text == null ? null : text.getOrCompute());
+  }
+
+  private static CommonToken newToken(TokenFields fields, Tuple2<TokenSource, CharStream> source, int index) {
+    var token = new CommonToken(source, fields.type, fields.channel, fields.start, fields.stop);
+    token.setLine(fields.line);
+    token.setCharPositionInLine(fields.charPositionInLine);
+    token.setTokenIndex(index);
+    if (fields.text != null) {
+      token.setText(fields.text);
+    }
+    return token;
+  }
+
+  private ParserRuleContext materialize(Node node,
+                                        @Nullable ParserRuleContext parent,
+                                        List<Token> tokens,
+                                        List<Token> conjured,
+                                        ParseTreeGrammar<?> grammar) throws IOException {
+
+    if (!node.isRule()) {
+      throw new IOException("Rule node expected");
+    }
+
+    var rule = grammar.createContext(node.ruleIndex, parent, node.invokingState);
+    rule.start = token(tokens, conjured, node.startTokenIndex);
+    rule.stop = token(tokens, conjured, node.stopTokenIndex);
+    if (node.hasException()) {
+      rule.exception = new RecognitionException(null, null, rule);
+    }
+
+    for (var i = 0; i < node.childCount; i++) {
+      var child = node.getChild(i);
+      if (child.isRule()) {
+        rule.addChild(materialize(child, rule, tokens, conjured, grammar));
+      } else {
+        var token = token(tokens, conjured, child.startTokenIndex);
+        var terminal = child.isErrorNode() ? new ErrorNodeImpl(token) : new TerminalNodeImpl(token);
+        terminal.setParent(rule);
+        rule.addAnyChild(terminal);
+      }
+    }
+
+    restoreLabels(rule, new Cursor(node.labelsOffset));
+    return rule;
+  }
+
+  private static void restoreLabels(ParserRuleContext rule, Cursor cursor) throws IOException {
+    var children = rule.children == null ? List.<ParseTree>of() : rule.children;
+    for (Field field : LABELS.get(rule.getClass())) {
+      if (List.class.isAssignableFrom(field.getType())) {
+        var size = cursor.readVarint();
+        List<Object> values = new ArrayList<>(size);
+        for (var i = 0; i < size; i++) {
+          values.add(labelValue(field, children.get(cursor.readVarint())));
+        }
+        writeField(field, rule, values);
+      } else {
+        var index = cursor.readVarint() - 1;
+        if (index != NO_TOKEN) {
+          writeField(field, rule, labelValue(field, children.get(index)));
+        }
+      }
+    }
+  }
+
+  @Nullable
+  private static Token token(List<Token> tokens, List<Token> conjured, int index) {
+    if (index == NO_TOKEN) {
+      return null;
+    }
+    if (index >= tokens.size()) {
+      return conjured.get(index - tokens.size());
+    }
+    return tokens.get(index);
+  }
+
+  /**
+   * Значение метки по узлу-потомку: токен для меток терминалов и контекст для меток правил
+   */
+  private static Object labelValue(Field field, ParseTree child) throws IOException {
+    if (child instanceof TerminalNode) {
+      if (ParserRuleContext.class.isAssignableFrom(field.getType())) {
+        throw new IOException("Label " + field.getName() + " is not a token");
+      }
+      return ((TerminalNode) child).getSymbol();
+    }
+    if (field.getType() == Token.class) {
+      throw new IOException("Label " + field.getName() + " is not a rule");
+    }
+    return child;
+  }
+
+  private static Object readField(Field field, Object target) {
+    try {
+      return field.get(target);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void writeField(Field field, Object target, Object value) throws IOException {
+    try {
+      field.set(target, value);
+    } catch (IllegalAccessException | IllegalArgumentException e) {
+      throw new IOException("Cannot restore label " + field.getName(), e);
+    }
+  }
+
+  /**
+   * Открытые поля меток, объявленные в сгенерированном классе контекста, в порядке имен
+   */
+  private static Field[] labelFields(Class<?> contextClass) {
+    return Arrays.stream(contextClass.getDeclaredFields())
+      .filter(field -> Modifier.isPublic(field.getModifiers()) && !Modifier.isStatic(field.getModifiers()))
+      .filter(field -> field.getType() == Token.class
+        || ParserRuleContext.class.isAssignableFrom(field.getType())
+        || List.class.isAssignableFrom(field.getType()))
+      .sorted(Comparator.comparing(Field::getName))
+      .toArray(Field[]::new);
+  }
+
+  /**
+   * Узел дерева. Поля узла декодируются при создании, потомки - при обращении.
+   * Индексы токенов хранятся относительно первого токена родителя.
+   */
+  public final class Node {
+    @Nullable
+    private final Node parent;
+    private final int flags;
+    private final int ruleIndex;
+    private final int invokingState;
+    private final int startTokenIndex;
+    private final int stopTokenIndex;
+    private final int labelsOffset;
+    private final int childCount;
+    private final int childOffsetsOffset;
+    private final int childrenOffset;
+    /**
+     * Индекс токена, относительно которого хранятся индексы токенов потомков
+     */
+    private final int childBaseTokenIndex;
+
+    private Node(@Nullable Node parent, int offset, int baseTokenIndex) {
+      this.parent = parent;
+      var cursor = new Cursor(offset);
+      flags = cursor.readByte() & 0xFF;
+      if ((flags & NODE_TYPE_MASK) == RULE_NODE) {
+        ruleIndex = cursor.readVarint();
+        invokingState = cursor.readVarint() - 1;
+        startTokenIndex = (flags & START_FLAG) == 0 ? NO_TOKEN : baseTokenIndex + cursor.readZigzag();
+        var stopBase = startTokenIndex == NO_TOKEN ? baseTokenIndex : startTokenIndex;
+        stopTokenIndex = (flags & STOP_FLAG) == 0 ? NO_TOKEN : stopBase + cursor.readZigzag();
+        var labelsLength = cursor.readVarint();
+        labelsOffset = cursor.position;
+        cursor.position += labelsLength;
+        childCount = cursor.readVarint();
+        childOffsetsOffset = cursor.position;
+        childrenOffset = childOffsetsOffset + childCount * width();
+        childBaseTokenIndex = startTokenIndex == NO_TOKEN ? baseTokenIndex : startTokenIndex;
+      } else {
+        ruleIndex = -1;
+        invokingState = -1;
+        startTokenIndex = baseTokenIndex + cursor.readZigzag();
+        stopTokenIndex = startTokenIndex;
+        labelsOffset = NO_OFFSET;
+        childCount = 0;
+        childOffsetsOffset = NO_OFFSET;
+        childrenOffset = NO_OFFSET;
+        childBaseTokenIndex = baseTokenIndex;
+      }
+    }
+
+    public boolean isRule() {
+      return (flags & NODE_TYPE_MASK) == RULE_NODE;
+    }
+
+    /**
+     * @return Признак узла ошибки, см. {@link ErrorNode}
+     */
+    public boolean isErrorNode() {
+      return (flags & NODE_TYPE_MASK) == ERROR_NODE;
+    }
+
+    /**
+     * @return Индекс правила грамматики или -1 для терминального узла
+     */
+    public int getRuleIndex() {
+      return ruleIndex;
+    }
+
+    public int getInvokingState() {
+      return invokingState;
+    }
+
+    /**
+     * @return Признак ошибки распознавания в узле правила
+     */
+    public boolean hasException() {
+      return (flags & EXCEPTION_FLAG) != 0;
+    }
+
+    public int getChildCount() {
+      return childCount;
+    }
+
+    public Node getChild(int index) {
+      if (index < 0 || index >= childCount) {
+        throw new IndexOutOfBoundsException("Child index: " + index);
+      }
+      return new Node(this, childrenOffset + childOffset(index), childBaseTokenIndex);
+    }
+
+    @Nullable
+    public Node getParent() {
+      return parent;
+    }
+
+    /**
+     * @return Индекс первого токена узла или -1
+     */
+    public int getStartTokenIndex() {
+      return startTokenIndex;
+    }
+
+    /**
+     * @return Индекс последнего токена узла или -1
+     */
+    public int getStopTokenIndex() {
+      return stopTokenIndex;
+    }
+
+    /**
+     * Возвращает токен терминального узла
+     *
+     * @return Токен, см. {@link BinaryParseTree#getToken(int)}
+     */
+    public Token getToken() {
+      if (isRule()) {
+        throw new IllegalStateException("Not a terminal node");
+      }
+      return BinaryParseTree.this.getToken(startTokenIndex);
+    }
+
+    private int width() {
+      return WIDTHS[flags >>> WIDTH_SHIFT & 0b11];
+    }
+
+    private int childOffset(int index) {
+      var position = childOffsetsOffset + index * width();
+      switch (width()) {
+        case 1:
+          return buffer.get(position) & 0xFF;
+        case 2:
+          return buffer.getShort(position) & 0xFFFF;
+        default:
+          return buffer.getInt(position);
+      }
+    }
+
+    @Override
+    public String toString() {
+      if (isRule()) {
+        return "Node(rule=" + ruleIndex + ", children=" + childCount + ")";
+      }
+      return "Node(token=" + startTokenIndex + ")";
+    }
+  }
+
+  /**
+   * Позиция чтения в буфере
+   */
+  private final class Cursor {
+    private int position;
+
+    private Cursor(int position) {
+      this.position = position;
+    }
+
+    private byte readByte() {
+      return buffer.get(position++);
+    }
+
+    private int readVarint() {
+      var result = 0;
+      var shift = 0;
+      byte current;
+      do {
+        current = buffer.get(position++);
+        result |= (current & 0x7F) << shift;
+        shift += 7;
+      } while (current < 0 && shift < 35);
+      return result;
+    }
+
+    private int readZigzag() {
+      var value = readVarint();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    private byte[] readBytes() {
+      var bytes = new byte[readVarint()];
+      for (var i = 0; i < bytes.length; i++) {
+        bytes[i] = buffer.get(position++);
+      }
+      return bytes;
+    }
+
+    private TokenFields readToken(TokenFields fields, int previousStop, int previousLine) {
+      fields.type = readVarint() - 1;
+      fields.channel = readVarint();
+      fields.start = previousStop + 1 + readZigzag();
+      fields.stop = fields.start + readZigzag();
+      fields.line = previousLine + readZigzag();
+      fields.charPositionInLine = readZigzag();
+      return fields;
+    }
+  }
+
+  /**
+   * Поля токена в таблице
+   */
+  private static final class TokenFields {
+    private int type;
+    private int channel;
+    private int start;
+    private int stop = NO_TOKEN;
+    private int line;
+    private int charPositionInLine;
+    @Nullable
+    private String text;
+  }
+
+  /**
+   * Кодировщик дерева в прямом порядке обхода. Сначала вычисляются размеры поддеревьев,
+   * чтобы выбрать для каждого узла наименьшую ширину смещений потомков.
+   */
+  private static final class Encoder {
+    private final Sink sink;
+    private final Map<Token, Integer> indexes;
+    private final List<Token> conjured;
+    private final Map<ParseTree, Layout> layouts = new IdentityHashMap<>();
+
+    private Encoder(Sink sink, Map<Token, Integer> indexes, List<Token> conjured) {
+      this.sink = sink;
+      this.indexes = indexes;
+      this.conjured = conjured;
+    }
+
+    private void encode(ParseTree root) {
+      measure(root, 0);
+      write(root, 0);
+    }
+
+    private int measure(ParseTree node, int baseTokenIndex) {
+      if (node instanceof TerminalNode) {
+        return 1 + Sink.zigzagSize(tokenIndex(((TerminalNode) node).getSymbol()) - baseTokenIndex);
+      }
+
+      var rule = (ParserRuleContext) node;
+      var layout = new Layout(rule);
+      var size = 1 + Sink.varintSize(rule.getRuleIndex()) + Sink.varintSize(rule.invokingState + 1);
+      var childBase = baseTokenIndex;
+      if (rule.getStart() != null) {
+        layout.start = tokenIndex(rule.getStart());
+        size += Sink.zigzagSize(layout.start - baseTokenIndex);
+        childBase = layout.start;
+      }
+      if (rule.getStop() != null) {
+        layout.stop = tokenIndex(rule.getStop());
+        size += Sink.zigzagSize(layout.stop - childBase);
+      }
+      size += Sink.varintSize(layout.labels.size()) + layout.labels.size();
+
+      var childCount = rule.getChildCount();
+      var childrenSize = 0;
+      var lastOffset = 0;
+      for (var i = 0; i < childCount; i++) {
+        lastOffset = childrenSize;
+        childrenSize += measure(rule.getChild(i), childBase);
+      }
+      layout.widthCode = lastOffset <= 0xFF ? 0 : (lastOffset <= 0xFFFF ? 1 : 2);
+      size += Sink.varintSize(childCount) + childCount * WIDTHS[layout.widthCode] + childrenSize;
+
+      layout.size = size;
+      layouts.put(rule, layout);
+      return size;
+    }
+
+    private void write(ParseTree node, int baseTokenIndex) {
+      if (node instanceof TerminalNode) {
+        sink.writeByte(node instanceof ErrorNode ? ERROR_NODE : TERMINAL_NODE);
+        sink.writeZigzag(tokenIndex(((TerminalNode) node).getSymbol()) - baseTokenIndex);
+        return;
+      }
+
+      var rule = (ParserRuleContext) node;
+      var layout = layouts.get(rule);
+      var flags = RULE_NODE | layout.widthCode << WIDTH_SHIFT;
+      flags |= rule.exception == null ? 0 : EXCEPTION_FLAG;
+      flags |= layout.start == NO_TOKEN ? 0 : START_FLAG;
+      flags |= layout.stop == NO_TOKEN ? 0 : STOP_FLAG;
+      sink.writeByte(flags);
+      sink.writeVarint(rule.getRuleIndex());
+      sink.writeVarint(rule.invokingState + 1);
+
+      var childBase = baseTokenIndex;
+      if (layout.start != NO_TOKEN) {
+        sink.writeZigzag(layout.start - baseTokenIndex);
+        childBase = layout.start;
+      }
+      if (layout.stop != NO_TOKEN) {
+        sink.writeZigzag(layout.stop - childBase);
+      }
+      sink.writeVarint(layout.labels.size());
+      sink.writeSink(layout.labels);
+
+      var childCount = rule.getChildCount();
+      sink.writeVarint(childCount);
+      var offset = 0;
+      for (var i = 0; i < childCount; i++) {
+        sink.writeFixed(offset, WIDTHS[layout.widthCode]);
+        var child = rule.getChild(i);
+        offset += child instanceof TerminalNode
+          ? 1 + Sink.zigzagSize(tokenIndex(((TerminalNode) child).getSymbol()) - childBase)
+          : layouts.get(child).size;
+      }
+      for (var i = 0; i < childCount; i++) {
+        write(rule.getChild(i), childBase);
+      }
+    }
+
+    private int tokenIndex(Token token) {
+      var index = indexes.get(token);
+      if (index == null) {
+        // токен, созданный парсером при восстановлении после ошибки, например <missing ';'>
+        index = indexes.size();
+        indexes.put(token, index);
+        conjured.add(token);
+      }
+      return index;
+    }
+
+    /**
+     * Размеры и метки узла правила, вычисленные при первом проходе
+     */
+    private static final class Layout {
+      private final Sink labels;
+      private int start = NO_TOKEN;
+      private int stop = NO_TOKEN;
+      private int widthCode;
+      private int size;
+
+      private Layout(ParserRuleContext rule) {
+        labels = labels(rule);
+      }
+
+      private static Sink labels(ParserRuleContext rule) {
+        var labels = new Sink(16);
+        var children = rule.children == null ? List.<ParseTree>of() : rule.children;
+        for (Field field : LABELS.get(rule.getClass())) {
+          var value = readField(field, rule);
+          if (value instanceof List) {
+            var values = new ArrayList<Integer>();
+            for (Object element : (List<?>) value) {
+              var index = childIndex(children, element);
+              if (index != NO_TOKEN) {
+                values.add(index);
+              }
+            }
+            labels.writeVarint(values.size());
+            values.forEach(labels::writeVarint);
+          } else {
+            labels.writeVarint(value == null ? 0 : childIndex(children, value) + 1);
+          }
+        }
+        return labels;
+      }
+
+      private static int childIndex(List<ParseTree> children, Object value) {
+        for (var i = 0; i < children.size(); i++) {
+          var child = children.get(i);
+          if (child == value || (child instanceof TerminalNode && ((TerminalNode) child).getSymbol() == value)) {
+            return i;
+          }
+        }
+        return NO_TOKEN;
+      }
+    }
+  }
+
+  /**
+   * Растущий буфер записи
+   */
+  private static final class Sink {
+    private byte[] bytes;
+    private int size;
+
+    private Sink(int capacity) {
+      bytes = new byte[capacity];
+    }
+
+    private int size() {
+      return size;
+    }
+
+    private void reserve(int length) {
+      ensureCapacity(length);
+      size += length;
+    }
+
+    private void writeByte(int value) {
+      ensureCapacity(1);
+      bytes[size++] = (byte) value;
+    }
+
+    private void writeVarint(int value) {
+      ensureCapacity(5);
+      var remaining = value;
+      while ((remaining & ~0x7F) != 0) {
+        bytes[size++] = (byte) ((remaining & 0x7F) | 0x80);
+        remaining >>>= 7;
+      }
+      bytes[size++] = (byte) remaining;
+    }
+
+    private void writeZigzag(int value) {
+      writeVarint(zigzag(value));
+    }
+
+    private void writeFixed(int value, int width) {
+      ensureCapacity(width);
+      for (var shift = (width - 1) * Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+        bytes[size++] = (byte) (value >>> shift);
+      }
+    }
+
+    private static int zigzag(int value) {
+      return (value << 1) ^ (value >> 31);
+    }
+
+    private static int varintSize(int value) {
+      var result = 1;
+      var remaining = value;
+      while ((remaining & ~0x7F) != 0) {
+        remaining >>>= 7;
+        result++;
+      }
+      return result;
+    }
+
+    private static int zigzagSize(int value) {
+      return varintSize(zigzag(value));
+    }
+
+    private void writeBytes(byte[] value) {
+      writeVarint(value.length);
+      ensureCapacity(value.length);
+      System.arraycopy(value, 0, bytes, size, value.length);
+      size += value.length;
+    }
+
+    private void writeSink(Sink sink) {
+      ensureCapacity(sink.size);
+      System.arraycopy(sink.bytes, 0, bytes, size, sink.size);
+      size += sink.size;
+    }
+
+    private void writeToken(Token token, int previousStop, int previousLine) {
+      writeVarint(token.getType() + 1);
+      writeVarint(token.getChannel());
+      writeZigzag(token.getStartIndex() - previousStop - 1);
+      writeZigzag(token.getStopIndex() - token.getStartIndex());
+      writeZigzag(token.getLine() - previousLine);
+      writeZigzag(token.getCharPositionInLine());
+    }
+
+    private void setInt(int offset, int value) {
+      bytes[offset] = (byte) (value >>> 24);
+      bytes[offset + 1] = (byte) (value >>> 16);
+      bytes[offset + 2] = (byte) (value >>> 8);
+      bytes[offset + 3] = (byte) value;
+    }
+
+    private void ensureCapacity(int length) {
+      if (size + length > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+      }
+    }
+
+    private byte[] toByteArray() {
+      return Arrays.copyOf(bytes, size);
+    }
+  }
+}
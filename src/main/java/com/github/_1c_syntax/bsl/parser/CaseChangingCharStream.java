@@ -62,9 +62,19 @@ import org.antlr.v4.runtime.misc.Interval;
  * stream is unaffected. Example: input 'BeGiN' would match lexer rule
  * 'BEGIN' if constructor parameter upper=true but getText() would return
  * 'BeGiN'.
+ * <p>
+ * Upper case of ASCII, Latin-1, Latin Extended and Cyrillic characters is taken from a table
+ * precomputed with {@link Character#toUpperCase(int)}, because the lexer calls {@link #LA(int)}
+ * several times per character. Other code points are converted on every call.
  */
 public class CaseChangingCharStream implements UnicodeCharStream {
 
+  /**
+   * Upper bound (exclusive) of code points covered by {@link #UPPER_CASE}: Basic Latin up to the Cyrillic block.
+   */
+  private static final int TABLE_SIZE = 0x0500;
+  private static final char[] UPPER_CASE = upperCaseTable();
+
   private final UnicodeCharStream stream;
 
   /**
@@ -93,6 +103,9 @@ public class CaseChangingCharStream implements UnicodeCharStream {
     if (c <= 0) {
       return c;
     }
+    if (c < TABLE_SIZE) {
+      return UPPER_CASE[c];
+    }
     return Character.toUpperCase(c);
   }
 
@@ -130,4 +143,13 @@ public class CaseChangingCharStream implements UnicodeCharStream {
   public boolean supportsUnicodeCodePoints() {
     return stream.supportsUnicodeCodePoints();
   }
+
+  private static char[] upperCaseTable() {
+    var table = new char[TABLE_SIZE];
+    for (var c = 0; c < TABLE_SIZE; c++) {
+      // upper case of every code point of the table range stays in the Basic Multilingual Plane
+      table[c] = (char) Character.toUpperCase(c);
+    }
+    return table;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,328 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.UnicodeCharStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Tuple;
+import org.antlr.v4.runtime.misc.Tuple2;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Поток символов блока комментариев, читающий текст прямо из потока символов модуля.
+ * <p>
+ * Содержимое потока совпадает с текстами комментариев, соединенными переводом строки,
+ * с переводом строки в конце. Переводы строк между комментариями существуют только в этом потоке,
+ * остальные символы читаются из участков исходного потока, занятых токенами комментариев.
+ * Токены, созданные {@link #tokenFactory()}, ссылаются на исходный поток и имеют координаты модуля.
+ * <p>
+ * Исходный поток символов общий для всех описаний модуля и может одновременно читаться лексером,
+ * поэтому текст комментария копируется через {@link CharStream#getText(Interval)}, без перемещения
+ * позиции исходного потока.
+ */
+final class CommentCharStream implements UnicodeCharStream {
+
+  private static final int NEWLINE = '\n';
+
+  private final CharStream source;
+  /**
+   * Индексы исходного потока указывают на кодовые точки, а не на символы UTF-16
+   */
+  private final boolean sourceCodePoints;
+  /**
+   * Индексы первых символов комментариев в исходном потоке
+   */
+  private final int[] sourceStarts;
+  /**
+   * Индексы первых символов комментариев в этом потоке
+   */
+  private final int[] starts;
+  private final int[] lengths;
+  private final int[] lines;
+  private final int[] columns;
+  private final int size;
+  private int index;
+
+  /**
+   * Комментарий, символы которого прочитаны в буфер
+   */
+  private int loaded = -1;
+  private int[] buffer = new int[0];
+
+  private CommentCharStream(CharStream source, List<? extends Token> comments) {
+    this.source = source;
+    sourceCodePoints = source instanceof UnicodeCharStream
+      && ((UnicodeCharStream) source).supportsUnicodeCodePoints();
+
+    var count = comments.size();
+    sourceStarts = new int[count];
+    starts = new int[count];
+    lengths = new int[count];
+    lines = new int[count];
+    columns = new int[count];
+
+    var position = 0;
+    for (var i = 0; i < count; i++) {
+      var comment = comments.get(i);
+      sourceStarts[i] = comment.getStartIndex();
+      starts[i] = position;
+      lengths[i] = comment.getStopIndex() - comment.getStartIndex() + 1;
+      lines[i] = comment.getLine();
+      columns[i] = comment.getCharPositionInLine();
+      position += lengths[i] + 1;
+    }
+    // без комментариев поток состоит из одного завершающего перевода строки
+    size = Math.max(position, 1);
+  }
+
+  /**
+   * Создает поток символов над токенами комментариев.
+   *
+   * @param comments Токены комментариев одного потока символов
+   * @return Поток символов либо null, если токены не ссылаются на общий поток символов
+   * и текст нужно получить из самих токенов
+   */
+  @Nullable
+  static CommentCharStream of(List<? extends Token> comments) {
+    if (comments.isEmpty()) {
+      return null;
+    }
+
+    var source = comments.get(0).getInputStream();
+    if (source == null) {
+      return null;
+    }
+    for (var comment : comments) {
+      if (comment.getInputStream() != source || comment.getStartIndex() < 0) {
+        return null;
+      }
+    }
+    return new CommentCharStream(source, comments);
+  }
+
+  /**
+   * Фабрика токенов, переводящая позиции этого потока в позиции исходного потока.
+   * Токены переводов строк между комментариями получают текст явно.
+   *
+   * @return Фабрика токенов
+   */
+  TokenFactory tokenFactory() {
+    return new CommentTokenFactory();
+  }
+
+  @Override
+  public void consume() {
+    if (index >= size) {
+      throw new IllegalStateException("cannot consume EOF");
+    }
+    index++;
+  }
+
+  @Override
+  public int LA(int i) {
+    int position;
+    if (i > 0) {
+      position = index + i - 1;
+    } else if (i < 0) {
+      position = index + i;
+    } else {
+      return 0;
+    }
+
+    if (position < 0 || position >= size) {
+      return IntStream.EOF;
+    }
+    return charAt(position);
+  }
+
+  @Override
+  public int mark() {
+    return -1;
+  }
+
+  @Override
+  public void release(int marker) {
+    // поток хранит только буфер текущего комментария
+  }
+
+  @Override
+  public int index() {
+    return index;
+  }
+
+  @Override
+  public void seek(int index) {
+    this.index = index;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public String getSourceName() {
+    return source.getSourceName();
+  }
+
+  @Override
+  public String getText(Interval interval) {
+    var start = Math.max(interval.a, 0);
+    var stop = Math.min(interval.b, size - 1);
+    var text = new StringBuilder(Math.max(stop - start + 1, 0));
+    var position = start;
+    while (position <= stop) {
+      var segment = segmentOf(position);
+      var offset = segment < 0 ? 0 : position - starts[segment];
+      var length = segment < 0 ? 0 : lengths[segment];
+      if (offset < length) {
+        var last = Math.min(length - 1, offset + stop - position);
+        text.append(source.getText(Interval.of(sourceStarts[segment] + offset, sourceStarts[segment] + last)));
+        position += last - offset + 1;
+      } else {
+        text.append((char) NEWLINE);
+        position++;
+      }
+    }
+    return text.toString();
+  }
+
+  @Override
+  public boolean supportsUnicodeCodePoints() {
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return getText(Interval.of(0, size - 1));
+  }
+
+  private int charAt(int position) {
+    var segment = segmentOf(position);
+    if (segment < 0) {
+      return NEWLINE;
+    }
+
+    var offset = position - starts[segment];
+    if (offset == lengths[segment]) {
+      return NEWLINE;
+    }
+    load(segment);
+    return buffer[offset];
+  }
+
+  /**
+   * @return Номер комментария, которому принадлежит позиция вместе со следующим за ним переводом строки,
+   * либо -1 для потока без комментариев
+   */
+  private int segmentOf(int position) {
+    if (loaded >= 0 && position >= starts[loaded] && position <= starts[loaded] + lengths[loaded]) {
+      return loaded;
+    }
+    var found = Arrays.binarySearch(starts, position);
+    return found >= 0 ? found : -found - 2;
+  }
+
+  private void load(int segment) {
+    if (segment == loaded) {
+      return;
+    }
+
+    var length = lengths[segment];
+    if (buffer.length < length) {
+      buffer = new int[length];
+    }
+    var text = source.getText(Interval.of(sourceStarts[segment], sourceStarts[segment] + length - 1));
+    var position = 0;
+    for (var i = 0; i < length && position < text.length(); i++) {
+      var symbol = sourceCodePoints ? text.codePointAt(position) : text.charAt(position);
+      buffer[i] = symbol;
+      position += Character.charCount(symbol);
+    }
+    loaded = segment;
+  }
+
+  private final class CommentTokenFactory implements TokenFactory {
+
+    @Nullable
+    private Tuple2<? extends TokenSource, CharStream> sourcePair;
+
+    @Override
+    public Token create(Tuple2<? extends TokenSource, CharStream> pair,
+                        int type,
+                        String text,
+                        int channel,
+                        int start,
+                        int stop,
+                        int line,
+                        int charPositionInLine) {
+      if (sourcePair == null || sourcePair.getItem1() != pair.getItem1()) {
+        sourcePair = Tuple.create(pair.getItem1(), source);
+      }
+
+      var segment = segmentOf(start);
+      if (segment < 0) {
+        var token = new CommonToken(sourcePair, type, channel, start, stop);
+        if (text != null) {
+          token.setText(text);
+        } else {
+          token.setText(type == Token.EOF ? "<EOF>" : getText(Interval.of(start, stop)));
+        }
+        token.setLine(1);
+        token.setCharPositionInLine(0);
+        return token;
+      }
+
+      var offset = start - starts[segment];
+      var sourceStart = sourceStarts[segment] + offset;
+      var sourceStop = sourceStart + stop - start;
+      var token = new CommonToken(sourcePair, type, channel, sourceStart, sourceStop);
+      token.setLine(lines[segment]);
+      token.setCharPositionInLine(columns[segment] + offset);
+      if (text != null) {
+        token.setText(text);
+      } else if (type == Token.EOF) {
+        token.setText("<EOF>");
+      } else if (stop >= starts[segment] + lengths[segment]) {
+        // перевод строки между комментариями отсутствует в исходном потоке
+        token.setText(getText(Interval.of(start, stop)));
+      } else {
+        // текст токена внутри комментария выделяется из исходного потока
+      }
+      return token;
+    }
+
+    @Override
+    public Token create(int type, String text) {
+      return new CommonToken(type, text);
+    }
+  }
+}
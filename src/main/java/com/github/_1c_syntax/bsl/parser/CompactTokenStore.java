@@ -0,0 +1,386 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Компактное хранилище токенов.
+ * <p>
+ * Вместо объекта {@link org.antlr.v4.runtime.CommonToken} на каждый токен хранит параллельные массивы
+ * типов, каналов, смещений начала и конца, строк и колонок. Текст токена не хранится и выделяется
+ * из общего потока символов при обращении.
+ * <p>
+ * Токены выдаются в виде легковесных представлений {@link Token}, создаваемых при обращении, поэтому
+ * хранилище можно передать парсеру через {@link #newTokenSource()} или {@link #newTokenStream()}.
+ */
+public final class CompactTokenStore {
+
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final String EOF_TEXT = "<EOF>";
+
+  private final CharStream input;
+  private final Source source = new Source();
+  private int size;
+  private int[] types;
+  private int[] channels;
+  private int[] starts;
+  private int[] stops;
+  private int[] lines;
+  private int[] columns;
+
+  private CompactTokenStore(CharStream input, int capacity) {
+    this.input = input;
+    types = new int[capacity];
+    channels = new int[capacity];
+    starts = new int[capacity];
+    stops = new int[capacity];
+    lines = new int[capacity];
+    columns = new int[capacity];
+  }
+
+  /**
+   * Заполняет хранилище токенами источника до EOF включительно
+   *
+   * @param tokenSource Источник токенов, например лексер
+   * @return Хранилище токенов
+   */
+  public static CompactTokenStore of(TokenSource tokenSource) {
+    requireNonNull(tokenSource);
+    return of(tokenSource.getInputStream(), new Iterator<>() {
+      private boolean finished;
+
+      @Override
+      public boolean hasNext() {
+        return !finished;
+      }
+
+      @Override
+      public Token next() {
+        var token = tokenSource.nextToken();
+        finished = token.getType() == Token.EOF;
+        return token;
+      }
+    });
+  }
+
+  static CompactTokenStore of(CharStream input, Iterator<Token> tokens) {
+    requireNonNull(input);
+    var store = new CompactTokenStore(input, Math.min(INITIAL_CAPACITY, input.size() + 1));
+    tokens.forEachRemaining(store::add);
+    store.trim();
+    return store;
+  }
+
+  /**
+   * @return Количество токенов, включая EOF
+   */
+  public int size() {
+    return size;
+  }
+
+  public int getType(int index) {
+    return types[checkIndex(index)];
+  }
+
+  public int getChannel(int index) {
+    return channels[checkIndex(index)];
+  }
+
+  public int getStartIndex(int index) {
+    return starts[checkIndex(index)];
+  }
+
+  public int getStopIndex(int index) {
+    return stops[checkIndex(index)];
+  }
+
+  public int getLine(int index) {
+    return lines[checkIndex(index)];
+  }
+
+  public int getCharPositionInLine(int index) {
+    return columns[checkIndex(index)];
+  }
+
+  /**
+   * Возвращает текст токена, выделяя его из потока символов
+   *
+   * @param index Индекс токена
+   * @return Текст токена
+   */
+  public String getText(int index) {
+    checkIndex(index);
+    var start = starts[index];
+    var stop = stops[index];
+    var inputSize = input.size();
+    if (start < inputSize && stop < inputSize) {
+      return input.getText(Interval.of(start, stop));
+    }
+    return EOF_TEXT;
+  }
+
+  /**
+   * @return Поток символов, из которого получены токены
+   */
+  public CharStream getInputStream() {
+    return input;
+  }
+
+  /**
+   * Возвращает легковесное представление токена
+   *
+   * @param index Индекс токена
+   * @return Токен
+   */
+  public Token get(int index) {
+    return new CompactToken(checkIndex(index), source);
+  }
+
+  /**
+   * @return Неизменяемый список токенов, создающий представления токенов при обращении
+   */
+  public List<Token> asList() {
+    return new TokenList();
+  }
+
+  /**
+   * @return Новый источник токенов, последовательно выдающий токены хранилища
+   */
+  public TokenSource newTokenSource() {
+    return new Source();
+  }
+
+  /**
+   * @return Новый поток токенов для парсера
+   */
+  public CommonTokenStream newTokenStream() {
+    return new CommonTokenStream(newTokenSource());
+  }
+
+  private void add(Token token) {
+    if (size == types.length) {
+      grow();
+    }
+    types[size] = token.getType();
+    channels[size] = token.getChannel();
+    starts[size] = token.getStartIndex();
+    stops[size] = token.getStopIndex();
+    lines[size] = token.getLine();
+    columns[size] = token.getCharPositionInLine();
+    size++;
+  }
+
+  private void grow() {
+    var capacity = Math.max(INITIAL_CAPACITY, types.length * 2);
+    resize(capacity);
+  }
+
+  private void trim() {
+    if (size < types.length) {
+      resize(size);
+    }
+  }
+
+  private void resize(int capacity) {
+    types = Arrays.copyOf(types, capacity);
+    channels = Arrays.copyOf(channels, capacity);
+    starts = Arrays.copyOf(starts, capacity);
+    stops = Arrays.copyOf(stops, capacity);
+    lines = Arrays.copyOf(lines, capacity);
+    columns = Arrays.copyOf(columns, capacity);
+  }
+
+  private int checkIndex(int index) {
+    return Objects.checkIndex(index, size);
+  }
+
+  /**
+   * Легковесное представление токена хранилища
+   */
+  private final class CompactToken implements Token {
+    private final int index;
+    private final Source tokenSource;
+
+    private CompactToken(int index, Source tokenSource) {
+      this.index = index;
+      this.tokenSource = tokenSource;
+    }
+
+    @Override
+    public String getText() {
+      return CompactTokenStore.this.getText(index);
+    }
+
+    @Override
+    public int getType() {
+      return types[index];
+    }
+
+    @Override
+    public int getLine() {
+      return lines[index];
+    }
+
+    @Override
+    public int getCharPositionInLine() {
+      return columns[index];
+    }
+
+    @Override
+    public int getChannel() {
+      return channels[index];
+    }
+
+    @Override
+    public int getTokenIndex() {
+      return index;
+    }
+
+    @Override
+    public int getStartIndex() {
+      return starts[index];
+    }
+
+    @Override
+    public int getStopIndex() {
+      return stops[index];
+    }
+
+    @Override
+    public TokenSource getTokenSource() {
+      return tokenSource;
+    }
+
+    @Override
+    public CharStream getInputStream() {
+      return input;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof CompactToken)) {
+        return false;
+      }
+      var other = (CompactToken) obj;
+      return index == other.index && store() == other.store();
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(store()) + index;
+    }
+
+    @Override
+    public String toString() {
+      var text = getText()
+        .replace("\n", "\\n")
+        .replace("\r", "\\r")
+        .replace("\t", "\\t");
+      var channel = getChannel() > 0 ? ",channel=" + getChannel() : "";
+      return "[@" + index + "," + getStartIndex() + ":" + getStopIndex() + "='" + text + "',<" + getType() + ">"
+        + channel + "," + getLine() + ":" + getCharPositionInLine() + "]";
+    }
+
+    private CompactTokenStore store() {
+      return CompactTokenStore.this;
+    }
+  }
+
+  /**
+   * Источник токенов, последовательно выдающий токены хранилища.
+   * После исчерпания повторно выдает последний токен (EOF).
+   */
+  private final class Source implements TokenSource {
+    private int position;
+    private TokenFactory tokenFactory = CommonTokenFactory.DEFAULT;
+
+    @Override
+    public Token nextToken() {
+      var token = new CompactToken(position, this);
+      if (position < size - 1) {
+        position++;
+      }
+      return token;
+    }
+
+    @Override
+    public int getLine() {
+      return lines[position];
+    }
+
+    @Override
+    public int getCharPositionInLine() {
+      return columns[position];
+    }
+
+    @Override
+    public CharStream getInputStream() {
+      return input;
+    }
+
+    @Override
+    public String getSourceName() {
+      return input.getSourceName();
+    }
+
+    @Override
+    public void setTokenFactory(TokenFactory factory) {
+      this.tokenFactory = factory;
+    }
+
+    @Override
+    public TokenFactory getTokenFactory() {
+      return tokenFactory;
+    }
+  }
+
+  private final class TokenList extends AbstractList<Token> implements RandomAccess {
+    @Override
+    public Token get(int index) {
+      return CompactTokenStore.this.get(index);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
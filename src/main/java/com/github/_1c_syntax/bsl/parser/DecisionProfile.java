@@ -0,0 +1,214 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.atn.DecisionInfo;
+
+/**
+ * Профиль одного решения предсказания парсера, накопленный по одному или нескольким разборам.
+ * <p>
+ * Решение - точка выбора альтернативы или выхода из цикла в правиле грамматики. Глубина просмотра показывает,
+ * сколько токенов понадобилось для выбора, переходы в режим LL - сколько раз контекста правила не хватило.
+ * Глубокий просмотр и частые переходы в режим LL указывают на места грамматики, которые стоит переписать.
+ */
+public final class DecisionProfile {
+
+  private final int decision;
+  private final String ruleName;
+  private long invocations;
+  private long timeInPrediction;
+  private long sllTotalLook;
+  private long sllMaxLook;
+  private long sllAtnTransitions;
+  private long llFallbacks;
+  private long llTotalLook;
+  private long llMaxLook;
+  private long llAtnTransitions;
+  private long ambiguities;
+  private long contextSensitivities;
+  private long errors;
+
+  DecisionProfile(int decision, String ruleName) {
+    this.decision = decision;
+    this.ruleName = ruleName;
+  }
+
+  /**
+   * @return Номер решения в ATN грамматики
+   */
+  public int getDecision() {
+    return decision;
+  }
+
+  /**
+   * @return Имя правила грамматики, которому принадлежит решение
+   */
+  public String getRuleName() {
+    return ruleName;
+  }
+
+  /**
+   * @return Количество вызовов предсказания
+   */
+  public long getInvocations() {
+    return invocations;
+  }
+
+  /**
+   * @return Суммарное время предсказания, нс
+   */
+  public long getTimeInPrediction() {
+    return timeInPrediction;
+  }
+
+  /**
+   * @return Суммарная глубина просмотра в режиме SLL, токенов
+   */
+  public long getSllTotalLook() {
+    return sllTotalLook;
+  }
+
+  /**
+   * @return Наибольшая глубина просмотра в режиме SLL, токенов
+   */
+  public long getSllMaxLook() {
+    return sllMaxLook;
+  }
+
+  /**
+   * @return Количество шагов просмотра SLL, выполненных по ATN, а не по кэшу DFA
+   */
+  public long getSllAtnTransitions() {
+    return sllAtnTransitions;
+  }
+
+  /**
+   * @return Количество переходов предсказания из режима SLL в режим LL
+   */
+  public long getLlFallbacks() {
+    return llFallbacks;
+  }
+
+  /**
+   * @return Суммарная глубина просмотра в режиме LL, токенов
+   */
+  public long getLlTotalLook() {
+    return llTotalLook;
+  }
+
+  /**
+   * @return Наибольшая глубина просмотра в режиме LL, токенов
+   */
+  public long getLlMaxLook() {
+    return llMaxLook;
+  }
+
+  /**
+   * @return Количество шагов просмотра LL, выполненных по ATN, а не по кэшу DFA
+   */
+  public long getLlAtnTransitions() {
+    return llAtnTransitions;
+  }
+
+  /**
+   * @return Количество неоднозначностей, обнаруженных в режиме LL
+   */
+  public long getAmbiguities() {
+    return ambiguities;
+  }
+
+  /**
+   * @return Количество предсказаний, результат которых в режиме LL отличался от режима SLL
+   */
+  public long getContextSensitivities() {
+    return contextSensitivities;
+  }
+
+  /**
+   * @return Количество синтаксических ошибок, обнаруженных при предсказании
+   */
+  public long getErrors() {
+    return errors;
+  }
+
+  /**
+   * @return Средняя глубина просмотра в режиме SLL на вызов предсказания, токенов
+   */
+  public double getSllAverageLook() {
+    return invocations == 0 ? 0 : (double) sllTotalLook / invocations;
+  }
+
+  /**
+   * @return Средняя глубина просмотра в режиме LL на переход в режим LL, токенов
+   */
+  public double getLlAverageLook() {
+    return llFallbacks == 0 ? 0 : (double) llTotalLook / llFallbacks;
+  }
+
+  void add(DecisionInfo info) {
+    invocations += info.invocations;
+    timeInPrediction += info.timeInPrediction;
+    sllTotalLook += info.SLL_TotalLook;
+    sllMaxLook = Math.max(sllMaxLook, info.SLL_MaxLook);
+    sllAtnTransitions += info.SLL_ATNTransitions;
+    llFallbacks += info.LL_Fallback;
+    llTotalLook += info.LL_TotalLook;
+    llMaxLook = Math.max(llMaxLook, info.LL_MaxLook);
+    llAtnTransitions += info.LL_ATNTransitions;
+    ambiguities += info.ambiguities.size();
+    contextSensitivities += info.contextSensitivities.size();
+    errors += info.errors.size();
+  }
+
+  void add(DecisionProfile other) {
+    invocations += other.invocations;
+    timeInPrediction += other.timeInPrediction;
+    sllTotalLook += other.sllTotalLook;
+    sllMaxLook = Math.max(sllMaxLook, other.sllMaxLook);
+    sllAtnTransitions += other.sllAtnTransitions;
+    llFallbacks += other.llFallbacks;
+    llTotalLook += other.llTotalLook;
+    llMaxLook = Math.max(llMaxLook, other.llMaxLook);
+    llAtnTransitions += other.llAtnTransitions;
+    ambiguities += other.ambiguities;
+    contextSensitivities += other.contextSensitivities;
+    errors += other.errors;
+  }
+
+  DecisionProfile copy() {
+    var copy = new DecisionProfile(decision, ruleName);
+    copy.add(this);
+    return copy;
+  }
+
+  @Override
+  public String toString() {
+    return "DecisionProfile(decision=" + decision
+      + ", ruleName=" + ruleName
+      + ", invocations=" + invocations
+      + ", timeInPrediction=" + timeInPrediction
+      + ", sllMaxLook=" + sllMaxLook
+      + ", llFallbacks=" + llFallbacks
+      + ", llMaxLook=" + llMaxLook
+      + ", ambiguities=" + ambiguities + ")";
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.UnicodeCharStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.util.Objects;
+
+/**
+ * Поток символов с заменяемым содержимым.
+ * <p>
+ * Токены ссылаются на поток символов, из которого получены. При инкрементальном изменении текста
+ * токены, оставшиеся после правки, продолжают ссылаться на этот поток и после сдвига индексов
+ * выделяют свой текст уже из нового содержимого.
+ */
+final class EditableCharStream implements UnicodeCharStream {
+
+  private CharStream delegate;
+
+  EditableCharStream(CharStream delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * Заменяет участок содержимого
+   *
+   * @param offset    Индекс первого заменяемого символа
+   * @param oldLength Количество заменяемых символов
+   * @param newText   Новый текст участка
+   * @return Количество символов нового текста
+   */
+  int replace(int offset, int oldLength, String newText) {
+    var size = delegate.size();
+    Objects.checkFromIndexSize(offset, oldLength, size);
+
+    var content = new StringBuilder(size + newText.length());
+    if (offset > 0) {
+      content.append(delegate.getText(Interval.of(0, offset - 1)));
+    }
+    content.append(newText);
+    if (offset + oldLength < size) {
+      content.append(delegate.getText(Interval.of(offset + oldLength, size - 1)));
+    }
+
+    delegate = CharStreams.fromString(content.toString(), delegate.getSourceName());
+    return newText.codePointCount(0, newText.length());
+  }
+
+  @Override
+  public String getText(Interval interval) {
+    return delegate.getText(interval);
+  }
+
+  @Override
+  public void consume() {
+    delegate.consume();
+  }
+
+  @Override
+  public int LA(int i) {
+    return delegate.LA(i);
+  }
+
+  @Override
+  public int mark() {
+    return delegate.mark();
+  }
+
+  @Override
+  public void release(int marker) {
+    delegate.release(marker);
+  }
+
+  @Override
+  public int index() {
+    return delegate.index();
+  }
+
+  @Override
+  public void seek(int index) {
+    delegate.seek(index);
+  }
+
+  @Override
+  public int size() {
+    return delegate.size();
+  }
+
+  @Override
+  public String getSourceName() {
+    return delegate.getSourceName();
+  }
+
+  @Override
+  public boolean supportsUnicodeCodePoints() {
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return delegate.toString();
+  }
+}
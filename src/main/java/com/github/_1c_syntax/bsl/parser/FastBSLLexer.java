@@ -0,0 +1,700 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Tuple;
+import org.antlr.v4.runtime.misc.Tuple2;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EmptyStackException;
+import java.util.HashSet;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Специализированный лексер BSL, выдающий те же токены, что и {@link BSLLexer}.
+ * <p>
+ * Правила лексера разобраны вручную: вместо обхода ATN универсальным {@link org.antlr.v4.runtime.atn.LexerATNSimulator}
+ * каждый режим выбирает правило по первому символу, а ключевые слова определяются по таблицам {@link BSLKeywords}.
+ * Типы, каналы, режимы, позиции токенов и подсчет строк {@link CRAwareLexerATNSimulator} совпадают с
+ * {@link BSLLexer}, включая пропуск символов, не подходящих ни одному правилу режима. Множество букв
+ * фрагмента {@code LETTER} берется из ATN {@link BSLLexer}, поэтому совпадает с ним для любой версии Unicode.
+ * <p>
+ * Лексер подходит для инструментов, которым нужны только токены, например для подсветки или метрик. Об ошибках
+ * распознавания он не сообщает. Токены передаются парсеру через {@link org.antlr.v4.runtime.CommonTokenStream}.
+ */
+public final class FastBSLLexer implements TokenSource {
+
+  private static final BitSet LETTERS = letters();
+
+  private final CharStream input;
+  private final int[] text;
+  private final Tuple2<TokenSource, CharStream> source;
+  private TokenFactory factory = CommonTokenFactory.DEFAULT;
+
+  private int position;
+  private int line = 1;
+  private int charPositionInLine;
+  private int mode = Lexer.DEFAULT_MODE;
+  private int[] modeStack = new int[4];
+  private int modeStackSize;
+
+  // результат сопоставления правила
+  private int type;
+  private int channel;
+  private int end;
+  // конец самой длинной строки с закрывающей кавычкой, найденной stringBodyEnd, или -1
+  private int closingQuoteEnd;
+
+  /**
+   * Создает лексер над всем содержимым потока символов
+   *
+   * @param input Поток символов
+   */
+  public FastBSLLexer(CharStream input) {
+    requireNonNull(input);
+    this.input = input;
+    this.text = codePoints(input);
+    this.source = Tuple.create(this, input);
+  }
+
+  @Override
+  public Token nextToken() {
+    while (true) {
+      if (position >= text.length) {
+        input.seek(text.length);
+        return factory.create(source, Token.EOF, null, Token.DEFAULT_CHANNEL,
+          position, position - 1, line, charPositionInLine);
+      }
+
+      var start = position;
+      var startLine = line;
+      var startCharPositionInLine = charPositionInLine;
+      channel = Token.DEFAULT_CHANNEL;
+      if (match(start)) {
+        advance(end);
+        return factory.create(source, type, null, channel, start, end - 1, startLine, startCharPositionInLine);
+      }
+
+      // как LexerATNSimulator: пропускаются прочитанные символы и еще один следующий
+      advance(end);
+      if (position < text.length) {
+        advance(position + 1);
+      }
+    }
+  }
+
+  @Override
+  public int getLine() {
+    return line;
+  }
+
+  @Override
+  public int getCharPositionInLine() {
+    return charPositionInLine;
+  }
+
+  @Override
+  public CharStream getInputStream() {
+    return input;
+  }
+
+  @Override
+  public String getSourceName() {
+    return input.getSourceName();
+  }
+
+  @Override
+  public void setTokenFactory(TokenFactory factory) {
+    this.factory = requireNonNull(factory);
+  }
+
+  @Override
+  public TokenFactory getTokenFactory() {
+    return factory;
+  }
+
+  /**
+   * @return Текущий режим лексера, номер режима {@link BSLLexer}
+   */
+  public int getMode() {
+    return mode;
+  }
+
+  /**
+   * Сопоставляет правило текущего режима с позиции {@code start}
+   *
+   * @return {@code true}, если правило найдено. Иначе {@link #end} - конец прочитанных без результата символов
+   */
+  private boolean match(int start) {
+    switch (mode) {
+      case Lexer.DEFAULT_MODE:
+        return matchCode(start, false);
+      case BSLLexer.ASYNC_MODE:
+        return matchCode(start, true);
+      case BSLLexer.PREPROCESSOR_MODE:
+        return matchPreprocessor(start);
+      case BSLLexer.ANNOTATION_MODE:
+        return matchAnnotation(start);
+      case BSLLexer.LABEL_MODE:
+        return matchIdentifierMode(start, BSLLexer.IDENTIFIER, false);
+      case BSLLexer.REGION_MODE:
+        return matchIdentifierMode(start, BSLLexer.PREPROC_IDENTIFIER, true);
+      case BSLLexer.DOT_MODE:
+        return matchIdentifierMode(start, BSLLexer.IDENTIFIER, true);
+      case BSLLexer.USE_MODE:
+        return matchUse(start);
+      case BSLLexer.PREPROC_DELETE_MODE:
+        return matchPreprocessorDelete(start);
+      default:
+        throw new IllegalStateException("Unknown lexer mode: " + mode);
+    }
+  }
+
+  private boolean matchCode(int start, boolean async) {
+    var c = text[start];
+    switch (c) {
+      case '/':
+        if (charAt(start + 1) == '/') {
+          return accept(BSLLexer.LINE_COMMENT, Lexer.HIDDEN, lineEnd(start + 2));
+        }
+        return accept(BSLLexer.QUOTIENT, start + 1);
+      case ' ':
+      case '\t':
+      case '\f':
+      case '\r':
+      case '\n':
+        return accept(BSLLexer.WHITE_SPACE, Lexer.HIDDEN, whiteSpaceEnd(start, true));
+      case '.':
+        pushMode(BSLLexer.DOT_MODE);
+        return accept(BSLLexer.DOT, start + 1);
+      case '[':
+        return accept(BSLLexer.LBRACK, start + 1);
+      case ']':
+        return accept(BSLLexer.RBRACK, start + 1);
+      case '(':
+        return accept(BSLLexer.LPAREN, start + 1);
+      case ')':
+        return accept(BSLLexer.RPAREN, start + 1);
+      case ':':
+        return accept(BSLLexer.COLON, start + 1);
+      case ';':
+        return accept(BSLLexer.SEMICOLON, start + 1);
+      case ',':
+        return accept(BSLLexer.COMMA, start + 1);
+      case '=':
+        return accept(BSLLexer.ASSIGN, start + 1);
+      case '+':
+        return accept(BSLLexer.PLUS, start + 1);
+      case '-':
+        return accept(BSLLexer.MINUS, start + 1);
+      case '<':
+        if (charAt(start + 1) == '=') {
+          return accept(BSLLexer.LESS_OR_EQUAL, start + 2);
+        } else if (charAt(start + 1) == '>') {
+          return accept(BSLLexer.NOT_EQUAL, start + 2);
+        }
+        return accept(BSLLexer.LESS, start + 1);
+      case '>':
+        if (charAt(start + 1) == '=') {
+          return accept(BSLLexer.GREATER_OR_EQUAL, start + 2);
+        }
+        return accept(BSLLexer.GREATER, start + 1);
+      case '*':
+        return accept(BSLLexer.MUL, start + 1);
+      case '%':
+        return accept(BSLLexer.MODULO, start + 1);
+      case '?':
+        return accept(BSLLexer.QUESTION, start + 1);
+      case '&':
+        pushMode(BSLLexer.ANNOTATION_MODE);
+        return accept(BSLLexer.AMPERSAND, start + 1);
+      case '#':
+        return matchHash(start);
+      case '|':
+        return matchBar(start);
+      case '~':
+        pushMode(BSLLexer.LABEL_MODE);
+        return accept(BSLLexer.TILDA, start + 1);
+      case '\'':
+        return matchDateTime(start);
+      case '"':
+        return matchQuote(start);
+      default:
+        break;
+    }
+
+    if (isDigit(c)) {
+      return matchNumber(start);
+    }
+    if (isLetter(c)) {
+      return matchCodeIdentifier(start, async);
+    }
+    // Async_UNKNOWN, в отличие от UNKNOWN, остается на основном канале
+    return accept(BSLLexer.UNKNOWN, async ? Token.DEFAULT_CHANNEL : Lexer.HIDDEN, start + 1);
+  }
+
+  private boolean matchHash(int start) {
+    var word = skipSpacesAndTabs(start + 1);
+    int wordEnd;
+    if ((wordEnd = matchWord(word, "УДАЛЕНИЕ", "DELETE")) > 0) {
+      pushMode(BSLLexer.PREPROC_DELETE_MODE);
+      return accept(BSLLexer.PREPROC_DELETE, BSLLexer.PREPROC_DELETE_CHANNEL, wordEnd);
+    }
+    if ((wordEnd = matchWord(word, "ВСТАВКА", "INSERT")) > 0) {
+      return accept(BSLLexer.PREPROC_INSERT, Lexer.HIDDEN, wordEnd);
+    }
+    if ((wordEnd = matchWord(word, "КОНЕЦВСТАВКИ", "ENDINSERT")) > 0) {
+      return accept(BSLLexer.PREPROC_ENDINSERT, Lexer.HIDDEN, wordEnd);
+    }
+    pushMode(BSLLexer.PREPROCESSOR_MODE);
+    return accept(BSLLexer.HASH, start + 1);
+  }
+
+  /**
+   * BAR, STRINGTAIL или STRINGPART: побеждает самое длинное совпадение, при равной длине - BAR
+   */
+  private boolean matchBar(int start) {
+    var bodyEnd = stringBodyEnd(start + 1);
+    var closingEnd = closingQuoteEnd;
+    if (closingEnd > bodyEnd) {
+      return accept(BSLLexer.STRINGTAIL, closingEnd);
+    }
+    if (bodyEnd > start + 1) {
+      return accept(BSLLexer.STRINGPART, bodyEnd);
+    }
+    return accept(BSLLexer.BAR, start + 1);
+  }
+
+  /**
+   * STRING или STRINGSTART: побеждает самое длинное совпадение
+   */
+  private boolean matchQuote(int start) {
+    var bodyEnd = stringBodyEnd(start + 1);
+    var closingEnd = closingQuoteEnd;
+    if (closingEnd > bodyEnd) {
+      return accept(BSLLexer.STRING, closingEnd);
+    }
+    return accept(BSLLexer.STRINGSTART, bodyEnd);
+  }
+
+  /**
+   * Читает тело строки {@code (~[\r\n"] | '""')*} и запоминает в {@link #closingQuoteEnd} конец самого
+   * длинного варианта с закрывающей кавычкой
+   *
+   * @return Конец самого длинного тела строки
+   */
+  private int stringBodyEnd(int from) {
+    closingQuoteEnd = -1;
+    var i = from;
+    while (i < text.length) {
+      var c = text[i];
+      if (c == '"') {
+        closingQuoteEnd = i + 1;
+        if (charAt(i + 1) != '"') {
+          break;
+        }
+        i += 2;
+      } else if (c == '\r' || c == '\n') {
+        break;
+      } else {
+        i++;
+      }
+    }
+    return i;
+  }
+
+  private boolean matchDateTime(int start) {
+    var i = start + 1;
+    while (i < text.length && text[i] != '\'' && text[i] != '\n' && text[i] != '\r') {
+      i++;
+    }
+    if (charAt(i) == '\'') {
+      i++;
+    }
+    return accept(BSLLexer.DATETIME, i);
+  }
+
+  private boolean matchNumber(int start) {
+    var i = digitsEnd(start);
+    if (charAt(i) == '.') {
+      return accept(BSLLexer.FLOAT, digitsEnd(i + 1));
+    }
+    return accept(BSLLexer.DECIMAL, i);
+  }
+
+  private boolean matchCodeIdentifier(int start, boolean async) {
+    var identifierEnd = identifierEnd(start);
+    var keyword = BSLKeywords.CODE.typeOf(text, start, identifierEnd);
+    if (keyword == Token.INVALID_TYPE
+      || keyword == BSLLexer.AWAIT_KEYWORD && !async
+      || keyword == BSLLexer.ASYNC_KEYWORD && async) {
+      return accept(BSLLexer.IDENTIFIER, identifierEnd);
+    }
+    if (keyword == BSLLexer.ASYNC_KEYWORD) {
+      pushMode(BSLLexer.ASYNC_MODE);
+    } else if (async && (keyword == BSLLexer.ENDPROCEDURE_KEYWORD || keyword == BSLLexer.ENDFUNCTION_KEYWORD)) {
+      popMode();
+    }
+    return accept(keyword, identifierEnd);
+  }
+
+  private boolean matchPreprocessor(int start) {
+    var c = text[start];
+    switch (c) {
+      case '!':
+        return accept(BSLLexer.PREPROC_EXCLAMATION_MARK, start + 1);
+      case '(':
+        return accept(BSLLexer.PREPROC_LPAREN, start + 1);
+      case ')':
+        return accept(BSLLexer.PREPROC_RPAREN, start + 1);
+      case '"':
+        var stringEnd = preprocessorStringEnd(start);
+        if (stringEnd > 0) {
+          return accept(BSLLexer.PREPROC_STRING, stringEnd);
+        }
+        return accept(BSLLexer.PREPROC_ANY, start + 1);
+      case ' ':
+      case '\t':
+      case '\f':
+        return accept(BSLLexer.WHITE_SPACE, Lexer.HIDDEN, whiteSpaceEnd(start, false));
+      case '/':
+        if (charAt(start + 1) == '/') {
+          return accept(BSLLexer.LINE_COMMENT, Lexer.HIDDEN, lineEnd(start + 2));
+        }
+        return accept(BSLLexer.PREPROC_ANY, start + 1);
+      case '\n':
+        popMode();
+        return accept(BSLLexer.PREPROC_NEWLINE, Lexer.HIDDEN, start + 1);
+      case '\r':
+        if (charAt(start + 1) == '\n') {
+          popMode();
+          return accept(BSLLexer.PREPROC_NEWLINE, Lexer.HIDDEN, start + 2);
+        }
+        return fail(start + 1);
+      default:
+        break;
+    }
+
+    if (isLetter(c)) {
+      var identifierEnd = identifierEnd(start);
+      var keyword = BSLKeywords.PREPROCESSOR.typeOf(text, start, identifierEnd);
+      if (keyword == Token.INVALID_TYPE) {
+        return accept(BSLLexer.PREPROC_IDENTIFIER, identifierEnd);
+      }
+      if (keyword == BSLLexer.PREPROC_USE_KEYWORD) {
+        pushMode(BSLLexer.USE_MODE);
+      } else if (keyword == BSLLexer.PREPROC_REGION) {
+        pushMode(BSLLexer.REGION_MODE);
+      }
+      return accept(keyword, identifierEnd);
+    }
+    return accept(BSLLexer.PREPROC_ANY, start + 1);
+  }
+
+  private boolean matchAnnotation(int start) {
+    var c = text[start];
+    if (isLetter(c)) {
+      var identifierEnd = identifierEnd(start);
+      var symbol = BSLKeywords.ANNOTATION.typeOf(text, start, identifierEnd);
+      popMode();
+      return accept(symbol == Token.INVALID_TYPE ? BSLLexer.ANNOTATION_CUSTOM_SYMBOL : symbol, identifierEnd);
+    }
+    if (isWhiteSpace(c, true)) {
+      return accept(BSLLexer.WHITE_SPACE, Lexer.HIDDEN, whiteSpaceEnd(start, true));
+    }
+    return accept(BSLLexer.ANNOTATION_UNKNOWN, Lexer.HIDDEN, start + 1);
+  }
+
+  /**
+   * Режимы, в которых ожидается один идентификатор: LABEL_MODE, REGION_MODE и DOT_MODE
+   */
+  private boolean matchIdentifierMode(int start, int identifierType, boolean whiteSpace) {
+    var c = text[start];
+    if (isLetter(c)) {
+      popMode();
+      return accept(identifierType, identifierEnd(start));
+    }
+    if (whiteSpace && isWhiteSpace(c, false)) {
+      return accept(BSLLexer.WHITE_SPACE, Lexer.HIDDEN, whiteSpaceEnd(start, false));
+    }
+    return fail(start);
+  }
+
+  private boolean matchUse(int start) {
+    var c = text[start];
+    if (isWhiteSpace(c, false)) {
+      return accept(BSLLexer.WHITE_SPACE, Lexer.HIDDEN, whiteSpaceEnd(start, false));
+    }
+    if (c == '"') {
+      var stringEnd = preprocessorStringEnd(start);
+      if (stringEnd < 0) {
+        return fail(lineEnd(start + 1));
+      }
+      popMode();
+      return accept(BSLLexer.PREPROC_STRING, stringEnd);
+    }
+    if (isUseLetter(c)) {
+      var i = start + 1;
+      while (i < text.length && isUseLetter(text[i])) {
+        i++;
+      }
+      popMode();
+      return accept(BSLLexer.PREPROC_IDENTIFIER, i);
+    }
+    return fail(start);
+  }
+
+  private boolean matchPreprocessorDelete(int start) {
+    var c = text[start];
+    switch (c) {
+      case '#':
+        var wordEnd = matchWord(skipSpacesAndTabs(start + 1), "КОНЕЦУДАЛЕНИЯ", "ENDDELETE");
+        if (wordEnd > 0) {
+          popMode();
+          return accept(BSLLexer.PREPROC_ENDDELETE, BSLLexer.PREPROC_DELETE_CHANNEL, wordEnd);
+        }
+        break;
+      case ' ':
+      case '\t':
+      case '\f':
+        return accept(BSLLexer.WHITE_SPACE, Lexer.HIDDEN, whiteSpaceEnd(start, false));
+      case '/':
+        if (charAt(start + 1) == '/') {
+          return accept(BSLLexer.LINE_COMMENT, Lexer.HIDDEN, lineEnd(start + 2));
+        }
+        break;
+      case '\n':
+        return accept(BSLLexer.PREPROC_NEWLINE, Lexer.HIDDEN, start + 1);
+      case '\r':
+        if (charAt(start + 1) == '\n') {
+          return accept(BSLLexer.PREPROC_NEWLINE, Lexer.HIDDEN, start + 2);
+        }
+        break;
+      default:
+        break;
+    }
+    return accept(BSLLexer.PREPROC_DELETE_ANY, BSLLexer.PREPROC_DELETE_CHANNEL, start + 1);
+  }
+
+  private boolean accept(int tokenType, int tokenEnd) {
+    return accept(tokenType, Token.DEFAULT_CHANNEL, tokenEnd);
+  }
+
+  private boolean accept(int tokenType, int tokenChannel, int tokenEnd) {
+    type = tokenType;
+    channel = tokenChannel;
+    end = tokenEnd;
+    return true;
+  }
+
+  private boolean fail(int consumedEnd) {
+    end = consumedEnd;
+    return false;
+  }
+
+  /**
+   * Сдвигает позицию, считая строки как {@link CRAwareLexerATNSimulator#consume}
+   */
+  private void advance(int to) {
+    for (var i = position; i < to; i++) {
+      var c = text[i];
+      if (c == '\n') {
+        line++;
+        charPositionInLine = 0;
+      } else if (c == '\r') {
+        if (charAt(i + 1) != '\n') {
+          line++;
+          charPositionInLine = 0;
+        }
+      } else {
+        charPositionInLine++;
+      }
+    }
+    position = to;
+  }
+
+  private void pushMode(int newMode) {
+    if (modeStackSize == modeStack.length) {
+      modeStack = Arrays.copyOf(modeStack, modeStackSize * 2);
+    }
+    modeStack[modeStackSize++] = mode;
+    mode = newMode;
+  }
+
+  private void popMode() {
+    if (modeStackSize == 0) {
+      throw new EmptyStackException();
+    }
+    mode = modeStack[--modeStackSize];
+  }
+
+  private int charAt(int index) {
+    return index < text.length ? text[index] : Token.EOF;
+  }
+
+  /**
+   * Сопоставляет без учета регистра слово директивы после {@code #}
+   *
+   * @return Конец слова или -1
+   */
+  private int matchWord(int start, String russian, String english) {
+    var end = matchWord(start, russian);
+    return end > 0 ? end : matchWord(start, english);
+  }
+
+  private int matchWord(int start, String word) {
+    if (start + word.length() > text.length) {
+      return -1;
+    }
+    for (var i = 0; i < word.length(); i++) {
+      if (BSLKeywords.toUpperCase(text[start + i]) != word.charAt(i)) {
+        return -1;
+      }
+    }
+    return start + word.length();
+  }
+
+  /**
+   * @return Конец строки вида {@code '"' (~["\n\r])* '"'} или -1, если строка не закрыта
+   */
+  private int preprocessorStringEnd(int start) {
+    for (var i = start + 1; i < text.length; i++) {
+      var c = text[i];
+      if (c == '"') {
+        return i + 1;
+      } else if (c == '\n' || c == '\r') {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  private int skipSpacesAndTabs(int from) {
+    var i = from;
+    while (i < text.length && (text[i] == ' ' || text[i] == '\t')) {
+      i++;
+    }
+    return i;
+  }
+
+  private int lineEnd(int from) {
+    var i = from;
+    while (i < text.length && text[i] != '\n' && text[i] != '\r') {
+      i++;
+    }
+    return i;
+  }
+
+  private int whiteSpaceEnd(int from, boolean withLineBreaks) {
+    var i = from;
+    while (i < text.length && isWhiteSpace(text[i], withLineBreaks)) {
+      i++;
+    }
+    return i;
+  }
+
+  private int digitsEnd(int from) {
+    var i = from;
+    while (i < text.length && isDigit(text[i])) {
+      i++;
+    }
+    return i;
+  }
+
+  private int identifierEnd(int start) {
+    var i = start + 1;
+    while (i < text.length && (isLetter(text[i]) || isDigit(text[i]))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean isWhiteSpace(int c, boolean withLineBreaks) {
+    return c == ' ' || c == '\t' || c == '\f' || withLineBreaks && (c == '\r' || c == '\n');
+  }
+
+  private static boolean isDigit(int c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isLetter(int c) {
+    return LETTERS.get(c);
+  }
+
+  private static boolean isUseLetter(int c) {
+    return c == '-' || isDigit(c) || isLetter(c);
+  }
+
+  /**
+   * Читает все кодовые точки потока, сохраняя его текущую позицию
+   */
+  private static int[] codePoints(CharStream input) {
+    var index = input.index();
+    var codePoints = new int[input.size()];
+    input.seek(0);
+    for (var i = 0; i < codePoints.length; i++) {
+      codePoints[i] = input.LA(i + 1);
+    }
+    input.seek(index);
+    return codePoints;
+  }
+
+  /**
+   * Собирает символы фрагмента {@code LETTER} из ATN {@link BSLLexer}
+   */
+  private static BitSet letters() {
+    var atn = BSLLexer._ATN;
+    var rule = Arrays.asList(BSLLexer.ruleNames).indexOf("LETTER");
+    var letters = new BitSet();
+    var visited = new HashSet<ATNState>();
+    var queue = new ArrayDeque<ATNState>();
+    queue.add(atn.ruleToStartState[rule]);
+    while (!queue.isEmpty()) {
+      var state = queue.poll();
+      if (!visited.add(state)) {
+        continue;
+      }
+      for (var i = 0; i < state.getNumberOfTransitions(); i++) {
+        var transition = state.transition(i);
+        if (transition.isEpsilon()) {
+          queue.add(transition.target);
+        } else {
+          for (Interval interval : transition.label().getIntervals()) {
+            letters.set(interval.a, interval.b + 1);
+          }
+        }
+      }
+    }
+    return letters;
+  }
+}
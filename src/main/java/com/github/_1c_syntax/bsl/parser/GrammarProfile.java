@@ -0,0 +1,194 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.Parser;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Профиль решений предсказания грамматики, собранный по одному или нескольким разборам.
+ * <p>
+ * Профиль модуля возвращает {@link Tokenizer#getGrammarProfile()} после разбора в режиме профилирования.
+ * Профили модулей одной грамматики объединяются методом {@link #merge(GrammarProfile)} в профиль корпуса,
+ * по которому {@link #report(int)} строит отчет о самых затратных решениях с именами правил.
+ * Объединение и чтение потокобезопасны.
+ */
+public final class GrammarProfile {
+
+  private static final Comparator<DecisionProfile> BY_TIME =
+    Comparator.comparingLong(DecisionProfile::getTimeInPrediction).reversed()
+      .thenComparingInt(DecisionProfile::getDecision);
+
+  private final String grammarName;
+  private final DecisionProfile[] decisions;
+  private long modules;
+
+  private GrammarProfile(String grammarName, DecisionProfile[] decisions, long modules) {
+    this.grammarName = grammarName;
+    this.decisions = decisions;
+    this.modules = modules;
+  }
+
+  /**
+   * Создает пустой профиль грамматики парсера
+   *
+   * @param parser Парсер грамматики
+   * @return Профиль без разборов
+   */
+  public static GrammarProfile empty(Parser parser) {
+    var atn = parser.getATN();
+    var ruleNames = parser.getRuleNames();
+    var decisions = new DecisionProfile[atn.getNumberOfDecisions()];
+    for (var i = 0; i < decisions.length; i++) {
+      decisions[i] = new DecisionProfile(i, ruleNames[atn.decisionToState.get(i).ruleIndex]);
+    }
+    return new GrammarProfile(parser.getGrammarFileName(), decisions, 0);
+  }
+
+  /**
+   * Создает профиль по сведениям о решениях парсера, выполнившего разбор в режиме профилирования
+   *
+   * @param parser Парсер с {@link org.antlr.v4.runtime.atn.ProfilingATNSimulator}
+   * @return Профиль одного разбора
+   */
+  static GrammarProfile of(Parser parser) {
+    var profile = empty(parser);
+    for (var info : parser.getParseInfo().getDecisionInfo()) {
+      profile.decisions[info.decision].add(info);
+    }
+    profile.modules = 1;
+    return profile;
+  }
+
+  /**
+   * @return Имя файла грамматики, например {@code BSLParser.g4}
+   */
+  public String getGrammarName() {
+    return grammarName;
+  }
+
+  /**
+   * @return Количество разборов в профиле
+   */
+  public synchronized long getModules() {
+    return modules;
+  }
+
+  /**
+   * @return Суммарное время предсказания всех решений, нс
+   */
+  public synchronized long getTimeInPrediction() {
+    long time = 0;
+    for (DecisionProfile decision : decisions) {
+      time += decision.getTimeInPrediction();
+    }
+    return time;
+  }
+
+  /**
+   * Возвращает снимок профилей вызывавшихся решений
+   *
+   * @return Профили решений по убыванию времени предсказания
+   */
+  public synchronized List<DecisionProfile> getDecisions() {
+    List<DecisionProfile> result = new ArrayList<>();
+    for (DecisionProfile decision : decisions) {
+      if (decision.getInvocations() > 0) {
+        result.add(decision.copy());
+      }
+    }
+    result.sort(BY_TIME);
+    return result;
+  }
+
+  /**
+   * Добавляет к профилю другой профиль той же грамматики
+   *
+   * @param other Профиль, например профиль разбора одного модуля
+   */
+  public void merge(GrammarProfile other) {
+    if (!grammarName.equals(other.grammarName) || decisions.length != other.decisions.length) {
+      throw new IllegalArgumentException("Profiles of different grammars: " + grammarName + ", " + other.grammarName);
+    }
+    if (other == this) {
+      return;
+    }
+
+    List<DecisionProfile> otherDecisions;
+    long otherModules;
+    synchronized (other) {
+      otherDecisions = new ArrayList<>(other.decisions.length);
+      for (DecisionProfile decision : other.decisions) {
+        otherDecisions.add(decision.copy());
+      }
+      otherModules = other.modules;
+    }
+    synchronized (this) {
+      for (var i = 0; i < decisions.length; i++) {
+        decisions[i].add(otherDecisions.get(i));
+      }
+      modules += otherModules;
+    }
+  }
+
+  /**
+   * Строит текстовый отчет о решениях с наибольшим временем предсказания
+   *
+   * @param limit Количество решений в отчете
+   * @return Отчет в виде таблицы
+   */
+  public String report(int limit) {
+    var decisionProfiles = getDecisions();
+    var report = new StringBuilder();
+    report.append(String.format(Locale.ROOT, "%s: %d modules, %d decisions invoked, %.1f ms in prediction%n",
+      grammarName, getModules(), decisionProfiles.size(), getTimeInPrediction() / 1_000_000.0));
+    report.append(String.format(Locale.ROOT, "%-32s %8s %12s %10s %8s %8s %10s %8s %8s %6s %6s %6s%n",
+      "rule", "decision", "invocations", "time, ms", "SLL avg", "SLL max",
+      "LL falls", "LL avg", "LL max", "ambig", "ctx", "errors"));
+    decisionProfiles.stream().limit(limit).forEach((DecisionProfile decision) ->
+      report.append(String.format(Locale.ROOT, "%-32s %8d %12d %10.2f %8.2f %8d %10d %8.2f %8d %6d %6d %6d%n",
+        decision.getRuleName(),
+        decision.getDecision(),
+        decision.getInvocations(),
+        decision.getTimeInPrediction() / 1_000_000.0,
+        decision.getSllAverageLook(),
+        decision.getSllMaxLook(),
+        decision.getLlFallbacks(),
+        decision.getLlAverageLook(),
+        decision.getLlMaxLook(),
+        decision.getAmbiguities(),
+        decision.getContextSensitivities(),
+        decision.getErrors())));
+    return report.toString();
+  }
+
+  @Override
+  public String toString() {
+    return "GrammarProfile(grammarName=" + grammarName
+      + ", modules=" + getModules()
+      + ", timeInPrediction=" + getTimeInPrediction() + ")";
+  }
+}
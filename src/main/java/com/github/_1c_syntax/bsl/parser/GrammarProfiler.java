@@ -0,0 +1,187 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Профилирование решений предсказания парсеров BSL, описаний методов и языка запросов на корпусе исходников.
+ * <p>
+ * Модули {@code *.bsl} и {@code *.os} разбираются {@link BSLTokenizer}, блоки комментариев модулей -
+ * {@link BSLMethodDescriptionTokenizer}, запросы {@code *.sdbl} - {@link SDBLTokenizer}. Профили разборов
+ * объединяются по грамматикам. Экземпляр не потокобезопасен.
+ * <p>
+ * Запуск из командной строки: {@code GrammarProfiler <каталог> [количество решений] [--cold]}, в Gradle -
+ * задача {@code profileGrammar}. По умолчанию корпус сначала разбирается без профилирования, чтобы время
+ * предсказания отражало работу с прогретым DFA; флаг {@code --cold} отключает прогрев.
+ */
+public final class GrammarProfiler {
+
+  private static final int DEFAULT_LIMIT = 30;
+  private static final String COLD = "--cold";
+
+  private final Map<String, GrammarProfile> profiles = new LinkedHashMap<>();
+  private final boolean profiling;
+
+  public GrammarProfiler() {
+    this(true);
+  }
+
+  /**
+   * @param profiling Профилировать разборы. Без профилирования разборы только прогревают DFA.
+   */
+  private GrammarProfiler(boolean profiling) {
+    this.profiling = profiling;
+  }
+
+  /**
+   * Профилирует разбор модуля и описаний в его комментариях
+   *
+   * @param content Текст модуля
+   */
+  public void profileModule(String content) {
+    profile(new BSLTokenizer(content));
+    for (String description : descriptions(content)) {
+      profile(new BSLMethodDescriptionTokenizer(description));
+    }
+  }
+
+  /**
+   * Профилирует разбор текста запроса
+   *
+   * @param content Текст запроса
+   */
+  public void profileQuery(String content) {
+    profile(new SDBLTokenizer(content));
+  }
+
+  /**
+   * Профилирует разбор файла по его расширению. Файлы с другими расширениями пропускаются.
+   *
+   * @param file Путь к файлу
+   * @throws IOException при ошибке чтения файла
+   */
+  public void profile(Path file) throws IOException {
+    var fileName = file.getFileName().toString();
+    if (fileName.endsWith(".bsl") || fileName.endsWith(".os")) {
+      profileModule(Files.readString(file));
+    } else if (fileName.endsWith(".sdbl")) {
+      profileQuery(Files.readString(file));
+    }
+  }
+
+  /**
+   * @return Профили грамматик в порядке первого разбора
+   */
+  public List<GrammarProfile> getProfiles() {
+    return new ArrayList<>(profiles.values());
+  }
+
+  /**
+   * Строит отчет по всем грамматикам, см. {@link GrammarProfile#report(int)}
+   *
+   * @param limit Количество решений в отчете каждой грамматики
+   * @return Отчет
+   */
+  public String report(int limit) {
+    return profiles.values().stream()
+      .map(profile -> profile.report(limit))
+      .collect(Collectors.joining(System.lineSeparator()));
+  }
+
+  public static void main(String[] args) throws IOException {
+    Path directory = null;
+    var limit = DEFAULT_LIMIT;
+    var warmUp = true;
+    for (String arg : args) {
+      if (COLD.equals(arg)) {
+        warmUp = false;
+      } else if (arg.chars().allMatch(Character::isDigit)) {
+        limit = Integer.parseInt(arg);
+      } else {
+        directory = Path.of(arg);
+      }
+    }
+    if (directory == null) {
+      throw new IllegalArgumentException("Usage: GrammarProfiler <directory> [limit] [" + COLD + "]");
+    }
+
+    List<Path> files;
+    try (Stream<Path> walk = Files.walk(directory)) {
+      files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+
+    if (warmUp) {
+      var warmUpParser = new GrammarProfiler(false);
+      for (Path file : files) {
+        warmUpParser.profile(file);
+      }
+    }
+
+    var profiler = new GrammarProfiler();
+    for (Path file : files) {
+      profiler.profile(file);
+    }
+    System.out.println(profiler.report(limit));
+  }
+
+  private void profile(Tokenizer<?, ?> tokenizer) {
+    tokenizer.setProfile(profiling);
+    tokenizer.getAst();
+    var profile = tokenizer.getGrammarProfile();
+    if (profile != null) {
+      profiles.computeIfAbsent(profile.getGrammarName(), name -> GrammarProfile.empty(tokenizer.parser))
+        .merge(profile);
+    }
+  }
+
+  /**
+   * Выделяет блоки идущих подряд строк комментариев
+   */
+  static List<String> descriptions(String content) {
+    List<String> descriptions = new ArrayList<>();
+    var block = new StringBuilder();
+    content.lines().map(String::strip).forEach((String line) -> {
+      if (line.startsWith("//")) {
+        if (block.length() > 0) {
+          block.append('\n');
+        }
+        block.append(line);
+      } else if (block.length() > 0) {
+        descriptions.add(block.toString());
+        block.setLength(0);
+      }
+    });
+    if (block.length() > 0) {
+      descriptions.add(block.toString());
+    }
+    return descriptions;
+  }
+}
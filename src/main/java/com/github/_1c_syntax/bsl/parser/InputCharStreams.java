@@ -0,0 +1,232 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CodePointBuffer;
+import org.antlr.v4.runtime.CodePointCharStream;
+import org.antlr.v4.runtime.IntStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Создание потоков символов для токенизатора из разных источников.
+ * <p>
+ * Во всех случаях в начале содержимого пропускается метка порядка байтов, а байты декодируются как UTF-8
+ * с заменой некорректных последовательностей на символ {@code U+FFFD}, так же как это делает {@link InputStreamReader}.
+ */
+final class InputCharStreams {
+
+  private static final char BOM = '\uFEFF';
+  private static final int DECODE_BUFFER_SIZE = 4096;
+  /**
+   * Размер файла, начиная с которого файл отображается в память, а не читается в массив.
+   * Отображение освобождается только сборщиком мусора, поэтому для множества небольших модулей
+   * оно расходует ограниченное число отображений процесса и удерживает блокировку файлов в Windows.
+   */
+  static final long MAP_THRESHOLD = 1024 * 1024;
+
+  private InputCharStreams() {
+    // utility class
+  }
+
+  /**
+   * Создает поток символов из строки без промежуточного кодирования в байты
+   *
+   * @param content Текст
+   * @return Поток символов
+   */
+  static CharStream fromString(String content) {
+    if (!content.isEmpty() && content.charAt(0) == BOM) {
+      return CharStreams.fromString(content.substring(1));
+    }
+    return CharStreams.fromString(content);
+  }
+
+  /**
+   * Создает поток символов из потока байтов. Поток байтов закрывается после чтения.
+   *
+   * @param content Поток байтов
+   * @return Поток символов
+   */
+  static CharStream fromInputStream(InputStream content) {
+    try (
+      UnicodeBOMInputStream ubis = new UnicodeBOMInputStream(content);
+      Reader inputStreamReader = new InputStreamReader(ubis, StandardCharsets.UTF_8)
+    ) {
+      ubis.skipBOM();
+      return CharStreams.fromReader(inputStreamReader);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Создает поток символов из файла, см. {@link #read(Path)}
+   *
+   * @param path Путь к файлу
+   * @return Поток символов
+   */
+  static CharStream fromPath(Path path) {
+    ByteBuffer bytes;
+    try {
+      bytes = read(path);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return decode(bytes, path.toString());
+  }
+
+  /**
+   * Читает содержимое файла. Файлы от {@link #MAP_THRESHOLD} байт отображаются в память только для чтения,
+   * меньшие читаются в массив целиком.
+   *
+   * @param path Путь к файлу
+   * @return Буфер с содержимым файла
+   * @throws IOException при ошибке открытия, чтения или отображения файла
+   */
+  static ByteBuffer read(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var size = channel.size();
+      if (size >= MAP_THRESHOLD) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      }
+
+      var bytes = ByteBuffer.allocate((int) size);
+      while (bytes.hasRemaining()) {
+        if (channel.read(bytes) < 0) {
+          break;
+        }
+      }
+      return bytes.flip();
+    }
+  }
+
+  /**
+   * Создает поток символов из буфера байтов. Позиция переданного буфера не изменяется.
+   *
+   * @param content Буфер с содержимым от позиции до предела
+   * @return Поток символов
+   */
+  static CharStream fromByteBuffer(ByteBuffer content) {
+    return fromByteBuffer(content, IntStream.UNKNOWN_SOURCE_NAME);
+  }
+
+  /**
+   * Создает поток символов из буфера байтов с именем источника, например путем к файлу.
+   * Позиция переданного буфера не изменяется.
+   *
+   * @param content    Буфер с содержимым от позиции до предела
+   * @param sourceName Имя источника
+   * @return Поток символов
+   */
+  static CharStream fromByteBuffer(ByteBuffer content, String sourceName) {
+    return decode(content.duplicate(), sourceName);
+  }
+
+  private static CharStream decode(ByteBuffer bytes, String sourceName) {
+    skipBOM(bytes);
+
+    CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    var codePoints = CodePointBuffer.builder(bytes.remaining());
+    var chars = CharBuffer.allocate(Math.min(bytes.remaining() + 1, DECODE_BUFFER_SIZE));
+
+    try {
+      CoderResult result;
+      do {
+        result = decoder.decode(bytes, chars, true);
+        drain(chars, codePoints);
+      } while (result.isOverflow());
+      checkResult(result);
+      do {
+        result = decoder.flush(chars);
+        drain(chars, codePoints);
+      } while (result.isOverflow());
+      checkResult(result);
+    } catch (CharacterCodingException e) {
+      throw new RuntimeException(e);
+    }
+
+    return CodePointCharStream.fromBuffer(codePoints.build(), sourceName);
+  }
+
+  private static void drain(CharBuffer chars, CodePointBuffer.Builder codePoints) {
+    chars.flip();
+    codePoints.append(chars);
+    // незавершенная суррогатная пара остается в буфере до следующей порции
+    chars.compact();
+  }
+
+  private static void checkResult(CoderResult result) throws CharacterCodingException {
+    if (result.isError()) {
+      result.throwException();
+    }
+  }
+
+  /**
+   * Пропускает метку порядка байтов, распознаваемую {@link UnicodeBOMInputStream}, сдвигая позицию буфера
+   */
+  static void skipBOM(ByteBuffer bytes) {
+    var position = bytes.position();
+    for (var bom : new UnicodeBOMInputStream.BOM[]{
+      UnicodeBOMInputStream.BOM.UTF_32_LE,
+      UnicodeBOMInputStream.BOM.UTF_32_BE,
+      UnicodeBOMInputStream.BOM.UTF_8,
+      UnicodeBOMInputStream.BOM.UTF_16_LE,
+      UnicodeBOMInputStream.BOM.UTF_16_BE
+    }) {
+      var bomBytes = bom.getBytes();
+      if (startsWith(bytes, position, bomBytes)) {
+        bytes.position(position + bomBytes.length);
+        return;
+      }
+    }
+  }
+
+  private static boolean startsWith(ByteBuffer bytes, int position, byte[] prefix) {
+    if (bytes.limit() - position < prefix.length) {
+      return false;
+    }
+    for (var i = 0; i < prefix.length; i++) {
+      if (bytes.get(position + i) != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStream;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Индекс начал строк текста для перевода смещений в позиции и обратно.
+ * <p>
+ * Смещения индекса, как и индексы токенов ANTLR ({@link org.antlr.v4.runtime.Token#getStartIndex()}),
+ * отсчитываются в кодовых точках, а колонки позиций, как в протоколе LSP, - в единицах UTF-16.
+ * Строки и колонки нумеруются с нуля. Переводы строк распознаются так же, как в
+ * {@link CRAwareLexerATNSimulator}: {@code \n}, {@code \r\n} и одиночный {@code \r}.
+ * <p>
+ * Индекс хранит массив смещений начал строк и отсортированный массив смещений символов вне базовой
+ * многоязычной плоскости, занимающих в UTF-16 два знака, поэтому оба перевода выполняются двоичным поиском
+ * без повторного просмотра текста.
+ */
+public final class LineIndex {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  /**
+   * Смещения начал строк. Первая строка начинается со смещения 0.
+   */
+  private final int[] lineStarts;
+  /**
+   * Смещения символов, представленных в UTF-16 суррогатной парой
+   */
+  private final int[] surrogatePairs;
+  /**
+   * Строки, завершающиеся парой {@code \r\n}
+   */
+  private final BitSet crlfLines;
+  /**
+   * Длина текста в кодовых точках
+   */
+  private final int length;
+
+  private LineIndex(int[] lineStarts, int[] surrogatePairs, BitSet crlfLines, int length) {
+    this.lineStarts = lineStarts;
+    this.surrogatePairs = surrogatePairs;
+    this.crlfLines = crlfLines;
+    this.length = length;
+  }
+
+  /**
+   * Строит индекс по всему содержимому потока символов. Поток просматривается по кодовым точкам
+   * без копирования текста, его позиция не изменяется.
+   *
+   * @param stream Поток символов, например поток, разобранный лексером
+   * @return Индекс строк
+   */
+  public static LineIndex of(CharStream stream) {
+    requireNonNull(stream);
+    var builder = new Builder();
+    var index = stream.index();
+    var size = stream.size();
+    for (var offset = 0; offset < size; offset++) {
+      // LA отсчитывается от текущей позиции: назад с -1, вперед с 1
+      var relative = offset - index;
+      builder.add(stream.LA(relative < 0 ? relative : relative + 1));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Строит индекс по тексту
+   *
+   * @param text Текст
+   * @return Индекс строк
+   */
+  public static LineIndex of(String text) {
+    requireNonNull(text);
+    var builder = new Builder();
+    var textLength = text.length();
+    for (var i = 0; i < textLength; ) {
+      var codePoint = text.codePointAt(i);
+      builder.add(codePoint);
+      i += Character.charCount(codePoint);
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return Длина текста в кодовых точках
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * @return Количество строк. Текст без переводов строк, в том числе пустой, состоит из одной строки.
+   */
+  public int getLineCount() {
+    return lineStarts.length;
+  }
+
+  /**
+   * Возвращает смещение начала строки
+   *
+   * @param line Номер строки, начиная с нуля
+   * @return Смещение первого символа строки в кодовых точках
+   */
+  public int getLineStart(int line) {
+    return lineStarts[Objects.checkIndex(line, lineStarts.length)];
+  }
+
+  /**
+   * Возвращает смещение конца строки без символов перевода строки
+   *
+   * @param line Номер строки, начиная с нуля
+   * @return Смещение, следующее за последним символом строки, в кодовых точках
+   */
+  public int getLineEnd(int line) {
+    Objects.checkIndex(line, lineStarts.length);
+    if (line == lineStarts.length - 1) {
+      return length;
+    }
+    return lineStarts[line + 1] - (crlfLines.get(line) ? 2 : 1);
+  }
+
+  /**
+   * Возвращает строку, в которой находится смещение
+   *
+   * @param offset Смещение в кодовых точках от 0 до длины текста включительно
+   * @return Номер строки, начиная с нуля
+   */
+  public int getLine(int offset) {
+    checkOffset(offset);
+    var index = Arrays.binarySearch(lineStarts, offset);
+    return index >= 0 ? index : -index - 2;
+  }
+
+  /**
+   * Возвращает колонку смещения в единицах UTF-16
+   *
+   * @param offset Смещение в кодовых точках от 0 до длины текста включительно
+   * @return Колонка, начиная с нуля
+   */
+  public int getCharacter(int offset) {
+    var lineStart = lineStarts[getLine(offset)];
+    return toUtf16(offset) - toUtf16(lineStart);
+  }
+
+  /**
+   * Переводит смещение в кодовых точках в смещение в единицах UTF-16, например для индексации {@link String}
+   *
+   * @param offset Смещение в кодовых точках от 0 до длины текста включительно
+   * @return Смещение в единицах UTF-16
+   */
+  public int toUtf16(int offset) {
+    checkOffset(offset);
+    return offset + surrogatePairsBefore(offset);
+  }
+
+  /**
+   * Переводит позицию в смещение. Колонка за концом строки указывает на конец строки.
+   *
+   * @param line      Номер строки, начиная с нуля
+   * @param character Колонка в единицах UTF-16, начиная с нуля
+   * @return Смещение в кодовых точках
+   */
+  public int getOffset(int line, int character) {
+    if (character < 0) {
+      throw new IndexOutOfBoundsException("Character: " + character);
+    }
+    var lineStart = getLineStart(line);
+    var lineEnd = getLineEnd(line);
+    var target = toUtf16(lineStart) + (long) character;
+
+    // наименьшее смещение строки, которое в UTF-16 не меньше искомого
+    var low = lineStart;
+    var high = lineEnd;
+    while (low < high) {
+      var middle = (low + high) >>> 1;
+      if (toUtf16(middle) < target) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private int surrogatePairsBefore(int offset) {
+    var index = Arrays.binarySearch(surrogatePairs, offset);
+    return index >= 0 ? index : -index - 1;
+  }
+
+  private void checkOffset(int offset) {
+    Objects.checkIndex(offset, length + 1);
+  }
+
+  /**
+   * Построитель индекса, получающий текст по одной кодовой точке
+   */
+  private static final class Builder {
+    private int[] lineStarts = new int[INITIAL_CAPACITY];
+    private int lineCount = 1;
+    private int[] surrogatePairs = new int[0];
+    private int surrogatePairCount;
+    private final BitSet crlfLines = new BitSet();
+    private int offset;
+    /**
+     * Предыдущая кодовая точка - {@code \r}, перевод строки по которой еще не учтен
+     */
+    private boolean pendingCR;
+
+    private void add(int codePoint) {
+      if (pendingCR) {
+        pendingCR = false;
+        if (codePoint == '\n') {
+          crlfLines.set(lineCount - 1);
+        } else {
+          // одиночный \r завершает строку
+          addLineStart(offset);
+        }
+      }
+
+      if (codePoint == '\n') {
+        addLineStart(offset + 1);
+      } else if (codePoint == '\r') {
+        pendingCR = true;
+      } else if (Character.charCount(codePoint) == 2) {
+        if (surrogatePairCount == surrogatePairs.length) {
+          surrogatePairs = Arrays.copyOf(surrogatePairs, Math.max(INITIAL_CAPACITY, surrogatePairCount * 2));
+        }
+        surrogatePairs[surrogatePairCount++] = offset;
+      }
+      offset++;
+    }
+
+    private void addLineStart(int lineStart) {
+      if (lineCount == lineStarts.length) {
+        lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+      }
+      lineStarts[lineCount++] = lineStart;
+    }
+
+    private LineIndex build() {
+      if (pendingCR) {
+        pendingCR = false;
+        addLineStart(offset);
+      }
+      return new LineIndex(
+        Arrays.copyOf(lineStarts, lineCount),
+        Arrays.copyOf(surrogatePairs, surrogatePairCount),
+        crlfLines,
+        offset
+      );
+    }
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+
+import java.util.ArrayList;
+import java.util.function.Function;
+
+/**
+ * Разбор описания метода по разделам.
+ * <p>
+ * Правило {@code methodDescription} перечисляет допустимые порядки разделов целиком, поэтому
+ * на длинных описаниях предсказание просматривает описание далеко вперед и часто переходит в режим LL.
+ * Здесь поток токенов предварительно делится на разделы по строкам, начинающимся с ключевых слов,
+ * и каждый раздел разбирается своим правилом за один проход. Разобранные разделы собираются
+ * в дерево {@code methodDescription} в порядке следования в тексте.
+ * <p>
+ * Границы разделов совпадают с выбираемыми правилом {@code methodDescription}: ключевое слово
+ * завершает раздел только там, где грамматика не допускает его внутри раздела. Например, строка
+ * "Устарела." внутри параметров остается описанием типа, а строка "Параметры:" внутри примеров - примером.
+ */
+final class MethodDescriptionSections {
+
+  private MethodDescriptionSections() {
+    // utility class
+  }
+
+  /**
+   * Разбирает описание метода по разделам.
+   * Поток токенов парсера должен быть заполнен, после разбора парсер возвращается к нему.
+   *
+   * @param parser Парсер над заполненным потоком токенов описания
+   * @return Дерево описания метода
+   */
+  static BSLMethodDescriptionParser.MethodDescriptionContext parse(BSLMethodDescriptionParser parser) {
+    var input = parser.getInputStream();
+    var root = new BSLMethodDescriptionParser.MethodDescriptionContext(null, ATNState.INVALID_STATE_NUMBER);
+    root.start = input.get(0);
+
+    try {
+      Section section = null;
+      var sectionStart = 0;
+      var lineStart = 0;
+      while (input.get(lineStart).getType() != Token.EOF) {
+        var keyword = lineKeyword(input, lineStart);
+        if (section == null || section.isClosedBy(keyword)) {
+          if (section != null) {
+            parseSection(parser, root, section, sectionStart, lineStart);
+          }
+          section = Section.of(keyword);
+          sectionStart = lineStart;
+        }
+        lineStart = nextLine(input, lineStart);
+      }
+      if (section != null) {
+        parseSection(parser, root, section, sectionStart, lineStart);
+      }
+    } finally {
+      parser.setInputStream(input);
+    }
+
+    var eof = input.get(input.size() - 1);
+    var eofNode = new TerminalNodeImpl(eof);
+    eofNode.setParent(root);
+    root.addChild(eofNode);
+    root.stop = eof;
+    return root;
+  }
+
+  private static void parseSection(BSLMethodDescriptionParser parser,
+                                   BSLMethodDescriptionParser.MethodDescriptionContext root,
+                                   Section section,
+                                   int start,
+                                   int stop) {
+    // копии токенов, чтобы поток раздела не перенумеровал токены исходного потока
+    var input = parser.getInputStream();
+    var tokens = new ArrayList<Token>(stop - start);
+    for (var i = start; i < stop; i++) {
+      tokens.add(new CommonToken(input.get(i)));
+    }
+
+    parser.setInputStream(new CommonTokenStream(new ListTokenSource(tokens)));
+    try {
+      var ctx = section.rule.apply(parser);
+      ctx.setParent(root);
+      root.addChild(ctx);
+    } finally {
+      parser.setInputStream(input);
+    }
+  }
+
+  /**
+   * @return Тип ключевого слова раздела в начале строки либо {@link Token#INVALID_TYPE}
+   */
+  private static int lineKeyword(TokenStream input, int lineStart) {
+    var index = skipSpace(input, lineStart);
+    if (input.get(index).getType() != BSLMethodDescriptionLexer.COMMENT) {
+      return Token.INVALID_TYPE;
+    }
+    index = skipSpace(input, index + 1);
+
+    var type = input.get(index).getType();
+    switch (type) {
+      case BSLMethodDescriptionLexer.PARAMETERS_KEYWORD:
+      case BSLMethodDescriptionLexer.RETURNS_KEYWORD:
+      case BSLMethodDescriptionLexer.EXAMPLE_KEYWORD:
+      case BSLMethodDescriptionLexer.CALL_OPTIONS_KEYWORD:
+        return type;
+      case BSLMethodDescriptionLexer.DEPRECATE_KEYWORD:
+        // после "Устарела" без пробела строка остается обычным текстом описания
+        var next = input.get(index + 1).getType();
+        if (next == BSLMethodDescriptionLexer.SPACE
+          || next == BSLMethodDescriptionLexer.EOL
+          || next == Token.EOF) {
+          return type;
+        }
+        return Token.INVALID_TYPE;
+      default:
+        return Token.INVALID_TYPE;
+    }
+  }
+
+  private static int skipSpace(TokenStream input, int index) {
+    return input.get(index).getType() == BSLMethodDescriptionLexer.SPACE ? index + 1 : index;
+  }
+
+  private static int nextLine(TokenStream input, int lineStart) {
+    var index = lineStart;
+    int type;
+    do {
+      type = input.get(index).getType();
+      if (type != Token.EOF) {
+        index++;
+      }
+    } while (type != BSLMethodDescriptionLexer.EOL && type != Token.EOF);
+    return index;
+  }
+
+  /**
+   * Раздел описания, правило его разбора и ключевые слова, с которых начинается следующий раздел
+   */
+  private enum Section {
+    DESCRIPTION(
+      parser -> parser.descriptionBlockSection().descriptionBlock(),
+      BSLMethodDescriptionLexer.DEPRECATE_KEYWORD,
+      BSLMethodDescriptionLexer.PARAMETERS_KEYWORD,
+      BSLMethodDescriptionLexer.CALL_OPTIONS_KEYWORD,
+      BSLMethodDescriptionLexer.RETURNS_KEYWORD,
+      BSLMethodDescriptionLexer.EXAMPLE_KEYWORD
+    ),
+    // раздел "Устарела" занимает одну строку
+    DEPRECATE(
+      parser -> parser.deprecateSection().deprecate()
+    ),
+    PARAMETERS(
+      parser -> parser.parametersSection().parameters(),
+      BSLMethodDescriptionLexer.CALL_OPTIONS_KEYWORD,
+      BSLMethodDescriptionLexer.RETURNS_KEYWORD,
+      BSLMethodDescriptionLexer.EXAMPLE_KEYWORD
+    ),
+    CALL_OPTIONS(
+      parser -> parser.callOptionsSection().callOptions(),
+      BSLMethodDescriptionLexer.RETURNS_KEYWORD,
+      BSLMethodDescriptionLexer.EXAMPLE_KEYWORD
+    ),
+    RETURNS_VALUES(
+      parser -> parser.returnsValuesSection().returnsValues(),
+      BSLMethodDescriptionLexer.CALL_OPTIONS_KEYWORD,
+      BSLMethodDescriptionLexer.RETURNS_KEYWORD,
+      BSLMethodDescriptionLexer.EXAMPLE_KEYWORD
+    ),
+    EXAMPLES(
+      parser -> parser.examplesSection().examples(),
+      BSLMethodDescriptionLexer.CALL_OPTIONS_KEYWORD,
+      BSLMethodDescriptionLexer.RETURNS_KEYWORD
+    );
+
+    private final Function<BSLMethodDescriptionParser, BSLParserRuleContext> rule;
+    private final int[] closingKeywords;
+
+    Section(Function<BSLMethodDescriptionParser, BSLParserRuleContext> rule, int... closingKeywords) {
+      this.rule = rule;
+      this.closingKeywords = closingKeywords;
+    }
+
+    private boolean isClosedBy(int keyword) {
+      if (this == DEPRECATE) {
+        return true;
+      }
+      for (var closingKeyword : closingKeywords) {
+        if (closingKeyword == keyword) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static Section of(int keyword) {
+      switch (keyword) {
+        case BSLMethodDescriptionLexer.DEPRECATE_KEYWORD:
+          return DEPRECATE;
+        case BSLMethodDescriptionLexer.PARAMETERS_KEYWORD:
+          return PARAMETERS;
+        case BSLMethodDescriptionLexer.CALL_OPTIONS_KEYWORD:
+          return CALL_OPTIONS;
+        case BSLMethodDescriptionLexer.RETURNS_KEYWORD:
+          return RETURNS_VALUES;
+        case BSLMethodDescriptionLexer.EXAMPLE_KEYWORD:
+          return EXAMPLES;
+        default:
+          return DESCRIPTION;
+      }
+    }
+  }
+}
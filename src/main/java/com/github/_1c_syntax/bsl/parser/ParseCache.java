@@ -0,0 +1,438 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import com.github._1c_syntax.utils.Lazy;
+import org.antlr.v4.runtime.Token;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Постоянный кэш результатов разбора в локальном каталоге.
+ * <p>
+ * Запись кэша адресуется хэшем SHA-256 текста модуля без BOM, грамматики и версии формата, поэтому неизмененный
+ * модуль при повторном запуске восстанавливается из кэша без лексера и парсера, а изменение текста или грамматики
+ * просто приводит к промаху. Токены и дерево хранятся в формате {@link BinaryParseTree} без текста исходника,
+ * текст токенов берется из самого модуля. Поврежденная или нечитаемая запись удаляется, а модуль разбирается обычным образом.
+ * <p>
+ * Размер каталога ограничивается: при превышении удаляются записи, к которым дольше всего не обращались.
+ * Время обращения хранится во времени изменения файла записи. Кэш потокобезопасен и допускает совместное
+ * использование каталога несколькими процессами.
+ */
+public final class ParseCache {
+
+  private static final int MAGIC = 0x42534c43; // BSLC
+  private static final String ENTRY_SUFFIX = ".ast";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final int HEADER_SIZE = 4 * Integer.BYTES;
+  private static final char BOM = '\uFEFF';
+  /**
+   * Доля предельного размера, до которой очищается каталог при превышении предела,
+   * чтобы очистка не повторялась при каждой следующей записи
+   */
+  private static final double EVICTION_TARGET = 0.9;
+
+  private static final Grammar<BSLParser.FileContext> BSL = new Grammar<>(
+    "BSL", BSLLexer._serializedATN, BSLParser._serializedATN, ParseTreeGrammar.BSL);
+  private static final Grammar<SDBLParser.QueryPackageContext> SDBL = new Grammar<>(
+    "SDBL", SDBLLexer._serializedATN, SDBLParser._serializedATN, ParseTreeGrammar.SDBL);
+
+  private final Path directory;
+  private final long maxSize;
+  private final Lazy<AtomicLong> size = new Lazy<>(this::computeSize);
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Создает кэш в каталоге. Каталог создается при отсутствии.
+   *
+   * @param directory Каталог кэша
+   * @param maxSize   Предельный размер записей кэша в байтах
+   * @throws IOException при ошибке создания каталога
+   */
+  public ParseCache(Path directory, long maxSize) throws IOException {
+    requireNonNull(directory);
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    this.directory = Files.createDirectories(directory);
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Возвращает токенизатор модуля BSL с вычисленными токенами и деревом: восстановленными из кэша
+   * или полученными разбором и помещенными в кэш
+   *
+   * @param content Текст модуля
+   * @return Токенизатор
+   */
+  public BSLTokenizer bslTokenizer(String content) {
+    return tokenizer(content, BSL, BSLTokenizer::new);
+  }
+
+  /**
+   * Возвращает токенизатор запроса с вычисленными токенами и деревом, см. {@link #bslTokenizer(String)}
+   *
+   * @param content Текст запроса
+   * @return Токенизатор
+   */
+  public SDBLTokenizer sdblTokenizer(String content) {
+    return tokenizer(content, SDBL, SDBLTokenizer::new);
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * @return Количество поврежденных записей и ошибок ввода-вывода, после которых модуль был разобран заново
+   */
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * @return Учтенный размер записей кэша в байтах, по которому принимается решение о вытеснении
+   */
+  public long getSize() {
+    return size.getOrCompute().get();
+  }
+
+  /**
+   * Удаляет все записи кэша
+   *
+   * @throws IOException при ошибке обхода каталога
+   */
+  public void clear() throws IOException {
+    for (Path entry : entries()) {
+      remove(entry, sizeOf(entry));
+    }
+  }
+
+  private <T extends BSLParserRuleContext, K extends Tokenizer<T, ?>> K tokenizer(
+    String content, Grammar<T> grammar, Function<String, K> factory) {
+
+    requireNonNull(content);
+    var tokenizer = factory.apply(content);
+    var entry = entryPath(key(content, grammar));
+
+    if (restore(tokenizer, entry, grammar)) {
+      hits.increment();
+      return tokenizer;
+    }
+
+    misses.increment();
+    var ast = tokenizer.getAst();
+    store(entry, tokenizer.getTokens(), ast);
+    return tokenizer;
+  }
+
+  private <T extends BSLParserRuleContext> boolean restore(Tokenizer<T, ?> tokenizer, Path entry, Grammar<T> grammar) {
+    byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(entry);
+    } catch (NoSuchFileException e) {
+      return false;
+    } catch (IOException e) {
+      errors.increment();
+      return false;
+    }
+
+    try {
+      var payload = payload(bytes);
+      BinaryParseTree.read(ByteBuffer.wrap(bytes, HEADER_SIZE, payload)).restore(tokenizer, grammar.tree);
+      touch(entry);
+      return true;
+    } catch (IOException | RuntimeException e) {
+      errors.increment();
+      remove(entry, bytes.length);
+      return false;
+    }
+  }
+
+  private void store(Path entry, List<Token> tokens, BSLParserRuleContext ast) {
+    try {
+      var payload = BinaryParseTree.encode(tokens, ast, null);
+
+      var crc = new CRC32();
+      crc.update(payload);
+      var header = ByteBuffer.allocate(HEADER_SIZE)
+        .putInt(MAGIC)
+        .putInt(BinaryParseTree.VERSION)
+        .putInt((int) crc.getValue())
+        .putInt(payload.length);
+
+      // счетчик вычисляется до записи, иначе новая запись учлась бы дважды
+      var currentSize = size.getOrCompute();
+      Files.createDirectories(entry.getParent());
+      var temp = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), TEMP_SUFFIX);
+      try (var stream = Files.newOutputStream(temp)) {
+        stream.write(header.array());
+        stream.write(payload);
+      }
+      // запись с тем же ключом могла быть записана другим потоком или процессом
+      var replaced = sizeOf(entry);
+      move(temp, entry);
+
+      if (currentSize.addAndGet(HEADER_SIZE + (long) payload.length - replaced) > maxSize) {
+        evict();
+      }
+    } catch (IOException | RuntimeException e) {
+      errors.increment();
+    }
+  }
+
+  /**
+   * Проверяет заголовок и контрольную сумму записи
+   *
+   * @param bytes Содержимое записи
+   * @return Длина данных после заголовка
+   * @throws IOException если запись повреждена или записана другой версией формата
+   */
+  private static int payload(byte[] bytes) throws IOException {
+    if (bytes.length < HEADER_SIZE) {
+      throw new IOException("Truncated cache entry");
+    }
+
+    var header = ByteBuffer.wrap(bytes, 0, HEADER_SIZE);
+    if (header.getInt() != MAGIC || header.getInt() != BinaryParseTree.VERSION) {
+      throw new IOException("Unknown cache entry format");
+    }
+    var expectedCrc = header.getInt();
+    var length = header.getInt();
+    if (length != bytes.length - HEADER_SIZE) {
+      throw new IOException("Truncated cache entry");
+    }
+
+    var crc = new CRC32();
+    crc.update(bytes, HEADER_SIZE, length);
+    if ((int) crc.getValue() != expectedCrc) {
+      throw new IOException("Cache entry checksum mismatch");
+    }
+    return length;
+  }
+
+  private synchronized void evict() throws IOException {
+    var currentSize = size.getOrCompute();
+    if (currentSize.get() <= maxSize) {
+      return;
+    }
+
+    var entries = new ArrayList<EntryFile>();
+    for (Path entry : entries()) {
+      try {
+        entries.add(new EntryFile(entry));
+      } catch (IOException e) {
+        // запись удалена другим процессом
+      }
+    }
+    entries.sort(Comparator.comparing(EntryFile::getLastAccess));
+
+    var total = entries.stream().mapToLong(EntryFile::getSize).sum();
+    var target = (long) (maxSize * EVICTION_TARGET);
+    for (EntryFile entry : entries) {
+      if (total <= target) {
+        break;
+      }
+      delete(entry.path);
+      total -= entry.size;
+      evictions.increment();
+    }
+    currentSize.set(total);
+  }
+
+  private AtomicLong computeSize() {
+    long total = 0;
+    try {
+      for (Path entry : entries()) {
+        total += Files.size(entry);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new AtomicLong(total);
+  }
+
+  private List<Path> entries() throws IOException {
+    try (Stream<Path> files = Files.walk(directory, 2)) {
+      return files
+        .filter(path -> path.getFileName().toString().endsWith(ENTRY_SUFFIX))
+        .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Записи раскладываются по подкаталогам по первым символам ключа,
+   * чтобы каталог с десятками тысяч записей оставался быстрым
+   */
+  private Path entryPath(String key) {
+    return directory.resolve(key.substring(0, 2)).resolve(key + ENTRY_SUFFIX);
+  }
+
+  private static String key(String content, Grammar<?> grammar) {
+    var normalized = !content.isEmpty() && content.charAt(0) == BOM ? content.substring(1) : content;
+    var digest = sha256();
+    digest.update(grammar.fingerprint);
+    digest.update(normalized.getBytes(StandardCharsets.UTF_8));
+    return hex(digest.digest());
+  }
+
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(source);
+    }
+  }
+
+  private static void touch(Path entry) {
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      // время обращения влияет только на порядок вытеснения
+    }
+  }
+
+  /**
+   * Удаляет запись и уменьшает учтенный размер кэша на ее размер
+   */
+  private void remove(Path entry, long entrySize) {
+    var currentSize = size.getOrCompute();
+    if (delete(entry)) {
+      currentSize.addAndGet(-entrySize);
+    }
+  }
+
+  private static boolean delete(Path entry) {
+    try {
+      return Files.deleteIfExists(entry);
+    } catch (IOException e) {
+      // запись будет перезаписана или вытеснена позднее
+      return false;
+    }
+  }
+
+  private static long sizeOf(Path entry) {
+    try {
+      return Files.size(entry);
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    var builder = new StringBuilder(bytes.length * 2);
+    for (byte value : bytes) {
+      builder.append(Character.forDigit((value >> 4) & 0xF, 16));
+      builder.append(Character.forDigit(value & 0xF, 16));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Грамматика, результаты разбора которой хранятся в кэше
+   */
+  private static final class Grammar<T extends BSLParserRuleContext> {
+    /**
+     * Отпечаток грамматики и формата: записи, созданные другой версией грамматики, не находятся
+     */
+    private final byte[] fingerprint;
+    private final ParseTreeGrammar<T> tree;
+
+    private Grammar(String name,
+                    String lexerATN,
+                    String parserATN,
+                    ParseTreeGrammar<T> tree) {
+      var digest = sha256();
+      digest.update((name + '\0' + BinaryParseTree.VERSION + '\0').getBytes(StandardCharsets.UTF_8));
+      digest.update(lexerATN.getBytes(StandardCharsets.UTF_8));
+      digest.update(parserATN.getBytes(StandardCharsets.UTF_8));
+      this.fingerprint = digest.digest();
+      this.tree = tree;
+    }
+  }
+
+  /**
+   * Файл записи с размером и временем последнего обращения
+   */
+  private static final class EntryFile {
+    private final Path path;
+    private final long size;
+    private final FileTime lastAccess;
+
+    private EntryFile(Path path) throws IOException {
+      this.path = path;
+      this.size = Files.size(path);
+      this.lastAccess = Files.getLastModifiedTime(path);
+    }
+
+    private long getSize() {
+      return size;
+    }
+
+    private FileTime getLastAccess() {
+      return lastAccess;
+    }
+  }
+}
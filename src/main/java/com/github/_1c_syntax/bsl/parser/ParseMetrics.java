@@ -0,0 +1,190 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+/**
+ * Замеры разбора одного модуля по этапам.
+ * <p>
+ * Передаются {@link ParseMetricsListener} после вычисления дерева. Время этапов, выполненных до подключения
+ * слушателя, например декодирования и лексического анализа токенизатора, токены которого были получены раньше,
+ * равно нулю.
+ */
+public final class ParseMetrics {
+
+  /**
+   * Этап разбора, время которого замеряется
+   */
+  public enum Phase {
+    /**
+     * Чтение источника, пропуск BOM и декодирование в поток символов
+     */
+    DECODE,
+    /**
+     * Лексический анализ
+     */
+    LEXING,
+    /**
+     * Проход парсера в режиме предсказания SLL, в том числе прерванный
+     */
+    SLL,
+    /**
+     * Проход парсера в режиме предсказания LL
+     */
+    LL,
+    /**
+     * Все этапы вместе
+     */
+    TOTAL
+  }
+
+  /**
+   * Имя источника, для файла - путь к нему
+   */
+  private final String sourceName;
+  private final long decodeNanos;
+  private final long lexingNanos;
+  private final int tokenCount;
+  private final long sllNanos;
+  private final long llNanos;
+  private final int errorCount;
+  private final int treeNodeCount;
+  private final long dfaStatesGrowth;
+
+  ParseMetrics(String sourceName,
+               long decodeNanos,
+               long lexingNanos,
+               int tokenCount,
+               long sllNanos,
+               long llNanos,
+               int errorCount,
+               int treeNodeCount,
+               long dfaStatesGrowth) {
+    this.sourceName = sourceName;
+    this.decodeNanos = decodeNanos;
+    this.lexingNanos = lexingNanos;
+    this.tokenCount = tokenCount;
+    this.sllNanos = sllNanos;
+    this.llNanos = llNanos;
+    this.errorCount = errorCount;
+    this.treeNodeCount = treeNodeCount;
+    this.dfaStatesGrowth = dfaStatesGrowth;
+  }
+
+  public String getSourceName() {
+    return sourceName;
+  }
+
+  public long getDecodeNanos() {
+    return decodeNanos;
+  }
+
+  public long getLexingNanos() {
+    return lexingNanos;
+  }
+
+  /**
+   * @return Количество токенов всех каналов, включая EOF
+   */
+  public int getTokenCount() {
+    return tokenCount;
+  }
+
+  /**
+   * @return Время прохода SLL, нс. Равно нулю, если модуль разбирался сразу в режиме LL
+   */
+  public long getSllNanos() {
+    return sllNanos;
+  }
+
+  /**
+   * @return Время прохода LL, нс. Равно нулю, если разбор завершился в режиме SLL
+   */
+  public long getLlNanos() {
+    return llNanos;
+  }
+
+  /**
+   * @return Количество синтаксических ошибок итогового прохода парсера
+   */
+  public int getErrorCount() {
+    return errorCount;
+  }
+
+  /**
+   * @return Количество узлов дерева, включая терминальные
+   */
+  public int getTreeNodeCount() {
+    return treeNodeCount;
+  }
+
+  /**
+   * @return Количество состояний DFA лексера и парсера, добавленных в общий кэш при разборе модуля
+   */
+  public long getDfaStatesGrowth() {
+    return dfaStatesGrowth;
+  }
+
+  /**
+   * Возвращает время этапа
+   *
+   * @param phase Этап
+   * @return Время, нс
+   */
+  public long getNanos(Phase phase) {
+    switch (phase) {
+      case DECODE:
+        return decodeNanos;
+      case LEXING:
+        return lexingNanos;
+      case SLL:
+        return sllNanos;
+      case LL:
+        return llNanos;
+      case TOTAL:
+        return getTotalNanos();
+      default:
+        throw new IllegalArgumentException("Unknown phase: " + phase);
+    }
+  }
+
+  /**
+   * Суммарное время всех этапов
+   *
+   * @return Время, нс
+   */
+  public long getTotalNanos() {
+    return decodeNanos + lexingNanos + sllNanos + llNanos;
+  }
+
+  @Override
+  public String toString() {
+    return "ParseMetrics(sourceName=" + sourceName
+      + ", decodeNanos=" + decodeNanos
+      + ", lexingNanos=" + lexingNanos
+      + ", tokenCount=" + tokenCount
+      + ", sllNanos=" + sllNanos
+      + ", llNanos=" + llNanos
+      + ", errorCount=" + errorCount
+      + ", treeNodeCount=" + treeNodeCount
+      + ", dfaStatesGrowth=" + dfaStatesGrowth + ")";
+  }
+}
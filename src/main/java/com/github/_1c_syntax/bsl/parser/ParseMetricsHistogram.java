@@ -0,0 +1,232 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Агрегатор замеров разбора: гистограммы времени по этапам и самые медленные модули.
+ * <p>
+ * Время каждого этапа учитывается в гистограмме со степенями двойки: ячейка {@code i > 0} содержит количество
+ * модулей со временем от {@code 2^(i-1)} до {@code 2^i - 1} нс, ячейка {@code 0} - с нулевым временем.
+ * Такая гистограмма имеет постоянный размер и обновляется без блокировок, а квантили определяются с точностью до
+ * двукратного интервала, чего достаточно для поиска модулей, на которые приходится основное время разбора.
+ * Модули с наибольшим суммарным временем хранятся отдельно вместе с их замерами.
+ */
+public final class ParseMetricsHistogram implements ParseMetricsListener {
+
+  /**
+   * Количество ячеек гистограммы
+   */
+  public static final int BUCKETS = Long.SIZE;
+
+  private static final int DEFAULT_SLOWEST_LIMIT = 10;
+  private static final Comparator<ParseMetrics> BY_TOTAL_NANOS = Comparator.comparingLong(ParseMetrics::getTotalNanos);
+
+  private final Map<ParseMetrics.Phase, AtomicLongArray> buckets = new EnumMap<>(ParseMetrics.Phase.class);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder tokenCount = new LongAdder();
+  private final LongAdder errorCount = new LongAdder();
+  private final LongAdder treeNodeCount = new LongAdder();
+  private final LongAdder dfaStatesGrowth = new LongAdder();
+  private final int slowestLimit;
+  private final PriorityQueue<ParseMetrics> slowest = new PriorityQueue<>(BY_TOTAL_NANOS);
+
+  /**
+   * Создает агрегатор, хранящий десять самых медленных модулей
+   */
+  public ParseMetricsHistogram() {
+    this(DEFAULT_SLOWEST_LIMIT);
+  }
+
+  /**
+   * Создает агрегатор
+   *
+   * @param slowestLimit Количество хранимых самых медленных модулей
+   */
+  public ParseMetricsHistogram(int slowestLimit) {
+    if (slowestLimit < 0) {
+      throw new IllegalArgumentException("slowestLimit must not be negative");
+    }
+    this.slowestLimit = slowestLimit;
+    for (ParseMetrics.Phase phase : ParseMetrics.Phase.values()) {
+      buckets.put(phase, new AtomicLongArray(BUCKETS));
+    }
+  }
+
+  @Override
+  public void parsed(ParseMetrics metrics) {
+    buckets.forEach((ParseMetrics.Phase phase, AtomicLongArray phaseBuckets) ->
+      phaseBuckets.incrementAndGet(bucket(metrics.getNanos(phase))));
+    count.increment();
+    tokenCount.add(metrics.getTokenCount());
+    errorCount.add(metrics.getErrorCount());
+    treeNodeCount.add(metrics.getTreeNodeCount());
+    dfaStatesGrowth.add(metrics.getDfaStatesGrowth());
+
+    if (slowestLimit == 0) {
+      return;
+    }
+    synchronized (slowest) {
+      if (slowest.size() < slowestLimit) {
+        slowest.add(metrics);
+      } else if (BY_TOTAL_NANOS.compare(metrics, slowest.peek()) > 0) {
+        slowest.poll();
+        slowest.add(metrics);
+      }
+    }
+  }
+
+  /**
+   * @return Количество учтенных модулей
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * @return Суммарное количество токенов учтенных модулей
+   */
+  public long getTokenCount() {
+    return tokenCount.sum();
+  }
+
+  /**
+   * @return Суммарное количество синтаксических ошибок учтенных модулей
+   */
+  public long getErrorCount() {
+    return errorCount.sum();
+  }
+
+  /**
+   * @return Суммарное количество узлов деревьев учтенных модулей
+   */
+  public long getTreeNodeCount() {
+    return treeNodeCount.sum();
+  }
+
+  /**
+   * @return Суммарный прирост состояний DFA при разборе учтенных модулей
+   */
+  public long getDfaStatesGrowth() {
+    return dfaStatesGrowth.sum();
+  }
+
+  /**
+   * Возвращает снимок гистограммы этапа
+   *
+   * @param phase Этап
+   * @return Количество модулей в каждой из {@link #BUCKETS} ячеек
+   */
+  public long[] getBuckets(ParseMetrics.Phase phase) {
+    var phaseBuckets = buckets.get(phase);
+    var result = new long[BUCKETS];
+    for (var i = 0; i < BUCKETS; i++) {
+      result[i] = phaseBuckets.get(i);
+    }
+    return result;
+  }
+
+  /**
+   * Оценивает квантиль времени этапа сверху по гистограмме
+   *
+   * @param phase    Этап
+   * @param quantile Квантиль от 0 до 1, например {@code 0.99}
+   * @return Верхняя граница ячейки, в которую попадает квантиль, нс. Ноль, если модулей нет.
+   */
+  public long getQuantileNanos(ParseMetrics.Phase phase, double quantile) {
+    if (quantile < 0 || quantile > 1) {
+      throw new IllegalArgumentException("quantile must be between 0 and 1");
+    }
+    var snapshot = getBuckets(phase);
+    long total = 0;
+    for (long bucketCount : snapshot) {
+      total += bucketCount;
+    }
+    var rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (var i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return upperBound(i);
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Возвращает замеры самых медленных модулей
+   *
+   * @return Замеры по убыванию суммарного времени
+   */
+  public List<ParseMetrics> getSlowest() {
+    List<ParseMetrics> result;
+    synchronized (slowest) {
+      result = new ArrayList<>(slowest);
+    }
+    result.sort(BY_TOTAL_NANOS.reversed());
+    return result;
+  }
+
+  /**
+   * Обнуляет гистограммы и счетчики
+   */
+  public void reset() {
+    buckets.values().forEach((AtomicLongArray phaseBuckets) -> {
+      for (var i = 0; i < BUCKETS; i++) {
+        phaseBuckets.set(i, 0);
+      }
+    });
+    count.reset();
+    tokenCount.reset();
+    errorCount.reset();
+    treeNodeCount.reset();
+    dfaStatesGrowth.reset();
+    synchronized (slowest) {
+      slowest.clear();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ParseMetricsHistogram(count=" + getCount()
+      + ", tokenCount=" + getTokenCount()
+      + ", errorCount=" + getErrorCount()
+      + ", p50TotalNanos=" + getQuantileNanos(ParseMetrics.Phase.TOTAL, 0.5)
+      + ", p99TotalNanos=" + getQuantileNanos(ParseMetrics.Phase.TOTAL, 0.99) + ")";
+  }
+
+  static int bucket(long nanos) {
+    return nanos <= 0 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(nanos);
+  }
+
+  static long upperBound(int bucket) {
+    return bucket == Long.SIZE - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+  }
+}
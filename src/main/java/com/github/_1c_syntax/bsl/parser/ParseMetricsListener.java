@@ -0,0 +1,48 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+/**
+ * Получатель замеров разбора модулей.
+ * <p>
+ * Подключается для всего процесса через {@link Tokenizer#setParseMetricsListener(ParseMetricsListener)}
+ * и вызывается после вычисления дерева каждого модуля в потоке, выполнившем разбор. Поэтому реализация должна
+ * быть потокобезопасной и быстрой. Пока подключен {@link #NOOP}, токенизаторы не выполняют замеров.
+ * Готовый агрегатор - {@link ParseMetricsHistogram}.
+ */
+@FunctionalInterface
+public interface ParseMetricsListener {
+
+  /**
+   * Слушатель по умолчанию, отключающий замеры
+   */
+  ParseMetricsListener NOOP = metrics -> {
+    // замеры отключены
+  };
+
+  /**
+   * Обрабатывает замеры разбора модуля
+   *
+   * @param metrics Замеры
+   */
+  void parsed(ParseMetrics metrics);
+}
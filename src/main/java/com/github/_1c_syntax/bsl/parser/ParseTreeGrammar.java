@@ -0,0 +1,384 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.atn.ATNState;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Грамматика дерева в формате {@link BinaryParseTree}: класс парсера, отпечаток грамматики
+ * и фабрики контекстов правил.
+ * <p>
+ * Фабрики перечислены явно в порядке индексов правил сгенерированного парсера. При загрузке класса
+ * каждая фабрика сверяется с индексом правила, поэтому расхождение с измененной грамматикой
+ * обнаруживается сразу, а не при чтении дерева.
+ *
+ * @param <T> Тип корневого контекста
+ */
+final class ParseTreeGrammar<T extends BSLParserRuleContext> {
+
+  /**
+   * Модуль BSL
+   */
+  static final ParseTreeGrammar<BSLParser.FileContext> BSL = new ParseTreeGrammar<>(
+    BSLParser.class, BSLParser.FileContext.class, BSLParser._serializedATN, BSLParser.ruleNames, bslContexts());
+  /**
+   * Запрос SDBL
+   */
+  static final ParseTreeGrammar<SDBLParser.QueryPackageContext> SDBL = new ParseTreeGrammar<>(
+    SDBLParser.class, SDBLParser.QueryPackageContext.class, SDBLParser._serializedATN, SDBLParser.ruleNames,
+    sdblContexts());
+  /**
+   * Описание метода
+   */
+  static final ParseTreeGrammar<BSLMethodDescriptionParser.MethodDescriptionContext> METHOD_DESCRIPTION =
+    new ParseTreeGrammar<>(BSLMethodDescriptionParser.class, BSLMethodDescriptionParser.MethodDescriptionContext.class,
+      BSLMethodDescriptionParser._serializedATN, BSLMethodDescriptionParser.ruleNames, methodDescriptionContexts());
+
+  private static final List<ParseTreeGrammar<?>> GRAMMARS = List.of(BSL, SDBL, METHOD_DESCRIPTION);
+
+  private final Class<?> parserClass;
+  private final Class<T> rootClass;
+  private final byte[] fingerprint;
+  private final RuleContextFactory[] contexts;
+
+  private ParseTreeGrammar(Class<?> parserClass,
+                           Class<T> rootClass,
+                           String serializedATN,
+                           String[] ruleNames,
+                           List<RuleContextFactory> contexts) {
+    if (contexts.size() != ruleNames.length) {
+      throw new IllegalStateException("Context factories do not match rules of " + parserClass.getName());
+    }
+    for (var i = 0; i < ruleNames.length; i++) {
+      if (contexts.get(i).create(null, ATNState.INVALID_STATE_NUMBER).getRuleIndex() != i) {
+        throw new IllegalStateException("Context factory does not match rule " + ruleNames[i]);
+      }
+    }
+
+    this.parserClass = parserClass;
+    this.rootClass = rootClass;
+    this.fingerprint = fingerprint(serializedATN);
+    this.contexts = contexts.toArray(new RuleContextFactory[0]);
+  }
+
+  /**
+   * Возвращает грамматику по классу контекста дерева
+   *
+   * @param tree Корень дерева
+   * @return Грамматика
+   * @throws IllegalArgumentException если дерево построено парсером другой грамматики
+   */
+  static ParseTreeGrammar<?> of(ParserRuleContext tree) {
+    var treeParserClass = tree.getClass().getEnclosingClass();
+    for (ParseTreeGrammar<?> grammar : GRAMMARS) {
+      if (grammar.parserClass == treeParserClass) {
+        return grammar;
+      }
+    }
+    throw new IllegalArgumentException("Unsupported grammar: " + tree.getClass().getName());
+  }
+
+  /**
+   * @return Полное имя класса парсера
+   */
+  String getParserClassName() {
+    return parserClass.getName();
+  }
+
+  /**
+   * @return Класс корневого контекста
+   */
+  Class<T> getRootClass() {
+    return rootClass;
+  }
+
+  /**
+   * @return Отпечаток грамматики: хэш сериализованного ATN парсера
+   */
+  byte[] getFingerprint() {
+    return fingerprint.clone();
+  }
+
+  /**
+   * Проверяет, что отпечаток совпадает с отпечатком грамматики
+   *
+   * @param other Отпечаток
+   * @return Признак совпадения
+   */
+  boolean hasFingerprint(byte[] other) {
+    return Arrays.equals(fingerprint, other);
+  }
+
+  /**
+   * Создает контекст правила
+   *
+   * @param ruleIndex     Индекс правила
+   * @param parent        Родительский контекст
+   * @param invokingState Состояние вызова правила
+   * @return Новый контекст без потомков
+   * @throws IOException если индекс правила вне грамматики
+   */
+  ParserRuleContext createContext(int ruleIndex, @Nullable ParserRuleContext parent, int invokingState)
+    throws IOException {
+
+    if (ruleIndex < 0 || ruleIndex >= contexts.length) {
+      throw new IOException("Invalid rule index: " + ruleIndex);
+    }
+    return contexts[ruleIndex].create(parent, invokingState);
+  }
+
+  private static byte[] fingerprint(String serializedATN) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(serializedATN.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static List<RuleContextFactory> bslContexts() {
+    return List.of(
+      BSLParser.FileContext::new,
+      BSLParser.ShebangContext::new,
+      BSLParser.UsedLibContext::new,
+      BSLParser.UseContext::new,
+      BSLParser.RegionStartContext::new,
+      BSLParser.RegionEndContext::new,
+      BSLParser.RegionNameContext::new,
+      BSLParser.Preproc_ifContext::new,
+      BSLParser.Preproc_elsifContext::new,
+      BSLParser.Preproc_elseContext::new,
+      BSLParser.Preproc_endifContext::new,
+      BSLParser.Preproc_expressionContext::new,
+      BSLParser.Preproc_logicalOperandContext::new,
+      BSLParser.Preproc_logicalExpressionContext::new,
+      BSLParser.Preproc_symbolContext::new,
+      BSLParser.Preproc_unknownSymbolContext::new,
+      BSLParser.Preproc_boolOperationContext::new,
+      BSLParser.PreprocessorContext::new,
+      BSLParser.CompilerDirectiveSymbolContext::new,
+      BSLParser.CompilerDirectiveContext::new,
+      BSLParser.AnnotationNameContext::new,
+      BSLParser.AnnotationParamNameContext::new,
+      BSLParser.AnnotationContext::new,
+      BSLParser.AnnotationParamsContext::new,
+      BSLParser.AnnotationParamContext::new,
+      BSLParser.Var_nameContext::new,
+      BSLParser.ModuleVarsContext::new,
+      BSLParser.ModuleVarContext::new,
+      BSLParser.ModuleVarsListContext::new,
+      BSLParser.ModuleVarDeclarationContext::new,
+      BSLParser.SubVarsContext::new,
+      BSLParser.SubVarContext::new,
+      BSLParser.SubVarsListContext::new,
+      BSLParser.SubVarDeclarationContext::new,
+      BSLParser.SubNameContext::new,
+      BSLParser.SubsContext::new,
+      BSLParser.SubContext::new,
+      BSLParser.ProcedureContext::new,
+      BSLParser.FunctionContext::new,
+      BSLParser.ProcDeclarationContext::new,
+      BSLParser.FuncDeclarationContext::new,
+      BSLParser.SubCodeBlockContext::new,
+      BSLParser.ContinueStatementContext::new,
+      BSLParser.BreakStatementContext::new,
+      BSLParser.RaiseStatementContext::new,
+      BSLParser.IfStatementContext::new,
+      BSLParser.IfBranchContext::new,
+      BSLParser.ElsifBranchContext::new,
+      BSLParser.ElseBranchContext::new,
+      BSLParser.WhileStatementContext::new,
+      BSLParser.ForStatementContext::new,
+      BSLParser.ForEachStatementContext::new,
+      BSLParser.TryStatementContext::new,
+      BSLParser.ReturnStatementContext::new,
+      BSLParser.ExecuteStatementContext::new,
+      BSLParser.CallStatementContext::new,
+      BSLParser.WaitStatementContext::new,
+      BSLParser.LabelNameContext::new,
+      BSLParser.LabelContext::new,
+      BSLParser.GotoStatementContext::new,
+      BSLParser.TryCodeBlockContext::new,
+      BSLParser.ExceptCodeBlockContext::new,
+      BSLParser.EventContext::new,
+      BSLParser.HandlerContext::new,
+      BSLParser.AddHandlerStatementContext::new,
+      BSLParser.RemoveHandlerStatementContext::new,
+      BSLParser.TernaryOperatorContext::new,
+      BSLParser.WaitExpressionContext::new,
+      BSLParser.FileCodeBlockBeforeSubContext::new,
+      BSLParser.FileCodeBlockContext::new,
+      BSLParser.CodeBlockContext::new,
+      BSLParser.NumericContext::new,
+      BSLParser.ParamListContext::new,
+      BSLParser.ParamContext::new,
+      BSLParser.DefaultValueContext::new,
+      BSLParser.ConstValueContext::new,
+      BSLParser.MultilineStringContext::new,
+      BSLParser.StringContext::new,
+      BSLParser.StatementContext::new,
+      BSLParser.AssignmentContext::new,
+      BSLParser.CallParamListContext::new,
+      BSLParser.CallParamContext::new,
+      BSLParser.ExpressionContext::new,
+      BSLParser.OperationContext::new,
+      BSLParser.CompareOperationContext::new,
+      BSLParser.BoolOperationContext::new,
+      BSLParser.UnaryModifierContext::new,
+      BSLParser.MemberContext::new,
+      BSLParser.NewExpressionContext::new,
+      BSLParser.TypeNameContext::new,
+      BSLParser.MethodCallContext::new,
+      BSLParser.GlobalMethodCallContext::new,
+      BSLParser.MethodNameContext::new,
+      BSLParser.ComplexIdentifierContext::new,
+      BSLParser.ModifierContext::new,
+      BSLParser.AcceptorContext::new,
+      BSLParser.LValueContext::new,
+      BSLParser.AccessCallContext::new,
+      BSLParser.AccessIndexContext::new,
+      BSLParser.AccessPropertyContext::new,
+      BSLParser.DoCallContext::new,
+      BSLParser.CompoundStatementContext::new
+    );
+  }
+
+  private static List<RuleContextFactory> sdblContexts() {
+    return List.of(
+      SDBLParser.QueryPackageContext::new,
+      SDBLParser.QueriesContext::new,
+      SDBLParser.DropTableQueryContext::new,
+      SDBLParser.SelectQueryContext::new,
+      SDBLParser.SubqueryContext::new,
+      SDBLParser.UnionContext::new,
+      SDBLParser.QueryContext::new,
+      SDBLParser.LimitationsContext::new,
+      SDBLParser.TopContext::new,
+      SDBLParser.SelectedFieldsContext::new,
+      SDBLParser.SelectedFieldContext::new,
+      SDBLParser.AsteriskFieldContext::new,
+      SDBLParser.ExpressionFieldContext::new,
+      SDBLParser.ColumnFieldContext::new,
+      SDBLParser.EmptyTableFieldContext::new,
+      SDBLParser.EmptyTableColumnsContext::new,
+      SDBLParser.InlineTableFieldContext::new,
+      SDBLParser.RecordAutoNumberFunctionContext::new,
+      SDBLParser.GroupByItemContext::new,
+      SDBLParser.IndexingItemContext::new,
+      SDBLParser.OrderByContext::new,
+      SDBLParser.OrdersByExpessionContext::new,
+      SDBLParser.TotalByContext::new,
+      SDBLParser.TotalsGroupContext::new,
+      SDBLParser.PeriodicContext::new,
+      SDBLParser.ColumnContext::new,
+      SDBLParser.ExpressionContext::new,
+      SDBLParser.PrimitiveExpressionContext::new,
+      SDBLParser.CaseExpressionContext::new,
+      SDBLParser.CaseBranchContext::new,
+      SDBLParser.BracketExpressionContext::new,
+      SDBLParser.UnaryExpressionContext::new,
+      SDBLParser.FunctionCallContext::new,
+      SDBLParser.BuiltInFunctionsContext::new,
+      SDBLParser.AggregateFunctionsContext::new,
+      SDBLParser.ValueFunctionContext::new,
+      SDBLParser.CastFunctionContext::new,
+      SDBLParser.LogicalExpressionContext::new,
+      SDBLParser.PredicateContext::new,
+      SDBLParser.LikePredicateContext::new,
+      SDBLParser.IsNullPredicateContext::new,
+      SDBLParser.ComparePredicateContext::new,
+      SDBLParser.BetweenPredicateContext::new,
+      SDBLParser.InPredicateContext::new,
+      SDBLParser.RefsPredicateContext::new,
+      SDBLParser.ExpressionListContext::new,
+      SDBLParser.DataSourcesContext::new,
+      SDBLParser.DataSourceContext::new,
+      SDBLParser.TableContext::new,
+      SDBLParser.VirtualTableContext::new,
+      SDBLParser.VirtualTableParameterContext::new,
+      SDBLParser.ParameterTableContext::new,
+      SDBLParser.JoinPartContext::new,
+      SDBLParser.AliasContext::new,
+      SDBLParser.DatePartContext::new,
+      SDBLParser.MultiStringContext::new,
+      SDBLParser.SignContext::new,
+      SDBLParser.IdentifierContext::new,
+      SDBLParser.ParameterContext::new,
+      SDBLParser.MdoContext::new
+    );
+  }
+
+  private static List<RuleContextFactory> methodDescriptionContexts() {
+    return List.of(
+      BSLMethodDescriptionParser.MethodDescriptionContext::new,
+      BSLMethodDescriptionParser.DeprecateContext::new,
+      BSLMethodDescriptionParser.DeprecateDescriptionContext::new,
+      BSLMethodDescriptionParser.DescriptionBlockContext::new,
+      BSLMethodDescriptionParser.DescriptionContext::new,
+      BSLMethodDescriptionParser.DescriptionStringContext::new,
+      BSLMethodDescriptionParser.ExamplesContext::new,
+      BSLMethodDescriptionParser.ExamplesStringContext::new,
+      BSLMethodDescriptionParser.CallOptionsContext::new,
+      BSLMethodDescriptionParser.CallOptionsStringContext::new,
+      BSLMethodDescriptionParser.ParametersContext::new,
+      BSLMethodDescriptionParser.ParameterStringContext::new,
+      BSLMethodDescriptionParser.ParameterContext::new,
+      BSLMethodDescriptionParser.SubParameterContext::new,
+      BSLMethodDescriptionParser.ParameterNameContext::new,
+      BSLMethodDescriptionParser.ReturnsValuesContext::new,
+      BSLMethodDescriptionParser.ReturnsValuesStringContext::new,
+      BSLMethodDescriptionParser.ReturnsValueContext::new,
+      BSLMethodDescriptionParser.TypesBlockContext::new,
+      BSLMethodDescriptionParser.TypeDescriptionContext::new,
+      BSLMethodDescriptionParser.TypeContext::new,
+      BSLMethodDescriptionParser.SimpleTypeContext::new,
+      BSLMethodDescriptionParser.ListTypesContext::new,
+      BSLMethodDescriptionParser.ComplexTypeContext::new,
+      BSLMethodDescriptionParser.HyperlinkTypeContext::new,
+      BSLMethodDescriptionParser.SpitterContext::new,
+      BSLMethodDescriptionParser.HyperlinkBlockContext::new,
+      BSLMethodDescriptionParser.StartPartContext::new,
+      BSLMethodDescriptionParser.DeprecateSectionContext::new,
+      BSLMethodDescriptionParser.DescriptionBlockSectionContext::new,
+      BSLMethodDescriptionParser.ParametersSectionContext::new,
+      BSLMethodDescriptionParser.CallOptionsSectionContext::new,
+      BSLMethodDescriptionParser.ReturnsValuesSectionContext::new,
+      BSLMethodDescriptionParser.ExamplesSectionContext::new
+    );
+  }
+
+  /**
+   * Конструктор контекста правила сгенерированного парсера
+   */
+  @FunctionalInterface
+  interface RuleContextFactory {
+    ParserRuleContext create(@Nullable ParserRuleContext parent, int invokingState);
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Политика управления общими кэшами ANTLR в пределах процесса.
+ * <p>
+ * DFA предсказания и кэш контекстов предсказания хранятся в статическом ATN грамматики
+ * и разделяются всеми экземплярами лексеров и парсеров. Политика позволяет заранее прогреть
+ * эти кэши, очистить их или ограничить размер кэша контекстов, а также получить статистику использования.
+ */
+public final class ParserCachePolicy {
+
+  /**
+   * Значение ограничения размера кэша контекстов, означающее отсутствие ограничения
+   */
+  public static final int UNLIMITED = 0;
+
+  private static final String WARMUP_MODULE = "warmup/Module.bsl";
+  private static final String WARMUP_QUERY = "warmup/Query.sdbl";
+
+  private static final ParserCachePolicy INSTANCE = new ParserCachePolicy();
+
+  /**
+   * ATN зарегистрированных грамматик по имени файла грамматики
+   */
+  private final Map<String, ATN> atns = new ConcurrentHashMap<>();
+  private final LongAdder parses = new LongAdder();
+  private final LongAdder warmParses = new LongAdder();
+  private final LongAdder clears = new LongAdder();
+  private volatile int maxContextCacheSize = UNLIMITED;
+
+  private ParserCachePolicy() {
+    // singleton
+  }
+
+  /**
+   * Возвращает единственный экземпляр политики
+   *
+   * @return Политика кэширования процесса
+   */
+  public static ParserCachePolicy getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Прогревает DFA лексеров и парсеров BSL, SDBL и описаний методов на встроенном наборе исходников
+   */
+  public void warmUp() {
+    var module = readResource(WARMUP_MODULE);
+
+    new BSLTokenizer(module).getAst();
+    new SDBLTokenizer(readResource(WARMUP_QUERY)).getAst();
+
+    var description = module.lines()
+      .map(String::strip)
+      .filter(line -> line.startsWith("//"))
+      .collect(Collectors.joining("\n"));
+    new BSLMethodDescriptionTokenizer(description).getAst();
+  }
+
+  /**
+   * Прогревает DFA лексера и парсера BSL на переданных исходниках
+   *
+   * @param sources Тексты модулей
+   */
+  public void warmUp(Iterable<String> sources) {
+    sources.forEach(source -> new BSLTokenizer(source).getAst());
+  }
+
+  /**
+   * Очищает DFA и кэш контекстов предсказания всех зарегистрированных грамматик
+   */
+  public void clear() {
+    atns.values().forEach(this::clear);
+  }
+
+  /**
+   * Возвращает ограничение размера кэша контекстов предсказания одной грамматики
+   *
+   * @return Максимальный размер кэша или {@link #UNLIMITED}
+   */
+  public int getMaxContextCacheSize() {
+    return maxContextCacheSize;
+  }
+
+  /**
+   * Устанавливает ограничение размера кэша контекстов предсказания одной грамматики.
+   * При превышении ограничения после очередного разбора DFA и кэш контекстов грамматики очищаются.
+   *
+   * @param maxContextCacheSize Максимальный размер кэша или {@link #UNLIMITED}
+   */
+  public void setMaxContextCacheSize(int maxContextCacheSize) {
+    if (maxContextCacheSize < 0) {
+      throw new IllegalArgumentException("maxContextCacheSize must not be negative");
+    }
+    this.maxContextCacheSize = maxContextCacheSize;
+  }
+
+  /**
+   * Возвращает снимок статистики кэшей
+   *
+   * @return Статистика кэшей
+   */
+  public ParserCacheStatistics getStatistics() {
+    List<ParserCacheStatistics.GrammarStatistics> grammars = new ArrayList<>();
+    atns.forEach((String grammarName, ATN atn) -> grammars.add(
+      new ParserCacheStatistics.GrammarStatistics(grammarName, dfaStatesCount(atn), atn.getContextCacheSize())));
+
+    return new ParserCacheStatistics(grammars, parses.sum(), warmParses.sum(), clears.sum());
+  }
+
+  /**
+   * Регистрирует ATN распознавателя для учета в статистике и очистке
+   *
+   * @param recognizer Лексер или парсер
+   */
+  void register(Recognizer<?, ?> recognizer) {
+    atns.putIfAbsent(recognizer.getGrammarFileName(), recognizer.getATN());
+  }
+
+  /**
+   * Возвращает суммарное количество состояний DFA переданных распознавателей
+   *
+   * @param recognizers Лексеры и парсеры
+   * @return Количество состояний DFA
+   */
+  long dfaStatesCount(Recognizer<?, ?>... recognizers) {
+    long count = 0;
+    for (Recognizer<?, ?> recognizer : recognizers) {
+      count += dfaStatesCount(recognizer.getATN());
+    }
+    return count;
+  }
+
+  /**
+   * Учитывает завершенный разбор: обновляет счетчики попаданий и применяет ограничение размера кэша
+   *
+   * @param dfaStatesBefore Количество состояний DFA до разбора
+   * @param recognizers     Лексер и парсер, выполнившие разбор
+   */
+  void afterParse(long dfaStatesBefore, Recognizer<?, ?>... recognizers) {
+    parses.increment();
+    if (dfaStatesCount(recognizers) == dfaStatesBefore) {
+      warmParses.increment();
+    }
+
+    var limit = maxContextCacheSize;
+    if (limit == UNLIMITED) {
+      return;
+    }
+
+    for (Recognizer<?, ?> recognizer : recognizers) {
+      var atn = recognizer.getATN();
+      if (atn.getContextCacheSize() > limit) {
+        clear(atn);
+      }
+    }
+  }
+
+  private void clear(ATN atn) {
+    atn.clearDFA();
+    clears.increment();
+  }
+
+  private static long dfaStatesCount(ATN atn) {
+    return dfaStatesCount(atn.decisionToDFA) + dfaStatesCount(atn.modeToDFA);
+  }
+
+  private static long dfaStatesCount(DFA[] dfas) {
+    long count = 0;
+    for (DFA dfa : dfas) {
+      count += dfa.states.size();
+    }
+    return count;
+  }
+
+  private static String readResource(String name) {
+    try (InputStream inputStream = ParserCachePolicy.class.getResourceAsStream(name)) {
+      if (inputStream == null) {
+        throw new IllegalStateException("Resource not found: " + name);
+      }
+      return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
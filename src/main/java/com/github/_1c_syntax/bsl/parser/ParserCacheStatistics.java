@@ -0,0 +1,142 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import java.util.List;
+
+/**
+ * Снимок статистики общих кэшей ANTLR, полученный от {@link ParserCachePolicy}
+ */
+public final class ParserCacheStatistics {
+
+  /**
+   * Статистика по грамматикам
+   */
+  private final List<GrammarStatistics> grammars;
+  /**
+   * Количество выполненных разборов
+   */
+  private final long parses;
+  /**
+   * Количество разборов, не добавивших ни одного состояния DFA
+   */
+  private final long warmParses;
+  /**
+   * Количество очисток DFA
+   */
+  private final long clears;
+
+  ParserCacheStatistics(List<GrammarStatistics> grammars, long parses, long warmParses, long clears) {
+    this.grammars = List.copyOf(grammars);
+    this.parses = parses;
+    this.warmParses = warmParses;
+    this.clears = clears;
+  }
+
+  public List<GrammarStatistics> getGrammars() {
+    return grammars;
+  }
+
+  public long getParses() {
+    return parses;
+  }
+
+  public long getWarmParses() {
+    return warmParses;
+  }
+
+  public long getClears() {
+    return clears;
+  }
+
+  /**
+   * Доля разборов, полностью обслуженных существующими состояниями DFA
+   *
+   * @return Доля попаданий в кэш от 0 до 1
+   */
+  public double getHitRate() {
+    if (parses == 0) {
+      return 0;
+    }
+    return (double) warmParses / parses;
+  }
+
+  /**
+   * Суммарное количество состояний DFA всех грамматик
+   *
+   * @return Количество состояний
+   */
+  public long getDfaStates() {
+    return grammars.stream().mapToLong(GrammarStatistics::getDfaStates).sum();
+  }
+
+  @Override
+  public String toString() {
+    return "ParserCacheStatistics(grammars=" + grammars
+      + ", parses=" + parses
+      + ", warmParses=" + warmParses
+      + ", clears=" + clears + ")";
+  }
+
+  /**
+   * Статистика кэшей одной грамматики
+   */
+  public static final class GrammarStatistics {
+    /**
+     * Имя файла грамматики
+     */
+    private final String grammarName;
+    /**
+     * Количество состояний DFA
+     */
+    private final long dfaStates;
+    /**
+     * Размер кэша контекстов предсказания
+     */
+    private final int contextCacheSize;
+
+    GrammarStatistics(String grammarName, long dfaStates, int contextCacheSize) {
+      this.grammarName = grammarName;
+      this.dfaStates = dfaStates;
+      this.contextCacheSize = contextCacheSize;
+    }
+
+    public String getGrammarName() {
+      return grammarName;
+    }
+
+    public long getDfaStates() {
+      return dfaStates;
+    }
+
+    public int getContextCacheSize() {
+      return contextCacheSize;
+    }
+
+    @Override
+    public String toString() {
+      return "GrammarStatistics(grammarName=" + grammarName
+        + ", dfaStates=" + dfaStates
+        + ", contextCacheSize=" + contextCacheSize + ")";
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Token;
+
+import javax.annotation.Nullable;
+
+/**
+ * Сведения о переходе разбора из режима предсказания SLL в режим LL.
+ * <p>
+ * Разбор сначала выполняется в быстром режиме SLL и прерывается на первой ошибке. В этом случае модуль
+ * разбирается заново в полном режиме LL с восстановлением после ошибок, и время разбора складывается из обоих проходов.
+ */
+public final class PredictionFallback {
+
+  /**
+   * Имя правила грамматики, в котором прервался разбор SLL
+   */
+  @Nullable
+  private final String ruleName;
+  /**
+   * Токен, на котором прервался разбор SLL
+   */
+  @Nullable
+  private final Token offendingToken;
+  /**
+   * Время прерванного прохода SLL, нс
+   */
+  private final long sllNanos;
+  /**
+   * Время повторного прохода LL, нс
+   */
+  private final long llNanos;
+
+  PredictionFallback(@Nullable String ruleName, @Nullable Token offendingToken, long sllNanos, long llNanos) {
+    this.ruleName = ruleName;
+    this.offendingToken = offendingToken;
+    this.sllNanos = sllNanos;
+    this.llNanos = llNanos;
+  }
+
+  /**
+   * Создает сведения о переходе по исключению, прервавшему разбор SLL
+   *
+   * @param parser    Парсер, выполнявший разбор
+   * @param exception Исключение прохода SLL
+   * @param sllNanos  Время прохода SLL, нс
+   * @param llNanos   Время прохода LL, нс
+   * @return Сведения о переходе
+   */
+  static PredictionFallback of(Parser parser, Exception exception, long sllNanos, long llNanos) {
+    var recognitionException = recognitionException(exception);
+    if (recognitionException == null) {
+      return new PredictionFallback(null, null, sllNanos, llNanos);
+    }
+
+    String rule = null;
+    var context = recognitionException.getContext();
+    if (context != null && context.getRuleIndex() >= 0) {
+      rule = parser.getRuleNames()[context.getRuleIndex()];
+    }
+    return new PredictionFallback(rule, recognitionException.getOffendingToken(), sllNanos, llNanos);
+  }
+
+  @Nullable
+  public String getRuleName() {
+    return ruleName;
+  }
+
+  @Nullable
+  public Token getOffendingToken() {
+    return offendingToken;
+  }
+
+  public long getSllNanos() {
+    return sllNanos;
+  }
+
+  public long getLlNanos() {
+    return llNanos;
+  }
+
+  /**
+   * Суммарное время обоих проходов
+   *
+   * @return Время, нс
+   */
+  public long getTotalNanos() {
+    return sllNanos + llNanos;
+  }
+
+  @Override
+  public String toString() {
+    return "PredictionFallback(ruleName=" + ruleName
+      + ", offendingToken=" + offendingToken
+      + ", sllNanos=" + sllNanos
+      + ", llNanos=" + llNanos + ")";
+  }
+
+  @Nullable
+  private static RecognitionException recognitionException(Throwable exception) {
+    Throwable current = exception;
+    while (current != null) {
+      if (current instanceof RecognitionException) {
+        return (RecognitionException) current;
+      }
+      current = current.getCause();
+    }
+    return null;
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Статистика двухэтапного разбора в пределах процесса.
+ * <p>
+ * Учитывает разборы, выполненные в режиме SLL, и переходы в режим LL: их количество, затраченное время
+ * и правила грамматики, в которых прервался разбор SLL. Частые переходы указывают на модули с синтаксическими
+ * ошибками или на конструкции, требующие полного контекста; такие модули можно сразу разбирать в режиме LL,
+ * см. {@link Tokenizer#setForceLL(boolean)}.
+ */
+public final class PredictionStatistics {
+
+  private static final PredictionStatistics INSTANCE = new PredictionStatistics();
+
+  private final LongAdder sllParses = new LongAdder();
+  private final LongAdder llParses = new LongAdder();
+  private final LongAdder fallbacks = new LongAdder();
+  private final LongAdder fallbackNanos = new LongAdder();
+  private final Map<String, LongAdder> fallbacksByRule = new ConcurrentHashMap<>();
+
+  private PredictionStatistics() {
+    // singleton
+  }
+
+  /**
+   * Возвращает единственный экземпляр статистики
+   *
+   * @return Статистика процесса
+   */
+  public static PredictionStatistics getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * @return Количество разборов, успешно завершенных в режиме SLL
+   */
+  public long getSllParses() {
+    return sllParses.sum();
+  }
+
+  /**
+   * @return Количество разборов, сразу выполненных в режиме LL
+   */
+  public long getLlParses() {
+    return llParses.sum();
+  }
+
+  /**
+   * @return Количество переходов из режима SLL в режим LL
+   */
+  public long getFallbacks() {
+    return fallbacks.sum();
+  }
+
+  /**
+   * @return Суммарное время разборов с переходом в режим LL, включая прерванные проходы SLL, нс
+   */
+  public long getFallbackNanos() {
+    return fallbackNanos.sum();
+  }
+
+  /**
+   * Возвращает количество переходов в режим LL по правилам грамматики, в которых прервался разбор SLL
+   *
+   * @return Количество переходов по имени правила
+   */
+  public Map<String, Long> getFallbacksByRule() {
+    Map<String, Long> result = new HashMap<>();
+    fallbacksByRule.forEach((String rule, LongAdder count) -> result.put(rule, count.sum()));
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * Обнуляет статистику
+   */
+  public void reset() {
+    sllParses.reset();
+    llParses.reset();
+    fallbacks.reset();
+    fallbackNanos.reset();
+    fallbacksByRule.clear();
+  }
+
+  void sllParsed() {
+    sllParses.increment();
+  }
+
+  void llParsed() {
+    llParses.increment();
+  }
+
+  void fallback(PredictionFallback fallback) {
+    fallbacks.increment();
+    fallbackNanos.add(fallback.getTotalNanos());
+    var ruleName = fallback.getRuleName();
+    if (ruleName != null) {
+      fallbacksByRule.computeIfAbsent(ruleName, rule -> new LongAdder()).increment();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "PredictionStatistics(sllParses=" + getSllParses()
+      + ", llParses=" + getLlParses()
+      + ", fallbacks=" + getFallbacks()
+      + ", fallbackNanos=" + getFallbackNanos() + ")";
+  }
+}
@@ -0,0 +1,321 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.WritableToken;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Источник токенов, вычисляющий инструкции препроцессора {@code #Если} для заданного контекста исполнения.
+ * <p>
+ * Оборачивает {@link BSLLexer} или {@link FastBSLLexer}. Токены основного канала в неактивных ветвях
+ * {@code #Если ... #ИначеЕсли ... #Иначе ... #КонецЕсли} переносятся на канал {@link #PREPROC_INACTIVE_CHANNEL},
+ * а токены самих инструкций условной компиляции - на канал {@link Lexer#HIDDEN}. Парсер, получающий токены через
+ * {@link org.antlr.v4.runtime.CommonTokenStream}, видит только код активных ветвей, поэтому разбирает меньше токенов
+ * и строит дерево, соответствующее контексту.
+ * <p>
+ * Условия вычисляются с приоритетом {@code НЕ} выше {@code И} и {@code И} выше {@code ИЛИ}. Символы, не входящие
+ * в контекст, и неизвестные идентификаторы ложны. Условие с синтаксической ошибкой считается ложным,
+ * непарные {@code #ИначеЕсли}, {@code #Иначе} и {@code #КонецЕсли} не влияют на активность кода.
+ * Инструкции {@code #Область}, {@code #Использовать} и другие токены остальных каналов не изменяются.
+ */
+public final class PreprocessorFilter implements TokenSource {
+
+  /**
+   * Канал токенов кода неактивных ветвей
+   */
+  public static final int PREPROC_INACTIVE_CHANNEL = BSLLexer.PREPROC_DELETE_CHANNEL + 1;
+
+  private final TokenSource source;
+  private final boolean[] defined = new boolean[BSLLexer.VOCABULARY.getMaxTokenType() + 1];
+  private final Deque<Token> pending = new ArrayDeque<>();
+  private final Deque<Branch> branches = new ArrayDeque<>();
+
+  // условие вычисляемой инструкции
+  private List<Token> condition = List.of();
+  private int position;
+  private boolean malformed;
+
+  /**
+   * Создает фильтр
+   *
+   * @param source         Лексер BSL
+   * @param definedSymbols Символы, определенные в контексте исполнения, например {@link PreprocessorSymbol#server()}
+   */
+  public PreprocessorFilter(TokenSource source, Set<PreprocessorSymbol> definedSymbols) {
+    requireNonNull(source);
+    requireNonNull(definedSymbols);
+    this.source = source;
+    for (PreprocessorSymbol symbol : definedSymbols) {
+      defined[symbol.getTokenType()] = true;
+    }
+  }
+
+  @Override
+  public Token nextToken() {
+    if (!pending.isEmpty()) {
+      return pending.poll();
+    }
+    var token = source.nextToken();
+    if (token.getType() == BSLLexer.HASH && token.getChannel() == Token.DEFAULT_CHANNEL) {
+      readDirective(token);
+      return pending.poll();
+    }
+    return filter(token);
+  }
+
+  @Override
+  public int getLine() {
+    return source.getLine();
+  }
+
+  @Override
+  public int getCharPositionInLine() {
+    return source.getCharPositionInLine();
+  }
+
+  @Override
+  public CharStream getInputStream() {
+    return source.getInputStream();
+  }
+
+  @Override
+  public String getSourceName() {
+    return source.getSourceName();
+  }
+
+  @Override
+  public void setTokenFactory(TokenFactory factory) {
+    source.setTokenFactory(factory);
+  }
+
+  @Override
+  public TokenFactory getTokenFactory() {
+    return source.getTokenFactory();
+  }
+
+  /**
+   * @return {@code true}, если текущая позиция находится в активной ветви или вне инструкций {@code #Если}
+   */
+  public boolean isActive() {
+    var branch = branches.peek();
+    return branch == null || branch.active;
+  }
+
+  /**
+   * Читает строку инструкции препроцессора до перевода строки и помещает ее токены в очередь
+   */
+  private void readDirective(Token hash) {
+    List<Token> directive = new ArrayList<>();
+    directive.add(hash);
+    Token eof = null;
+    while (true) {
+      var token = source.nextToken();
+      if (token.getType() == Token.EOF) {
+        eof = token;
+        break;
+      }
+      directive.add(token);
+      if (token.getType() == BSLLexer.PREPROC_NEWLINE) {
+        break;
+      }
+    }
+
+    var keyword = keywordIndex(directive);
+    var keywordType = keyword < 0 ? Token.INVALID_TYPE : directive.get(keyword).getType();
+    if (isConditional(keywordType)) {
+      apply(keywordType, directive, keyword + 1);
+      directive.forEach(token -> pending.add(
+        token.getChannel() == Token.DEFAULT_CHANNEL ? withChannel(token, Lexer.HIDDEN) : token));
+    } else {
+      directive.forEach(token -> pending.add(filter(token)));
+    }
+
+    if (eof != null) {
+      pending.add(eof);
+    }
+  }
+
+  private void apply(int keywordType, List<Token> directive, int conditionStart) {
+    var branch = branches.peek();
+    switch (keywordType) {
+      case BSLLexer.PREPROC_IF_KEYWORD:
+        var parentActive = isActive();
+        branches.push(new Branch(parentActive, parentActive && evaluate(directive, conditionStart)));
+        break;
+      case BSLLexer.PREPROC_ELSIF_KEYWORD:
+        if (branch != null) {
+          branch.select(branch.parentActive && !branch.taken && evaluate(directive, conditionStart));
+        }
+        break;
+      case BSLLexer.PREPROC_ELSE_KEYWORD:
+        if (branch != null) {
+          branch.select(branch.parentActive && !branch.taken);
+        }
+        break;
+      case BSLLexer.PREPROC_ENDIF_KEYWORD:
+        branches.poll();
+        break;
+      default:
+        throw new IllegalArgumentException("Not a conditional directive: " + keywordType);
+    }
+  }
+
+  private Token filter(Token token) {
+    if (token.getChannel() == Token.DEFAULT_CHANNEL && token.getType() != Token.EOF && !isActive()) {
+      return withChannel(token, PREPROC_INACTIVE_CHANNEL);
+    }
+    return token;
+  }
+
+  /**
+   * Вычисляет условие из токенов основного канала между ключевым словом и {@code Тогда}
+   */
+  private boolean evaluate(List<Token> directive, int from) {
+    List<Token> tokens = new ArrayList<>();
+    for (var i = from; i < directive.size(); i++) {
+      var token = directive.get(i);
+      if (token.getType() == BSLLexer.PREPROC_THEN_KEYWORD) {
+        break;
+      }
+      if (token.getChannel() == Token.DEFAULT_CHANNEL) {
+        tokens.add(token);
+      }
+    }
+
+    condition = tokens;
+    position = 0;
+    malformed = false;
+    var value = or();
+    if (position < condition.size()) {
+      malformed = true;
+    }
+    return value && !malformed;
+  }
+
+  private boolean or() {
+    var value = and();
+    while (peek() == BSLLexer.PREPROC_OR_KEYWORD) {
+      position++;
+      value = and() | value;
+    }
+    return value;
+  }
+
+  private boolean and() {
+    var value = not();
+    while (peek() == BSLLexer.PREPROC_AND_KEYWORD) {
+      position++;
+      value = not() & value;
+    }
+    return value;
+  }
+
+  private boolean not() {
+    if (peek() == BSLLexer.PREPROC_NOT_KEYWORD) {
+      position++;
+      return !not();
+    }
+    return primary();
+  }
+
+  private boolean primary() {
+    var type = peek();
+    position++;
+    if (type == BSLLexer.PREPROC_LPAREN) {
+      var value = or();
+      if (peek() == BSLLexer.PREPROC_RPAREN) {
+        position++;
+      } else {
+        malformed = true;
+      }
+      return value;
+    }
+    if (type == BSLLexer.PREPROC_IDENTIFIER) {
+      return false;
+    }
+    if (PreprocessorSymbol.ofTokenType(type) != null) {
+      return defined[type];
+    }
+    malformed = true;
+    return false;
+  }
+
+  private int peek() {
+    return position < condition.size() ? condition.get(position).getType() : Token.EOF;
+  }
+
+  private static int keywordIndex(List<Token> directive) {
+    for (var i = 1; i < directive.size(); i++) {
+      if (directive.get(i).getChannel() == Token.DEFAULT_CHANNEL) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isConditional(int type) {
+    return type == BSLLexer.PREPROC_IF_KEYWORD
+      || type == BSLLexer.PREPROC_ELSIF_KEYWORD
+      || type == BSLLexer.PREPROC_ELSE_KEYWORD
+      || type == BSLLexer.PREPROC_ENDIF_KEYWORD;
+  }
+
+  private static Token withChannel(Token token, int channel) {
+    WritableToken writableToken = token instanceof WritableToken ? (WritableToken) token : new CommonToken(token);
+    writableToken.setChannel(channel);
+    return writableToken;
+  }
+
+  /**
+   * Состояние инструкции {@code #Если}
+   */
+  private static final class Branch {
+    private final boolean parentActive;
+    private boolean active;
+    private boolean taken;
+
+    private Branch(boolean parentActive, boolean active) {
+      this.parentActive = parentActive;
+      this.active = active;
+      this.taken = active;
+    }
+
+    private void select(boolean branchActive) {
+      active = branchActive;
+      taken |= branchActive;
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import javax.annotation.Nullable;
+import java.util.EnumSet;
+
+/**
+ * Символы инструкций препроцессора {@code #Если} - контексты исполнения и операционные системы.
+ * <p>
+ * Множество определенных символов задает контекст, для которого {@link PreprocessorFilter} вычисляет условия.
+ * Методы вроде {@link #server()} возвращают изменяемые множества символов, определенных в типовых контекстах;
+ * операционная система добавляется к ним отдельно, например {@code server().add(LINUX)}.
+ */
+public enum PreprocessorSymbol {
+  CLIENT(BSLLexer.PREPROC_CLIENT_SYMBOL),
+  AT_CLIENT(BSLLexer.PREPROC_ATCLIENT_SYMBOL),
+  SERVER(BSLLexer.PREPROC_SERVER_SYMBOL),
+  AT_SERVER(BSLLexer.PREPROC_ATSERVER_SYMBOL),
+  MOBILE_APP_CLIENT(BSLLexer.PREPROC_MOBILEAPPCLIENT_SYMBOL),
+  MOBILE_APP_SERVER(BSLLexer.PREPROC_MOBILEAPPSERVER_SYMBOL),
+  MOBILE_CLIENT(BSLLexer.PREPROC_MOBILECLIENT_SYMBOL),
+  THICK_CLIENT_ORDINARY_APPLICATION(BSLLexer.PREPROC_THICKCLIENTORDINARYAPPLICATION_SYMBOL),
+  THICK_CLIENT_MANAGED_APPLICATION(BSLLexer.PREPROC_THICKCLIENTMANAGEDAPPLICATION_SYMBOL),
+  EXTERNAL_CONNECTION(BSLLexer.PREPROC_EXTERNALCONNECTION_SYMBOL),
+  THIN_CLIENT(BSLLexer.PREPROC_THINCLIENT_SYMBOL),
+  WEB_CLIENT(BSLLexer.PREPROC_WEBCLIENT_SYMBOL),
+  MOBILE_STANDALONE_SERVER(BSLLexer.PREPROC_MOBILE_STANDALONE_SERVER),
+  LINUX(BSLLexer.PREPROC_LINUX),
+  WINDOWS(BSLLexer.PREPROC_WINDOWS),
+  MACOS(BSLLexer.PREPROC_MACOS);
+
+  private static final PreprocessorSymbol[] BY_TOKEN_TYPE = byTokenType();
+
+  private final int tokenType;
+
+  PreprocessorSymbol(int tokenType) {
+    this.tokenType = tokenType;
+  }
+
+  /**
+   * @return Тип токена символа в {@link BSLLexer}
+   */
+  public int getTokenType() {
+    return tokenType;
+  }
+
+  /**
+   * Возвращает символ по типу токена
+   *
+   * @param tokenType Тип токена {@link BSLLexer}
+   * @return Символ или {@code null}, если токен не является символом препроцессора
+   */
+  @Nullable
+  public static PreprocessorSymbol ofTokenType(int tokenType) {
+    return tokenType >= 0 && tokenType < BY_TOKEN_TYPE.length ? BY_TOKEN_TYPE[tokenType] : null;
+  }
+
+  /**
+   * @return Символы, определенные на сервере
+   */
+  public static EnumSet<PreprocessorSymbol> server() {
+    return EnumSet.of(SERVER, AT_SERVER);
+  }
+
+  /**
+   * @return Символы, определенные во внешнем соединении
+   */
+  public static EnumSet<PreprocessorSymbol> externalConnection() {
+    return EnumSet.of(EXTERNAL_CONNECTION, SERVER, AT_SERVER);
+  }
+
+  /**
+   * @return Символы, определенные в тонком клиенте
+   */
+  public static EnumSet<PreprocessorSymbol> thinClient() {
+    return EnumSet.of(THIN_CLIENT, CLIENT, AT_CLIENT);
+  }
+
+  /**
+   * @return Символы, определенные в веб-клиенте
+   */
+  public static EnumSet<PreprocessorSymbol> webClient() {
+    return EnumSet.of(WEB_CLIENT, CLIENT, AT_CLIENT);
+  }
+
+  /**
+   * @return Символы, определенные в толстом клиенте управляемого приложения
+   */
+  public static EnumSet<PreprocessorSymbol> thickClientManagedApplication() {
+    return EnumSet.of(THICK_CLIENT_MANAGED_APPLICATION, CLIENT, AT_CLIENT);
+  }
+
+  /**
+   * @return Символы, определенные в толстом клиенте обычного приложения
+   */
+  public static EnumSet<PreprocessorSymbol> thickClientOrdinaryApplication() {
+    return EnumSet.of(THICK_CLIENT_ORDINARY_APPLICATION, CLIENT, AT_CLIENT);
+  }
+
+  /**
+   * @return Символы, определенные в клиенте мобильного приложения
+   */
+  public static EnumSet<PreprocessorSymbol> mobileAppClient() {
+    return EnumSet.of(MOBILE_APP_CLIENT, MOBILE_CLIENT, CLIENT, AT_CLIENT);
+  }
+
+  /**
+   * @return Символы, определенные на сервере мобильного приложения
+   */
+  public static EnumSet<PreprocessorSymbol> mobileAppServer() {
+    return EnumSet.of(MOBILE_APP_SERVER, SERVER, AT_SERVER);
+  }
+
+  /**
+   * @return Символы, определенные на мобильном автономном сервере
+   */
+  public static EnumSet<PreprocessorSymbol> mobileStandaloneServer() {
+    return EnumSet.of(MOBILE_STANDALONE_SERVER, SERVER, AT_SERVER);
+  }
+
+  private static PreprocessorSymbol[] byTokenType() {
+    var maxTokenType = 0;
+    for (PreprocessorSymbol symbol : values()) {
+      maxTokenType = Math.max(maxTokenType, symbol.tokenType);
+    }
+    var result = new PreprocessorSymbol[maxTokenType + 1];
+    for (PreprocessorSymbol symbol : values()) {
+      result[symbol.tokenType] = symbol;
+    }
+    return result;
+  }
+}
@@ -21,16 +21,35 @@
  */
 package com.github._1c_syntax.bsl.parser;
 
+import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.TokenStream;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class SDBLTokenizer extends Tokenizer<SDBLParser.QueryPackageContext, SDBLParser> {
   public SDBLTokenizer(String content) {
-    super(content, new SDBLLexer(CharStreams.fromString(""), true), SDBLParser.class);
+    super(content, new SDBLLexer(CharStreams.fromString(""), true), SDBLParser::new);
   }
 
   public SDBLTokenizer(String content, Lexer lexer) {
-    super(content, lexer, SDBLParser.class);
+    super(content, lexer, SDBLParser::new);
+  }
+
+  public SDBLTokenizer(Path path) {
+    super(path, new SDBLLexer(CharStreams.fromString(""), true), SDBLParser::new);
+  }
+
+  public SDBLTokenizer(ByteBuffer content) {
+    super(content, new SDBLLexer(CharStreams.fromString(""), true), SDBLParser::new);
+  }
+
+  SDBLTokenizer(Supplier<CharStream> input, Supplier<? extends Lexer> lexerSupplier, Function<TokenStream, SDBLParser> parserFactory) {
+    super(input, lexerSupplier, parserFactory);
   }
 
   @Override
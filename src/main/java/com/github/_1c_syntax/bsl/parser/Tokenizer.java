@@ -22,50 +22,136 @@
 package com.github._1c_syntax.bsl.parser;
 
 import com.github._1c_syntax.utils.Lazy;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonToken;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.IntStream;
 import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.Parser;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
 import org.antlr.v4.runtime.TokenStream;
 import org.antlr.v4.runtime.atn.PredictionMode;
-import org.apache.commons.io.IOUtils;
+import org.antlr.v4.runtime.tree.ParseTree;
 
-import java.io.IOException;
+import javax.annotation.Nullable;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.Objects.requireNonNull;
 import static org.antlr.v4.runtime.Token.EOF;
 
 abstract public class Tokenizer<T extends BSLParserRuleContext, P extends Parser> {
 
-  private final InputStream content;
-  private final Lexer lexer;
-  private final Lazy<CommonTokenStream> tokenStream = new Lazy<>(this::computeTokenStream);
-  private final Lazy<List<Token>> tokens = new Lazy<>(this::computeTokens);
-  private final Lazy<T> ast = new Lazy<>(this::computeAST);
-  private final Class<P> parserClass;
+  private static volatile ParseMetricsListener parseMetricsListener = ParseMetricsListener.NOOP;
+
+  private final Supplier<CharStream> input;
+  private final Supplier<? extends Lexer> lexerSupplier;
+  private Lexer lexer;
+  private final Lazy<CharStream> charStream = new Lazy<>(this::computeCharStream);
+  private Lazy<CommonTokenStream> tokenStream = new Lazy<>(this::computeTokenStream);
+  private Lazy<List<Token>> tokens = new Lazy<>(this::computeTokens);
+  private Lazy<CompactTokenStore> compactTokens = new Lazy<>(this::computeCompactTokens);
+  private Lazy<LineIndex> lineIndex = new Lazy<>(this::computeLineIndex);
+  private Lazy<T> ast = new Lazy<>(this::computeAST);
+  private boolean astComputed;
+  private boolean forceLL;
+  @Nullable
+  private PredictionFallback predictionFallback;
+  // замеры для ParseMetricsListener, выполняются только при подключенном слушателе
+  private long decodeNanos;
+  private long lexingNanos;
+  private long lexerDfaStatesGrowth;
+  private long sllNanos;
+  private long llNanos;
+  private boolean profile;
+  @Nullable
+  private GrammarProfile grammarProfile;
+  private final Function<TokenStream, P> parserFactory;
   protected P parser;
 
+  protected Tokenizer(String content, Lexer lexer, Function<TokenStream, P> parserFactory) {
+    this(stringInput(content), supplierOf(lexer), parserFactory);
+  }
+
+  protected Tokenizer(InputStream content, Lexer lexer, Function<TokenStream, P> parserFactory) {
+    this(inputStreamInput(content), supplierOf(lexer), parserFactory);
+  }
+
+  /**
+   * Создает токенизатор для файла. Файл читается и декодируется в поток символов без промежуточной строки
+   * в момент вычисления токенов. Большие файлы отображаются в память.
+   *
+   * @param path          Путь к файлу
+   * @param lexer         Лексер
+   * @param parserFactory Фабрика парсера
+   */
+  protected Tokenizer(Path path, Lexer lexer, Function<TokenStream, P> parserFactory) {
+    this(pathInput(path), supplierOf(lexer), parserFactory);
+  }
+
+  /**
+   * Создает токенизатор для содержимого в кодировке UTF-8 от позиции до предела буфера.
+   * Позиция буфера не изменяется.
+   *
+   * @param content       Буфер с содержимым
+   * @param lexer         Лексер
+   * @param parserFactory Фабрика парсера
+   */
+  protected Tokenizer(ByteBuffer content, Lexer lexer, Function<TokenStream, P> parserFactory) {
+    this(byteBufferInput(content), supplierOf(lexer), parserFactory);
+  }
+
+  /**
+   * Создает токенизатор, получающий поток символов и лексер в момент вычисления токенов.
+   * Используется пулом {@link TokenizerPool}, чтобы лексер и парсер брались из пула потока,
+   * выполняющего вычисление.
+   *
+   * @param input         Поставщик потока символов
+   * @param lexerSupplier Поставщик лексера
+   * @param parserFactory Фабрика парсера
+   */
+  Tokenizer(Supplier<CharStream> input, Supplier<? extends Lexer> lexerSupplier, Function<TokenStream, P> parserFactory) {
+    requireNonNull(input);
+    requireNonNull(lexerSupplier);
+    requireNonNull(parserFactory);
+    this.input = input;
+    this.lexerSupplier = lexerSupplier;
+    this.parserFactory = parserFactory;
+  }
+
+  /**
+   * @deprecated Используйте конструктор с фабрикой парсера {@link #Tokenizer(String, Lexer, Function)}
+   */
+  @Deprecated
   protected Tokenizer(String content, Lexer lexer, Class<P> parserClass) {
-    this(IOUtils.toInputStream(content, StandardCharsets.UTF_8), lexer, parserClass);
+    this(content, lexer, reflectiveParserFactory(parserClass));
   }
 
+  /**
+   * @deprecated Используйте конструктор с фабрикой парсера {@link #Tokenizer(InputStream, Lexer, Function)}
+   */
+  @Deprecated
   protected Tokenizer(InputStream content, Lexer lexer, Class<P> parserClass) {
-    requireNonNull(content);
-    requireNonNull(lexer);
-    this.content = content;
-    this.lexer = lexer;
-    this.parserClass = parserClass;
+    this(content, lexer, reflectiveParserFactory(parserClass));
   }
 
   public List<Token> getTokens() {
@@ -76,6 +162,145 @@ abstract public class Tokenizer<T extends BSLParserRuleContext, P extends Parser
     return ast.getOrCompute();
   }
 
+  /**
+   * Возвращает токены в компактном хранилище на примитивных массивах.
+   * Хранилище строится потоковым обходом лексера, без заполнения {@link CommonTokenStream}.
+   * Для разбора хранилища парсером используйте {@link CompactTokenStore#newTokenStream()}.
+   *
+   * @return Компактное хранилище токенов
+   */
+  public CompactTokenStore getCompactTokens() {
+    return compactTokens.getOrCompute();
+  }
+
+  /**
+   * Возвращает индекс строк текста для перевода смещений токенов в позиции со строками и колонками UTF-16 и обратно.
+   * Индекс строится один раз по потоку символов, разобранному лексером.
+   *
+   * @return Индекс строк
+   */
+  public LineIndex getLineIndex() {
+    return lineIndex.getOrCompute();
+  }
+
+  /**
+   * Возвращает итератор токенов всех каналов, см. {@link #tokenIterator(IntPredicate)}
+   *
+   * @return Итератор токенов
+   */
+  public Iterator<Token> tokenIterator() {
+    return tokenIterator(channel -> true);
+  }
+
+  /**
+   * Возвращает ленивый итератор токенов.
+   * <p>
+   * Токены запрашиваются у лексера по мере обхода и не накапливаются, поэтому обход выполняется в постоянной памяти
+   * независимо от размера модуля. Как и в {@link #getTokens()}, последним возвращается токен EOF на канале
+   * {@link Lexer#HIDDEN}, причем независимо от отбора по каналу. Обход использует лексер токенизатора,
+   * поэтому во время обхода не следует вычислять токены и дерево этого же токенизатора.
+   *
+   * @param channelFilter Отбор по номеру канала, например {@code channel -> channel == Token.DEFAULT_CHANNEL}.
+   *                      На токен EOF не распространяется
+   * @return Итератор токенов
+   */
+  public Iterator<Token> tokenIterator(IntPredicate channelFilter) {
+    requireNonNull(channelFilter);
+    return new TokenIterator(prepareLexer(), channelFilter);
+  }
+
+  /**
+   * Возвращает ленивый последовательный поток токенов, см. {@link #tokenIterator(IntPredicate)}
+   *
+   * @param channelFilter Отбор по номеру канала
+   * @return Поток токенов
+   */
+  public Stream<Token> streamTokens(IntPredicate channelFilter) {
+    var spliterator = Spliterators.spliteratorUnknownSize(
+      tokenIterator(channelFilter),
+      Spliterator.ORDERED | Spliterator.NONNULL
+    );
+    return StreamSupport.stream(spliterator, false);
+  }
+
+  /**
+   * Включает разбор сразу в режиме предсказания LL, без попытки разбора в режиме SLL.
+   * Подходит для модулей, у которых заранее известен переход в режим LL, например по
+   * {@link #getPredictionFallback()} предыдущего разбора. Действует на следующее вычисление дерева.
+   *
+   * @param forceLL Разбирать сразу в режиме LL
+   */
+  public void setForceLL(boolean forceLL) {
+    this.forceLL = forceLL;
+  }
+
+  /**
+   * Возвращает сведения о переходе из режима SLL в режим LL при вычислении дерева
+   *
+   * @return Сведения о переходе. Отсутствуют, если дерево не вычислено или разобрано без перехода.
+   */
+  @Nullable
+  public PredictionFallback getPredictionFallback() {
+    return predictionFallback;
+  }
+
+  /**
+   * Включает профилирование решений предсказания парсера с помощью {@link org.antlr.v4.runtime.atn.ProfilingATNSimulator}.
+   * Профилирование замедляет разбор в несколько раз и предназначено для анализа грамматики, см. {@link GrammarProfiler}.
+   * Действует на следующее вычисление дерева.
+   *
+   * @param profile Профилировать разбор
+   */
+  public void setProfile(boolean profile) {
+    this.profile = profile;
+  }
+
+  /**
+   * Возвращает профиль решений предсказания, собранный при вычислении дерева в режиме профилирования
+   *
+   * @return Профиль разбора. Отсутствует, если дерево не вычислено или профилирование не включено.
+   */
+  @Nullable
+  public GrammarProfile getGrammarProfile() {
+    return grammarProfile;
+  }
+
+  /**
+   * Возвращает статистику двухэтапного разбора процесса
+   *
+   * @return Статистика разбора
+   */
+  public static PredictionStatistics getPredictionStatistics() {
+    return PredictionStatistics.getInstance();
+  }
+
+  /**
+   * Возвращает политику управления общими для процесса кэшами DFA лексеров и парсеров
+   *
+   * @return Политика кэширования
+   */
+  public static ParserCachePolicy getCachePolicy() {
+    return ParserCachePolicy.getInstance();
+  }
+
+  /**
+   * Подключает получателя замеров разбора для всех токенизаторов процесса
+   *
+   * @param listener Получатель замеров. {@link ParseMetricsListener#NOOP} отключает замеры.
+   */
+  public static void setParseMetricsListener(ParseMetricsListener listener) {
+    parseMetricsListener = requireNonNull(listener);
+  }
+
+  /**
+   * Возвращает получателя замеров разбора
+   *
+   * @return Получатель замеров, по умолчанию {@link ParseMetricsListener#NOOP}
+   */
+  public static ParseMetricsListener getParseMetricsListener() {
+    return parseMetricsListener;
+  }
+
   private List<Token> computeTokens() {
     List<Token> tokensTemp = new ArrayList<>(getTokenStream().getTokens());
 
@@ -87,40 +312,255 @@ abstract public class Tokenizer<T extends BSLParserRuleContext, P extends Parser
     return tokensTemp;
   }
 
+  private LineIndex computeLineIndex() {
+    return LineIndex.of(charStream.getOrCompute());
+  }
+
+  private CompactTokenStore computeCompactTokens() {
+    var iterator = tokenIterator();
+    return CompactTokenStore.of(charStream.getOrCompute(), iterator);
+  }
+
   private T computeAST() {
-    parser = createParser(getTokenStream());
-    parser.removeErrorListener(ConsoleErrorListener.INSTANCE);
-    try {
-      parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
-      return rootAST();
-    } catch (Exception ex) {
-      parser.reset(); // rewind input stream
-      parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+    var cachePolicy = getCachePolicy();
+    parser = newParser();
+    var dfaStatesBefore = cachePolicy.dfaStatesCount(lexer, parser);
+
+    grammarProfile = null;
+    T result;
+    if (profile) {
+      var interpreter = parser.getInterpreter();
+      parser.setProfile(true);
+      try {
+        result = parseWithFallback();
+        grammarProfile = GrammarProfile.of(parser);
+      } finally {
+        // парсер может принадлежать пулу, поэтому профилирование действует только на этот разбор
+        parser.setInterpreter(interpreter);
+      }
+    } else {
+      result = parseWithFallback();
+    }
+
+    var listener = parseMetricsListener;
+    if (listener != ParseMetricsListener.NOOP) {
+      var parserDfaStatesGrowth = cachePolicy.dfaStatesCount(lexer, parser) - dfaStatesBefore;
+      listener.parsed(new ParseMetrics(
+        getCharStream().getSourceName(),
+        decodeNanos,
+        lexingNanos,
+        tokenStream.getOrCompute().size(),
+        sllNanos,
+        llNanos,
+        parser.getNumberOfSyntaxErrors(),
+        treeNodeCount(result),
+        lexerDfaStatesGrowth + parserDfaStatesGrowth
+      ));
+    }
+
+    cachePolicy.afterParse(dfaStatesBefore, lexer, parser);
+    astComputed = true;
+    return result;
+  }
+
+  /**
+   * Разбирает поток токенов в режиме SLL с переходом в режим LL при ошибке или сразу в режиме LL
+   */
+  private T parseWithFallback() {
+    var statistics = getPredictionStatistics();
+    predictionFallback = null;
+    sllNanos = 0;
+    llNanos = 0;
+
+    T result;
+    if (forceLL) {
+      setLLPredictionMode();
+      var llStart = System.nanoTime();
+      result = rootAST();
+      llNanos = System.nanoTime() - llStart;
+      statistics.llParsed();
+    } else {
+      // в режиме SLL разбор прерывается на первой ошибке, восстановление выполняется только в режиме LL
+      var errorHandler = parser.getErrorHandler();
+      var sllStart = System.nanoTime();
+      try {
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        result = rootAST();
+        sllNanos = System.nanoTime() - sllStart;
+        parser.setErrorHandler(errorHandler);
+        statistics.sllParsed();
+      } catch (Exception ex) {
+        sllNanos = System.nanoTime() - sllStart;
+        parser.setErrorHandler(errorHandler);
+        parser.reset(); // rewind input stream
+        setLLPredictionMode();
+        var llStart = System.nanoTime();
+        result = rootAST();
+        llNanos = System.nanoTime() - llStart;
+        predictionFallback = PredictionFallback.of(parser, ex, sllNanos, llNanos);
+        statistics.fallback(predictionFallback);
+      }
+    }
+    return result;
+  }
+
+  private static int treeNodeCount(ParseTree tree) {
+    var count = 0;
+    Deque<ParseTree> stack = new ArrayDeque<>();
+    stack.push(tree);
+    while (!stack.isEmpty()) {
+      var node = stack.pop();
+      count++;
+      for (var i = 0; i < node.getChildCount(); i++) {
+        stack.push(node.getChild(i));
+      }
     }
-    return rootAST();
+    return count;
+  }
+
+  /**
+   * Переключает парсер в режим LL. Полноконтекстные предсказания кэшируются в общем DFA,
+   * что в несколько раз ускоряет разбор в режиме LL после первого.
+   */
+  private void setLLPredictionMode() {
+    var interpreter = parser.getInterpreter();
+    interpreter.setPredictionMode(PredictionMode.LL);
+    interpreter.enable_global_context_dfa = true;
   }
 
   abstract protected T rootAST();
 
-  private CommonTokenStream computeTokenStream() {
+  /**
+   * Позволяет наследнику обернуть поток символов, из которого строятся токены
+   *
+   * @param content Поток символов источника
+   * @return Поток символов для лексера
+   */
+  CharStream wrapCharStream(CharStream content) {
+    return content;
+  }
 
-    CharStream input;
+  /**
+   * Позволяет наследнику обернуть лексер при заполнении потока токенов
+   *
+   * @param lexer Лексер, подготовленный к разбору с начала
+   * @return Источник токенов для {@link CommonTokenStream}
+   */
+  TokenSource wrapTokenSource(Lexer lexer) {
+    return lexer;
+  }
 
-    try (
-      UnicodeBOMInputStream ubis = new UnicodeBOMInputStream(content);
-      Reader inputStreamReader = new InputStreamReader(ubis, StandardCharsets.UTF_8)
-    ) {
-      ubis.skipBOM();
-      input = CharStreams.fromReader(inputStreamReader);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+  CharStream getCharStream() {
+    return charStream.getOrCompute();
+  }
 
-    lexer.setInputStream(input);
+  boolean isAstComputed() {
+    return astComputed;
+  }
+
+  /**
+   * Сбрасывает вычисленные токены и дерево. Они будут вычислены заново из текущего потока символов.
+   */
+  void resetState() {
+    tokenStream = new Lazy<>(this::computeTokenStream);
+    tokens = new Lazy<>(this::computeTokens);
+    compactTokens = new Lazy<>(this::computeCompactTokens);
+    lineIndex = new Lazy<>(this::computeLineIndex);
+    ast = new Lazy<>(this::computeAST);
+    astComputed = false;
+    predictionFallback = null;
+    grammarProfile = null;
+    lexingNanos = 0;
+    lexerDfaStatesGrowth = 0;
+  }
+
+  /**
+   * Заменяет дерево после изменения потока токенов на месте
+   *
+   * @param newAst Новое дерево
+   */
+  void replaceAst(T newAst) {
+    tokens = new Lazy<>(this::computeTokens);
+    compactTokens = new Lazy<>(this::computeCompactTokens);
+    lineIndex = new Lazy<>(this::computeLineIndex);
+    ast = new Lazy<>(() -> newAst);
+    astComputed = true;
+  }
+
+  /**
+   * Устанавливает токены и дерево, восстановленные без лексера и парсера, например из {@link ParseCache}.
+   * Поток токенов при необходимости будет вычислен заново.
+   *
+   * @param restoredTokens Токены над потоком символов {@link #getCharStream()}
+   * @param restoredAst    Дерево над этими токенами
+   */
+  void restore(List<Token> restoredTokens, T restoredAst) {
+    tokens = new Lazy<>(() -> restoredTokens);
+    ast = new Lazy<>(() -> restoredAst);
+  }
+
+  /**
+   * Создает парсер над потоком токенов токенизатора
+   *
+   * @return Парсер
+   */
+  P newParser() {
+    var newParser = createParser(getTokenStream());
+    newParser.removeErrorListener(ConsoleErrorListener.INSTANCE);
+    getCachePolicy().register(newParser);
+    return newParser;
+  }
+
+  /**
+   * Подготавливает лексер к разбору потока символов с указанной позиции
+   *
+   * @param index              Индекс символа
+   * @param line               Номер строки в позиции
+   * @param charPositionInLine Номер колонки в позиции
+   * @return Лексер в режиме по умолчанию
+   */
+  Lexer prepareLexer(int index, int line, int charPositionInLine) {
+    var content = charStream.getOrCompute();
+
+    lexer = lexerSupplier.get();
+    lexer.setInputStream(content);
+    content.seek(index);
+    lexer.setLine(line);
+    lexer.setCharPositionInLine(charPositionInLine);
     lexer.removeErrorListener(ConsoleErrorListener.INSTANCE);
+    getCachePolicy().register(lexer);
+    return lexer;
+  }
+
+  private CharStream computeCharStream() {
+    if (parseMetricsListener == ParseMetricsListener.NOOP) {
+      return wrapCharStream(input.get());
+    }
+    var start = System.nanoTime();
+    var content = wrapCharStream(input.get());
+    decodeNanos = System.nanoTime() - start;
+    return content;
+  }
+
+  private Lexer prepareLexer() {
+    return prepareLexer(0, 1, 0);
+  }
+
+  private CommonTokenStream computeTokenStream() {
+    var preparedLexer = prepareLexer();
+    CommonTokenStream tempTokenStream = new CommonTokenStream(wrapTokenSource(preparedLexer));
+    if (parseMetricsListener == ParseMetricsListener.NOOP) {
+      tempTokenStream.fill();
+      return tempTokenStream;
+    }
 
-    CommonTokenStream tempTokenStream = new CommonTokenStream(lexer);
+    var cachePolicy = getCachePolicy();
+    var dfaStatesBefore = cachePolicy.dfaStatesCount(preparedLexer);
+    var start = System.nanoTime();
     tempTokenStream.fill();
+    lexingNanos = System.nanoTime() - start;
+    lexerDfaStatesGrowth = cachePolicy.dfaStatesCount(preparedLexer) - dfaStatesBefore;
     return tempTokenStream;
   }
 
@@ -131,11 +571,95 @@ abstract public class Tokenizer<T extends BSLParserRuleContext, P extends Parser
   }
 
   private P createParser(CommonTokenStream tokenStream) {
+    return parserFactory.apply(tokenStream);
+  }
+
+  static Supplier<CharStream> stringInput(String content) {
+    requireNonNull(content);
+    return () -> InputCharStreams.fromString(content);
+  }
+
+  static Supplier<CharStream> inputStreamInput(InputStream content) {
+    requireNonNull(content);
+    return () -> InputCharStreams.fromInputStream(content);
+  }
+
+  static Supplier<CharStream> pathInput(Path path) {
+    requireNonNull(path);
+    return () -> InputCharStreams.fromPath(path);
+  }
+
+  static Supplier<CharStream> byteBufferInput(ByteBuffer content) {
+    return byteBufferInput(content, IntStream.UNKNOWN_SOURCE_NAME);
+  }
+
+  static Supplier<CharStream> byteBufferInput(ByteBuffer content, String sourceName) {
+    requireNonNull(content);
+    requireNonNull(sourceName);
+    return () -> InputCharStreams.fromByteBuffer(content, sourceName);
+  }
+
+  private static Supplier<Lexer> supplierOf(Lexer lexer) {
+    requireNonNull(lexer);
+    return () -> lexer;
+  }
+
+  /**
+   * Итератор, запрашивающий токены у лексера по одному
+   */
+  private static final class TokenIterator implements Iterator<Token> {
+    private final Lexer lexer;
+    private final IntPredicate channelFilter;
+    private Token next;
+    private boolean finished;
+
+    private TokenIterator(Lexer lexer, IntPredicate channelFilter) {
+      this.lexer = lexer;
+      this.channelFilter = channelFilter;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && !finished) {
+        var token = lexer.nextToken();
+        if (token.getType() == EOF) {
+          finished = true;
+          if (token instanceof CommonToken) {
+            ((CommonToken) token).setChannel(Lexer.HIDDEN);
+          }
+        }
+        if (finished || channelFilter.test(token.getChannel())) {
+          next = token;
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public Token next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      var token = next;
+      next = null;
+      return token;
+    }
+  }
+
+  private static <P extends Parser> Function<TokenStream, P> reflectiveParserFactory(Class<P> parserClass) {
+    Constructor<P> constructor;
     try {
-      return parserClass.getDeclaredConstructor(TokenStream.class)
-        .newInstance(tokenStream);
-    } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-      throw new RuntimeException(e);
+      constructor = parserClass.getDeclaredConstructor(TokenStream.class);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalArgumentException(e);
     }
+
+    return (TokenStream tokenStream) -> {
+      try {
+        return constructor.newInstance(tokenStream);
+      } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+        throw new RuntimeException(e);
+      }
+    };
   }
 }
@@ -0,0 +1,238 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.TokenStream;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Пул лексеров и парсеров для пакетного разбора.
+ * <p>
+ * Каждый поток держит собственную пару лексер-парсер для каждой грамматики. Токенизаторы, созданные пулом,
+ * получают лексер и парсер потока в момент вычисления токенов и дерева, поэтому их можно создавать в одном потоке,
+ * а вычислять в другом.
+ * <p>
+ * Перед разбором очередного файла лексер переинициализируется через {@link Lexer#setInputStream},
+ * что сбрасывает стек и текущий режим, позицию и признак достижения конца файла. Парсер переинициализируется через
+ * {@link Parser#setInputStream}, что сбрасывает контекст, стек приоритетов, счетчик ошибок и стратегию обработки
+ * ошибок. Режим предсказания токенизатор устанавливает заново для каждого разбора. Таким образом состояние
+ * разбора одного файла не влияет на разбор следующего.
+ * <p>
+ * Токены, полученные из токенизатора пула, ссылаются на лексер потока как на источник токенов,
+ * поэтому {@link org.antlr.v4.runtime.Token#getTokenSource()} после разбора следующего файла
+ * указывает на переинициализированный лексер.
+ */
+public final class TokenizerPool {
+
+  private static final Pool<BSLLexer, BSLParser> BSL = new Pool<>(
+    () -> new BSLLexer(CharStreams.fromString(""), true),
+    BSLParser::new
+  );
+
+  private static final Pool<SDBLLexer, SDBLParser> SDBL = new Pool<>(
+    () -> new SDBLLexer(CharStreams.fromString(""), true),
+    SDBLParser::new
+  );
+
+  private TokenizerPool() {
+    // utility class
+  }
+
+  /**
+   * Создает токенизатор BSL, использующий лексер и парсер пула
+   *
+   * @param content Текст модуля
+   * @return Токенизатор
+   */
+  public static BSLTokenizer bslTokenizer(String content) {
+    return new BSLTokenizer(Tokenizer.stringInput(content), BSL::lexer, BSL::parser);
+  }
+
+  /**
+   * Создает токенизатор BSL, использующий лексер и парсер пула
+   *
+   * @param content Поток с текстом модуля
+   * @return Токенизатор
+   */
+  public static BSLTokenizer bslTokenizer(InputStream content) {
+    return new BSLTokenizer(Tokenizer.inputStreamInput(content), BSL::lexer, BSL::parser);
+  }
+
+  /**
+   * Создает токенизатор BSL для файла, использующий лексер и парсер пула
+   *
+   * @param path Путь к файлу модуля
+   * @return Токенизатор
+   */
+  public static BSLTokenizer bslTokenizer(Path path) {
+    return new BSLTokenizer(Tokenizer.pathInput(path), BSL::lexer, BSL::parser);
+  }
+
+  /**
+   * Создает токенизатор BSL для содержимого буфера, использующий лексер и парсер пула.
+   * Позиция переданного буфера не изменяется.
+   *
+   * @param content Буфер с текстом модуля в UTF-8 от позиции до предела
+   * @return Токенизатор
+   */
+  public static BSLTokenizer bslTokenizer(ByteBuffer content) {
+    return new BSLTokenizer(Tokenizer.byteBufferInput(content), BSL::lexer, BSL::parser);
+  }
+
+  /**
+   * Создает токенизатор языка запросов, использующий лексер и парсер пула
+   *
+   * @param content Текст запроса
+   * @return Токенизатор
+   */
+  public static SDBLTokenizer sdblTokenizer(String content) {
+    return new SDBLTokenizer(Tokenizer.stringInput(content), SDBL::lexer, SDBL::parser);
+  }
+
+  /**
+   * Создает токенизатор языка запросов, использующий лексер и парсер пула
+   *
+   * @param content Поток с текстом запроса
+   * @return Токенизатор
+   */
+  public static SDBLTokenizer sdblTokenizer(InputStream content) {
+    return new SDBLTokenizer(Tokenizer.inputStreamInput(content), SDBL::lexer, SDBL::parser);
+  }
+
+  /**
+   * Освобождает лексеры и парсеры текущего потока.
+   * Следует вызывать перед возвратом потока в чужой пул потоков, чтобы не удерживать текст последнего файла.
+   */
+  public static void release() {
+    BSL.release();
+    SDBL.release();
+  }
+
+  /**
+   * Набор лексеров и парсеров BSL, не закрепленных за потоками.
+   * <p>
+   * Лексер и парсер выдаются задаче на время разбора одного файла и затем возвращаются в набор,
+   * поэтому их число не превышает числа одновременно выполняемых задач. В отличие от пула потоков
+   * набор ничего не оставляет в потоках исполнителя и освобождается целиком вместе с последней ссылкой на него,
+   * поэтому подходит для чужих исполнителей, например {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+   */
+  static final class Shared {
+    private final Queue<BSLLexer> lexers = new ConcurrentLinkedQueue<>();
+    private final Queue<BSLParser> parsers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Выполняет действие над токенизатором BSL, использующим лексер и парсер набора
+     *
+     * @param content    Буфер с текстом модуля в UTF-8 от позиции до предела
+     * @param sourceName Имя источника, например путь к файлу
+     * @param action     Действие, вычисляющее токены и дерево. Токенизатор нельзя использовать после его завершения
+     */
+    void withBSLTokenizer(ByteBuffer content, String sourceName, Consumer<BSLTokenizer> action) {
+      var lease = new Lease();
+      try {
+        action.accept(new BSLTokenizer(Tokenizer.byteBufferInput(content, sourceName), lease::lexer, lease::parser));
+      } finally {
+        if (lease.lexer != null) {
+          lexers.offer(lease.lexer);
+        }
+        if (lease.parser != null) {
+          parsers.offer(lease.parser);
+        }
+      }
+    }
+
+    /**
+     * Лексер и парсер, выданные одной задаче
+     */
+    private final class Lease {
+      private BSLLexer lexer;
+      private BSLParser parser;
+
+      private BSLLexer lexer() {
+        if (lexer == null) {
+          lexer = lexers.poll();
+          if (lexer == null) {
+            lexer = new BSLLexer(CharStreams.fromString(""), true);
+          }
+        }
+        return lexer;
+      }
+
+      private BSLParser parser(TokenStream tokenStream) {
+        if (parser == null) {
+          parser = parsers.poll();
+          if (parser == null) {
+            parser = new BSLParser(tokenStream);
+            return parser;
+          }
+        }
+        parser.setInputStream(tokenStream);
+        return parser;
+      }
+    }
+  }
+
+  /**
+   * Лексер и парсер одной грамматики, закрепленные за потоком
+   */
+  private static final class Pool<L extends Lexer, P extends Parser> {
+    private final ThreadLocal<L> lexers;
+    private final ThreadLocal<P> parsers = new ThreadLocal<>();
+    private final Function<TokenStream, P> parserFactory;
+
+    private Pool(Supplier<L> lexerFactory, Function<TokenStream, P> parserFactory) {
+      this.lexers = ThreadLocal.withInitial(lexerFactory);
+      this.parserFactory = parserFactory;
+    }
+
+    private L lexer() {
+      return lexers.get();
+    }
+
+    private P parser(TokenStream tokenStream) {
+      var parser = parsers.get();
+      if (parser == null) {
+        parser = parserFactory.apply(tokenStream);
+        parsers.set(parser);
+      } else {
+        parser.setInputStream(tokenStream);
+      }
+      return parser;
+    }
+
+    private void release() {
+      lexers.remove();
+      parsers.remove();
+    }
+  }
+}
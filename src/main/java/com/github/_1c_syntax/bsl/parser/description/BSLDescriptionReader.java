@@ -21,16 +21,23 @@
  */
 package com.github._1c_syntax.bsl.parser.description;
 
+import com.github._1c_syntax.bsl.parser.BSLTokenizer;
 import org.antlr.v4.runtime.Token;
 
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Читатель объектов описания по набору токенов из текста
  */
 public final class BSLDescriptionReader {
 
+  /**
+   * Значение размера кэша описаний, означающее выключенный кэш
+   */
+  public static final int CACHE_DISABLED = DescriptionCache.DISABLED;
+
   private BSLDescriptionReader() {
     // utility class
   }
@@ -65,4 +72,91 @@ public final class BSLDescriptionReader {
   public static VariableDescription parseVariableDescription(List<Token> tokens, @Nullable Token trailing) {
     return new VariableDescription(tokens, trailing);
   }
+
+  /**
+   * Возвращает объект описания метода по списку токенов описания.
+   * Текст описания разбирается только при первом обращении к его содержимому
+   * (параметрам, возвращаемому значению, назначению и т.д.).
+   *
+   * @param tokens Список токенов описания метода
+   * @return Объект описания
+   */
+  public static MethodDescription lazyMethodDescription(List<Token> tokens) {
+    return new MethodDescription(tokens, true);
+  }
+
+  /**
+   * Возвращает объект описания переменной по списку токенов описания.
+   * Текст описания разбирается только при первом обращении к его содержимому.
+   *
+   * @param tokens Список токенов описания переменной
+   * @return Объект описания
+   */
+  public static VariableDescription lazyVariableDescription(List<Token> tokens) {
+    return new VariableDescription(tokens, null, true);
+  }
+
+  /**
+   * Возвращает объект описания переменной по списку токенов описания и токену "висящего" описания.
+   * Текст описаний разбирается только при первом обращении к их содержимому.
+   *
+   * @param tokens   Список токенов описания переменной
+   * @param trailing Токен "висящего" описания
+   * @return Объект описания
+   */
+  public static VariableDescription lazyVariableDescription(List<Token> tokens, @Nullable Token trailing) {
+    return new VariableDescription(tokens, trailing, true);
+  }
+
+  /**
+   * Находит и разбирает описания всех методов и переменных модуля за один проход по его токенам
+   *
+   * @param tokenizer Токенизатор модуля
+   * @return Описания модуля
+   */
+  public static ModuleDescriptions readAll(BSLTokenizer tokenizer) {
+    return ModuleDescriptions.read(tokenizer, null);
+  }
+
+  /**
+   * Находит описания всех методов и переменных модуля за один проход по его токенам
+   * и разбирает их параллельно на переданном исполнителе
+   *
+   * @param tokenizer Токенизатор модуля
+   * @param executor  Исполнитель разбора описаний
+   * @return Описания модуля
+   */
+  public static ModuleDescriptions readAll(BSLTokenizer tokenizer, Executor executor) {
+    return ModuleDescriptions.read(tokenizer, executor);
+  }
+
+  /**
+   * Возвращает размер кэша разобранных описаний
+   *
+   * @return Максимальное количество описаний в кэше или {@link #CACHE_DISABLED}
+   */
+  public static int getCacheSize() {
+    return DescriptionCache.getInstance().getMaxSize();
+  }
+
+  /**
+   * Устанавливает размер кэша разобранных описаний.
+   * <p>
+   * Кэш общий для процесса, ключом служит текст описания без префиксов {@code //}.
+   * Одинаковые описания разбираются один раз, а описания разных вхождений разделяют
+   * неизменяемые параметры, типы и прочее содержимое, отличаясь только диапазоном.
+   * По умолчанию кэш выключен.
+   *
+   * @param cacheSize Максимальное количество описаний в кэше или {@link #CACHE_DISABLED}
+   */
+  public static void setCacheSize(int cacheSize) {
+    DescriptionCache.getInstance().setMaxSize(cacheSize);
+  }
+
+  /**
+   * Очищает кэш разобранных описаний
+   */
+  public static void clearCache() {
+    DescriptionCache.getInstance().clear();
+  }
 }
@@ -0,0 +1,190 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser.description;
+
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Ограниченный кэш разобранного содержимого описаний в пределах процесса.
+ * <p>
+ * Ключом служит текст комментариев описания без префиксов {@code //}, поэтому одинаковые описания
+ * из разных модулей и расширений разбираются один раз и разделяют неизменяемое содержимое
+ * (параметры, типы, примеры и т.д.). Диапазон описания в содержимое не входит и вычисляется
+ * для каждого вхождения по его токенам. При превышении размера вытесняются давно не использованные записи.
+ * <p>
+ * По умолчанию кэш выключен.
+ */
+final class DescriptionCache {
+
+  /**
+   * Значение размера кэша, означающее выключенный кэш
+   */
+  static final int DISABLED = 0;
+
+  private static final DescriptionCache INSTANCE = new DescriptionCache();
+  private static final String COMMENT_PREFIX = "//";
+
+  private final LinkedHashMap<Key, Object> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private volatile int maxSize = DISABLED;
+
+  private DescriptionCache() {
+    // singleton
+  }
+
+  /**
+   * @return Кэш описаний процесса
+   */
+  static DescriptionCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * @return Максимальное количество записей кэша или {@link #DISABLED}
+   */
+  int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Устанавливает максимальное количество записей кэша. Лишние записи вытесняются сразу.
+   *
+   * @param maxSize Максимальное количество записей или {@link #DISABLED}
+   */
+  void setMaxSize(int maxSize) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("maxSize must not be negative");
+    }
+    synchronized (entries) {
+      this.maxSize = maxSize;
+      trim();
+    }
+  }
+
+  /**
+   * Очищает кэш
+   */
+  void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  /**
+   * @return Количество записей кэша
+   */
+  int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * Возвращает содержимое описания из кэша либо разбирает его и помещает в кэш.
+   * Разбор выполняется вне блокировки кэша.
+   *
+   * @param kind        Тип содержимого, разделяет записи описаний разных видов с одинаковым текстом
+   * @param description Текст описания: строки комментариев, соединенные переводом строки.
+   *                    Запрашивается только при включенном кэше
+   * @param reader      Разбор содержимого
+   * @param <T>         Тип содержимого
+   * @return Содержимое описания
+   */
+  <T> T get(Class<T> kind, Supplier<String> description, Supplier<T> reader) {
+    if (maxSize == DISABLED) {
+      return reader.get();
+    }
+
+    var key = new Key(kind, normalize(description.get()));
+    synchronized (entries) {
+      var cached = entries.get(key);
+      if (cached != null) {
+        return kind.cast(cached);
+      }
+    }
+
+    var value = reader.get();
+    synchronized (entries) {
+      if (maxSize == DISABLED) {
+        return value;
+      }
+      var cached = entries.putIfAbsent(key, value);
+      if (cached != null) {
+        return kind.cast(cached);
+      }
+      trim();
+    }
+    return value;
+  }
+
+  private void trim() {
+    var iterator = entries.entrySet().iterator();
+    while (entries.size() > maxSize && iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+    }
+  }
+
+  private static String normalize(String description) {
+    var text = new StringBuilder(description.length());
+    var lineStart = 0;
+    while (true) {
+      var lineEnd = description.indexOf('\n', lineStart);
+      var end = lineEnd < 0 ? description.length() : lineEnd;
+      var start = description.startsWith(COMMENT_PREFIX, lineStart) ? lineStart + COMMENT_PREFIX.length() : lineStart;
+      text.append(description, start, end);
+      if (lineEnd < 0) {
+        return text.toString();
+      }
+      text.append('\n');
+      lineStart = lineEnd + 1;
+    }
+  }
+
+  private static final class Key {
+    private final Class<?> kind;
+    private final String text;
+
+    private Key(Class<?> kind, String text) {
+      this.kind = kind;
+      this.text = text;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      var key = (Key) o;
+      return kind == key.kind && text.equals(key.text);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(kind, text);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser.description;
+
+import com.github._1c_syntax.bsl.parser.BSLMethodDescriptionParser;
+import com.github._1c_syntax.bsl.parser.BSLMethodDescriptionTokenizer;
+import org.antlr.v4.runtime.Token;
+
+import javax.annotation.Nullable;
+import java.lang.ref.SoftReference;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Разобранное содержимое описания.
+ * <p>
+ * В обычном режиме описание разбирается сразу при создании прямо из потока символов модуля,
+ * на который ссылаются токены комментариев, и результат хранится постоянно. Токены после этого не удерживаются.
+ * В ленивом режиме хранится только текст описания, а разбор этого текста выполняется при первом обращении.
+ * Сам текст запрашивается, только когда он нужен для разбора или как ключ {@link DescriptionCache}.
+ * Результат хранится через {@link SoftReference}: при нехватке памяти он может быть освобожден сборщиком мусора
+ * и будет разобран повторно при следующем обращении. Обращение потокобезопасно.
+ * <p>
+ * Если включен {@link DescriptionCache}, содержимое одинаковых описаний разбирается один раз и разделяется.
+ *
+ * @param <T> Тип разобранного содержимого
+ */
+final class DescriptionContent<T> {
+
+  /**
+   * Текст описания для разбора при обращении. Null для разобранного сразу содержимого
+   */
+  @Nullable
+  private final Supplier<String> description;
+  private final Class<T> kind;
+  private final Function<BSLMethodDescriptionParser.MethodDescriptionContext, T> reader;
+
+  @Nullable
+  private final T value;
+  @Nullable
+  private volatile SoftReference<T> reference;
+
+  private DescriptionContent(Supplier<String> description,
+                             Class<T> kind,
+                             Function<BSLMethodDescriptionParser.MethodDescriptionContext, T> reader,
+                             @Nullable List<Token> comments) {
+    this.kind = kind;
+    this.reader = reader;
+    if (comments == null) {
+      this.description = description;
+      this.value = null;
+    } else {
+      this.description = null;
+      this.value = DescriptionCache.getInstance().get(kind, description,
+        () -> parse(new BSLMethodDescriptionTokenizer(comments)));
+    }
+  }
+
+  /**
+   * Создает содержимое, разобранное сразу.
+   *
+   * @param comments    Токены комментариев описания
+   * @param description Текст описания, собранный из токенов. Запрашивается только для ключа кэша описаний
+   * @param kind        Тип разобранного содержимого
+   * @param reader      Функция чтения содержимого из дерева разбора описания
+   * @param <T>         Тип разобранного содержимого
+   * @return Содержимое описания
+   */
+  static <T> DescriptionContent<T> eager(List<Token> comments,
+                                         Supplier<String> description,
+                                         Class<T> kind,
+                                         Function<BSLMethodDescriptionParser.MethodDescriptionContext, T> reader) {
+    return new DescriptionContent<>(description, kind, reader, comments);
+  }
+
+  /**
+   * Создает содержимое, разбираемое при первом обращении.
+   *
+   * @param description Текст описания
+   * @param kind        Тип разобранного содержимого
+   * @param reader      Функция чтения содержимого из дерева разбора описания
+   * @param <T>         Тип разобранного содержимого
+   * @return Содержимое описания
+   */
+  static <T> DescriptionContent<T> lazy(Supplier<String> description,
+                                        Class<T> kind,
+                                        Function<BSLMethodDescriptionParser.MethodDescriptionContext, T> reader) {
+    return new DescriptionContent<>(description, kind, reader, null);
+  }
+
+  /**
+   * @return Разобранное содержимое описания
+   */
+  T get() {
+    if (value != null) {
+      return value;
+    }
+
+    var result = cached();
+    if (result == null) {
+      synchronized (this) {
+        result = cached();
+        if (result == null) {
+          var text = requireNonNull(description).get();
+          result = DescriptionCache.getInstance().get(kind, () -> text,
+            () -> parse(new BSLMethodDescriptionTokenizer(text)));
+          reference = new SoftReference<>(result);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Nullable
+  private T cached() {
+    var ref = reference;
+    return ref == null ? null : ref.get();
+  }
+
+  private T parse(BSLMethodDescriptionTokenizer tokenizer) {
+    return reader.apply(requireNonNull(tokenizer.getAst()));
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser.description;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CodePointCharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Текст описания: тексты комментариев, соединенные переводом строки.
+ * <p>
+ * Если токены ссылаются на общий поток символов модуля с неизменяемым содержимым, хранятся только границы
+ * комментариев в этом потоке, а текст собирается при первом обращении. Токены при этом не удерживаются.
+ * Для токенов без общего потока или из потока с заменяемым содержимым текст собирается сразу.
+ * Обращение потокобезопасно.
+ */
+final class DescriptionText implements Supplier<String> {
+
+  @Nullable
+  private volatile String text;
+  @Nullable
+  private CharStream source;
+  /**
+   * Индексы первого и последнего символа каждого комментария в потоке символов модуля
+   */
+  @Nullable
+  private int[] bounds;
+
+  DescriptionText(List<Token> comments) {
+    var stream = sharedStream(comments);
+    if (stream == null) {
+      text = comments.stream()
+        .map(Token::getText)
+        .collect(Collectors.joining("\n"));
+      return;
+    }
+
+    source = stream;
+    bounds = new int[comments.size() * 2];
+    for (var i = 0; i < comments.size(); i++) {
+      bounds[2 * i] = comments.get(i).getStartIndex();
+      bounds[2 * i + 1] = comments.get(i).getStopIndex();
+    }
+  }
+
+  @Override
+  public String get() {
+    var result = text;
+    if (result == null) {
+      synchronized (this) {
+        result = text;
+        if (result == null) {
+          result = join();
+          text = result;
+          source = null;
+          bounds = null;
+        }
+      }
+    }
+    return result;
+  }
+
+  private String join() {
+    var stream = requireNonNull(source);
+    var intervals = requireNonNull(bounds);
+    var builder = new StringBuilder();
+    for (var i = 0; i < intervals.length; i += 2) {
+      if (i > 0) {
+        builder.append('\n');
+      }
+      builder.append(stream.getText(Interval.of(intervals[i], intervals[i + 1])));
+    }
+    return builder.toString();
+  }
+
+  @Nullable
+  private static CharStream sharedStream(List<Token> comments) {
+    if (comments.isEmpty()) {
+      return null;
+    }
+
+    // содержимое CodePointCharStream не меняется, поэтому границы комментариев остаются верными
+    var stream = comments.get(0).getInputStream();
+    if (!(stream instanceof CodePointCharStream)) {
+      return null;
+    }
+    for (var comment : comments) {
+      if (comment.getInputStream() != stream || comment.getStartIndex() < 0) {
+        return null;
+      }
+    }
+    return stream;
+  }
+}
@@ -21,7 +21,7 @@
  */
 package com.github._1c_syntax.bsl.parser.description;
 
-import com.github._1c_syntax.bsl.parser.BSLMethodDescriptionTokenizer;
+import com.github._1c_syntax.bsl.parser.BSLMethodDescriptionParser;
 import com.github._1c_syntax.bsl.parser.description.support.DescriptionReader;
 import com.github._1c_syntax.bsl.parser.description.support.ParameterDescription;
 import com.github._1c_syntax.bsl.parser.description.support.SimpleRange;
@@ -29,100 +29,64 @@ import com.github._1c_syntax.bsl.parser.description.support.TypeDescription;
 import org.antlr.v4.runtime.Token;
 
 import java.util.List;
-import java.util.stream.Collectors;
-
-import static java.util.Objects.requireNonNull;
 
 /**
  * Класс-описание метода (процедуры или функции).
  */
 public final class MethodDescription implements SourceDefinedSymbolDescription {
   /**
-   * Содержит полное описание метода (весь текст).
-   */
-  private final String description;
-  /**
-   * Содержит часть строки после ключевого слова, в которой должно быть
-   * описание причины устаревания метода либо альтернативы.
-   */
-  private final String deprecationInfo;
-  /**
-   * Признак устаревания метода.
-   */
-  private final boolean deprecated;
-  /**
-   * Описание назначения метода.
-   */
-  private final String purposeDescription;
-  /**
-   * Примеры использования метода.
-   */
-  private final List<String> examples;
-  /**
-   * Варианты вызова метода.
-   */
-  private final List<String> callOptions;
-  /**
-   * Параметры метода с типами и описанием.
+   * Содержит полное описание метода (весь текст), собираемое при первом обращении.
    */
-  private final List<ParameterDescription> parameters;
-  /**
-   * Возвращаемые значения (типы).
-   */
-  private final List<TypeDescription> returnedValue;
-  /**
-   * Если описание содержит только ссылку, то здесь будет ее значение.
-   * <p>
-   * TODO Временное решение, надо будет продумать в следующем релизе
-   */
-  private final String link;
+  private final DescriptionText description;
   /**
    * Диапазон, в котором располагается описание.
    */
   private final SimpleRange range;
+  /**
+   * Разобранное содержимое описания.
+   */
+  private final DescriptionContent<Content> content;
 
   MethodDescription(List<Token> comments) {
-    description = comments.stream()
-      .map(Token::getText)
-      .collect(Collectors.joining("\n"));
-
-    var tokenizer = new BSLMethodDescriptionTokenizer(description);
-    var ast = requireNonNull(tokenizer.getAst());
-
-    purposeDescription = DescriptionReader.readPurposeDescription(ast);
-    link = DescriptionReader.readLink(ast);
-    deprecated = ast.deprecate() != null;
-    deprecationInfo = DescriptionReader.readDeprecationInfo(ast);
-    callOptions = DescriptionReader.readCallOptions(ast);
-    examples = DescriptionReader.readExamples(ast);
-    parameters = DescriptionReader.readParameters(ast);
-    returnedValue = DescriptionReader.readReturnedValue(ast);
+    this(comments, false);
+  }
+
+  /**
+   * @param comments Список токенов описания метода
+   * @param lazy     Признак отложенного разбора описания до первого обращения к его содержимому
+   */
+  MethodDescription(List<Token> comments, boolean lazy) {
+    // токены не сохраняются: они удерживают поток символов модуля, который может измениться после правки
+    description = new DescriptionText(comments);
     range = SimpleRange.create(comments);
+    content = lazy
+      ? DescriptionContent.lazy(description, Content.class, Content::new)
+      : DescriptionContent.eager(comments, description, Content.class, Content::new);
   }
 
   @Override
   public String getDescription() {
-    return description;
+    return description.get();
   }
 
   @Override
   public String getDeprecationInfo() {
-    return deprecationInfo;
+    return content.get().deprecationInfo;
   }
 
   @Override
   public boolean isDeprecated() {
-    return deprecated;
+    return content.get().deprecated;
   }
 
   @Override
   public String getPurposeDescription() {
-    return purposeDescription;
+    return content.get().purposeDescription;
   }
 
   @Override
   public String getLink() {
-    return link;
+    return content.get().link;
   }
 
   @Override
@@ -131,18 +95,68 @@ public final class MethodDescription implements SourceDefinedSymbolDescription {
   }
 
   public List<String> getExamples() {
-    return examples;
+    return content.get().examples;
   }
 
   public List<String> getCallOptions() {
-    return callOptions;
+    return content.get().callOptions;
   }
 
   public List<ParameterDescription> getParameters() {
-    return parameters;
+    return content.get().parameters;
   }
 
   public List<TypeDescription> getReturnedValue() {
-    return returnedValue;
+    return content.get().returnedValue;
+  }
+
+  private static final class Content {
+    /**
+     * Содержит часть строки после ключевого слова, в которой должно быть
+     * описание причины устаревания метода либо альтернативы.
+     */
+    private final String deprecationInfo;
+    /**
+     * Признак устаревания метода.
+     */
+    private final boolean deprecated;
+    /**
+     * Описание назначения метода.
+     */
+    private final String purposeDescription;
+    /**
+     * Примеры использования метода.
+     */
+    private final List<String> examples;
+    /**
+     * Варианты вызова метода.
+     */
+    private final List<String> callOptions;
+    /**
+     * Параметры метода с типами и описанием.
+     */
+    private final List<ParameterDescription> parameters;
+    /**
+     * Возвращаемые значения (типы).
+     */
+    private final List<TypeDescription> returnedValue;
+    /**
+     * Если описание содержит только ссылку, то здесь будет ее значение.
+     * <p>
+     * TODO Временное решение, надо будет продумать в следующем релизе
+     */
+    private final String link;
+
+    private Content(BSLMethodDescriptionParser.MethodDescriptionContext ast) {
+      purposeDescription = DescriptionReader.readPurposeDescription(ast);
+      link = DescriptionReader.readLink(ast);
+      deprecated = ast.deprecate() != null;
+      deprecationInfo = DescriptionReader.readDeprecationInfo(ast);
+      // содержимое может разделяться описаниями через кэш, поэтому списки неизменяемые
+      callOptions = List.copyOf(DescriptionReader.readCallOptions(ast));
+      examples = List.copyOf(DescriptionReader.readExamples(ast));
+      parameters = List.copyOf(DescriptionReader.readParameters(ast));
+      returnedValue = List.copyOf(DescriptionReader.readReturnedValue(ast));
+    }
   }
 }
@@ -0,0 +1,246 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser.description;
+
+import com.github._1c_syntax.bsl.parser.BSLLexer;
+import com.github._1c_syntax.bsl.parser.BSLParser;
+import com.github._1c_syntax.bsl.parser.BSLParserRuleContext;
+import com.github._1c_syntax.bsl.parser.BSLTokenizer;
+import org.antlr.v4.runtime.Token;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Описания методов и переменных модуля.
+ * <p>
+ * Описанием объявления считается блок комментариев, каждый из которых занимает отдельную строку,
+ * на строках подряд непосредственно перед первой строкой объявления, включая аннотации, директивы
+ * компиляции и инструкции препроцессора объявления. Для переменной модуля описанием также служит
+ * "висящий" комментарий в конце строки объявления. Блок перед {@code Перем} относится ко всем
+ * переменным этого объявления.
+ * <p>
+ * Блоки комментариев находятся за один проход по списку токенов модуля.
+ */
+public final class ModuleDescriptions {
+
+  private final Map<BSLParser.SubContext, MethodDescription> methodDescriptions;
+  private final Map<BSLParser.ModuleVarDeclarationContext, VariableDescription> variableDescriptions;
+
+  private ModuleDescriptions(Map<BSLParser.SubContext, MethodDescription> methodDescriptions,
+                             Map<BSLParser.ModuleVarDeclarationContext, VariableDescription> variableDescriptions) {
+    this.methodDescriptions = Collections.unmodifiableMap(methodDescriptions);
+    this.variableDescriptions = Collections.unmodifiableMap(variableDescriptions);
+  }
+
+  /**
+   * @return Описания методов модуля в порядке следования методов. Методы без описания отсутствуют.
+   */
+  public Map<BSLParser.SubContext, MethodDescription> getMethodDescriptions() {
+    return methodDescriptions;
+  }
+
+  /**
+   * @return Описания переменных модуля в порядке следования переменных. Переменные без описания отсутствуют.
+   */
+  public Map<BSLParser.ModuleVarDeclarationContext, VariableDescription> getVariableDescriptions() {
+    return variableDescriptions;
+  }
+
+  /**
+   * @param sub Метод модуля
+   * @return Описание метода
+   */
+  public Optional<MethodDescription> getMethodDescription(BSLParser.SubContext sub) {
+    return Optional.ofNullable(methodDescriptions.get(sub));
+  }
+
+  /**
+   * @param declaration Объявление переменной модуля
+   * @return Описание переменной
+   */
+  public Optional<VariableDescription> getVariableDescription(BSLParser.ModuleVarDeclarationContext declaration) {
+    return Optional.ofNullable(variableDescriptions.get(declaration));
+  }
+
+  /**
+   * Находит и разбирает описания модуля.
+   *
+   * @param tokenizer Токенизатор модуля
+   * @param executor  Исполнитель разбора описаний либо null для разбора в текущем потоке
+   * @return Описания модуля
+   */
+  static ModuleDescriptions read(BSLTokenizer tokenizer, @Nullable Executor executor) {
+    var file = tokenizer.getAst();
+    var tokens = tokenizer.getTokens();
+
+    List<BSLParserRuleContext> declarations = new ArrayList<>();
+    if (file.moduleVars() != null) {
+      declarations.addAll(file.moduleVars().moduleVar());
+    }
+    if (file.subs() != null) {
+      declarations.addAll(file.subs().sub());
+    }
+
+    var comments = new CommentBlocks(tokens, declarations);
+
+    Map<BSLParserRuleContext, Supplier<? extends SourceDefinedSymbolDescription>> tasks = new LinkedHashMap<>();
+    for (var i = 0; i < declarations.size(); i++) {
+      var declaration = declarations.get(i);
+      var leading = comments.leading.get(i);
+      if (declaration instanceof BSLParser.SubContext) {
+        if (!leading.isEmpty()) {
+          tasks.put(declaration, () -> new MethodDescription(leading));
+        }
+        continue;
+      }
+
+      for (var variable : ((BSLParser.ModuleVarContext) declaration).moduleVarsList().moduleVarDeclaration()) {
+        var trailing = comments.trailing(variable);
+        if (!leading.isEmpty() || trailing != null) {
+          tasks.put(variable, () -> new VariableDescription(leading, trailing));
+        }
+      }
+    }
+
+    Map<BSLParser.SubContext, MethodDescription> methodDescriptions = new LinkedHashMap<>();
+    Map<BSLParser.ModuleVarDeclarationContext, VariableDescription> variableDescriptions = new LinkedHashMap<>();
+    compute(tasks, executor).forEach((BSLParserRuleContext declaration, SourceDefinedSymbolDescription description) -> {
+      if (declaration instanceof BSLParser.SubContext) {
+        methodDescriptions.put((BSLParser.SubContext) declaration, (MethodDescription) description);
+      } else {
+        variableDescriptions.put(
+          (BSLParser.ModuleVarDeclarationContext) declaration,
+          (VariableDescription) description
+        );
+      }
+    });
+
+    return new ModuleDescriptions(methodDescriptions, variableDescriptions);
+  }
+
+  private static Map<BSLParserRuleContext, SourceDefinedSymbolDescription> compute(
+    Map<BSLParserRuleContext, Supplier<? extends SourceDefinedSymbolDescription>> tasks,
+    @Nullable Executor executor
+  ) {
+    Map<BSLParserRuleContext, SourceDefinedSymbolDescription> result = new LinkedHashMap<>();
+    if (executor == null) {
+      tasks.forEach((declaration, task) -> result.put(declaration, task.get()));
+      return result;
+    }
+
+    Map<BSLParserRuleContext, CompletableFuture<? extends SourceDefinedSymbolDescription>> futures = new LinkedHashMap<>();
+    tasks.forEach((declaration, task) -> futures.put(declaration, CompletableFuture.supplyAsync(task, executor)));
+    try {
+      futures.forEach((declaration, future) -> result.put(declaration, future.join()));
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+    return result;
+  }
+
+  /**
+   * Блоки комментариев объявлений и "висящие" комментарии строк, собранные за один проход по токенам
+   */
+  private static final class CommentBlocks {
+
+    /**
+     * Блоки комментариев перед объявлениями в порядке объявлений
+     */
+    private final List<List<Token>> leading;
+    /**
+     * Комментарии в конце строк кода по номерам строк
+     */
+    private final Token[] trailing;
+
+    private CommentBlocks(List<Token> tokens, List<BSLParserRuleContext> declarations) {
+      leading = new ArrayList<>(declarations.size());
+      trailing = new Token[tokens.get(tokens.size() - 1).getLine() + 1];
+
+      List<Token> block = new ArrayList<>();
+      var codeLine = 0;
+      var declarationIndex = 0;
+      for (var i = 0; i < tokens.size(); i++) {
+        var token = tokens.get(i);
+        while (declarationIndex < declarations.size() && startIndex(declarations.get(declarationIndex)) <= i) {
+          var adjacent = !block.isEmpty() && block.get(block.size() - 1).getLine() + 1 == token.getLine();
+          leading.add(adjacent ? List.copyOf(block) : List.of());
+          declarationIndex++;
+        }
+
+        var type = token.getType();
+        if (type == BSLLexer.WHITE_SPACE) {
+          continue;
+        }
+        if (type == BSLLexer.LINE_COMMENT) {
+          if (token.getLine() == codeLine) {
+            trailing[codeLine] = token;
+          } else {
+            if (!block.isEmpty() && block.get(block.size() - 1).getLine() + 1 != token.getLine()) {
+              block.clear();
+            }
+            block.add(token);
+          }
+          continue;
+        }
+        if (type == Token.EOF) {
+          break;
+        }
+
+        codeLine = token.getLine();
+        block.clear();
+      }
+
+      // объявления без токенов в списке, например восстановленные при ошибке разбора
+      while (declarationIndex < declarations.size()) {
+        leading.add(List.of());
+        declarationIndex++;
+      }
+    }
+
+    @Nullable
+    private Token trailing(BSLParser.ModuleVarDeclarationContext declaration) {
+      var stop = declaration.getStop();
+      if (stop == null || stop.getLine() >= trailing.length) {
+        return null;
+      }
+      return trailing[stop.getLine()];
+    }
+
+    private static int startIndex(BSLParserRuleContext declaration) {
+      var start = declaration.getStart();
+      return start == null ? Integer.MAX_VALUE : start.getTokenIndex();
+    }
+  }
+}
@@ -21,7 +21,7 @@
  */
 package com.github._1c_syntax.bsl.parser.description;
 
-import com.github._1c_syntax.bsl.parser.BSLMethodDescriptionTokenizer;
+import com.github._1c_syntax.bsl.parser.BSLMethodDescriptionParser;
 import com.github._1c_syntax.bsl.parser.description.support.DescriptionReader;
 import com.github._1c_syntax.bsl.parser.description.support.SimpleRange;
 import org.antlr.v4.runtime.Token;
@@ -29,9 +29,6 @@ import org.antlr.v4.runtime.Token;
 import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
-
-import static java.util.Objects.requireNonNull;
 
 /**
  * Класс-описание переменной.
@@ -39,32 +36,9 @@ import static java.util.Objects.requireNonNull;
 public final class VariableDescription implements SourceDefinedSymbolDescription {
 
   /**
-   * Содержит полное описание переменной (весь текст)
-   */
-  private final String description;
-
-  /**
-   * Содержит часть строки после ключевого слова, в которой должно быть
-   * описание причины устаревания переменной либо альтернативы
-   */
-  private final String deprecationInfo;
-
-  /**
-   * Признак устаревания переменной
-   */
-  private final boolean deprecated;
-
-  /**
-   * Описание назначения переменной
-   */
-  private final String purposeDescription;
-
-  /**
-   * Если описание содержит только ссылку, то здесь будет ее значение
-   * <p>
-   * TODO Временное решение, надо будет продумать кошерное решение
+   * Содержит полное описание переменной (весь текст), собираемое при первом обращении.
    */
-  private final String link;
+  private final DescriptionText description;
 
   /**
    * Диапазон, в котором располагается описание.
@@ -76,53 +50,62 @@ public final class VariableDescription implements SourceDefinedSymbolDescription
    */
   private final VariableDescription trailingDescription;
 
+  /**
+   * Разобранное содержимое описания
+   */
+  private final DescriptionContent<Content> content;
+
   VariableDescription(List<Token> comments) {
     this(comments, null);
   }
 
   VariableDescription(List<Token> comments, @Nullable Token trailingComment) {
-    description = comments.stream()
-      .map(Token::getText)
-      .collect(Collectors.joining("\n"));
+    this(comments, trailingComment, false);
+  }
 
-    var tokenizer = new BSLMethodDescriptionTokenizer(description);
-    var ast = requireNonNull(tokenizer.getAst());
+  /**
+   * @param comments        Список токенов описания переменной
+   * @param trailingComment Токен "висящего" описания
+   * @param lazy            Признак отложенного разбора описания до первого обращения к его содержимому.
+   *                        Распространяется и на "висящее" описание.
+   */
+  VariableDescription(List<Token> comments, @Nullable Token trailingComment, boolean lazy) {
+    description = new DescriptionText(comments);
 
     range = SimpleRange.create(comments);
-    purposeDescription = DescriptionReader.readPurposeDescription(ast);
-    link = DescriptionReader.readLink(ast);
-    deprecated = ast.deprecate() != null;
-    deprecationInfo = DescriptionReader.readDeprecationInfo(ast);
+    content = lazy
+      ? DescriptionContent.lazy(description, Content.class, Content::new)
+      : DescriptionContent.eager(comments, description, Content.class, Content::new);
     if (trailingComment == null) {
       trailingDescription = null;
     } else {
-      trailingDescription = new VariableDescription(List.of(trailingComment));
+      trailingDescription = new VariableDescription(List.of(trailingComment), null, lazy);
     }
   }
 
   @Override
   public String getDescription() {
-    return description;
+    return description.get();
   }
 
   @Override
   public String getDeprecationInfo() {
-    return deprecationInfo;
+    return content.get().deprecationInfo;
   }
 
   @Override
   public boolean isDeprecated() {
-    return deprecated;
+    return content.get().deprecated;
   }
 
   @Override
   public String getPurposeDescription() {
-    return purposeDescription;
+    return content.get().purposeDescription;
   }
 
   @Override
   public String getLink() {
-    return link;
+    return content.get().link;
   }
 
   @Override
@@ -133,4 +116,37 @@ public final class VariableDescription implements SourceDefinedSymbolDescription
   public Optional<VariableDescription> getTrailingDescription() {
     return Optional.ofNullable(trailingDescription);
   }
+
+  private static final class Content {
+
+    /**
+     * Содержит часть строки после ключевого слова, в которой должно быть
+     * описание причины устаревания переменной либо альтернативы
+     */
+    private final String deprecationInfo;
+
+    /**
+     * Признак устаревания переменной
+     */
+    private final boolean deprecated;
+
+    /**
+     * Описание назначения переменной
+     */
+    private final String purposeDescription;
+
+    /**
+     * Если описание содержит только ссылку, то здесь будет ее значение
+     * <p>
+     * TODO Временное решение, надо будет продумать кошерное решение
+     */
+    private final String link;
+
+    private Content(BSLMethodDescriptionParser.MethodDescriptionContext ast) {
+      purposeDescription = DescriptionReader.readPurposeDescription(ast);
+      link = DescriptionReader.readLink(ast);
+      deprecated = ast.deprecate() != null;
+      deprecationInfo = DescriptionReader.readDeprecationInfo(ast);
+    }
+  }
 }
@@ -51,7 +51,7 @@ public class ParameterDescription {
                                  String link,
                                  boolean isHyperlink) {
     this.name = name;
-    this.types = types;
+    this.types = List.copyOf(types);
     this.link = link;
     this.isHyperlink = isHyperlink;
   }
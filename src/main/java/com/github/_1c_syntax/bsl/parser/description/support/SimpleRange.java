@@ -21,6 +21,7 @@
  */
 package com.github._1c_syntax.bsl.parser.description.support;
 
+import com.github._1c_syntax.bsl.parser.LineIndex;
 import org.antlr.v4.runtime.Token;
 
 import java.util.List;
@@ -116,6 +117,48 @@ public final class SimpleRange {
     return create(firstElement, lastElement);
   }
 
+  /**
+   * Создает новую область по токенам углов области с помощью индекса строк текста токенов.
+   * Колонки области считаются в единицах UTF-16, конец области - позиция за последним символом
+   * конечного токена, в том числе для многострочных токенов.
+   *
+   * @param startToken Токен левого верхнего угла
+   * @param endToken   Токен правого нижнего узла
+   * @param lineIndex  Индекс строк текста, по которому получены токены
+   * @return Созданная область
+   */
+  public static SimpleRange create(Token startToken, Token endToken, LineIndex lineIndex) {
+    var startOffset = startToken.getStartIndex();
+    int endOffset;
+    if (endToken.getType() == Token.EOF) {
+      endOffset = endToken.getStartIndex();
+    } else {
+      endOffset = endToken.getStopIndex() + 1;
+    }
+
+    return new SimpleRange(
+      lineIndex.getLine(startOffset),
+      lineIndex.getCharacter(startOffset),
+      lineIndex.getLine(endOffset),
+      lineIndex.getCharacter(endOffset)
+    );
+  }
+
+  /**
+   * Создает область по списку токенов с помощью индекса строк текста токенов
+   *
+   * @param tokens    Список токенов области
+   * @param lineIndex Индекс строк текста, по которому получены токены
+   * @return Созданная область
+   */
+  public static SimpleRange create(List<Token> tokens, LineIndex lineIndex) {
+    if (tokens.isEmpty()) {
+      return new SimpleRange(0, 0, 0, 0);
+    }
+
+    return create(tokens.get(0), tokens.get(tokens.size() - 1), lineIndex);
+  }
+
   public int getStartLine() {
     return startLine;
   }
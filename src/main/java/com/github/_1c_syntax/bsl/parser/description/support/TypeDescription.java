@@ -57,7 +57,7 @@ public class TypeDescription {
                             boolean isHyperlink) {
     this.name = name;
     this.description = description;
-    this.parameters = parameters;
+    this.parameters = List.copyOf(parameters);
     this.link = link;
     this.isHyperlink = isHyperlink;
   }
@@ -0,0 +1,227 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BSLBatchParserTest {
+
+  private static final Path DIRECTORY = Path.of("src/test/resources/methodDescription");
+
+  private ExecutorService executor;
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    if (executor != null) {
+      executor.shutdown();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
+  @Test
+  void parsesDirectoryLargestFirst() throws Exception {
+    // given
+    executor = Executors.newSingleThreadExecutor();
+    var batchParser = new BSLBatchParser(executor, 2);
+    var results = new ConcurrentLinkedQueue<BSLBatchParser.FileResult>();
+
+    // when
+    batchParser.parse(DIRECTORY, results::add);
+
+    // then
+    List<Path> expected;
+    try (var files = Files.list(DIRECTORY)) {
+      expected = files
+        .sorted((a, b) -> Long.compare(b.toFile().length(), a.toFile().length()))
+        .collect(Collectors.toList());
+    }
+    assertThat(results).allMatch(BSLBatchParser.FileResult::isSuccessful);
+    assertThat(results)
+      .extracting(BSLBatchParser.FileResult::getPath)
+      .containsExactlyElementsOf(expected);
+    assertThat(results)
+      .allMatch(result -> result.getAst() != null && !result.getTokens().isEmpty());
+  }
+
+  @Test
+  void parsesInParallel() throws Exception {
+    // given
+    var batchParser = new BSLBatchParser();
+    var results = new ConcurrentLinkedQueue<BSLBatchParser.FileResult>();
+
+    // when
+    batchParser.parse(DIRECTORY, results::add);
+
+    // then
+    assertThat(results).hasSize(10).allMatch(BSLBatchParser.FileResult::isSuccessful);
+    var fresh = new BSLTokenizer(Files.readString(DIRECTORY.resolve("example1.bsl")));
+    assertThat(results)
+      .filteredOn(result -> result.getPath().endsWith("example1.bsl"))
+      .hasSize(1)
+      .first()
+      .satisfies(result -> assertThat(result.getAst().getText()).isEqualTo(fresh.getAst().getText()));
+  }
+
+  @Test
+  void reportsUnreadableFile() throws Exception {
+    // given
+    var batchParser = new BSLBatchParser();
+    var results = new ConcurrentLinkedQueue<BSLBatchParser.FileResult>();
+
+    // when
+    batchParser.parse(Stream.of(DIRECTORY.resolve("missing.bsl")), results::add);
+
+    // then
+    assertThat(results).hasSize(1).first()
+      .satisfies(result -> {
+        assertThat(result.isSuccessful()).isFalse();
+        assertThat(result.getException()).isNotNull();
+        assertThat(result.getAst()).isNull();
+      });
+  }
+
+  @Test
+  void identicalModulesAreParsedOnce(@TempDir Path directory) throws Exception {
+    // given
+    var content = Files.readString(DIRECTORY.resolve("example1.bsl"));
+    Files.writeString(directory.resolve("Form1.bsl"), content);
+    Files.writeString(directory.resolve("Form2.bsl"), '\uFEFF' + content);
+    Files.copy(DIRECTORY.resolve("example2.bsl"), directory.resolve("Other.bsl"));
+    var batchParser = new BSLBatchParser();
+    var results = new ConcurrentLinkedQueue<BSLBatchParser.FileResult>();
+
+    // when
+    batchParser.parse(directory, results::add);
+
+    // then
+    assertThat(results).hasSize(3).allMatch(BSLBatchParser.FileResult::isSuccessful);
+    var copies = results.stream()
+      .filter(result -> result.getPath().getFileName().toString().startsWith("Form"))
+      .collect(Collectors.toList());
+    assertThat(copies).hasSize(2);
+    var first = copies.get(0);
+    var second = copies.get(1);
+    assertThat(first.getPath()).isNotEqualTo(second.getPath());
+    assertThat(first.getContentHash()).isEqualTo(second.getContentHash());
+    assertThat(first.getAst()).isSameAs(second.getAst());
+    assertThat(first.getTokens()).isSameAs(second.getTokens());
+    assertThat(copies).filteredOn(BSLBatchParser.FileResult::isDuplicate).hasSize(1);
+    assertThat(first.getAst().getText())
+      .isEqualTo(new BSLTokenizer(content).getAst().getText());
+
+    var other = results.stream()
+      .filter(result -> result.getPath().endsWith("Other.bsl"))
+      .findFirst()
+      .orElseThrow();
+    assertThat(other.isDuplicate()).isFalse();
+    assertThat(other.getContentHash()).isNotEqualTo(first.getContentHash());
+    assertThat(other.getAst()).isNotSameAs(first.getAst());
+  }
+
+  @Test
+  void duplicatesDoNotDependOnRetainedResults(@TempDir Path directory) throws Exception {
+    // given
+    for (var i = 0; i < 5; i++) {
+      Files.copy(DIRECTORY.resolve("example1.bsl"), directory.resolve("Form" + i + ".bsl"));
+    }
+    var batchParser = new BSLBatchParser(ForkJoinPool.commonPool(), 1);
+    var duplicates = new AtomicInteger();
+
+    // when
+    batchParser.parse(directory, (BSLBatchParser.FileResult result) -> {
+      if (result.isDuplicate()) {
+        duplicates.incrementAndGet();
+      }
+      System.gc();
+    });
+
+    // then
+    assertThat(duplicates).hasValue(4);
+  }
+
+  @Test
+  void sharedTokensAreImmutable() throws Exception {
+    // given
+    var batchParser = new BSLBatchParser();
+    var results = new ConcurrentLinkedQueue<BSLBatchParser.FileResult>();
+
+    // when
+    batchParser.parse(Stream.of(DIRECTORY.resolve("example1.bsl")), results::add);
+
+    // then
+    var tokens = results.element().getTokens();
+    assertThat(tokens).isNotEmpty();
+    assertThatThrownBy(tokens::clear).isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  @Timeout(30)
+  void rethrowsForceLLFailure() {
+    // given
+    executor = Executors.newFixedThreadPool(2);
+    var batchParser = new BSLBatchParser(executor, 2, path -> {
+      throw new IllegalStateException("forceLL");
+    });
+    var results = new ConcurrentLinkedQueue<BSLBatchParser.FileResult>();
+
+    // when-then
+    assertThatThrownBy(() -> batchParser.parse(DIRECTORY, results::add))
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessage("forceLL");
+    assertThat(results).isEmpty();
+  }
+
+  @Test
+  @Timeout(30)
+  void rethrowsConsumerFailure() {
+    // given
+    var batchParser = new BSLBatchParser();
+    var processed = new AtomicInteger();
+
+    // when-then
+    assertThatThrownBy(() -> batchParser.parse(DIRECTORY, result -> {
+      processed.incrementAndGet();
+      throw new IllegalArgumentException("consumer");
+    }))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("consumer");
+    assertThat(processed.get()).isPositive();
+  }
+}
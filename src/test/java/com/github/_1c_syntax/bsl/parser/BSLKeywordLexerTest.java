@@ -0,0 +1,150 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Token;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BSLKeywordLexerTest {
+
+  private static final List<String> KEYWORDS = List.of(
+    "Истина", "True", "Ложь", "False", "Неопределено", "Undefined", "NULL",
+    "Процедура", "Procedure", "Функция", "Function", "КонецПроцедуры", "EndProcedure",
+    "КонецФункции", "EndFunction", "Экспорт", "Export", "Знач", "Val", "КонецЕсли", "EndIf",
+    "КонецЦикла", "EndDo", "Если", "If", "ИначеЕсли", "ElsIf", "Иначе", "Else", "Тогда", "Then",
+    "Пока", "While", "Цикл", "Do", "Для", "For", "По", "To", "Каждого", "Each", "Из", "In",
+    "Попытка", "Try", "Исключение", "Except", "КонецПопытки", "EndTry", "Возврат", "Return",
+    "Продолжить", "Continue", "ВызватьИсключение", "Raise", "Перем", "Var", "Не", "Not",
+    "Или", "Or", "И", "And", "Новый", "New", "Перейти", "Goto", "Прервать", "Break",
+    "Выполнить", "Execute", "ДобавитьОбработчик", "AddHandler", "УдалитьОбработчик", "RemoveHandler",
+    "Асинх", "Async", "Ждать", "Await"
+  );
+
+  @Test
+  void corpusTokensAreEqual() throws IOException {
+    // given
+    List<Path> files;
+    try (Stream<Path> walk = Files.walk(Path.of("src/test/resources"))) {
+      files = walk
+        .filter(path -> path.toString().endsWith(".bsl"))
+        .collect(Collectors.toList());
+    }
+
+    // when
+    for (Path file : files) {
+      var content = Files.readString(file);
+
+      // then
+      assertThat(keywordLexerTokens(content)).as(file.toString()).isEqualTo(lexerTokens(content));
+    }
+    assertThat(files).isNotEmpty();
+  }
+
+  @Test
+  void keywordsInEveryCaseAndMode() {
+    // given
+    var content = new StringBuilder();
+    for (String keyword : KEYWORDS) {
+      for (String spelling : List.of(
+        keyword,
+        keyword.toUpperCase(Locale.ROOT),
+        keyword.toLowerCase(Locale.ROOT),
+        keyword + "1",
+        "_" + keyword,
+        keyword.substring(1))) {
+        content.append(spelling).append(" А.").append(spelling).append(". ").append(spelling).append("(); ")
+          .append("~").append(spelling).append(":\n");
+      }
+    }
+    var module = content
+      + "Асинх Процедура А() Ждать Б(); Асинх Ждать ёЖдать " + content + " КонецПроцедуры Ждать\n"
+      + "Async Function Б() Await В(); EndFunction Await ıf ſelect\n"
+      + "&НаСервере Асинх Функция В() Возврат Ждать Истина; КонецФункции\n"
+      + "#Если Сервер И Не Клиент Тогда\nА = Неопределено;\n#КонецЕсли\n";
+
+    // when
+    var tokens = keywordLexerTokens(module);
+
+    // then
+    assertThat(tokens).isEqualTo(lexerTokens(module));
+  }
+
+  @Test
+  void keywordListCoversKeywordRules() {
+    // given
+    var lexerRules = Set.of(BSLLexer.ruleNames);
+    var keywordLexerRules = Set.of(BSLKeywordLexer.ruleNames);
+    var keywordRuleTypes = IntStream.rangeClosed(1, BSLLexer.VOCABULARY.getMaxTokenType())
+      .filter(type -> lexerRules.contains(BSLLexer.VOCABULARY.getSymbolicName(type)))
+      .filter(type -> !keywordLexerRules.contains(BSLLexer.VOCABULARY.getSymbolicName(type)))
+      .boxed()
+      .collect(Collectors.toSet());
+
+    // when
+    var lexer = new BSLLexer(CharStreams.fromString(String.join(" ", KEYWORDS)), true);
+    var keywordTypes = lexer.getAllTokens().stream()
+      .map(Token::getType)
+      .collect(Collectors.toSet());
+
+    // then
+    assertThat(lexerRules).containsAll(keywordLexerRules);
+    assertThat(keywordRuleTypes).isNotEmpty();
+    assertThat(keywordTypes).containsAll(keywordRuleTypes);
+  }
+
+  private static List<String> lexerTokens(String content) {
+    return tokens(new BSLLexer(CharStreams.fromString(content), true));
+  }
+
+  private static List<String> keywordLexerTokens(String content) {
+    return tokens(new BSLKeywordLexer(CharStreams.fromString(content), true));
+  }
+
+  private static List<String> tokens(Lexer lexer) {
+    lexer.removeErrorListeners();
+    var tokenStream = new CommonTokenStream(lexer);
+    tokenStream.fill();
+    return tokenStream.getTokens().stream()
+      .map(BSLKeywordLexerTest::describe)
+      .collect(Collectors.toList());
+  }
+
+  private static String describe(Token token) {
+    return token.getType() + ":" + token.getChannel() + ":" + token.getLine() + ":" + token.getCharPositionInLine()
+      + ":" + token.getStartIndex() + ":" + token.getStopIndex() + ":" + token.getText();
+  }
+}
@@ -28,6 +28,7 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -630,4 +631,36 @@ class BSLLexerTest extends AbstractLexerTest<BSLLexer> {
     assertMatchChannel(BSLLexer.HIDDEN, "#Insert // Комментарий",
       BSLLexer.PREPROC_INSERT, BSLLexer.WHITE_SPACE, BSLLexer.LINE_COMMENT);
   }
+
+  @Test
+  void tokenTypesAndModesArePinned() throws IOException {
+    // given
+    String expected;
+    try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("lexer/BSLLexer.tokens")) {
+      assertThat(inputStream).isNotNull();
+      expected = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+    }
+
+    // when
+    var vocabulary = BSLLexer.VOCABULARY;
+    var lines = new ArrayList<String>();
+    for (var type = 1; type <= vocabulary.getMaxTokenType(); type++) {
+      if (vocabulary.getSymbolicName(type) != null) {
+        lines.add(vocabulary.getSymbolicName(type) + "=" + type);
+      }
+    }
+    for (var type = 1; type <= vocabulary.getMaxTokenType(); type++) {
+      if (vocabulary.getLiteralName(type) != null) {
+        lines.add(vocabulary.getLiteralName(type) + "=" + type);
+      }
+    }
+
+    // then
+    assertThat(lines).containsExactlyElementsOf(expected.lines().collect(Collectors.toList()));
+    assertThat(BSLLexer.modeNames).containsExactly("DEFAULT_MODE", "PREPROCESSOR_MODE", "ANNOTATION_MODE",
+      "LABEL_MODE", "REGION_MODE", "USE_MODE", "DOT_MODE", "PREPROC_DELETE_MODE", "ASYNC_MODE");
+    assertThat(BSLLexer.DOT_MODE).isEqualTo(6);
+    assertThat(BSLLexer.ASYNC_MODE).isEqualTo(8);
+    assertThat(BSLLexer.channelNames).containsExactly("DEFAULT_TOKEN_CHANNEL", "HIDDEN", "PREPROC_DELETE_CHANNEL");
+  }
 }
@@ -437,11 +437,11 @@ class BSLMethodDescriptionParserTest
       new Pair(BSLMethodDescriptionParser.RULE_returnsValue, 2),
       new Pair(BSLMethodDescriptionParser.RULE_typesBlock, 25),
       new Pair(BSLMethodDescriptionParser.RULE_typeDescription, 42),
-      new Pair(BSLMethodDescriptionParser.RULE_type, 28),
+      new Pair(BSLMethodDescriptionParser.RULE_type, 29),
       new Pair(BSLMethodDescriptionParser.RULE_simpleType, 32),
-      new Pair(BSLMethodDescriptionParser.RULE_listTypes, 6),
-      new Pair(BSLMethodDescriptionParser.RULE_complexType, 1),
-      new Pair(BSLMethodDescriptionParser.RULE_hyperlinkType, 1),
+      new Pair(BSLMethodDescriptionParser.RULE_listTypes, 7),
+      new Pair(BSLMethodDescriptionParser.RULE_complexType, 2),
+      new Pair(BSLMethodDescriptionParser.RULE_hyperlinkType, 2),
       new Pair(BSLMethodDescriptionParser.RULE_spitter, 52),
       new Pair(BSLMethodDescriptionParser.RULE_hyperlinkBlock, 0),
       new Pair(BSLMethodDescriptionParser.RULE_startPart, 50)
@@ -482,6 +482,36 @@ class BSLMethodDescriptionParserTest
     );
   }
 
+  @Test
+  void testSectionsMatchMethodDescription() {
+    for (var i = 1; i <= 10; i++) {
+      // given
+      var exampleString = TestUtils.getSourceFromFile("src/test/resources/methodDescription/example" + i + ".bsl");
+      setInput(exampleString + "\n");
+      var expected = Trees.toStringTree(parser.methodDescription(), parser);
+
+      // when
+      var ast = getAst(exampleString);
+
+      // then
+      assertThat(Trees.toStringTree(ast, parser)).as("example" + i).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  void testSectionsInAnyOrder() {
+    // given
+    var text = "//Описание\n//Устарела. Использовать другой метод\n//Параметры:\n//Параметр1 - Строка - описание";
+
+    // when
+    var ast = getAst(text);
+
+    // then
+    assertThat(ast.descriptionBlock()).isNotNull();
+    assertThat(ast.deprecate().deprecateDescription().getText()).isEqualTo("Использовать другой метод");
+    assertThat(getNodes(ast, BSLMethodDescriptionParser.RULE_parameter)).hasSize(1);
+  }
+
   private ArrayList<ParseTree> getNodes(String text, int rule) {
     return new ArrayList<>(Trees.findAllRuleNodes((new BSLMethodDescriptionTokenizer(text)).getAst(), rule));
   }
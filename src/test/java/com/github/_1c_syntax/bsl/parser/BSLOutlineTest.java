@@ -0,0 +1,182 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.Trees;
+import org.junit.jupiter.api.Test;
+import utils.TestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BSLOutlineTest {
+
+  @Test
+  void declarationsAndAnnotations() {
+    // given
+    var content = String.join("\n",
+      "Перем А;",
+      "",
+      "&НаСервере",
+      "&Перед(\"Тест\")",
+      "Процедура Первая(Парам) Экспорт",
+      "  А = Парам;",
+      "КонецПроцедуры",
+      "",
+      "&НаКлиенте",
+      "Асинх Функция Вторая()",
+      "  Возврат Ждать Первая(1);",
+      "КонецФункции",
+      "",
+      "Процедура Третья()",
+      "КонецПроцедуры"
+    );
+    var tokenizer = new BSLTokenizer(content);
+
+    // when
+    var subs = tokenizer.getOutline().getSubs();
+
+    // then
+    assertThat(subs).hasSize(3);
+    assertThat(subs.get(0).getName()).isEqualTo("Первая");
+    assertThat(subs.get(0).isExport()).isTrue();
+    assertThat(subs.get(0).isFunction()).isFalse();
+    assertThat(subs.get(0).getStart().getText()).isEqualTo("&");
+    assertThat(subs.get(0).getStart().getLine()).isEqualTo(3);
+    assertThat(subs.get(1).getName()).isEqualTo("Вторая");
+    assertThat(subs.get(1).isFunction()).isTrue();
+    assertThat(subs.get(1).getStart().getLine()).isEqualTo(9);
+    assertThat(subs.get(1).getEndToken()).isNotNull();
+    assertThat(subs.get(1).getEndToken().getType()).isEqualTo(BSLLexer.ENDFUNCTION_KEYWORD);
+    assertThat(subs.get(1).getSubCodeBlock().getText()).isEqualTo("ВозвратЖдатьПервая(1);");
+    assertThat(subs.get(2).getSubCodeBlock().getText()).isEmpty();
+    assertThat(tokenizer.isAstComputed()).isFalse();
+  }
+
+  @Test
+  void outlineMatchesFullParse() {
+    // given
+    var content = TestUtils.getSourceFromFile("src/test/resources/Module.bsl");
+    var outline = new BSLTokenizer(content).getOutline();
+    var fullSubs = new BSLTokenizer(content).getAst().subs().sub();
+
+    // when
+    var subs = outline.getSubs();
+
+    // then
+    assertThat(subs).hasSameSizeAs(fullSubs);
+    for (var i = 0; i < subs.size(); i++) {
+      var sub = subs.get(i);
+      var fullSub = fullSubs.get(i);
+      var declaration = fullSub.procedure() == null
+        ? fullSub.function().funcDeclaration()
+        : fullSub.procedure().procDeclaration();
+      var subCodeBlock = fullSub.procedure() == null
+        ? fullSub.function().subCodeBlock()
+        : fullSub.procedure().subCodeBlock();
+
+      assertThat(sub.getDeclaration().getText()).isEqualTo(declaration.getText());
+      assertThat(sub.getStart().getTokenIndex()).isEqualTo(declaration.getStart().getTokenIndex());
+      assertThat(sub.getSubCodeBlock().getText()).isEqualTo(subCodeBlock.getText());
+    }
+  }
+
+  @Test
+  void outlineTreesMatchFullParse() {
+    // given
+    var source = TestUtils.getSourceFromFile("src/test/resources/Module.bsl");
+    var modules = new ArrayList<String>();
+    modules.add(source);
+    var random = new Random(0);
+    for (var i = 0; i < 20; i++) {
+      var lines = new ArrayList<>(Arrays.asList(source.split("\n", -1)));
+      for (var j = 0; j < 5; j++) {
+        lines.remove(random.nextInt(lines.size()));
+      }
+      modules.add(String.join("\n", lines));
+    }
+
+    // when
+    var compared = 0;
+    for (var content : modules) {
+      compared += compareWithFullParse(content);
+    }
+
+    // then
+    assertThat(compared).isGreaterThan(modules.size());
+  }
+
+  @Test
+  void outlineIsRecomputedAfterEdit() {
+    // given
+    var content = "Процедура Первая()\nКонецПроцедуры\n";
+    var tokenizer = BSLTokenizer.editable(content);
+    assertThat(tokenizer.getOutline().getSubs()).hasSize(1);
+
+    // when
+    tokenizer.applyEdit(content.length(), 0, "Функция Вторая()\nКонецФункции\n");
+
+    // then
+    assertThat(tokenizer.getOutline().getSubs()).extracting(BSLOutline.SubOutline::getName)
+      .containsExactly("Первая", "Вторая");
+  }
+
+  private static int compareWithFullParse(String content) {
+    var subs = new BSLTokenizer(content).getOutline().getSubs();
+    var fullSubs = new BSLTokenizer(content).getAst().subs();
+    var compared = 0;
+    for (var sub : subs) {
+      var fullSub = fullSubs == null ? null : findSub(fullSubs.sub(), sub.getStart().getTokenIndex());
+      if (fullSub == null || sub.getEndToken() == null
+        || sub.getEndToken().getTokenIndex() != fullSub.getStop().getTokenIndex()) {
+        continue;
+      }
+      var declaration = fullSub.procedure() == null
+        ? fullSub.function().funcDeclaration()
+        : fullSub.procedure().procDeclaration();
+      var subCodeBlock = fullSub.procedure() == null
+        ? fullSub.function().subCodeBlock()
+        : fullSub.procedure().subCodeBlock();
+
+      assertThat(toStringTree(sub.getDeclaration())).isEqualTo(toStringTree(declaration));
+      assertThat(toStringTree(sub.getSubCodeBlock())).isEqualTo(toStringTree(subCodeBlock));
+      compared++;
+    }
+    return compared;
+  }
+
+  private static BSLParser.SubContext findSub(List<? extends BSLParser.SubContext> subs, int startTokenIndex) {
+    return subs.stream()
+      .filter(sub -> sub.getStart().getTokenIndex() == startTokenIndex)
+      .findAny()
+      .orElse(null);
+  }
+
+  private static String toStringTree(ParserRuleContext tree) {
+    return Trees.toStringTree(tree, Arrays.asList(BSLParser.ruleNames));
+  }
+}
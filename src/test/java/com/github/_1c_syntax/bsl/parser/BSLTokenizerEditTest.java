@@ -0,0 +1,247 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.junit.jupiter.api.Test;
+import utils.TestUtils;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BSLTokenizerEditTest {
+
+  private static final String MODULE = String.join("\n",
+    "Перем А Экспорт;",
+    "",
+    "&НаСервере",
+    "Процедура Первая(Парам) Экспорт",
+    "  Б = \"строка",
+    "  |продолжение\";",
+    "  Если Парам Тогда",
+    "    Б = 1;",
+    "  КонецЕсли;",
+    "КонецПроцедуры",
+    "",
+    "Асинх Функция Вторая()",
+    "  Ждать Первая(1);",
+    "  Возврат 2;",
+    "КонецФункции",
+    "",
+    "Процедура Третья()",
+    "  // комментарий",
+    "КонецПроцедуры",
+    "",
+    "Первая(А);"
+  );
+
+  @Test
+  void bodyEditIsIncremental() {
+    // given
+    var tokenizer = BSLTokenizer.editable(MODULE);
+    var firstSub = tokenizer.getAst().subs().sub(0);
+    var lastSub = tokenizer.getAst().subs().sub(2);
+    var offset = MODULE.indexOf("Б = 1;");
+
+    // when
+    var result = tokenizer.applyEdit(offset, "Б = 1;".length(), "Б = Б + 10;\n    В = 2;");
+
+    // then
+    assertThat(result.isIncremental()).isTrue();
+    assertThat(result.getChangedSubs()).hasSize(1);
+    assertThat(result.getChangedSubs().get(0).procedure().procDeclaration().subName().getText())
+      .isEqualTo("Первая");
+    assertThat(tokenizer.getAst().subs().sub(0)).isNotSameAs(firstSub);
+    assertThat(tokenizer.getAst().subs().sub(2)).isSameAs(lastSub);
+    assertSameAsFullParse(tokenizer, applyEdit(MODULE, offset, "Б = 1;".length(), "Б = Б + 10;\n    В = 2;"));
+  }
+
+  @Test
+  void asyncBodyEditIsIncremental() {
+    // given
+    var tokenizer = BSLTokenizer.editable(MODULE);
+    tokenizer.getAst();
+    var offset = MODULE.indexOf("Возврат 2;");
+
+    // when
+    var result = tokenizer.applyEdit(offset, 0, "Ждать Третья();\n  ");
+
+    // then
+    assertThat(result.isIncremental()).isTrue();
+    assertSameAsFullParse(tokenizer, applyEdit(MODULE, offset, 0, "Ждать Третья();\n  "));
+  }
+
+  @Test
+  void brokenSubFallsBackToFullParse() {
+    // given
+    var tokenizer = BSLTokenizer.editable(MODULE);
+    tokenizer.getAst();
+    var offset = MODULE.indexOf("КонецФункции");
+
+    // when
+    var result = tokenizer.applyEdit(offset, "КонецФункции".length(), "");
+
+    // then
+    assertThat(result.isIncremental()).isFalse();
+    assertSameAsFullParse(tokenizer, applyEdit(MODULE, offset, "КонецФункции".length(), ""));
+  }
+
+  @Test
+  void plainTokenizerIsNotEditable() {
+    // given
+    var tokenizer = new BSLTokenizer(MODULE);
+
+    // when
+    var tokens = tokenizer.getTokens();
+
+    // then
+    assertThat(tokenizer.isEditable()).isFalse();
+    assertThat(tokens.get(0).getInputStream()).isNotInstanceOf(EditableCharStream.class);
+    assertThatThrownBy(() -> tokenizer.applyEdit(0, 0, "\n")).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void statementInsertionsAreIncremental() {
+    // given
+    var statements = new String[]{"\n", "Б = 1;\n", "// комментарий\n", "Если А Тогда Б = 1; КонецЕсли;\n",
+      "Б = \"строка\n|продолжение\";\n"};
+    var content = largeModule();
+    var tokenizer = BSLTokenizer.editable(content);
+    tokenizer.getAst();
+    var random = new Random(42);
+    var incremental = 0;
+
+    for (var i = 0; i < 30; i++) {
+      // when
+      var offset = randomLineInSub(tokenizer, content, random);
+      var newText = statements[random.nextInt(statements.length)];
+      var result = tokenizer.applyEdit(offset, 0, newText);
+      content = applyEdit(content, offset, 0, newText);
+      if (result.isIncremental()) {
+        incremental++;
+      }
+
+      // then
+      assertSameAsFullParse(tokenizer, content);
+    }
+    assertThat(incremental).isGreaterThan(5);
+  }
+
+  @Test
+  void randomEditsMatchFullParse() {
+    // given
+    var fragments = new String[]{"", " ", "\n", "А", "Б = 1;", "\"", "|", "//", "Ждать ", "КонецЕсли;",
+      "Если А Тогда\n", "#Если Сервер Тогда\n", "#КонецЕсли\n", "&", "Возврат;", "(", ")", "Процедура"};
+    var content = largeModule();
+    var tokenizer = BSLTokenizer.editable(content);
+    tokenizer.getAst();
+    var random = new Random(42);
+
+    for (var i = 0; i < 40; i++) {
+      // when
+      var offset = random.nextInt(content.length());
+      var oldLength = Math.min(random.nextInt(4), content.length() - offset);
+      var newText = fragments[random.nextInt(fragments.length)];
+      tokenizer.applyEdit(offset, oldLength, newText);
+      content = applyEdit(content, offset, oldLength, newText);
+
+      // then
+      assertSameAsFullParse(tokenizer, content);
+    }
+  }
+
+  private static String largeModule() {
+    // первые 40 методов большого модуля и методы модуля теста без объявления переменных
+    var content = TestUtils.getSourceFromFile("src/test/resources/Module.bsl");
+    var end = 0;
+    for (var i = 0; i < 40; i++) {
+      end = content.indexOf("\nКонец", end + 1);
+    }
+    end = content.indexOf('\n', end + 1);
+    return content.substring(0, end + 1) + MODULE.substring(MODULE.indexOf('\n') + 1);
+  }
+
+  private static int randomLineInSub(BSLTokenizer tokenizer, String content, Random random) {
+    var subs = tokenizer.getAst().subs().sub();
+    var sub = subs.get(random.nextInt(subs.size()));
+    var from = sub.getStart().getStartIndex();
+    var to = sub.getStop().getStartIndex();
+    var offset = content.indexOf('\n', from + random.nextInt(to - from));
+    return offset + 1;
+  }
+
+  private static String applyEdit(String content, int offset, int oldLength, String newText) {
+    return content.substring(0, offset) + newText + content.substring(offset + oldLength);
+  }
+
+  private static void assertSameAsFullParse(BSLTokenizer tokenizer, String content) {
+    var expected = new BSLTokenizer(content);
+    assertThat(describe(tokenizer.getTokens())).isEqualTo(describe(expected.getTokens()));
+    assertThat(dump(tokenizer.getAst())).isEqualTo(dump(expected.getAst()));
+    assertThat(tokenizer.getAst().getText()).isEqualTo(expected.getAst().getText());
+  }
+
+  private static List<String> describe(List<Token> tokens) {
+    return tokens.stream()
+      .map(BSLTokenizerEditTest::describe)
+      .collect(Collectors.toList());
+  }
+
+  private static String describe(Token token) {
+    if (token == null) {
+      return "null";
+    }
+    return token.getTokenIndex() + ":" + token.getType() + ":" + token.getChannel() + ":" + token.getLine() + ":"
+      + token.getCharPositionInLine() + ":" + token.getStartIndex() + ":" + token.getStopIndex() + ":"
+      + token.getText();
+  }
+
+  private static String dump(ParseTree tree) {
+    var builder = new StringBuilder();
+    dump(tree, builder);
+    return builder.toString();
+  }
+
+  private static void dump(ParseTree tree, StringBuilder builder) {
+    if (tree instanceof TerminalNode) {
+      builder.append(describe(((TerminalNode) tree).getSymbol())).append('\n');
+      return;
+    }
+    var context = (ParserRuleContext) tree;
+    builder.append('(').append(context.getRuleIndex()).append(' ')
+      .append(describe(context.getStart())).append(' ')
+      .append(describe(context.getStop())).append('\n');
+    for (var i = 0; i < context.getChildCount(); i++) {
+      var child = context.getChild(i);
+      assertThat(child.getParent()).isSameAs(context);
+      dump(child, builder);
+    }
+    builder.append(")\n");
+  }
+}
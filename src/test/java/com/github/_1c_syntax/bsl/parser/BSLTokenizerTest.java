@@ -21,11 +21,21 @@
  */
 package com.github._1c_syntax.bsl.parser;
 
+import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.Token;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.TestUtils;
 
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -60,4 +70,179 @@ class BSLTokenizerTest {
     assertThat(fileCodeBlock.getStop().getType()).isEqualTo(BSLParser.ENDIF_KEYWORD);
   }
 
-}
\ No newline at end of file
+  @Test
+  void pathInputMatchesStringInput() throws Exception {
+    // given
+    var path = Path.of("src/test/resources/Module.bsl");
+    var content = Files.readString(path);
+
+    // when
+    var fromPath = new BSLTokenizer(path);
+    var fromString = new BSLTokenizer(content);
+
+    // then
+    assertThat(describe(fromPath.getTokens())).isEqualTo(describe(fromString.getTokens()));
+  }
+
+  @Test
+  void largeFileIsMappedAndSmallFileIsRead(@TempDir Path directory) throws Exception {
+    // given
+    var line = "А = 1; // комментарий\n";
+    var small = Files.writeString(directory.resolve("small.bsl"), line);
+    var large = Files.writeString(directory.resolve("large.bsl"),
+      line.repeat((int) (InputCharStreams.MAP_THRESHOLD / line.length()) + 1));
+
+    // when
+    var smallContent = InputCharStreams.read(small);
+    var largeContent = InputCharStreams.read(large);
+
+    // then
+    assertThat(smallContent.isDirect()).isFalse();
+    assertThat(smallContent.remaining()).isEqualTo((int) Files.size(small));
+    assertThat(largeContent.isDirect()).isTrue();
+    assertThat(largeContent.remaining()).isEqualTo((int) Files.size(large));
+    assertThat(new BSLTokenizer(large).getTokens())
+      .hasSize(new BSLTokenizer(Files.readString(large)).getTokens().size());
+  }
+
+  @Test
+  void byteOrderMarkIsSkipped(@TempDir Path directory) throws Exception {
+    // given
+    var text = "А = 1;";
+    var bytes = ("\uFEFF" + text).getBytes(StandardCharsets.UTF_8);
+    var path = Files.write(directory.resolve("bom.bsl"), bytes);
+    var buffer = ByteBuffer.wrap(bytes);
+
+    // when
+    var fromPath = new BSLTokenizer(path);
+    var fromBuffer = new BSLTokenizer(buffer);
+    var fromString = new BSLTokenizer("\uFEFF" + text);
+
+    // then
+    var expected = describe(new BSLTokenizer(text).getTokens());
+    assertThat(describe(fromPath.getTokens())).isEqualTo(expected);
+    assertThat(describe(fromBuffer.getTokens())).isEqualTo(expected);
+    assertThat(describe(fromString.getTokens())).isEqualTo(expected);
+    assertThat(buffer.position()).isZero();
+  }
+
+  @Test
+  void malformedBytesAreReplacedAsByReader() {
+    // given
+    var bytes = new byte[]{'А' & 0xFF, '"', (byte) 0xD0, (byte) 0xFF, (byte) 0xF0, (byte) 0x9F, '"', ';', (byte) 0xD0};
+
+    // when
+    var fromBuffer = new BSLTokenizer(ByteBuffer.wrap(bytes));
+    var fromStream = new BSLTokenizer(
+      Tokenizer.inputStreamInput(new ByteArrayInputStream(bytes)),
+      () -> new BSLLexer(CharStreams.fromString(""), true),
+      BSLParser::new
+    );
+
+    // then
+    assertThat(describe(fromBuffer.getTokens())).isEqualTo(describe(fromStream.getTokens()));
+  }
+
+  @Test
+  void tokenIteratorMatchesTokens() {
+    // given
+    var content = TestUtils.getSourceFromFile("src/test/resources/Module.bsl");
+    var tokenizer = new BSLTokenizer(content);
+
+    // when
+    var streamed = tokenizer.streamTokens(channel -> channel == Token.DEFAULT_CHANNEL)
+      .collect(Collectors.toList());
+
+    // then
+    // EOF возвращается независимо от отбора по каналу
+    var expected = tokenizer.getTokens().stream()
+      .filter(token -> token.getChannel() == Token.DEFAULT_CHANNEL || token.getType() == Token.EOF)
+      .collect(Collectors.toList());
+    assertThat(describe(streamed)).isEqualTo(describe(expected));
+    assertThat(streamed.get(streamed.size() - 1).getType()).isEqualTo(Token.EOF);
+  }
+
+  @Test
+  void tokenIteratorReusesInput() {
+    // given
+    var bytes = "Процедура А() // комментарий\nКонецПроцедуры".getBytes(StandardCharsets.UTF_8);
+    var tokenizer = new BSLTokenizer(
+      Tokenizer.inputStreamInput(new ByteArrayInputStream(bytes)),
+      () -> new BSLLexer(CharStreams.fromString(""), true),
+      BSLParser::new
+    );
+
+    // when
+    var iterator = tokenizer.tokenIterator(channel -> channel == Lexer.HIDDEN);
+    var hidden = new ArrayList<Token>();
+    iterator.forEachRemaining(hidden::add);
+
+    // then
+    assertThat(hidden)
+      .extracting(Token::getType)
+      .containsExactly(BSLLexer.WHITE_SPACE, BSLLexer.WHITE_SPACE, BSLLexer.LINE_COMMENT, BSLLexer.WHITE_SPACE, Token.EOF);
+    assertThat(tokenizer.getTokens()).hasSize(10);
+    assertThat(tokenizer.getAst().subs()).isNotNull();
+  }
+
+  private static List<String> describe(List<Token> tokens) {
+    return tokens.stream()
+      .map(token -> token.getType() + ":" + token.getChannel() + ":" + token.getLine() + ":"
+        + token.getCharPositionInLine() + ":" + token.getStartIndex() + ":" + token.getText())
+      .collect(Collectors.toList());
+  }
+
+  @Test
+  void syntaxErrorFallsBackToLL() {
+    // given
+    var statistics = Tokenizer.getPredictionStatistics();
+    var fallbacksBefore = statistics.getFallbacks();
+    var tokenizer = new BSLTokenizer("Процедура Тест()\n  А = ;\nКонецПроцедуры");
+
+    // when
+    var ast = tokenizer.getAst();
+
+    // then
+    assertThat(ast.subs().sub()).hasSize(1);
+    var fallback = tokenizer.getPredictionFallback();
+    assertThat(fallback).isNotNull();
+    assertThat(fallback.getOffendingToken()).isNotNull();
+    assertThat(fallback.getOffendingToken().getText()).isEqualTo(";");
+    assertThat(fallback.getRuleName()).isNotNull();
+    assertThat(fallback.getTotalNanos()).isPositive();
+    assertThat(statistics.getFallbacks()).isGreaterThan(fallbacksBefore);
+    assertThat(statistics.getFallbacksByRule()).containsKey(fallback.getRuleName());
+  }
+
+  @Test
+  void validModuleIsParsedInSLL() {
+    // given
+    var statistics = Tokenizer.getPredictionStatistics();
+    var sllParsesBefore = statistics.getSllParses();
+    var tokenizer = new BSLTokenizer("Процедура Тест()\n  А = 1;\nКонецПроцедуры");
+
+    // when
+    tokenizer.getAst();
+
+    // then
+    assertThat(tokenizer.getPredictionFallback()).isNull();
+    assertThat(statistics.getSllParses()).isGreaterThan(sllParsesBefore);
+  }
+
+  @Test
+  void forceLLSkipsSLL() {
+    // given
+    var statistics = Tokenizer.getPredictionStatistics();
+    var llParsesBefore = statistics.getLlParses();
+    var tokenizer = new BSLTokenizer("Процедура Тест()\n  А = ;\nКонецПроцедуры");
+    tokenizer.setForceLL(true);
+
+    // when
+    var ast = tokenizer.getAst();
+
+    // then
+    assertThat(ast.subs().sub()).hasSize(1);
+    assertThat(tokenizer.getPredictionFallback()).isNull();
+    assertThat(statistics.getLlParses()).isGreaterThan(llParsesBefore);
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.TestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static utils.TestUtils.describe;
+import static utils.TestUtils.dump;
+
+class BinaryParseTreeTest {
+
+  private static final String MODULE = String.join("\n",
+    "&НаСервере",
+    "Процедура Тест(Парам) Экспорт",
+    "  А = Парам + 1;",
+    "  Б = ;",
+    "КонецПроцедуры"
+  );
+
+  @Test
+  void restoredTreeMatchesParsedTree(@TempDir Path directory) throws Exception {
+    // given
+    var content = TestUtils.getSourceFromFile("src/test/resources/Module.bsl");
+    var expected = new BSLTokenizer(content);
+    var file = directory.resolve("Module.ast");
+    try (var output = Files.newOutputStream(file)) {
+      BinaryParseTree.write(expected, output);
+    }
+
+    // when
+    var tokenizer = new BSLTokenizer(content);
+    BinaryParseTree.read(file).restore(tokenizer);
+
+    // then
+    assertThat(tokenizer.getTokens()).hasSameSizeAs(expected.getTokens());
+    for (var i = 0; i < tokenizer.getTokens().size(); i++) {
+      assertThat(describe(tokenizer.getTokens().get(i))).isEqualTo(describe(expected.getTokens().get(i)));
+    }
+    assertThat(dump(tokenizer.getAst())).isEqualTo(dump(expected.getAst()));
+    assertThat(Files.size(file)).isLessThan(content.getBytes(StandardCharsets.UTF_8).length * 3L / 2);
+  }
+
+  @Test
+  void nodesAreNavigatedWithoutSource() throws Exception {
+    // given
+    var tokenizer = new BSLTokenizer(MODULE);
+    var output = new ByteArrayOutputStream();
+    BinaryParseTree.write(tokenizer, true, output);
+
+    // when
+    var tree = BinaryParseTree.read(ByteBuffer.wrap(output.toByteArray()));
+
+    // then
+    assertThat(tree.hasText()).isTrue();
+    assertThat(tree.getParserClassName()).isEqualTo(BSLParser.class.getName());
+    assertThat(tree.getTokenCount()).isEqualTo(tokenizer.getTokens().size());
+    for (var i = 0; i < tree.getTokenCount(); i++) {
+      assertThat(describe(tree.getToken(i))).isEqualTo(describe(tokenizer.getTokens().get(i)));
+    }
+    assertSameNode(tree.getRoot(), tokenizer.getAst());
+  }
+
+  @Test
+  void anotherGrammarIsRejected() throws Exception {
+    // given
+    var output = new ByteArrayOutputStream();
+    BinaryParseTree.write(new BSLTokenizer(MODULE), output);
+    var tree = BinaryParseTree.read(ByteBuffer.wrap(output.toByteArray()));
+
+    // when-then
+    assertThat(tree.hasText()).isFalse();
+    assertThatThrownBy(() -> tree.restore(new SDBLTokenizer(MODULE))).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void queryAndDescriptionTreesAreWritten() throws Exception {
+    // given
+    var query = "ВЫБРАТЬ Товары.Ссылка ИЗ Справочник.Товары КАК Товары ГДЕ Товары.Код = &Код";
+    var expected = new SDBLTokenizer(query);
+    var queryOutput = new ByteArrayOutputStream();
+    BinaryParseTree.write(expected, queryOutput);
+    var descriptionOutput = new ByteArrayOutputStream();
+    BinaryParseTree.write(new BSLMethodDescriptionTokenizer("// Описание\n// Параметры:\n//  А - Число"),
+      descriptionOutput);
+
+    // when
+    var tokenizer = new SDBLTokenizer(query);
+    BinaryParseTree.read(ByteBuffer.wrap(queryOutput.toByteArray())).restore(tokenizer);
+    var description = BinaryParseTree.read(ByteBuffer.wrap(descriptionOutput.toByteArray()));
+
+    // then
+    assertThat(dump(tokenizer.getAst())).isEqualTo(dump(expected.getAst()));
+    assertThat(description.getParserClassName()).isEqualTo(BSLMethodDescriptionParser.class.getName());
+    assertThat(description.getRoot().isRule()).isTrue();
+  }
+
+  @Test
+  void unknownDataIsRejected() {
+    var buffer = ByteBuffer.wrap(new byte[64]);
+    assertThatThrownBy(() -> BinaryParseTree.read(buffer)).isInstanceOf(IOException.class);
+  }
+
+  private static void assertSameNode(BinaryParseTree.Node node, ParseTree expected) {
+    if (expected instanceof TerminalNode) {
+      assertThat(node.isRule()).isFalse();
+      assertThat(node.isErrorNode()).isEqualTo(expected instanceof ErrorNode);
+      assertThat(node.getToken().getText()).isEqualTo(expected.getText());
+      return;
+    }
+
+    var context = (ParserRuleContext) expected;
+    assertThat(node.isRule()).isTrue();
+    assertThat(node.getRuleIndex()).isEqualTo(context.getRuleIndex());
+    assertThat(node.hasException()).isEqualTo(context.exception != null);
+    assertThat(node.getStartTokenIndex()).isEqualTo(context.getStart().getTokenIndex());
+    assertThat(node.getChildCount()).isEqualTo(context.getChildCount());
+    for (var i = 0; i < node.getChildCount(); i++) {
+      var child = node.getChild(i);
+      assertThat(child.getParent()).isSameAs(node);
+      assertSameNode(child, context.getChild(i));
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CodePointCharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.UnicodeCharStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaseChangingCharStreamTest {
+
+  @Test
+  void everyCodePointIsFoldedAsCharacterToUpperCase() {
+    // given
+    // одиночные суррогаты не являются символами текста и склеиваются в пары при построении строки
+    var codePoints = IntStream.rangeClosed(1, Character.MAX_CODE_POINT)
+      .filter(c -> Character.getType(c) != Character.SURROGATE)
+      .toArray();
+    var stream = new CaseChangingCharStream(CharStreams.fromString(new String(codePoints, 0, codePoints.length)));
+
+    // when
+    var folded = new int[codePoints.length];
+    for (var i = 0; i < codePoints.length; i++) {
+      stream.seek(i);
+      folded[i] = stream.LA(1);
+    }
+
+    // then
+    var expected = IntStream.of(codePoints).map(Character::toUpperCase).toArray();
+    assertThat(folded).isEqualTo(expected);
+    stream.seek(codePoints.length);
+    assertThat(stream.LA(1)).isEqualTo(CodePointCharStream.EOF);
+  }
+
+  @Test
+  void tokensMatchReferenceFolding() throws IOException {
+    // given
+    List<Path> files;
+    try (Stream<Path> walk = Files.walk(Path.of("src/test/resources"))) {
+      files = walk
+        .filter(path -> path.toString().endsWith(".bsl"))
+        .collect(Collectors.toList());
+    }
+
+    for (Path file : files) {
+      var content = Files.readString(file);
+
+      // when
+      var tokens = tokens(new CaseChangingCharStream(CharStreams.fromString(content)));
+      var expected = tokens(new ReferenceCaseChangingCharStream(CharStreams.fromString(content)));
+
+      // then
+      assertThat(tokens).as(file.toString()).isEqualTo(expected);
+    }
+    assertThat(files).isNotEmpty();
+  }
+
+  private static List<String> tokens(UnicodeCharStream input) {
+    var lexer = new BSLLexer(input, true);
+    lexer.removeErrorListeners();
+    var tokenStream = new CommonTokenStream(lexer);
+    tokenStream.fill();
+    return tokenStream.getTokens().stream()
+      .map(CaseChangingCharStreamTest::describe)
+      .collect(Collectors.toList());
+  }
+
+  private static String describe(Token token) {
+    return token.getType() + ":" + token.getChannel() + ":" + token.getStartIndex() + ":" + token.getStopIndex()
+      + ":" + token.getText();
+  }
+
+  /**
+   * Прежняя реализация, переводящая в верхний регистр каждый символ при каждом обращении
+   */
+  private static final class ReferenceCaseChangingCharStream extends CaseChangingCharStream {
+    private final UnicodeCharStream source;
+
+    private ReferenceCaseChangingCharStream(UnicodeCharStream source) {
+      super(source);
+      this.source = source;
+    }
+
+    @Override
+    public int LA(int i) {
+      int c = source.LA(i);
+      if (c <= 0) {
+        return c;
+      }
+      return Character.toUpperCase(c);
+    }
+  }
+}
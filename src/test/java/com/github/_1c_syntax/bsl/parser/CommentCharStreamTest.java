@@ -0,0 +1,134 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.tree.Trees;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommentCharStreamTest {
+
+  private static final String MODULE = "Процедура А()\n" +
+    "КонецПроцедуры\n" +
+    "\n" +
+    "    // Описание метода.\n" +
+    "    //\n" +
+    "    // Параметры:\n" +
+    "    //  Параметр - Строка - описание 𝔘 параметра\n" +
+    "Процедура Б(Параметр)\n" +
+    "КонецПроцедуры\n";
+
+  @Test
+  void streamContentMatchesJoinedComments() {
+    // given
+    var comments = comments(MODULE);
+    // как и для строки, описание завершается переводом строки
+    var joined = joinedText(comments) + "\n";
+    var source = comments.get(0).getInputStream();
+    source.seek(5);
+
+    // when
+    var stream = CommentCharStream.of(comments);
+
+    // then
+    assertThat(stream).isNotNull();
+    var expected = joined.codePoints().toArray();
+    assertThat(stream.size()).isEqualTo(expected.length);
+    for (var i = 0; i < expected.length; i++) {
+      assertThat(stream.LA(1)).as("index %d", i).isEqualTo(expected[i]);
+      stream.consume();
+    }
+    assertThat(stream.LA(1)).isEqualTo(Token.EOF);
+    assertThat(stream.getText(Interval.of(0, stream.size() - 1))).isEqualTo(joined);
+    assertThat(stream.getText(Interval.of(3, 30))).isEqualTo(new String(expected, 3, 28));
+    // позиция общего потока модуля не меняется
+    assertThat(source.index()).isEqualTo(5);
+  }
+
+  @Test
+  void tokensHaveModuleCoordinates() {
+    // given
+    var comments = comments(MODULE);
+    var lines = MODULE.split("\n");
+
+    // when
+    var tokenizer = new BSLMethodDescriptionTokenizer(comments);
+
+    // then
+    var ruleNames = Arrays.asList(BSLMethodDescriptionParser.ruleNames);
+    assertThat(Trees.toStringTree(tokenizer.getAst(), ruleNames))
+      .isEqualTo(Trees.toStringTree(new BSLMethodDescriptionTokenizer(joinedText(comments)).getAst(), ruleNames));
+
+    var tokens = tokenizer.getTokens();
+    assertThat(tokens).allMatch(token -> token.getInputStream() == comments.get(0).getInputStream());
+    tokens.stream()
+      .filter(token -> token.getType() != BSLMethodDescriptionLexer.EOL && token.getType() != Token.EOF)
+      .forEach((Token token) -> {
+        var line = lines[token.getLine() - 1];
+        var start = line.offsetByCodePoints(0, token.getCharPositionInLine());
+        assertThat(line.substring(start)).as(token.toString()).startsWith(token.getText());
+      });
+
+    var parameter = tokens.stream()
+      .filter(token -> token.getText().equals("Параметр"))
+      .findFirst()
+      .orElseThrow();
+    assertThat(parameter.getLine()).isEqualTo(7);
+    assertThat(parameter.getCharPositionInLine()).isEqualTo(8);
+  }
+
+  @Test
+  void tokensWithoutSharedStreamUseTheirText() {
+    // given
+    var comments = List.<Token>of(
+      new CommonToken(BSLLexer.LINE_COMMENT, "// Описание"),
+      new CommonToken(BSLLexer.LINE_COMMENT, "// Устарела. Другой метод")
+    );
+
+    // when
+    var tokenizer = new BSLMethodDescriptionTokenizer(comments);
+
+    // then
+    assertThat(CommentCharStream.of(comments)).isNull();
+    assertThat(tokenizer.getAst().deprecate().deprecateDescription().getText()).isEqualTo("Другой метод");
+  }
+
+  private static List<Token> comments(String content) {
+    return new BSLTokenizer(content).getTokens().stream()
+      .filter(token -> token.getType() == BSLLexer.LINE_COMMENT)
+      .collect(Collectors.toList());
+  }
+
+  private static String joinedText(List<Token> comments) {
+    return comments.stream()
+      .map(Token::getText)
+      .collect(Collectors.joining("\n"));
+  }
+}
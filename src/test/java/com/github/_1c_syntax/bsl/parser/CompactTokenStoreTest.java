@@ -0,0 +1,98 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Token;
+import org.junit.jupiter.api.Test;
+import utils.TestUtils;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactTokenStoreTest {
+
+  @Test
+  void storesSameTokensAsTokenizer() {
+    // given
+    var content = TestUtils.getSourceFromFile("src/test/resources/Module.bsl");
+    var tokenizer = new BSLTokenizer(content);
+
+    // when
+    var store = tokenizer.getCompactTokens();
+
+    // then
+    var expected = new BSLTokenizer(content).getTokens();
+    assertThat(store.size()).isEqualTo(expected.size());
+    assertThat(describe(store.asList())).isEqualTo(describe(expected));
+    assertThat(store.getText(store.size() - 1)).isEqualTo(expected.get(expected.size() - 1).getText());
+  }
+
+  @Test
+  void parserWorksOnStore() {
+    // given
+    var content = "Процедура А(Парам) Если Парам Тогда Б = 1; КонецЕсли; КонецПроцедуры";
+    var store = CompactTokenStore.of(new BSLLexer(CharStreams.fromString(content), true));
+
+    // when
+    var parser = new BSLParser(store.newTokenStream());
+    var ast = parser.file();
+
+    // then
+    var expected = new BSLTokenizer(content).getAst();
+    assertThat(ast.getText()).isEqualTo(expected.getText());
+    assertThat(parser.getNumberOfSyntaxErrors()).isZero();
+    var sub = ast.subs().sub(0);
+    assertThat(sub.getTokens())
+      .extracting(Token::getText)
+      .isEqualTo(expected.subs().sub(0).getTokens().stream().map(Token::getText).collect(Collectors.toList()));
+    assertThat(sub.getStart()).isEqualTo(store.get(sub.getStart().getTokenIndex()));
+  }
+
+  @Test
+  void parserRecoversOnStore() {
+    // given
+    var content = "Процедура А( Если Тогда";
+    var store = CompactTokenStore.of(new BSLLexer(CharStreams.fromString(content), true));
+
+    // when
+    var parser = new BSLParser(store.newTokenStream());
+    parser.removeErrorListeners();
+    var ast = parser.file();
+
+    // then
+    var expectedParser = new BSLParser(new BSLTokenizer(content).getTokenStream());
+    expectedParser.removeErrorListeners();
+    assertThat(ast.toStringTree(parser)).isEqualTo(expectedParser.file().toStringTree(expectedParser));
+    assertThat(parser.getNumberOfSyntaxErrors()).isEqualTo(expectedParser.getNumberOfSyntaxErrors());
+  }
+
+  private static List<String> describe(List<Token> tokens) {
+    return tokens.stream()
+      .map(token -> token.getType() + ":" + token.getChannel() + ":" + token.getLine() + ":"
+        + token.getCharPositionInLine() + ":" + token.getStartIndex() + ":" + token.getStopIndex()
+        + ":" + token.getTokenIndex() + ":" + token.getText())
+      .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FastBSLLexerTest {
+
+  private static final List<String> FRAGMENTS = List.of(
+    "Процедура", "КонецПроцедуры", "Функция", "EndFunction", "Асинх", "Async", "Ждать", "Await", "Если", "Тогда",
+    "КонецЕсли", "Истина", "null", "Перем", "А1", "_б", "ёЖ", "Знач", "Экспорт",
+    " ", "  ", "\t", "\f", "\n", "\r", "\r\n", "\n\n",
+    ".", "[", "]", "(", ")", ":", ";", ",", "=", "+", "-", "*", "/", "%", "?", "<", ">", "<=", ">=", "<>",
+    "&", "&НаСервере", "&AtClient", "&Перед(\"А\")", "&Моя",
+    "~", "~Метка:", "//", "// комментарий", "|", "|Хвост\"", "|часть", "\"", "\"\"", "\"строка\"", "\"а\"\"б\"",
+    "\"начало", "'", "'20200101'", "'2020", "1", "12.5", "7.", "0",
+    "#", "#Если", "#ИначеЕсли", "#КонецЕсли", "#Область", "#Region Имя", "#КонецОбласти", "#EndRegion",
+    "#Использовать", "#Use \"lib\"", "#Использовать my-lib_2", "#Использовать \"open",
+    "#Удаление", "#КонецУдаления", "# EndDelete", "#Вставка", "#КонецВставки", "#insert", "#EndInsert",
+    "Сервер", "Клиент", "НаКлиенте", "Linux", "Windows", "MacOS", "МобильныйАвтономныйСервер", "Не", "И", "Или",
+    "!", "\"препроцессор\"", "@", "$", "\\", "`", "{", "}", " ", " ", "𝐀", "😀", "١"
+  );
+
+  @Test
+  void corpusTokensAreEqual() throws IOException {
+    // given
+    List<Path> files;
+    try (Stream<Path> walk = Files.walk(Path.of("src/test/resources"))) {
+      files = walk
+        .filter(path -> path.toString().endsWith(".bsl"))
+        .collect(Collectors.toList());
+    }
+
+    // when
+    for (Path file : files) {
+      var content = Files.readString(file);
+
+      // then
+      assertThat(fastLexerTokens(content)).as(file.toString()).isEqualTo(lexerTokens(content));
+    }
+    assertThat(files).isNotEmpty();
+  }
+
+  @Test
+  void syntheticTokensAreEqual() {
+    // given
+    var random = new Random(20_221_018L);
+
+    for (var i = 0; i < 2_000; i++) {
+      var content = new StringBuilder();
+      var size = random.nextInt(40);
+      for (var j = 0; j < size; j++) {
+        content.append(FRAGMENTS.get(random.nextInt(FRAGMENTS.size())));
+      }
+      var module = content.toString();
+
+      // when
+      var tokens = fastLexerTokens(module);
+
+      // then
+      assertThat(tokens).as(module).isEqualTo(lexerTokens(module));
+    }
+  }
+
+  @Test
+  void everyCodePointInEveryMode() {
+    // given
+    var codePoints = new StringBuilder();
+    for (var c = 0; c <= Character.MAX_CODE_POINT; c++) {
+      if (Character.getType(c) != Character.SURROGATE) {
+        codePoints.appendCodePoint(c).append(' ');
+      }
+    }
+    var prefixes = List.of("", "Асинх ", "#", "&", "~", "А.", "#Область ", "#Использовать ", "#Удаление\n");
+
+    for (String prefix : prefixes) {
+      var module = prefix + codePoints;
+
+      // when
+      var tokens = fastLexerTokens(module);
+
+      // then
+      assertThat(tokens).as(prefix).isEqualTo(lexerTokens(module));
+    }
+  }
+
+  private static List<String> lexerTokens(String content) {
+    var lexer = new BSLLexer(CharStreams.fromString(content), true);
+    lexer.removeErrorListeners();
+    return tokens(lexer);
+  }
+
+  private static List<String> fastLexerTokens(String content) {
+    return tokens(new FastBSLLexer(CharStreams.fromString(content)));
+  }
+
+  private static List<String> tokens(TokenSource lexer) {
+    var tokenStream = new CommonTokenStream(lexer);
+    tokenStream.fill();
+    return tokenStream.getTokens().stream()
+      .map(FastBSLLexerTest::describe)
+      .collect(Collectors.toList());
+  }
+
+  private static String describe(Token token) {
+    return token.getType() + ":" + token.getChannel() + ":" + token.getLine() + ":" + token.getCharPositionInLine()
+      + ":" + token.getStartIndex() + ":" + token.getStopIndex() + ":" + token.getText();
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.atn.ProfilingATNSimulator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GrammarProfilerTest {
+
+  @Test
+  void profileMapsDecisionsToRules() {
+    // given
+    var tokenizer = new BSLTokenizer("Процедура Тест()\n  А = 1 + Б * (В - 2);\n  Г = ;\nКонецПроцедуры");
+    tokenizer.setProfile(true);
+
+    // when
+    tokenizer.getAst();
+
+    // then
+    var profile = tokenizer.getGrammarProfile();
+    assertThat(profile).isNotNull();
+    assertThat(profile.getGrammarName()).isEqualTo("BSLParser.g4");
+    assertThat(profile.getModules()).isEqualTo(1);
+    assertThat(profile.getDecisions())
+      .extracting(DecisionProfile::getRuleName)
+      .contains("statement", "expression");
+    assertThat(profile.getDecisions())
+      .allSatisfy(decision -> assertThat(decision.getInvocations()).isPositive());
+    assertThat(profile.getDecisions().stream().mapToLong(DecisionProfile::getLlFallbacks).sum()).isPositive();
+    assertThat(profile.getTimeInPrediction()).isPositive();
+  }
+
+  @Test
+  void profilingIsOffByDefaultAndDoesNotStickToParser() {
+    // given
+    var profiled = TokenizerPool.bslTokenizer("А = 1;");
+    profiled.setProfile(true);
+    profiled.getAst();
+
+    // when
+    var tokenizer = TokenizerPool.bslTokenizer("А = 1;");
+    tokenizer.getAst();
+
+    // then
+    assertThat(profiled.getGrammarProfile()).isNotNull();
+    assertThat(tokenizer.getGrammarProfile()).isNull();
+    assertThat(tokenizer.parser.getInterpreter().getClass())
+      .isNotEqualTo(ProfilingATNSimulator.class);
+  }
+
+  @Test
+  void profilesAreMergedByGrammar() throws IOException {
+    // given
+    var profiler = new GrammarProfiler();
+
+    // when
+    profiler.profileModule("// Описание\n// Параметры:\n//  А - Число - значение\nПроцедура Тест(А)\nКонецПроцедуры");
+    profiler.profileModule("А = 1;");
+    profiler.profile(Path.of("src/test/resources/sdbl/select01.sdbl"));
+
+    // then
+    assertThat(profiler.getProfiles())
+      .extracting(GrammarProfile::getGrammarName)
+      .containsExactly("BSLParser.g4", "BSLMethodDescriptionParser.g4", "SDBLParser.g4");
+    assertThat(profiler.getProfiles().get(0).getModules()).isEqualTo(2);
+    assertThat(profiler.report(5))
+      .contains("BSLParser.g4: 2 modules")
+      .contains("SDBLParser.g4: 1 modules")
+      .contains("SLL avg");
+  }
+
+  @Test
+  void commentBlocksAreDescriptions() {
+    assertThat(GrammarProfiler.descriptions("// А\n  // Б\nВ = 1;\n// Г"))
+      .containsExactly("// А\n// Б", "// Г");
+  }
+}
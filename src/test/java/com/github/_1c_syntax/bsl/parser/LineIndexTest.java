@@ -0,0 +1,142 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Token;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LineIndexTest {
+
+  @Test
+  void positionsMatchLexerPositions() throws Exception {
+    // given
+    var content = Files.readString(Path.of("src/test/resources/Module.bsl"))
+      + "\rА = 1;\r\nБ = 2;\n\rВ = 3;";
+    var tokenizer = new BSLTokenizer(content);
+
+    // when
+    var lineIndex = tokenizer.getLineIndex();
+
+    // then
+    assertThat(lineIndex.getLength()).isEqualTo(content.codePointCount(0, content.length()));
+    for (Token token : tokenizer.getTokens()) {
+      var offset = token.getStartIndex();
+      assertThat(lineIndex.getLine(offset)).isEqualTo(token.getLine() - 1);
+      assertThat(lineIndex.getCharacter(offset)).isEqualTo(token.getCharPositionInLine());
+      assertThat(lineIndex.getOffset(token.getLine() - 1, token.getCharPositionInLine())).isEqualTo(offset);
+    }
+  }
+
+  @Test
+  void lineBreaks() {
+    // given
+    var text = "а\r\nб\rв\n\nг";
+
+    // when
+    var lineIndex = LineIndex.of(text);
+
+    // then
+    assertThat(lineIndex.getLineCount()).isEqualTo(5);
+    assertThat(lineIndex.getLineStart(1)).isEqualTo(3);
+    assertThat(lineIndex.getLineEnd(0)).isEqualTo(1);
+    assertThat(lineIndex.getLineEnd(1)).isEqualTo(4);
+    assertThat(lineIndex.getLineStart(3)).isEqualTo(7);
+    assertThat(lineIndex.getLineEnd(3)).isEqualTo(7);
+    assertThat(lineIndex.getLine(1)).isZero();
+    assertThat(lineIndex.getLine(2)).isZero();
+    assertThat(lineIndex.getLine(text.length())).isEqualTo(4);
+    assertThat(lineIndex.getOffset(0, 10)).isEqualTo(1);
+    assertThat(LineIndex.of("").getLineCount()).isEqualTo(1);
+  }
+
+  @Test
+  void surrogatePairsAreCountedInUtf16() {
+    // given
+    var text = "А = \"😀😀\"; Б = 1;\n😀В";
+    var lineIndex = LineIndex.of(text);
+    var tokens = new BSLTokenizer(text).getTokens();
+
+    // when
+    var b = tokens.stream().filter(token -> "Б".equals(token.getText())).findFirst().orElseThrow();
+    var v = tokens.stream().filter(token -> "В".equals(token.getText())).findFirst().orElseThrow();
+
+    // then
+    assertThat(b.getCharPositionInLine()).isEqualTo(10);
+    assertThat(lineIndex.getCharacter(b.getStartIndex())).isEqualTo(12);
+    assertThat(text.indexOf('Б')).isEqualTo(lineIndex.toUtf16(b.getStartIndex()));
+    assertThat(lineIndex.getLine(v.getStartIndex())).isEqualTo(1);
+    assertThat(lineIndex.getCharacter(v.getStartIndex())).isEqualTo(2);
+    assertThat(lineIndex.getOffset(0, 12)).isEqualTo(b.getStartIndex());
+    assertThat(lineIndex.getOffset(1, 2)).isEqualTo(v.getStartIndex());
+    for (var offset = 0; offset <= lineIndex.getLength(); offset++) {
+      var line = lineIndex.getLine(offset);
+      assertThat(lineIndex.getOffset(line, lineIndex.getCharacter(offset))).isEqualTo(offset);
+    }
+    assertThatThrownBy(() -> lineIndex.getLine(lineIndex.getLength() + 1))
+      .isInstanceOf(IndexOutOfBoundsException.class);
+  }
+
+  @Test
+  void streamIndexMatchesTextIndex() {
+    // given
+    var text = "а\r\n😀б\rв\n\n😀\r";
+    var stream = CharStreams.fromString(text);
+    stream.seek(4);
+    var expected = LineIndex.of(text);
+
+    // when
+    var lineIndex = LineIndex.of(stream);
+
+    // then
+    assertThat(stream.index()).isEqualTo(4);
+    assertThat(lineIndex.getLength()).isEqualTo(expected.getLength());
+    assertThat(lineIndex.getLineCount()).isEqualTo(expected.getLineCount()).isEqualTo(6);
+    for (var line = 0; line < expected.getLineCount(); line++) {
+      assertThat(lineIndex.getLineStart(line)).isEqualTo(expected.getLineStart(line));
+      assertThat(lineIndex.getLineEnd(line)).isEqualTo(expected.getLineEnd(line));
+    }
+    for (var offset = 0; offset <= expected.getLength(); offset++) {
+      assertThat(lineIndex.getCharacter(offset)).isEqualTo(expected.getCharacter(offset));
+      assertThat(lineIndex.toUtf16(offset)).isEqualTo(expected.toUtf16(offset));
+    }
+  }
+
+  @Test
+  void lineIndexIsRebuiltAfterEdit() {
+    // given
+    var tokenizer = BSLTokenizer.editable("А = 1;\nБ = 2;\n");
+    assertThat(tokenizer.getLineIndex().getLineCount()).isEqualTo(3);
+
+    // when
+    tokenizer.applyEdit(0, 0, "// комментарий\n");
+
+    // then
+    assertThat(tokenizer.getLineIndex().getLineCount()).isEqualTo(4);
+  }
+}
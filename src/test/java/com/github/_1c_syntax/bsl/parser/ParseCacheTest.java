@@ -0,0 +1,177 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.Trees;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.TestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static utils.TestUtils.dump;
+
+class ParseCacheTest {
+
+  private static final long MAX_SIZE = 64L * 1024 * 1024;
+
+  @Test
+  void restoredModuleMatchesParsedModule(@TempDir Path directory) throws Exception {
+    // given
+    var content = TestUtils.getSourceFromFile("src/test/resources/Module.bsl");
+    var expected = new BSLTokenizer(content);
+    new ParseCache(directory, MAX_SIZE).bslTokenizer(content);
+
+    // when
+    var cache = new ParseCache(directory, MAX_SIZE);
+    var tokenizer = cache.bslTokenizer(content);
+
+    // then
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.getMisses()).isZero();
+    assertThat(describe(tokenizer.getTokens())).isEqualTo(describe(expected.getTokens()));
+    assertThat(dump(tokenizer.getAst())).isEqualTo(dump(expected.getAst()));
+    assertThat(tokenizer.getAst().getText()).isEqualTo(expected.getAst().getText());
+    assertThat(tokenizer.getAst().subs().sub()).hasSameSizeAs(expected.getAst().subs().sub());
+  }
+
+  @Test
+  void byteOrderMarkIsIgnoredInKey(@TempDir Path directory) throws Exception {
+    // given
+    var cache = new ParseCache(directory, MAX_SIZE);
+    cache.bslTokenizer("А = 1;");
+
+    // when
+    var tokenizer = cache.bslTokenizer("\uFEFFА = 1;");
+
+    // then
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(tokenizer.getTokens().get(0).getText()).isEqualTo("А");
+  }
+
+  @Test
+  void labelsAreRestored(@TempDir Path directory) throws Exception {
+    // given
+    var content = "ВЫБРАТЬ Поле ИЗ Справочник.Товары ГДЕ Поле > 1 УПОРЯДОЧИТЬ ПО Поле";
+    var cache = new ParseCache(directory, MAX_SIZE);
+    cache.sdblTokenizer(content);
+
+    // when
+    var ast = cache.sdblTokenizer(content).getAst();
+
+    // then
+    assertThat(cache.getHits()).isEqualTo(1);
+    var query = (SDBLParser.QueryContext) Trees.findAllRuleNodes(ast, SDBLParser.RULE_query).iterator().next();
+    assertThat(query.columns).isSameAs(query.selectedFields());
+    assertThat(query.from).isSameAs(query.dataSources());
+    assertThat(query.where).isSameAs(query.logicalExpression(0));
+    var subquery = (SDBLParser.SubqueryContext) query.getParent();
+    assertThat(subquery.main).isSameAs(query);
+  }
+
+  @Test
+  void corruptedEntryFallsBackToParse(@TempDir Path directory) throws Exception {
+    // given
+    var content = "Процедура Тест()\n  А = 1;\nКонецПроцедуры";
+    var cache = new ParseCache(directory, MAX_SIZE);
+    cache.bslTokenizer(content);
+    var entry = entries(directory).get(0);
+    var bytes = Files.readAllBytes(entry);
+    bytes[bytes.length - 1] ^= 0x55;
+    Files.write(entry, bytes);
+
+    // when
+    var tokenizer = cache.bslTokenizer(content);
+
+    // then
+    assertThat(cache.getErrors()).isEqualTo(1);
+    assertThat(cache.getHits()).isZero();
+    assertThat(tokenizer.getAst().subs().sub()).hasSize(1);
+    assertThat(cache.bslTokenizer(content).getAst().getText()).isEqualTo(tokenizer.getAst().getText());
+    assertThat(cache.getHits()).isEqualTo(1);
+  }
+
+  @Test
+  void sizeTracksDeletedEntries(@TempDir Path directory) throws Exception {
+    // given
+    var content = "Процедура Тест()\n  А = 1;\nКонецПроцедуры";
+    var cache = new ParseCache(directory, MAX_SIZE);
+    cache.bslTokenizer(content);
+    var entry = entries(directory).get(0);
+    var entrySize = Files.size(entry);
+
+    // when
+    for (var i = 0; i < 3; i++) {
+      var bytes = Files.readAllBytes(entry);
+      bytes[bytes.length - 1] ^= 0x55;
+      Files.write(entry, bytes);
+      cache.bslTokenizer(content);
+    }
+
+    // then
+    assertThat(cache.getErrors()).isEqualTo(3);
+    assertThat(cache.getSize()).isEqualTo(entrySize);
+    cache.clear();
+    assertThat(cache.getSize()).isZero();
+  }
+
+  @Test
+  void leastRecentlyUsedEntriesAreEvicted(@TempDir Path directory) throws Exception {
+    // given
+    var first = "А = 1;";
+    var second = "Б = 2;";
+    new ParseCache(directory, MAX_SIZE).bslTokenizer(first);
+    var firstEntry = entries(directory).get(0);
+    Files.setLastModifiedTime(firstEntry, FileTime.fromMillis(0));
+    var entrySize = Files.size(firstEntry);
+
+    // when
+    var cache = new ParseCache(directory, entrySize + entrySize / 2);
+    cache.bslTokenizer(second);
+
+    // then
+    assertThat(cache.getEvictions()).isEqualTo(1);
+    assertThat(firstEntry).doesNotExist();
+    assertThat(entries(directory)).hasSize(1);
+    cache.bslTokenizer(second);
+    assertThat(cache.getHits()).isEqualTo(1);
+  }
+
+  private static List<Path> entries(Path directory) throws Exception {
+    try (Stream<Path> files = Files.walk(directory)) {
+      return files.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+  }
+
+  private static List<String> describe(List<Token> tokens) {
+    return tokens.stream()
+      .map(TestUtils::describe)
+      .collect(Collectors.toList());
+  }
+}
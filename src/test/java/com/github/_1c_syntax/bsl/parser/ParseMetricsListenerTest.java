@@ -0,0 +1,164 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParseMetricsListenerTest {
+
+  @AfterEach
+  void tearDown() {
+    Tokenizer.setParseMetricsListener(ParseMetricsListener.NOOP);
+  }
+
+  @Test
+  void metricsOfValidModule() {
+    // given
+    var metrics = collectMetrics();
+    var tokenizer = new BSLTokenizer("Процедура Тест()\n  А = 1;\nКонецПроцедуры");
+
+    // when
+    var ast = tokenizer.getAst();
+
+    // then
+    assertThat(metrics).hasSize(1);
+    var moduleMetrics = metrics.get(0);
+    assertThat(moduleMetrics.getTokenCount()).isEqualTo(tokenizer.getTokens().size());
+    assertThat(moduleMetrics.getLexingNanos()).isPositive();
+    assertThat(moduleMetrics.getSllNanos()).isPositive();
+    assertThat(moduleMetrics.getLlNanos()).isZero();
+    assertThat(moduleMetrics.getErrorCount()).isZero();
+    assertThat(moduleMetrics.getTreeNodeCount()).isGreaterThan(ast.getChildCount());
+    assertThat(moduleMetrics.getDfaStatesGrowth()).isNotNegative();
+    assertThat(moduleMetrics.getTotalNanos()).isEqualTo(
+      moduleMetrics.getDecodeNanos() + moduleMetrics.getLexingNanos() + moduleMetrics.getSllNanos());
+  }
+
+  @Test
+  void metricsOfModuleWithSyntaxError() {
+    // given
+    var metrics = collectMetrics();
+    var tokenizer = new BSLTokenizer("Процедура Тест()\n  А = ;\nКонецПроцедуры");
+
+    // when
+    tokenizer.getAst();
+
+    // then
+    assertThat(metrics).hasSize(1);
+    var moduleMetrics = metrics.get(0);
+    assertThat(moduleMetrics.getSllNanos()).isPositive();
+    assertThat(moduleMetrics.getLlNanos()).isPositive();
+    assertThat(moduleMetrics.getErrorCount()).isPositive();
+  }
+
+  @Test
+  void batchParserReportsFilePaths(@TempDir Path directory) throws IOException, InterruptedException {
+    // given
+    var metrics = collectMetrics();
+    var file = directory.resolve("Module.bsl");
+    Files.writeString(file, "А = 1;", StandardCharsets.UTF_8);
+
+    // when
+    new BSLBatchParser().parse(directory, result -> {
+      // результат не нужен
+    });
+
+    // then
+    assertThat(metrics)
+      .extracting(ParseMetrics::getSourceName)
+      .containsExactly(file.toString());
+    assertThat(metrics.get(0).getDecodeNanos()).isPositive();
+  }
+
+  @Test
+  void noopListenerIsDefault() {
+    // given
+    var tokenizer = new BSLTokenizer("А = 1;");
+
+    // when
+    tokenizer.getAst();
+
+    // then
+    assertThat(Tokenizer.getParseMetricsListener()).isSameAs(ParseMetricsListener.NOOP);
+  }
+
+  @Test
+  void histogramAggregatesMetrics() {
+    // given
+    var histogram = new ParseMetricsHistogram(2);
+    var fast = metrics("fast", 1_000);
+    var medium = metrics("medium", 4_000);
+    var slow = metrics("slow", 1_000_000);
+
+    // when
+    histogram.parsed(medium);
+    histogram.parsed(slow);
+    histogram.parsed(fast);
+
+    // then
+    assertThat(histogram.getCount()).isEqualTo(3);
+    assertThat(histogram.getTokenCount()).isEqualTo(30);
+    assertThat(histogram.getErrorCount()).isEqualTo(3);
+    assertThat(histogram.getSlowest()).containsExactly(slow, medium);
+    assertThat(histogram.getBuckets(ParseMetrics.Phase.LL)[0]).isEqualTo(3);
+    assertThat(histogram.getQuantileNanos(ParseMetrics.Phase.LEXING, 0.5)).isEqualTo(4_095);
+    assertThat(histogram.getQuantileNanos(ParseMetrics.Phase.LEXING, 1)).isEqualTo(1_048_575);
+    assertThat(histogram.getQuantileNanos(ParseMetrics.Phase.TOTAL, 0.01)).isEqualTo(1_023);
+
+    histogram.reset();
+    assertThat(histogram.getCount()).isZero();
+    assertThat(histogram.getSlowest()).isEmpty();
+    assertThat(histogram.getQuantileNanos(ParseMetrics.Phase.TOTAL, 0.5)).isZero();
+  }
+
+  @Test
+  void histogramBuckets() {
+    assertThat(ParseMetricsHistogram.bucket(0)).isZero();
+    assertThat(ParseMetricsHistogram.bucket(1)).isEqualTo(1);
+    assertThat(ParseMetricsHistogram.bucket(1_023)).isEqualTo(10);
+    assertThat(ParseMetricsHistogram.bucket(1_024)).isEqualTo(11);
+    assertThat(ParseMetricsHistogram.bucket(Long.MAX_VALUE)).isEqualTo(ParseMetricsHistogram.BUCKETS - 1);
+    assertThat(ParseMetricsHistogram.upperBound(ParseMetricsHistogram.BUCKETS - 1)).isEqualTo(Long.MAX_VALUE);
+  }
+
+  private static List<ParseMetrics> collectMetrics() {
+    List<ParseMetrics> metrics = Collections.synchronizedList(new ArrayList<>());
+    Tokenizer.setParseMetricsListener(metrics::add);
+    return metrics;
+  }
+
+  private static ParseMetrics metrics(String sourceName, long lexingNanos) {
+    return new ParseMetrics(sourceName, 0, lexingNanos, 10, 0, 0, 1, 20, 0);
+  }
+}
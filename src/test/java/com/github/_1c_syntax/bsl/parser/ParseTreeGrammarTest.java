@@ -0,0 +1,87 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.atn.ATNState;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParseTreeGrammarTest {
+
+  @Test
+  void contextFactoriesMatchRules() throws IOException {
+    // given
+    Map<ParseTreeGrammar<?>, String[]> grammars = Map.of(
+      ParseTreeGrammar.BSL, BSLParser.ruleNames,
+      ParseTreeGrammar.SDBL, SDBLParser.ruleNames,
+      ParseTreeGrammar.METHOD_DESCRIPTION, BSLMethodDescriptionParser.ruleNames
+    );
+
+    for (var entry : grammars.entrySet()) {
+      var grammar = entry.getKey();
+      var ruleNames = entry.getValue();
+      for (var i = 0; i < ruleNames.length; i++) {
+        // when
+        var context = grammar.createContext(i, null, ATNState.INVALID_STATE_NUMBER);
+
+        // then
+        var expectedName = Character.toUpperCase(ruleNames[i].charAt(0)) + ruleNames[i].substring(1) + "Context";
+        assertThat(context.getRuleIndex()).isEqualTo(i);
+        assertThat(context.getClass().getSimpleName()).isEqualTo(expectedName);
+        assertThat(context.getClass().getEnclosingClass().getName()).isEqualTo(grammar.getParserClassName());
+      }
+      var invalidIndex = ruleNames.length;
+      assertThatThrownBy(() -> grammar.createContext(invalidIndex, null, ATNState.INVALID_STATE_NUMBER))
+        .isInstanceOf(IOException.class);
+    }
+  }
+
+  @Test
+  void grammarIsFoundByTree() {
+    // given
+    var trees = List.of(
+      new BSLTokenizer("А = 1;").getAst(),
+      new SDBLTokenizer("ВЫБРАТЬ 1").getAst(),
+      new BSLMethodDescriptionTokenizer("// Описание").getAst()
+    );
+
+    // when
+    var grammars = List.of(
+      ParseTreeGrammar.of(trees.get(0)),
+      ParseTreeGrammar.of(trees.get(1)),
+      ParseTreeGrammar.of(trees.get(2))
+    );
+
+    // then
+    assertThat(grammars).containsExactly(ParseTreeGrammar.BSL, ParseTreeGrammar.SDBL,
+      ParseTreeGrammar.METHOD_DESCRIPTION);
+    for (var i = 0; i < trees.size(); i++) {
+      assertThat(grammars.get(i).getRootClass()).isSameAs(trees.get(i).getClass());
+    }
+  }
+}
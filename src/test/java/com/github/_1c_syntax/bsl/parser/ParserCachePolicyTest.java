@@ -0,0 +1,103 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParserCachePolicyTest {
+
+  private final ParserCachePolicy cachePolicy = Tokenizer.getCachePolicy();
+
+  @AfterEach
+  void tearDown() {
+    cachePolicy.setMaxContextCacheSize(ParserCachePolicy.UNLIMITED);
+  }
+
+  @Test
+  void warmUp() {
+    // given
+    cachePolicy.clear();
+
+    // when
+    cachePolicy.warmUp();
+
+    // then
+    var statistics = cachePolicy.getStatistics();
+    assertThat(statistics.getDfaStates()).isPositive();
+    assertThat(statistics.getGrammars())
+      .extracting(ParserCacheStatistics.GrammarStatistics::getGrammarName)
+      .contains("BSLLexer.g4", "BSLParser.g4", "SDBLLexer.g4", "SDBLParser.g4");
+  }
+
+  @Test
+  void warmParseIsCounted() {
+    // given
+    var content = "Процедура Тест() Сообщить(1); КонецПроцедуры";
+    cachePolicy.warmUp(List.of(content));
+    var before = cachePolicy.getStatistics();
+
+    // when
+    new BSLTokenizer(content).getAst();
+
+    // then
+    var after = cachePolicy.getStatistics();
+    assertThat(after.getParses()).isEqualTo(before.getParses() + 1);
+    assertThat(after.getWarmParses()).isEqualTo(before.getWarmParses() + 1);
+    assertThat(after.getHitRate()).isPositive();
+  }
+
+  @Test
+  void clear() {
+    // given
+    cachePolicy.warmUp();
+
+    // when
+    cachePolicy.clear();
+
+    // then
+    var statistics = cachePolicy.getStatistics();
+    assertThat(statistics.getDfaStates()).isZero();
+    assertThat(statistics.getGrammars())
+      .allMatch(grammar -> grammar.getContextCacheSize() == 0);
+  }
+
+  @Test
+  void maxContextCacheSize() {
+    // given
+    cachePolicy.setMaxContextCacheSize(1);
+    var clearsBefore = cachePolicy.getStatistics().getClears();
+
+    // when
+    cachePolicy.warmUp();
+
+    // then
+    assertThat(cachePolicy.getStatistics().getClears()).isGreaterThan(clearsBefore);
+    assertThrows(IllegalArgumentException.class, () -> cachePolicy.setMaxContextCacheSize(-1));
+  }
+
+}
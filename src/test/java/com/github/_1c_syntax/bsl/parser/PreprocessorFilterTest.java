@@ -0,0 +1,172 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PreprocessorFilterTest {
+
+  @Test
+  void inactiveBranchesAreMovedToChannel() {
+    // given
+    var module = "А = 1;\n"
+      + "#Если Сервер Тогда\n"
+      + "Б = 2;\n"
+      + "#ИначеЕсли Клиент Тогда\n"
+      + "В = 3;\n"
+      + "#Иначе\n"
+      + "Г = 4;\n"
+      + "#КонецЕсли\n"
+      + "Д = 5;";
+
+    // when
+    var serverTokens = filteredTokens(module, PreprocessorSymbol.server());
+    var clientTokens = filteredTokens(module, PreprocessorSymbol.thinClient());
+    var otherTokens = filteredTokens(module, EnumSet.noneOf(PreprocessorSymbol.class));
+
+    // then
+    assertThat(defaultChannelText(serverTokens)).isEqualTo("А=1;Б=2;Д=5;");
+    assertThat(defaultChannelText(clientTokens)).isEqualTo("А=1;В=3;Д=5;");
+    assertThat(defaultChannelText(otherTokens)).isEqualTo("А=1;Г=4;Д=5;");
+    assertThat(serverTokens)
+      .filteredOn(token -> token.getChannel() == PreprocessorFilter.PREPROC_INACTIVE_CHANNEL)
+      .extracting(Token::getText)
+      .containsExactly("В", "=", "3", ";", "Г", "=", "4", ";");
+    assertThat(serverTokens)
+      .filteredOn(token -> token.getType() == BSLLexer.HASH)
+      .allSatisfy(token -> assertThat(token.getChannel()).isEqualTo(Token.HIDDEN_CHANNEL));
+    assertThat(serverTokens).extracting(Token::getText)
+      .isEqualTo(lexerTokens(module).stream().map(Token::getText).collect(Collectors.toList()));
+  }
+
+  @Test
+  void conditionPrecedence() {
+    var server = PreprocessorSymbol.server();
+    assertThat(isActive("НЕ Клиент И Сервер", server)).isTrue();
+    assertThat(isActive("Клиент И Сервер ИЛИ НаСервере", server)).isTrue();
+    assertThat(isActive("Сервер ИЛИ Клиент И ВебКлиент", server)).isTrue();
+    assertThat(isActive("(Сервер ИЛИ Клиент) И ВебКлиент", server)).isFalse();
+    assertThat(isActive("НЕ (Клиент ИЛИ ВебКлиент)", server)).isTrue();
+    assertThat(isActive("Not Server Or Not AtServer", server)).isFalse();
+    assertThat(isActive("НЕ НЕ Сервер", server)).isTrue();
+    assertThat(isActive("МойСимвол ИЛИ Клиент", server)).isFalse();
+    assertThat(isActive("Сервер И Linux", server)).isFalse();
+    assertThat(isActive("Сервер И Linux", EnumSet.of(PreprocessorSymbol.SERVER, PreprocessorSymbol.LINUX))).isTrue();
+    assertThat(isActive("(Сервер", server)).isFalse();
+    assertThat(isActive("Сервер Сервер", server)).isFalse();
+    assertThat(isActive("", server)).isFalse();
+  }
+
+  @Test
+  void nestedAndUnmatchedDirectives() {
+    // given
+    var module = "#КонецЕсли\n"
+      + "#Если Клиент Тогда\n"
+      + "А = 1;\n"
+      + "#Если Сервер Тогда\n"
+      + "Б = 2;\n"
+      + "#Иначе\n"
+      + "В = 3;\n"
+      + "#КонецЕсли\n"
+      + "#Иначе\n"
+      + "#Если Сервер Тогда\n"
+      + "Г = 4;\n"
+      + "#Иначе\n"
+      + "Д = 5;\n"
+      + "#КонецЕсли\n"
+      + "#КонецЕсли\n"
+      + "Е = 6;";
+
+    // when
+    var tokens = filteredTokens(module, PreprocessorSymbol.server());
+
+    // then
+    assertThat(defaultChannelText(tokens)).isEqualTo("Г=4;Е=6;");
+  }
+
+  @Test
+  void parserSeesOnlyActiveCode() {
+    // given
+    var module = "Процедура Тест()\n"
+      + "  А = 1\n"
+      + "  #Если Сервер Тогда\n"
+      + "  + 2;\n"
+      + "КонецПроцедуры\n"
+      + "  #Иначе\n"
+      + "  ;\n"
+      + "КонецПроцедуры\n"
+      + "  #КонецЕсли\n"
+      + "#Область Методы\n"
+      + "#КонецОбласти";
+    var lexer = new FastBSLLexer(CharStreams.fromString(module));
+    var tokenStream = new CommonTokenStream(new PreprocessorFilter(lexer, PreprocessorSymbol.server()));
+    var parser = new BSLParser(tokenStream);
+    parser.removeErrorListeners();
+
+    // when
+    var file = parser.file();
+
+    // then
+    assertThat(parser.getNumberOfSyntaxErrors()).isZero();
+    assertThat(file.subs().sub()).hasSize(1);
+    assertThat(file.getText()).startsWith("ПроцедураТест()А=1+2;КонецПроцедуры");
+    assertThat(file.getText()).contains("#ОбластьМетоды", "#КонецОбласти");
+  }
+
+  private static boolean isActive(String condition, Set<PreprocessorSymbol> context) {
+    var tokens = filteredTokens("#Если " + condition + " Тогда\nА\n#КонецЕсли", context);
+    return tokens.stream().anyMatch(token -> "А".equals(token.getText())
+      && token.getChannel() == Token.DEFAULT_CHANNEL);
+  }
+
+  private static String defaultChannelText(List<Token> tokens) {
+    return tokens.stream()
+      .filter(token -> token.getChannel() == Token.DEFAULT_CHANNEL && token.getType() != Token.EOF)
+      .map(Token::getText)
+      .collect(Collectors.joining());
+  }
+
+  private static List<Token> filteredTokens(String content, Set<PreprocessorSymbol> context) {
+    return tokens(new PreprocessorFilter(new BSLLexer(CharStreams.fromString(content), true), context));
+  }
+
+  private static List<Token> lexerTokens(String content) {
+    return tokens(new BSLLexer(CharStreams.fromString(content), true));
+  }
+
+  private static List<Token> tokens(TokenSource source) {
+    var tokenStream = new CommonTokenStream(source);
+    tokenStream.fill();
+    return tokenStream.getTokens();
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is a part of BSL Parser.
+ *
+ * Copyright (c) 2018-2022
+ * Alexey Sosnoviy <labotamy@gmail.com>, Nikita Fedkin <nixel2007@gmail.com>, Sergey Batanov <sergey.batanov@dmpas.ru>
+ *
+ * SPDX-License-Identifier: LGPL-3.0-or-later
+ *
+ * BSL Parser is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * BSL Parser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with BSL Parser.
+ */
+package com.github._1c_syntax.bsl.parser;
+
+import org.antlr.v4.runtime.Token;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import utils.TestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenizerPoolTest {
+
+  @AfterEach
+  void tearDown() {
+    TokenizerPool.release();
+  }
+
+  @Test
+  void reusesParserBetweenFiles() {
+    // given
+    var first = TokenizerPool.bslTokenizer("Процедура А() КонецПроцедуры");
+    first.getAst();
+    var firstParser = first.parser;
+
+    // when
+    var second = TokenizerPool.bslTokenizer("Процедура Б() КонецПроцедуры");
+    second.getAst();
+
+    // then
+    assertThat(second.parser).isSameAs(firstParser);
+  }
+
+  @Test
+  void noStateLeaksBetweenFiles() {
+    // given
+    var broken = TokenizerPool.bslTokenizer("Асинх Процедура А() Если Тогда &");
+    broken.getAst();
+    var content = TestUtils.getSourceFromFile("src/test/resources/Module.bsl");
+
+    // when
+    var pooled = TokenizerPool.bslTokenizer(content);
+    var fresh = new BSLTokenizer(content);
+
+    // then
+    assertThat(describe(pooled.getTokens())).isEqualTo(describe(fresh.getTokens()));
+    assertThat(pooled.getAst().getText()).isEqualTo(fresh.getAst().getText());
+    assertThat(pooled.parser.getNumberOfSyntaxErrors()).isEqualTo(fresh.parser.getNumberOfSyntaxErrors());
+  }
+
+  @Test
+  void computesOnCallingThread() throws Exception {
+    // given
+    var tokenizer = TokenizerPool.sdblTokenizer("Выбрать Ссылка Из Справочник.Контрагенты");
+
+    // when
+    var ast = CompletableFuture.supplyAsync(tokenizer::getAst).get();
+
+    // then
+    assertThat(ast.queries()).hasSize(1);
+    assertThat(tokenizer.getTokens()).hasSize(10);
+  }
+
+  private static List<String> describe(List<Token> tokens) {
+    return tokens.stream()
+      .map(token -> token.getType() + ":" + token.getChannel() + ":" + token.getLine()
+        + ":" + token.getCharPositionInLine() + ":" + token.getText())
+      .collect(Collectors.toList());
+  }
+
+}
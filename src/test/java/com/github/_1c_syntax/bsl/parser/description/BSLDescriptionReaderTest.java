@@ -23,21 +23,58 @@ package com.github._1c_syntax.bsl.parser.description;
 
 import com.github._1c_syntax.bsl.parser.BSLParser;
 import com.github._1c_syntax.bsl.parser.BSLTokenizer;
+import com.github._1c_syntax.bsl.parser.ParseMetricsListener;
+import com.github._1c_syntax.bsl.parser.Tokenizer;
 import com.github._1c_syntax.bsl.parser.description.support.ParameterDescription;
 import com.github._1c_syntax.bsl.parser.description.support.SimpleRange;
 import com.github._1c_syntax.bsl.parser.description.support.TypeDescription;
 import org.antlr.v4.runtime.Token;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import utils.TestUtils;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class BSLDescriptionReaderTest {
 
+  private static final String MODULE = String.join("\n",
+    "// Описание переменных",
+    "Перем А, Б Экспорт; // Висячее описание",
+    "",
+    "// Оторванный комментарий",
+    "",
+    "Перем В;",
+    "Перем Г; // Висячее описание Г",
+    "// Описание процедуры",
+    "// Параметры:",
+    "//   П - Число - параметр",
+    "&НаСервере",
+    "Процедура Первая(П) Экспорт",
+    "  // Комментарий в теле",
+    "КонецПроцедуры",
+    "Процедура Вторая() // висячий комментарий метода",
+    "КонецПроцедуры",
+    "",
+    "// Описание функции",
+    "Функция Третья()",
+    "  Возврат 1;",
+    "КонецФункции"
+  );
+
+  @AfterEach
+  void resetListener() {
+    Tokenizer.setParseMetricsListener(ParseMetricsListener.NOOP);
+    BSLDescriptionReader.setCacheSize(BSLDescriptionReader.CACHE_DISABLED);
+    BSLDescriptionReader.clearCache();
+  }
+
   @Test
   void parseMethodDescription() {
     var filePath = "src/test/resources/methodDescription/example1.bsl";
@@ -591,6 +628,201 @@ class BSLDescriptionReaderTest {
 
   }
 
+  @Test
+  void lazyMethodDescription() {
+    // given
+    var filePath = "src/test/resources/methodDescription/example1.bsl";
+    var tokens = getTokensFromString(TestUtils.getSourceFromFile(filePath));
+    var expected = BSLDescriptionReader.parseMethodDescription(tokens);
+    var parseCount = new AtomicInteger();
+    Tokenizer.setParseMetricsListener(metrics -> parseCount.incrementAndGet());
+
+    // when
+    var methodDescription = BSLDescriptionReader.lazyMethodDescription(tokens);
+
+    // then
+    assertThat(methodDescription.getDescription()).isEqualTo(expected.getDescription());
+    assertThat(methodDescription.getSimpleRange()).isEqualTo(expected.getSimpleRange());
+    assertThat(parseCount).hasValue(0);
+
+    assertThat(methodDescription.getParameters()).hasSameSizeAs(expected.getParameters());
+    assertThat(parseCount).hasValue(1);
+
+    assertThat(methodDescription.getPurposeDescription()).isEqualTo(expected.getPurposeDescription());
+    assertThat(methodDescription.getReturnedValue()).hasSameSizeAs(expected.getReturnedValue());
+    assertThat(methodDescription.getExamples()).isEqualTo(expected.getExamples());
+    assertThat(methodDescription.getCallOptions()).isEqualTo(expected.getCallOptions());
+    assertThat(methodDescription.getLink()).isEqualTo(expected.getLink());
+    assertThat(methodDescription.getDeprecationInfo()).isEqualTo(expected.getDeprecationInfo());
+    assertThat(methodDescription.isDeprecated()).isEqualTo(expected.isDeprecated());
+    assertThat(methodDescription.getParameters()).isSameAs(methodDescription.getParameters());
+    assertThat(parseCount).hasValue(1);
+  }
+
+  @Test
+  void lazyVariableDescription() {
+    // given
+    var exampleString = "// Описание переменной\n// Устарела. см. НоваяПеременная";
+    var tokens = getTokensFromString(exampleString);
+    var trailing = getTokensFromString("// Висячее описание").get(0);
+    var parseCount = new AtomicInteger();
+    Tokenizer.setParseMetricsListener(metrics -> parseCount.incrementAndGet());
+
+    // when
+    var variableDescription = BSLDescriptionReader.lazyVariableDescription(tokens, trailing);
+
+    // then
+    assertThat(variableDescription.getDescription()).isEqualTo(exampleString);
+    assertThat(variableDescription.getTrailingDescription()).isPresent();
+    assertThat(parseCount).hasValue(0);
+
+    assertThat(variableDescription.isDeprecated()).isTrue();
+    assertThat(variableDescription.getDeprecationInfo()).isEqualTo("см. НоваяПеременная");
+    assertThat(variableDescription.getPurposeDescription()).contains("Описание переменной");
+    assertThat(parseCount).hasValue(1);
+
+    assertThat(variableDescription.getTrailingDescription().get().getPurposeDescription())
+      .isEqualTo("Висячее описание");
+    assertThat(parseCount).hasValue(2);
+  }
+
+  @Test
+  void descriptionsSurviveModuleEdit() {
+    // given
+    var filePath = "src/test/resources/methodDescription/example1.bsl";
+    var content = TestUtils.getSourceFromFile(filePath);
+    var tokenizer = BSLTokenizer.editable(content);
+    var tokens = tokenizer.getTokens().stream()
+      .filter(token -> token.getType() == BSLParser.LINE_COMMENT)
+      .collect(Collectors.toList());
+    var expected = BSLDescriptionReader.parseMethodDescription(getTokensFromString(content));
+    var eager = BSLDescriptionReader.parseMethodDescription(tokens);
+    var lazy = BSLDescriptionReader.lazyMethodDescription(tokens);
+
+    // when
+    tokenizer.applyEdit(0, 0, "Перем ОченьДлиннаяПеременная;\n");
+    tokenizer.getAst();
+
+    // then
+    for (var description : List.of(eager, lazy)) {
+      assertThat(description.getDescription()).isEqualTo(expected.getDescription());
+      assertThat(description.getPurposeDescription()).isEqualTo(expected.getPurposeDescription());
+      assertThat(description.getParameters()).hasSameSizeAs(expected.getParameters());
+      assertThat(description.getSimpleRange()).isEqualTo(expected.getSimpleRange());
+    }
+  }
+
+  @Test
+  void readAll() {
+    // given
+    var tokenizer = new BSLTokenizer(MODULE);
+
+    // when
+    var descriptions = BSLDescriptionReader.readAll(tokenizer);
+
+    // then
+    var file = tokenizer.getAst();
+    var subs = file.subs().sub();
+    var variables = file.moduleVars().moduleVar().stream()
+      .flatMap(moduleVar -> moduleVar.moduleVarsList().moduleVarDeclaration().stream())
+      .collect(Collectors.toList());
+
+    assertThat(descriptions.getMethodDescriptions()).containsOnlyKeys(subs.get(0), subs.get(2));
+    assertThat(descriptions.getMethodDescription(subs.get(0))).hasValueSatisfying(description -> {
+      assertThat(description.getPurposeDescription()).isEqualTo("Описание процедуры");
+      assertThat(description.getParameters()).hasSize(1);
+      assertThat(description.getSimpleRange()).isEqualTo(new SimpleRange(7, 0, 9, 25));
+    });
+    assertThat(descriptions.getMethodDescription(subs.get(1))).isEmpty();
+    assertThat(descriptions.getMethodDescription(subs.get(2))).hasValueSatisfying(description ->
+      assertThat(description.getPurposeDescription()).isEqualTo("Описание функции"));
+
+    assertThat(descriptions.getVariableDescriptions()).containsOnlyKeys(variables.get(0), variables.get(1), variables.get(3));
+    assertThat(descriptions.getVariableDescription(variables.get(0))).hasValueSatisfying(description -> {
+      assertThat(description.getPurposeDescription()).isEqualTo("Описание переменных");
+      assertThat(description.getTrailingDescription()).isPresent();
+    });
+    assertThat(descriptions.getVariableDescription(variables.get(1))).hasValueSatisfying(description -> {
+      assertThat(description.getPurposeDescription()).isEqualTo("Описание переменных");
+      assertThat(description.getTrailingDescription()).hasValueSatisfying(trailing ->
+        assertThat(trailing.getPurposeDescription()).isEqualTo("Висячее описание"));
+    });
+    assertThat(descriptions.getVariableDescription(variables.get(2))).isEmpty();
+    assertThat(descriptions.getVariableDescription(variables.get(3))).hasValueSatisfying(description -> {
+      assertThat(description.getDescription()).isEmpty();
+      assertThat(description.getTrailingDescription()).isPresent();
+    });
+  }
+
+  @Test
+  void readAllInParallel() {
+    // given
+    var tokenizer = new BSLTokenizer(MODULE);
+    var expected = BSLDescriptionReader.readAll(tokenizer);
+
+    // when
+    var descriptions = BSLDescriptionReader.readAll(tokenizer, ForkJoinPool.commonPool());
+
+    // then
+    assertThat(descriptions.getMethodDescriptions()).hasSameSizeAs(expected.getMethodDescriptions());
+    expected.getMethodDescriptions().forEach((sub, description) ->
+      assertThat(descriptions.getMethodDescription(sub)).hasValueSatisfying(actual ->
+        assertThat(actual.getDescription()).isEqualTo(description.getDescription())));
+    assertThat(descriptions.getVariableDescriptions().keySet())
+      .containsExactlyElementsOf(expected.getVariableDescriptions().keySet());
+  }
+
+  @Test
+  void cachedMethodDescription() {
+    // given
+    var description = String.join("\n",
+      "// Описание",
+      "// Параметры:",
+      "//   П - Число - параметр",
+      "//       * Ключ - Строка - вложенный параметр");
+    var first = getTokensFromString(description);
+    var second = getTokensFromString("\n\n    " + description.replace("\n", "\n    "));
+    var parseCount = new AtomicInteger();
+    Tokenizer.setParseMetricsListener(metrics -> parseCount.incrementAndGet());
+    BSLDescriptionReader.setCacheSize(10);
+
+    // when
+    var firstDescription = BSLDescriptionReader.parseMethodDescription(first);
+    var secondDescription = BSLDescriptionReader.parseMethodDescription(second);
+
+    // then
+    assertThat(parseCount).hasValue(1);
+    assertThat(secondDescription.getParameters()).isSameAs(firstDescription.getParameters());
+    assertThat(secondDescription.getSimpleRange()).isEqualTo(new SimpleRange(2, 4, 5, 49));
+    assertThat(firstDescription.getSimpleRange()).isEqualTo(new SimpleRange(0, 0, 3, 45));
+    var subParameters = firstDescription.getParameters().get(0).getTypes().get(0).getParameters();
+    assertThat(subParameters).hasSize(1);
+    assertThatThrownBy(subParameters::clear).isInstanceOf(UnsupportedOperationException.class);
+
+    var variableDescription = BSLDescriptionReader.parseVariableDescription(second);
+    assertThat(parseCount).hasValue(2);
+    assertThat(variableDescription.getPurposeDescription()).isNotEmpty();
+  }
+
+  @Test
+  void cacheSize() {
+    // given
+    var parseCount = new AtomicInteger();
+    Tokenizer.setParseMetricsListener(metrics -> parseCount.incrementAndGet());
+    BSLDescriptionReader.setCacheSize(1);
+
+    // when
+    BSLDescriptionReader.parseMethodDescription(getTokensFromString("// Первое"));
+    BSLDescriptionReader.parseMethodDescription(getTokensFromString("// Второе"));
+    BSLDescriptionReader.parseMethodDescription(getTokensFromString("// Первое"));
+    BSLDescriptionReader.setCacheSize(BSLDescriptionReader.CACHE_DISABLED);
+    BSLDescriptionReader.parseMethodDescription(getTokensFromString("// Первое"));
+
+    // then
+    assertThat(parseCount).hasValue(4);
+    assertThat(BSLDescriptionReader.getCacheSize()).isZero();
+  }
+
   private List<Token> getTokensFromString(String exampleString) {
     var tokenizer = new BSLTokenizer(exampleString);
     return tokenizer.getTokens().stream()
@@ -21,6 +21,7 @@
  */
 package com.github._1c_syntax.bsl.parser.description.support;
 
+import com.github._1c_syntax.bsl.parser.BSLTokenizer;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -40,4 +41,24 @@ class SimpleRangeTest {
     assertThat(SimpleRange.containsRange(range3, range1)).isTrue();
     assertThat(SimpleRange.containsRange(range3, range2)).isTrue();
   }
-}
\ No newline at end of file
+
+  @Test
+  void createWithLineIndex() {
+    var tokenizer = new BSLTokenizer("А = \"\uD83D\uDE00\";\r\nБ = \"строка\n|продолжение\";");
+    var tokens = tokenizer.getTokens();
+    var lineIndex = tokenizer.getLineIndex();
+
+    var first = SimpleRange.create(tokens.get(0), tokens.get(5), lineIndex);
+    var stringStart = tokens.stream()
+      .filter(token -> token.getText().startsWith("\"стр"))
+      .findFirst()
+      .orElseThrow();
+    var stringEnd = tokens.get(tokens.size() - 3);
+    var second = SimpleRange.create(stringStart, stringEnd, lineIndex);
+    var all = SimpleRange.create(tokens, lineIndex);
+
+    assertThat(first).isEqualTo(new SimpleRange(0, 0, 0, 9));
+    assertThat(second).isEqualTo(new SimpleRange(1, 4, 2, 13));
+    assertThat(all).isEqualTo(new SimpleRange(0, 0, 2, 14));
+  }
+}
@@ -21,12 +21,19 @@
  */
 package utils;
 
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 public class TestUtils {
   private TestUtils() {
     // utility class
@@ -48,4 +55,52 @@ public class TestUtils {
       return "";
     }
   }
+
+  /**
+   * Возвращает строку со всеми координатами токена для сравнения токенов разных потоков
+   *
+   * @param token Токен
+   * @return Описание токена
+   */
+  public static String describe(Token token) {
+    if (token == null) {
+      return "null";
+    }
+    return token.getTokenIndex() + ":" + token.getType() + ":" + token.getChannel() + ":" + token.getLine() + ":"
+      + token.getCharPositionInLine() + ":" + token.getStartIndex() + ":" + token.getStopIndex() + ":"
+      + token.getText();
+  }
+
+  /**
+   * Возвращает построчный дамп дерева: классы контекстов, состояния вызова, признаки ошибок и граничные токены.
+   * Попутно проверяет, что у каждого потомка указан родитель.
+   *
+   * @param tree Дерево разбора
+   * @return Дамп дерева
+   */
+  public static String dump(ParseTree tree) {
+    var builder = new StringBuilder();
+    dump(tree, builder);
+    return builder.toString();
+  }
+
+  private static void dump(ParseTree tree, StringBuilder builder) {
+    if (tree instanceof TerminalNode) {
+      builder.append(tree instanceof ErrorNode ? "! " : "")
+        .append(describe(((TerminalNode) tree).getSymbol())).append('\n');
+      return;
+    }
+    var context = (ParserRuleContext) tree;
+    builder.append('(').append(context.getClass().getSimpleName()).append(' ')
+      .append(context.invokingState).append(' ')
+      .append(context.exception != null).append(' ')
+      .append(describe(context.getStart())).append(' ')
+      .append(describe(context.getStop())).append('\n');
+    for (var i = 0; i < context.getChildCount(); i++) {
+      var child = context.getChild(i);
+      assertThat(child.getParent()).isSameAs(context);
+      dump(child, builder);
+    }
+    builder.append(")\n");
+  }
 }